@@ -260,7 +260,7 @@ public class BeanSerializer extends AbstractSerializer {
     }
     else {
       if (ref == -1) {
-        out.writeInt(_names.length);
+        out.writeClassFieldLength(_names.length);
 
         for (int i = 0; i < _names.length; i++)
           out.writeString(_names[i]);
@@ -0,0 +1,101 @@
+package com.caucho.hessian.io;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Class definitions shared by several Hessian 2.0 streams.
+ *
+ * <p>A stream written with a dictionary never contains a class
+ * definition ('C'); the first time a type is written its definition is
+ * appended to the dictionary and the stream only refers to it by index.
+ * Indices are never reused, so any later snapshot of the dictionary can
+ * decode every stream written before it.
+ *
+ * <p>Each entry is the type name followed by the field names.
+ */
+public class ClassDictionary extends AbstractList<String[]> {
+  private final ArrayList<String[]> _definitions
+    = new ArrayList<String[]>();
+  private final HashMap<String,Integer> _refs
+    = new HashMap<String,Integer>();
+
+  /**
+   * Returns the index of the type's definition, or -1 if the type
+   * has not been defined yet.
+   */
+  public synchronized int getRef(String type)
+  {
+    Integer ref = _refs.get(type);
+
+    return ref != null ? ref : -1;
+  }
+
+  /**
+   * Appends the definition of a type.  If another stream defined the
+   * type first, the existing index is returned.
+   */
+  public synchronized int define(String type, String []fieldNames)
+  {
+    Integer ref = _refs.get(type);
+
+    if (ref != null)
+      return ref;
+
+    String []definition = new String[fieldNames.length + 1];
+    definition[0] = type;
+    System.arraycopy(fieldNames, 0, definition, 1, fieldNames.length);
+
+    ref = _definitions.size();
+    _definitions.add(definition);
+    _refs.put(type, ref);
+
+    return ref;
+  }
+
+  /**
+   * Returns a copy of the definitions, e.g. to store next to the
+   * streams.
+   */
+  public synchronized List<String[]> snapshot()
+  {
+    return new ArrayList<String[]>(_definitions);
+  }
+
+  @Override
+  public synchronized String []get(int index)
+  {
+    return _definitions.get(index);
+  }
+
+  @Override
+  public synchronized int size()
+  {
+    return _definitions.size();
+  }
+
+  @Override
+  public synchronized Object []toArray()
+  {
+    return _definitions.toArray();
+  }
+
+  /**
+   * Returns the type name of a definition entry.
+   */
+  static String getType(String []definition)
+  {
+    return definition[0];
+  }
+
+  /**
+   * Returns the field names of a definition entry.
+   */
+  static String []getFieldNames(String []definition)
+  {
+    return Arrays.copyOfRange(definition, 1, definition.length);
+  }
+}
@@ -75,7 +75,7 @@ public class ClassSerializer extends AbstractSerializer {
       }
       else {
         if (ref == -1) {
-          out.writeInt(1);
+          out.writeClassFieldLength(1);
           out.writeString("name");
           out.writeObjectBegin("java.lang.Class");
         }
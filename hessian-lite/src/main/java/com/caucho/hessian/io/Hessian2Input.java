@@ -53,6 +53,7 @@ import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -99,6 +100,9 @@ public class Hessian2Input
     = new ArrayList<ObjectDefinition>();
   protected ArrayList<String> _types
     = new ArrayList<String>();
+
+  // shared class definitions, see ClassDictionary
+  private List<String[]> _classDictionary;
   
   // the underlying input stream
   private InputStream _is;
@@ -1734,7 +1738,7 @@ public class Hessian2Input
         if (ref < 0 || size <= ref)
           throw new HessianProtocolException("'" + ref + "' is an unknown class definition");
 
-        ObjectDefinition def = _classDefs.get(ref);
+        ObjectDefinition def = getObjectDefinition(ref);
 
         return readObjectInstance(cl, def);
       }
@@ -1747,7 +1751,7 @@ public class Hessian2Input
         if (ref < 0 || size <= ref)
           throw new HessianProtocolException("'" + ref + "' is an unknown class definition");
 
-        ObjectDefinition def = _classDefs.get(ref);
+        ObjectDefinition def = getObjectDefinition(ref);
 
         return readObjectInstance(cl, def);
       }
@@ -2143,7 +2147,7 @@ public class Hessian2Input
           throw error("No classes defined at reference '"
                       + Integer.toHexString(tag) + "'");
 
-        ObjectDefinition def = _classDefs.get(ref);
+        ObjectDefinition def = getObjectDefinition(ref);
 
         return readObjectInstance(null, def);
       }
@@ -2155,7 +2159,7 @@ public class Hessian2Input
         if (_classDefs.size() <= ref)
           throw error("Illegal object reference #" + ref);
 
-        ObjectDefinition def = _classDefs.get(ref);
+        ObjectDefinition def = getObjectDefinition(ref);
 
         return readObjectInstance(null, def);
       }
@@ -2188,24 +2192,81 @@ public class Hessian2Input
     String type = readString();
     int len = readInt();
 
-    SerializerFactory factory = findSerializerFactory();
-    
-    Deserializer reader = factory.getObjectDeserializer(type, null);
-    
-    Object []fields = reader.createFields(len);
     String []fieldNames = new String[len];
-    
+
     for (int i = 0; i < len; i++) {
-      String name = readString();
-      
-      fields[i] = reader.createField(name);
-      fieldNames[i] = name;
+      fieldNames[i] = readString();
     }
-    
-    ObjectDefinition def
-      = new ObjectDefinition(type, reader, fields, fieldNames);
 
-    _classDefs.add(def);
+    _classDefs.add(resolveObjectDefinition(type, fieldNames));
+  }
+
+  /**
+   * Resolves the reader and fields of a class definition; the same
+   * type and fields resolve to the same definition.
+   */
+  private ObjectDefinition resolveObjectDefinition(String type,
+                                                   String []fieldNames)
+    throws IOException
+  {
+    SerializerFactory factory = findSerializerFactory();
+
+    ObjectDefinition def = factory.getObjectDefinition(type, fieldNames);
+
+    if (def == null) {
+      Deserializer reader = factory.getObjectDeserializer(type, null);
+
+      Object []fields = reader.createFields(fieldNames.length);
+
+      for (int i = 0; i < fieldNames.length; i++) {
+        fields[i] = reader.createField(fieldNames[i]);
+      }
+
+      def = new ObjectDefinition(type, reader, fields, fieldNames);
+
+      factory.putObjectDefinition(def);
+    }
+
+    return def;
+  }
+
+  /**
+   * Returns the class definition at a reference; definitions from the
+   * class dictionary are resolved on first use.
+   */
+  private ObjectDefinition getObjectDefinition(int ref)
+    throws IOException
+  {
+    ObjectDefinition def = _classDefs.get(ref);
+
+    if (def == null && _classDictionary != null) {
+      String []definition = _classDictionary.get(ref);
+
+      def = resolveObjectDefinition(ClassDictionary.getType(definition),
+                                    ClassDictionary.getFieldNames(definition));
+
+      _classDefs.set(ref, def);
+    }
+
+    return def;
+  }
+
+  /**
+   * Reads a stream written with a {@link ClassDictionary}; the
+   * definitions must contain every definition the stream refers to.
+   * Cleared by {@link #reset}.
+   */
+  public void setClassDictionary(List<String[]> definitions)
+  {
+    _classDictionary = definitions;
+
+    _classDefs.clear();
+
+    if (definitions != null) {
+      for (int i = 0; i < definitions.size(); i++) {
+        _classDefs.add(null);
+      }
+    }
   }
 
   private Object readObjectInstance(Class<?> cl,
@@ -2366,6 +2427,7 @@ public class Hessian2Input
     
     _classDefs.clear();
     _types.clear();
+    _classDictionary = null;
   }
 
   public void resetBuffer()
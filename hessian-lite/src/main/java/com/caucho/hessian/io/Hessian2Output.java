@@ -50,9 +50,11 @@ package com.caucho.hessian.io;
 
 import com.caucho.hessian.util.IdentityIntMap;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.Field;
 import java.util.HashMap;
 
 /**
@@ -106,6 +108,14 @@ public class Hessian2Output
   
   private boolean _isUnshared;
 
+  // shared class definitions, see ClassDictionary
+  private ClassDictionary _classDictionary;
+
+  // definition being captured into the dictionary
+  private String _pendingType;
+  private String []_pendingFieldNames;
+  private int _pendingFieldCount;
+
   /**
    * Creates a new Hessian output stream, initialized with an
    * underlying output stream.
@@ -577,20 +587,14 @@ public class Hessian2Output
   public int writeObjectBegin(String type)
     throws IOException
   {
+    if (_classDictionary != null)
+      return writeDictionaryObjectBegin(type);
+
     int newRef = _classRefs.size();
     int ref = _classRefs.put(type, newRef, false);
 
     if (newRef != ref) {
-      if (SIZE < _offset + 32)
-        flushBuffer();
-
-      if (ref <= OBJECT_DIRECT_MAX) {
-        _buffer[_offset++] = (byte) (BC_OBJECT_DIRECT + ref);
-      }
-      else {
-        _buffer[_offset++] = (byte) 'O';
-        writeInt(ref);
-      }
+      writeObjectRef(ref);
 
       return ref;
     }
@@ -606,6 +610,42 @@ public class Hessian2Output
     }
   }
 
+  private void writeObjectRef(int ref)
+    throws IOException
+  {
+    if (SIZE < _offset + 32)
+      flushBuffer();
+
+    if (ref <= OBJECT_DIRECT_MAX) {
+      _buffer[_offset++] = (byte) (BC_OBJECT_DIRECT + ref);
+    }
+    else {
+      _buffer[_offset++] = (byte) 'O';
+      writeInt(ref);
+    }
+  }
+
+  /**
+   * Object begin with a class dictionary.  An unknown type returns -1
+   * like a new definition, but the definition written by the serializer
+   * is captured into the dictionary instead of the stream.
+   */
+  private int writeDictionaryObjectBegin(String type)
+    throws IOException
+  {
+    int ref = _classDictionary.getRef(type);
+
+    if (ref < 0) {
+      _pendingType = type;
+
+      return -1;
+    }
+
+    writeObjectRef(ref);
+
+    return ref;
+  }
+
   /**
    * Writes the tail of the class definition to the stream.
    */
@@ -613,9 +653,89 @@ public class Hessian2Output
   public void writeClassFieldLength(int len)
     throws IOException
   {
+    if (_pendingType != null) {
+      _pendingFieldNames = new String[len];
+      _pendingFieldCount = 0;
+
+      if (len == 0)
+        definePending();
+
+      return;
+    }
+
     writeInt(len);
   }
 
+  private void definePending()
+  {
+    _classDictionary.define(_pendingType, _pendingFieldNames);
+
+    _pendingType = null;
+    _pendingFieldNames = null;
+    _pendingFieldCount = 0;
+  }
+
+  /**
+   * Shares class definitions with other streams; the definitions are
+   * not written to this stream.  Cleared by {@link #reset}.
+   */
+  public void setClassDictionary(ClassDictionary dictionary)
+  {
+    _classDictionary = dictionary;
+  }
+
+  public ClassDictionary getClassDictionary()
+  {
+    return _classDictionary;
+  }
+
+  /**
+   * Encodes the tail of a class definition (field count and field names)
+   * once, so serializers can reuse it across output streams.
+   *
+   * @param fields the serialized fields, in definition order
+   */
+  static byte []encodeClassFields(Field []fields)
+    throws IOException
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    Hessian2Output out = new Hessian2Output(bos);
+
+    out.writeClassFieldLength(fields.length);
+
+    for (int i = 0; i < fields.length; i++) {
+      out.writeString(fields[i].getName());
+    }
+
+    out.flushBuffer();
+
+    return bos.toByteArray();
+  }
+
+  /**
+   * Writes bytes which are already hessian-encoded, e.g. a cached
+   * class definition tail from {@link #encodeClassFields}.
+   */
+  public void writeEncoded(byte []encoded)
+    throws IOException
+  {
+    int offset = 0;
+    int length = encoded.length;
+
+    while (length > 0) {
+      if (SIZE <= _offset)
+        flushBuffer();
+
+      int sublen = Math.min(length, SIZE - _offset);
+
+      System.arraycopy(encoded, offset, _buffer, _offset, sublen);
+
+      _offset += sublen;
+      offset += sublen;
+      length -= sublen;
+    }
+  }
+
   /**
    * Writes the tail of the object definition to the stream.
    */
@@ -696,6 +816,12 @@ public class Hessian2Output
   public void writeInt(int value)
     throws IOException
   {
+    // a serializer writing the field count directly, see writeClassFieldLength
+    if (_pendingType != null && _pendingFieldNames == null) {
+      writeClassFieldLength(value);
+      return;
+    }
+
     int offset = _offset;
     byte []buffer = _buffer;
 
@@ -965,6 +1091,15 @@ public class Hessian2Output
   public void writeString(String value)
     throws IOException
   {
+    if (_pendingFieldNames != null) {
+      _pendingFieldNames[_pendingFieldCount++] = value;
+
+      if (_pendingFieldCount == _pendingFieldNames.length)
+        definePending();
+
+      return;
+    }
+
     int offset = _offset;
     byte []buffer = _buffer;
 
@@ -1697,6 +1832,10 @@ public class Hessian2Output
     _offset = 0;
     _isPacket = false;
     _isUnshared = false;
+    _classDictionary = null;
+    _pendingType = null;
+    _pendingFieldNames = null;
+    _pendingFieldCount = 0;
   }
 
   class BytesOutputStream extends OutputStream {
@@ -72,7 +72,7 @@ public class ObjectHandleSerializer extends AbstractSerializer {
       }
       else {
         if (ref == -1) {
-          out.writeInt(0);
+          out.writeClassFieldLength(0);
           out.writeObjectBegin("object");
         }
       }
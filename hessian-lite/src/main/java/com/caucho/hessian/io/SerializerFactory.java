@@ -56,6 +56,7 @@ import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Enumeration;
@@ -102,9 +103,27 @@ public class SerializerFactory extends AbstractSerializerFactory
 
   private Deserializer _hashMapDeserializer;
   private Deserializer _arrayListDeserializer;
-  private ConcurrentHashMap _cachedSerializerMap;
-  private ConcurrentHashMap _cachedDeserializerMap;
-  private HashMap _cachedTypeDeserializerMap;
+  // created eagerly: a lazily created map is not safely published
+  // and concurrent first puts could land in different maps
+  private final ConcurrentHashMap _cachedSerializerMap
+    = new ConcurrentHashMap(8);
+  private final ConcurrentHashMap _cachedDeserializerMap
+    = new ConcurrentHashMap(8);
+  private final ConcurrentHashMap _cachedTypeDeserializerMap
+    = new ConcurrentHashMap(8);
+
+  /**
+   * Upper bound on cached class definitions; a stream can declare
+   * any number of field lists for a type.
+   */
+  private static final int MAX_CACHED_OBJECT_DEFINITIONS = 4096;
+
+  /**
+   * Resolved class definitions by type and field names, shared across
+   * input streams.  Different versions of a class coexist.
+   */
+  private final ConcurrentHashMap<ObjectDefinitionKey,Hessian2Input.ObjectDefinition> _cachedObjectDefinitionMap
+    = new ConcurrentHashMap<ObjectDefinitionKey,Hessian2Input.ObjectDefinition>(8);
 
   private boolean _isAllowNonSerializable;
   private boolean _isEnableUnsafeSerializer
@@ -242,19 +261,14 @@ public class SerializerFactory extends AbstractSerializerFactory
   {
     Serializer serializer;
 
-    if (_cachedSerializerMap != null) {
-      serializer = (Serializer) _cachedSerializerMap.get(cl);
+    serializer = (Serializer) _cachedSerializerMap.get(cl);
 
-      if (serializer != null) {
-        return serializer;
-      }
+    if (serializer != null) {
+      return serializer;
     }
 
     serializer = loadSerializer(cl);
 
-    if (_cachedSerializerMap == null)
-      _cachedSerializerMap = new ConcurrentHashMap(8);
-
     _cachedSerializerMap.put(cl, serializer);
 
     return serializer;
@@ -393,18 +407,13 @@ public class SerializerFactory extends AbstractSerializerFactory
   {
     Deserializer deserializer;
 
-    if (_cachedDeserializerMap != null) {
-      deserializer = (Deserializer) _cachedDeserializerMap.get(cl);
+    deserializer = (Deserializer) _cachedDeserializerMap.get(cl);
 
-      if (deserializer != null)
-        return deserializer;
-    }
+    if (deserializer != null)
+      return deserializer;
 
     deserializer = loadDeserializer(cl);
 
-    if (_cachedDeserializerMap == null)
-      _cachedDeserializerMap = new ConcurrentHashMap(8);
-
     _cachedDeserializerMap.put(cl, deserializer);
 
     return deserializer;
@@ -669,6 +678,29 @@ public class SerializerFactory extends AbstractSerializerFactory
     }
   }
 
+  /**
+   * Returns the cached class definition for a type with exactly the
+   * field names read from the stream.
+   */
+  Hessian2Input.ObjectDefinition getObjectDefinition(String type,
+                                                    String []fieldNames)
+  {
+    return _cachedObjectDefinitionMap.get(new ObjectDefinitionKey(type, fieldNames));
+  }
+
+  /**
+   * Caches a resolved class definition for reuse by other input streams.
+   * Once the cache is full, new definitions are simply not cached.
+   */
+  void putObjectDefinition(Hessian2Input.ObjectDefinition def)
+  {
+    if (_cachedObjectDefinitionMap.size() < MAX_CACHED_OBJECT_DEFINITIONS) {
+      _cachedObjectDefinitionMap.putIfAbsent(new ObjectDefinitionKey(def.getType(),
+                                                                     def.getFieldNames()),
+                                             def);
+    }
+  }
+
   /**
    * Returns a deserializer based on a string type.
    */
@@ -680,14 +712,10 @@ public class SerializerFactory extends AbstractSerializerFactory
 
     Deserializer deserializer;
 
-    if (_cachedTypeDeserializerMap != null) {
-      synchronized (_cachedTypeDeserializerMap) {
-        deserializer = (Deserializer) _cachedTypeDeserializerMap.get(type);
-      }
+    deserializer = (Deserializer) _cachedTypeDeserializerMap.get(type);
 
-      if (deserializer != null)
-        return deserializer;
-    }
+    if (deserializer != null)
+      return deserializer;
 
 
     deserializer = (Deserializer) _staticTypeMap.get(type);
@@ -716,16 +744,47 @@ public class SerializerFactory extends AbstractSerializerFactory
       }
     }
 
-    if (deserializer != null) {
-      if (_cachedTypeDeserializerMap == null)
-        _cachedTypeDeserializerMap = new HashMap(8);
+    if (deserializer != null)
+      _cachedTypeDeserializerMap.put(type, deserializer);
 
-      synchronized (_cachedTypeDeserializerMap) {
-        _cachedTypeDeserializerMap.put(type, deserializer);
-      }
+    return deserializer;
+  }
+
+  /**
+   * Cache key for a class definition: the type and its field names.
+   */
+  private static final class ObjectDefinitionKey {
+    private final String _type;
+    private final String []_fieldNames;
+    private final int _hash;
+
+    ObjectDefinitionKey(String type, String []fieldNames)
+    {
+      _type = type;
+      _fieldNames = fieldNames;
+      _hash = 31 * type.hashCode() + Arrays.hashCode(fieldNames);
     }
 
-    return deserializer;
+    @Override
+    public int hashCode()
+    {
+      return _hash;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+      if (this == o)
+        return true;
+      else if (! (o instanceof ObjectDefinitionKey))
+        return false;
+
+      ObjectDefinitionKey key = (ObjectDefinitionKey) o;
+
+      return (_hash == key._hash
+              && _type.equals(key._type)
+              && Arrays.equals(_fieldNames, key._fieldNames));
+    }
   }
 
   private static void addBasic(Class<?> cl, String typeName, int type)
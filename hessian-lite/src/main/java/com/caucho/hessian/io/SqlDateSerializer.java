@@ -76,7 +76,7 @@ public class SqlDateSerializer extends AbstractSerializer
       }
       else {
         if (ref == -1) {
-          out.writeInt(1);
+          out.writeClassFieldLength(1);
           out.writeString("value");
           out.writeObjectBegin(cl.getName());
         }
@@ -76,7 +76,7 @@ public class StringValueSerializer extends AbstractSerializer {
       }
       else {
         if (ref == -1) {
-          out.writeInt(1);
+          out.writeClassFieldLength(1);
           out.writeString("value");
           out.writeObjectBegin(cl.getName());
         }
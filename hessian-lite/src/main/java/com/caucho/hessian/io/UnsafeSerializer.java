@@ -76,6 +76,11 @@ public class UnsafeSerializer extends AbstractSerializer
 
   private Field []_fields;
   private FieldSerializer []_fieldSerializers;
+
+  /**
+   * Encoded tail of the class definition, shared across output streams.
+   */
+  private volatile byte []_definition;
   
   public static boolean isEnabled()
   {
@@ -195,6 +200,20 @@ public class UnsafeSerializer extends AbstractSerializer
   private void writeDefinition20(AbstractHessianOutput out)
     throws IOException
   {
+    // with a class dictionary the definition is captured field by field
+    if (out instanceof Hessian2Output
+        && ((Hessian2Output) out).getClassDictionary() == null) {
+      byte []definition = _definition;
+
+      if (definition == null) {
+        definition = Hessian2Output.encodeClassFields(_fields);
+        _definition = definition;
+      }
+
+      ((Hessian2Output) out).writeEncoded(definition);
+      return;
+    }
+
     out.writeClassFieldLength(_fields.length);
 
     for (int i = 0; i < _fields.length; i++) {
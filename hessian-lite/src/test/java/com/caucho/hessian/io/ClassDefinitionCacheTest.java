@@ -0,0 +1,236 @@
+package com.caucho.hessian.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the class definition caches: the encoded definition tail
+ * shared by the serializers must not change the wire format, and the
+ * resolved definitions shared by the inputs must follow the fields of
+ * each stream.
+ */
+public class ClassDefinitionCacheTest {
+  private static final String []ORDER_FIELDS = { "id", "count", "item" };
+  private static final String []ITEM_FIELDS = { "name", "quantity" };
+
+  /**
+   * The cached definition tail is byte-for-byte the definition written
+   * field by field, both for the first stream and for later streams.
+   */
+  @Test
+  public void testUnsafeSerializerSameBytes()
+    throws IOException
+  {
+    SerializerFactory factory = new SerializerFactory();
+
+    List<Order> orders = new ArrayList<Order>();
+    orders.add(order("o-1", 3, "book"));
+    orders.add(order("o-2", 4, "pen"));
+
+    byte []expected = writeByFields(orders);
+
+    Assert.assertArrayEquals(expected, write(factory, orders));
+    Assert.assertArrayEquals(expected, write(factory, orders));
+    Assert.assertArrayEquals(expected, write(new SerializerFactory(), orders));
+  }
+
+  @Test
+  public void testJavaSerializerSameBytes()
+    throws IOException
+  {
+    List<Order> orders = new ArrayList<Order>();
+    orders.add(order("o-1", 3, "book"));
+
+    byte []expected = writeByFields(orders);
+
+    JavaSerializer serializer = new JavaSerializer(Order.class);
+
+    for (int i = 0; i < 2; i++) {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      Hessian2Output out = new Hessian2Output(bos);
+      out.setSerializerFactory(new SerializerFactory());
+      out.writeListBegin(1, null);
+      serializer.writeObject(orders.get(0), out);
+      out.close();
+
+      Assert.assertArrayEquals(expected, bos.toByteArray());
+    }
+  }
+
+  /**
+   * A definition crossing the output buffer boundary is copied in
+   * pieces.
+   */
+  @Test
+  public void testEncodedAcrossBuffer()
+    throws IOException
+  {
+    StringBuilder id = new StringBuilder();
+
+    while (id.length() < Hessian2Output.SIZE - 160) {
+      id.append('x');
+    }
+
+    // the item definition starts at every offset near the buffer end
+    for (int i = 0; i < 160; i++) {
+      List<Order> orders = new ArrayList<Order>();
+      orders.add(order(id.toString(), 1, "book"));
+
+      Assert.assertArrayEquals(writeByFields(orders),
+                               write(new SerializerFactory(), orders));
+
+      id.append('x');
+    }
+  }
+
+  /**
+   * Older and newer versions of a class share the input factory but
+   * resolve to their own definitions.
+   */
+  @Test
+  public void testVersionedDefinitions()
+    throws IOException
+  {
+    SerializerFactory factory = new SerializerFactory();
+
+    byte []current = writeItem(ITEM_FIELDS, "book", 3);
+    byte []older = writeItem(new String[] { "name" }, "pen", 0);
+    byte []reordered = writeItem(new String[] { "quantity", "name" }, 5, "cup");
+
+    for (int i = 0; i < 2; i++) {
+      Item item = (Item) read(factory, current);
+      Assert.assertEquals("book", item.name);
+      Assert.assertEquals(3, item.quantity);
+
+      item = (Item) read(factory, older);
+      Assert.assertEquals("pen", item.name);
+      Assert.assertEquals(0, item.quantity);
+
+      item = (Item) read(factory, reordered);
+      Assert.assertEquals("cup", item.name);
+      Assert.assertEquals(5, item.quantity);
+    }
+
+    String type = Item.class.getName();
+
+    Hessian2Input.ObjectDefinition def
+      = factory.getObjectDefinition(type, ITEM_FIELDS);
+
+    Assert.assertNotNull(def);
+    Assert.assertNotSame(def, factory.getObjectDefinition(type, new String[] { "name" }));
+    Assert.assertNotSame(def, factory.getObjectDefinition(type, new String[] { "quantity", "name" }));
+    Assert.assertNull(factory.getObjectDefinition(type, new String[] { "other" }));
+  }
+
+  private byte []write(SerializerFactory factory, List<Order> orders)
+    throws IOException
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    Hessian2Output out = new Hessian2Output(bos);
+    out.setSerializerFactory(factory);
+    out.writeListBegin(orders.size(), null);
+
+    for (Order order : orders) {
+      out.writeObject(order);
+    }
+
+    out.close();
+
+    return bos.toByteArray();
+  }
+
+  /**
+   * Writes the orders with definitions written field by field, as the
+   * serializers did before the definition tail was cached.
+   */
+  private byte []writeByFields(List<Order> orders)
+    throws IOException
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    Hessian2Output out = new Hessian2Output(bos);
+    out.writeListBegin(orders.size(), null);
+
+    for (Order order : orders) {
+      writeBegin(out, Order.class.getName(), ORDER_FIELDS);
+      out.writeString(order.id);
+      out.writeInt(order.count);
+      writeBegin(out, Item.class.getName(), ITEM_FIELDS);
+      out.writeString(order.item.name);
+      out.writeInt(order.item.quantity);
+    }
+
+    out.close();
+
+    return bos.toByteArray();
+  }
+
+  private byte []writeItem(String []fieldNames, Object ...values)
+    throws IOException
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    Hessian2Output out = new Hessian2Output(bos);
+
+    writeBegin(out, Item.class.getName(), fieldNames);
+
+    for (Object value : values) {
+      out.writeObject(value);
+    }
+
+    out.close();
+
+    return bos.toByteArray();
+  }
+
+  private static void writeBegin(Hessian2Output out, String type, String []fieldNames)
+    throws IOException
+  {
+    if (out.writeObjectBegin(type) == -1) {
+      out.writeClassFieldLength(fieldNames.length);
+
+      for (String fieldName : fieldNames) {
+        out.writeString(fieldName);
+      }
+
+      out.writeObjectBegin(type);
+    }
+  }
+
+  private static Object read(SerializerFactory factory, byte []bytes)
+    throws IOException
+  {
+    Hessian2Input in = new Hessian2Input(new ByteArrayInputStream(bytes));
+    in.setSerializerFactory(factory);
+
+    return in.readObject();
+  }
+
+  private static Order order(String id, int count, String item)
+  {
+    Order order = new Order();
+    order.id = id;
+    order.count = count;
+    order.item = new Item();
+    order.item.name = item;
+    order.item.quantity = count;
+
+    return order;
+  }
+
+  static class Order implements Serializable {
+    String id;
+    int count;
+    Item item;
+  }
+
+  static class Item implements Serializable {
+    String name;
+    int quantity;
+  }
+}
@@ -0,0 +1,410 @@
+package com.caucho.hessian.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link ClassDictionary} and the dictionary mode of
+ * {@link Hessian2Output} and {@link Hessian2Input}.
+ */
+public class ClassDictionaryTest {
+  private final SerializerFactory _factory = new SerializerFactory();
+
+  @Test
+  public void testDefine()
+  {
+    ClassDictionary dictionary = new ClassDictionary();
+
+    Assert.assertEquals(-1, dictionary.getRef("a.Order"));
+    Assert.assertEquals(0, dictionary.define("a.Order", new String[] { "id", "item" }));
+    Assert.assertEquals(1, dictionary.define("a.Item", new String[0]));
+
+    // the first definition of a type wins
+    Assert.assertEquals(0, dictionary.define("a.Order", new String[] { "other" }));
+    Assert.assertEquals(0, dictionary.getRef("a.Order"));
+    Assert.assertEquals(2, dictionary.size());
+
+    String []order = dictionary.get(0);
+    Assert.assertEquals("a.Order", ClassDictionary.getType(order));
+    Assert.assertArrayEquals(new String[] { "id", "item" },
+                             ClassDictionary.getFieldNames(order));
+    Assert.assertArrayEquals(new String[0],
+                             ClassDictionary.getFieldNames(dictionary.get(1)));
+  }
+
+  @Test
+  public void testSnapshot()
+  {
+    ClassDictionary dictionary = new ClassDictionary();
+    dictionary.define("a.Order", new String[] { "id" });
+
+    List<String[]> snapshot = dictionary.snapshot();
+
+    dictionary.define("a.Item", new String[] { "name" });
+
+    Assert.assertEquals(1, snapshot.size());
+    Assert.assertEquals(2, dictionary.size());
+  }
+
+  /**
+   * Streams sharing a dictionary refer to definitions by index and
+   * decode with any later snapshot of the dictionary.
+   */
+  @Test
+  public void testSharedStreams()
+    throws IOException
+  {
+    ClassDictionary dictionary = new ClassDictionary();
+
+    byte []first = write(order("o-1", 3, "book"), dictionary);
+    List<String[]> early = dictionary.snapshot();
+    byte []second = write(order("o-2", 4, "pen"), dictionary);
+    byte []other = write(new Item("cup", 1), dictionary);
+
+    Assert.assertEquals(2, dictionary.size());
+    Assert.assertEquals(Order.class.getName(), ClassDictionary.getType(dictionary.get(0)));
+    Assert.assertArrayEquals(new String[] { "id", "count", "item" },
+                             ClassDictionary.getFieldNames(dictionary.get(0)));
+    Assert.assertArrayEquals(new String[] { "name", "quantity" },
+                             ClassDictionary.getFieldNames(dictionary.get(1)));
+
+    // no definitions in the streams themselves
+    Assert.assertTrue(first.length < write(order("o-1", 3, "book"), null).length);
+    Assert.assertFalse(contains(first, "quantity"));
+
+    assertOrder((Order) read(first, early), "o-1", 3, "book");
+
+    List<String[]> late = dictionary.snapshot();
+    assertOrder((Order) read(first, late), "o-1", 3, "book");
+    assertOrder((Order) read(second, late), "o-2", 4, "pen");
+    Assert.assertEquals("cup", ((Item) read(other, late)).name);
+  }
+
+  /**
+   * A type without fields is defined as soon as its object begins.
+   */
+  @Test
+  public void testEmptyType()
+    throws IOException
+  {
+    ClassDictionary dictionary = new ClassDictionary();
+
+    byte []bytes = write(new ArrayList<Object>(Arrays.asList(new Empty(), new Empty())),
+                         dictionary);
+
+    Assert.assertEquals(1, dictionary.size());
+    Assert.assertEquals(0, ClassDictionary.getFieldNames(dictionary.get(0)).length);
+
+    List<?> list = (List<?>) read(bytes, dictionary.snapshot());
+
+    Assert.assertEquals(2, list.size());
+    Assert.assertTrue(list.get(1) instanceof Empty);
+  }
+
+  /**
+   * Reset drops the dictionary, so a pooled stream writes inline
+   * definitions again.
+   */
+  @Test
+  public void testResetClearsDictionary()
+    throws IOException
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    Hessian2Output out = new Hessian2Output(bos);
+    out.setSerializerFactory(_factory);
+    out.setClassDictionary(new ClassDictionary());
+
+    out.reset();
+
+    Assert.assertNull(out.getClassDictionary());
+
+    out.writeObject(new Item("cup", 1));
+    out.flush();
+
+    Assert.assertEquals("cup", ((Item) read(bos.toByteArray(), null)).name);
+  }
+
+  /**
+   * Serializers with their own definition, e.g. java.sql dates, write
+   * the definition into the dictionary like the field serializers.
+   */
+  @Test
+  public void testSqlDate()
+    throws IOException
+  {
+    Timestamp timestamp = new Timestamp(1559347200123L);
+
+    Assert.assertEquals(timestamp, roundTrip(timestamp, _factory));
+    Assert.assertEquals(Arrays.asList(timestamp, "after"),
+                        roundTrip(new ArrayList<Object>(Arrays.asList(timestamp, "after")), _factory));
+  }
+
+  @Test
+  public void testClass()
+    throws IOException
+  {
+    Assert.assertEquals(String.class, roundTrip(String.class, _factory));
+    Assert.assertEquals(Arrays.asList(Integer.class, "after"),
+                        roundTrip(new ArrayList<Object>(Arrays.asList(Integer.class, "after")), _factory));
+  }
+
+  @Test
+  public void testStringValue()
+    throws IOException
+  {
+    SerializerFactory factory = new SerializerFactory();
+    factory.addFactory(new AbstractSerializerFactory() {
+      @Override
+      public Serializer getSerializer(Class cl)
+      {
+        return File.class.equals(cl) ? StringValueSerializer.SER : null;
+      }
+
+      @Override
+      public Deserializer getDeserializer(Class cl)
+      {
+        return File.class.equals(cl) ? new StringValueDeserializer(File.class) : null;
+      }
+    });
+
+    File file = new File("/tmp/repeater");
+
+    Assert.assertEquals(file, roundTrip(file, factory));
+    Assert.assertEquals(Arrays.asList(file, "after"),
+                        roundTrip(new ArrayList<Object>(Arrays.asList(file, "after")), factory));
+  }
+
+  /**
+   * Values of an Object-typed field are written by the serializer of
+   * their runtime type.
+   */
+  @Test
+  public void testObjectField()
+    throws IOException
+  {
+    Timestamp timestamp = new Timestamp(1559347200123L);
+
+    Holder holder = (Holder) roundTrip(new Holder(timestamp, "after"), _factory);
+    Assert.assertEquals(timestamp, holder.value);
+    Assert.assertEquals("after", holder.next);
+
+    holder = (Holder) roundTrip(new Holder(String.class, new Holder(timestamp, null)), _factory);
+    Assert.assertEquals(String.class, holder.value);
+    Assert.assertEquals(timestamp, ((Holder) holder.next).value);
+  }
+
+  @Test
+  public void testBean()
+    throws IOException
+  {
+    Timestamp timestamp = new Timestamp(1559347200123L);
+
+    Bean bean = new Bean();
+    bean.setValue(timestamp);
+    bean.setName("bean");
+
+    // written by BeanSerializer, read by fields
+    ClassDictionary dictionary = new ClassDictionary();
+    byte []bytes = write(new ArrayList<Object>(Arrays.asList(bean, "after")),
+                         dictionary, new BeanSerializerFactory());
+    List<?> list = (List<?>) read(bytes, dictionary.snapshot());
+    Bean copy = (Bean) list.get(0);
+
+    Assert.assertEquals("after", list.get(1));
+
+    Assert.assertEquals(timestamp, copy.getValue());
+    Assert.assertEquals("bean", copy.getName());
+  }
+
+  /**
+   * A serializer writing the field count with writeInt is still
+   * captured into the dictionary.
+   */
+  @Test
+  public void testCountWrittenAsInt()
+    throws IOException
+  {
+    SerializerFactory factory = new SerializerFactory();
+    factory.addFactory(new AbstractSerializerFactory() {
+      @Override
+      public Serializer getSerializer(Class cl)
+      {
+        if (! Point.class.equals(cl))
+          return null;
+
+        return new AbstractSerializer() {
+          @Override
+          public void writeObject(Object obj, AbstractHessianOutput out)
+            throws IOException
+          {
+            if (out.writeObjectBegin(Point.class.getName()) == -1) {
+              out.writeInt(1);
+              out.writeString("x");
+              out.writeObjectBegin(Point.class.getName());
+            }
+
+            out.writeInt(((Point) obj).x);
+          }
+        };
+      }
+
+      @Override
+      public Deserializer getDeserializer(Class cl)
+      {
+        return null;
+      }
+    });
+
+    List<?> list = (List<?>) roundTrip(new ArrayList<Object>(Arrays.asList(new Point(7), "after", new Point(8))),
+                                       factory);
+
+    Assert.assertEquals(7, ((Point) list.get(0)).x);
+    Assert.assertEquals("after", list.get(1));
+    Assert.assertEquals(8, ((Point) list.get(2)).x);
+  }
+
+  private Object roundTrip(Object value, SerializerFactory factory)
+    throws IOException
+  {
+    ClassDictionary dictionary = new ClassDictionary();
+
+    byte []bytes = write(value, dictionary, factory);
+
+    return read(bytes, dictionary.snapshot(), factory);
+  }
+
+  private byte []write(Object value, ClassDictionary dictionary)
+    throws IOException
+  {
+    return write(value, dictionary, _factory);
+  }
+
+  private byte []write(Object value, ClassDictionary dictionary,
+                       SerializerFactory factory)
+    throws IOException
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    Hessian2Output out = new Hessian2Output(bos);
+    out.setSerializerFactory(factory);
+    out.setClassDictionary(dictionary);
+    out.writeObject(value);
+    out.close();
+
+    return bos.toByteArray();
+  }
+
+  private Object read(byte []bytes, List<String[]> definitions)
+    throws IOException
+  {
+    return read(bytes, definitions, _factory);
+  }
+
+  private Object read(byte []bytes, List<String[]> definitions,
+                      SerializerFactory factory)
+    throws IOException
+  {
+    Hessian2Input in = new Hessian2Input(new ByteArrayInputStream(bytes));
+    in.setSerializerFactory(factory);
+    in.setClassDictionary(definitions);
+
+    return in.readObject();
+  }
+
+  private static boolean contains(byte []bytes, String text)
+  {
+    return new String(bytes).contains(text);
+  }
+
+  private static Order order(String id, int count, String item)
+  {
+    Order order = new Order();
+    order.id = id;
+    order.count = count;
+    order.item = new Item(item, count);
+
+    return order;
+  }
+
+  private static void assertOrder(Order order, String id, int count, String item)
+  {
+    Assert.assertEquals(id, order.id);
+    Assert.assertEquals(count, order.count);
+    Assert.assertEquals(item, order.item.name);
+    Assert.assertEquals(count, order.item.quantity);
+  }
+
+  static class Order implements Serializable {
+    String id;
+    int count;
+    Item item;
+  }
+
+  static class Item implements Serializable {
+    String name;
+    int quantity;
+
+    Item(String name, int quantity)
+    {
+      this.name = name;
+      this.quantity = quantity;
+    }
+  }
+
+  static class Empty implements Serializable {
+  }
+
+  static class Holder implements Serializable {
+    Object value;
+    Object next;
+
+    Holder(Object value, Object next)
+    {
+      this.value = value;
+      this.next = next;
+    }
+  }
+
+  public static class Bean implements Serializable {
+    private Object value;
+    private String name;
+
+    public Object getValue()
+    {
+      return value;
+    }
+
+    public void setValue(Object value)
+    {
+      this.value = value;
+    }
+
+    public String getName()
+    {
+      return name;
+    }
+
+    public void setName(String name)
+    {
+      this.name = name;
+    }
+  }
+
+  static class Point implements Serializable {
+    int x;
+
+    Point(int x)
+    {
+      this.x = x;
+    }
+  }
+}
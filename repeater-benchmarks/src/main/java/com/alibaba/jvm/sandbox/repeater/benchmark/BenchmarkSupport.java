@@ -0,0 +1,223 @@
+package com.alibaba.jvm.sandbox.repeater.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import com.alibaba.jvm.sandbox.api.resource.LoadedClassDataSource;
+import com.alibaba.jvm.sandbox.repeater.plugin.api.Broadcaster;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.bridge.ClassloaderBridge;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.model.ApplicationModel;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.RecordModel;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeatMeta;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeatModel;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeaterConfig;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeaterResult;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * {@link BenchmarkSupport} 基准测试的运行环境
+ * <p>
+ * 脱离sandbox容器运行时需要准备：配置文件目录、{@link ClassloaderBridge}、{@link ApplicationModel}的配置；
+ * 以及几种典型形态的入参/返回值
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+public class BenchmarkSupport {
+
+    private static volatile boolean initialized = false;
+
+    /**
+     * 初始化运行环境；必须在访问任何repeater类之前调用
+     */
+    public static synchronized void init() {
+        if (initialized) {
+            return;
+        }
+        try {
+            File configPath = new File(System.getProperty("java.io.tmpdir"), "repeater-benchmarks");
+            FileUtils.writeStringToFile(new File(configPath, "repeater.properties"), "repeat.standalone.mode=true\n", "UTF-8");
+            System.setProperty("repeater.config.path", configPath.getAbsolutePath());
+        } catch (IOException e) {
+            throw new IllegalStateException("prepare benchmark config failed", e);
+        }
+        ClassloaderBridge.init((LoadedClassDataSource) Proxy.newProxyInstance(BenchmarkSupport.class.getClassLoader(),
+                new Class<?>[]{LoadedClassDataSource.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        // 只需要iteratorForLoadedClasses，其余方法返回空值
+                        if ("iteratorForLoadedClasses".equals(method.getName())) {
+                            return Collections.<Class<?>>singletonList(BenchmarkSupport.class).iterator();
+                        }
+                        if (method.getReturnType() == boolean.class) {
+                            return false;
+                        }
+                        return method.getReturnType() == java.util.Set.class ? new HashSet<Class<?>>() : null;
+                    }
+                }));
+        RepeaterConfig config = new RepeaterConfig();
+        config.setSampleRate(10000);
+        ApplicationModel.instance().setConfig(config);
+        initialized = true;
+    }
+
+    /**
+     * 不做任何投递的{@link Broadcaster}，只衡量录制路径本身
+     */
+    public static class NoopBroadcaster implements Broadcaster {
+
+        @Override
+        public void sendRecord(RecordModel recordModel) {
+        }
+
+        @Override
+        public void sendRepeat(RepeatModel record) {
+        }
+
+        @Override
+        public RepeaterResult<RecordModel> pullRecord(RepeatMeta meta) {
+            return null;
+        }
+    }
+
+    /**
+     * 典型的入参/返回值形态
+     */
+    public enum Shape {
+        /**
+         * 基本类型
+         */
+        PRIMITIVE,
+        /**
+         * 简单POJO
+         */
+        POJO,
+        /**
+         * 列表接口（100个POJO）
+         */
+        LIST,
+        /**
+         * 嵌套Map
+         */
+        MAP;
+
+        public Object[] request() {
+            switch (this) {
+                case PRIMITIVE:
+                    return new Object[]{42L, "repeater"};
+                case POJO:
+                    return new Object[]{order(1)};
+                case LIST:
+                    return new Object[]{"query", 1, 100};
+                case MAP:
+                default:
+                    return new Object[]{attributes(8)};
+            }
+        }
+
+        public Object response() {
+            switch (this) {
+                case PRIMITIVE:
+                    return Boolean.TRUE;
+                case POJO:
+                    return order(2);
+                case LIST:
+                    List<Order> orders = new ArrayList<Order>(100);
+                    for (int i = 0; i < 100; i++) {
+                        orders.add(order(i));
+                    }
+                    return orders;
+                case MAP:
+                default:
+                    Map<String, Object> result = new HashMap<String, Object>();
+                    for (int i = 0; i < 8; i++) {
+                        result.put("group-" + i, attributes(8));
+                    }
+                    return result;
+            }
+        }
+    }
+
+    public static Order order(int index) {
+        Order order = new Order();
+        order.setId(100000L + index);
+        order.setBuyer("buyer-" + index);
+        order.setAmount(index * 100 + 99);
+        order.setCreated(new Date(1546272000000L + index));
+        order.setTags(new ArrayList<String>(java.util.Arrays.asList("new", "mobile", "coupon")));
+        return order;
+    }
+
+    public static Map<String, String> attributes(int size) {
+        Map<String, String> attributes = new HashMap<String, String>(size * 2);
+        for (int i = 0; i < size; i++) {
+            attributes.put("key-" + i, "value-" + i);
+        }
+        return attributes;
+    }
+
+    public static class Order implements Serializable {
+
+        private Long id;
+
+        private String buyer;
+
+        private long amount;
+
+        private Date created;
+
+        private List<String> tags;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getBuyer() {
+            return buyer;
+        }
+
+        public void setBuyer(String buyer) {
+            this.buyer = buyer;
+        }
+
+        public long getAmount() {
+            return amount;
+        }
+
+        public void setAmount(long amount) {
+            this.amount = amount;
+        }
+
+        public Date getCreated() {
+            return created;
+        }
+
+        public void setCreated(Date created) {
+            this.created = created;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+    }
+}
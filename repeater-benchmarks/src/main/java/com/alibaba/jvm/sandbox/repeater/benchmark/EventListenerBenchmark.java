@@ -0,0 +1,86 @@
+package com.alibaba.jvm.sandbox.repeater.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.jvm.sandbox.api.event.BeforeEvent;
+import com.alibaba.jvm.sandbox.api.event.ReturnEvent;
+import com.alibaba.jvm.sandbox.api.event.ThrowsEvent;
+import com.alibaba.jvm.sandbox.repeater.benchmark.BenchmarkSupport.NoopBroadcaster;
+import com.alibaba.jvm.sandbox.repeater.benchmark.BenchmarkSupport.Shape;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.impl.api.DefaultEventListener;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.impl.api.DefaultInvocationListener;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.impl.api.DefaultInvocationProcessor;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.InvokeType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link EventListenerBenchmark} 入口调用录制的完整事件链路：{@link DefaultEventListener#onEvent}处理BEFORE + RETURN/THROWS
+ * <p>
+ * 包含trace开启/结束、采样、组装{@link com.alibaba.jvm.sandbox.repeater.plugin.domain.Invocation}、及时序列化和投递（空实现）
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventListenerBenchmark {
+
+    @Param({"PRIMITIVE", "POJO", "LIST", "MAP"})
+    private Shape shape;
+
+    private DefaultEventListener listener;
+
+    private Object[] request;
+
+    private Object response;
+
+    private Throwable throwable;
+
+    private int invokeId;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.init();
+        listener = new DefaultEventListener(InvokeType.JAVA, true,
+                new DefaultInvocationListener(new NoopBroadcaster()),
+                new DefaultInvocationProcessor(InvokeType.JAVA));
+        request = shape.request();
+        response = shape.response();
+        throwable = new IllegalStateException("benchmark");
+    }
+
+    @Benchmark
+    public void beforeReturn() throws Throwable {
+        final int id = ++invokeId;
+        listener.onEvent(before(id));
+        listener.onEvent(new ReturnEvent(id, id, response));
+    }
+
+    @Benchmark
+    public void beforeThrows() throws Throwable {
+        final int id = ++invokeId;
+        listener.onEvent(before(id));
+        listener.onEvent(new ThrowsEvent(id, id, throwable));
+    }
+
+    private BeforeEvent before(int id) {
+        return new BeforeEvent(id, id, EventListenerBenchmark.class.getClassLoader(),
+                "com.alibaba.jvm.sandbox.repeater.benchmark.OrderService", "query", "(Ljava/lang/Object;)Ljava/lang/Object;",
+                this, request);
+    }
+}
@@ -0,0 +1,76 @@
+package com.alibaba.jvm.sandbox.repeater.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.jvm.sandbox.repeater.benchmark.BenchmarkSupport.Shape;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.Serializer;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializerProvider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link HessianSerializerBenchmark} hessian序列化/反序列化往返
+ * <p>
+ * 配合{@code -prof gc}查看每次调用的分配量（gc.alloc.rate.norm）
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HessianSerializerBenchmark {
+
+    @Param({"PRIMITIVE", "POJO", "LIST", "MAP"})
+    private Shape shape;
+
+    private Serializer serializer;
+
+    private Object payload;
+
+    private byte[] serialized;
+
+    private ClassLoader classLoader;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSupport.init();
+        serializer = SerializerProvider.instance().provide(Serializer.Type.HESSIAN);
+        payload = shape.response();
+        classLoader = HessianSerializerBenchmark.class.getClassLoader();
+        serialized = serializer.serialize(payload, classLoader);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return serializer.serialize(payload, classLoader);
+    }
+
+    @Benchmark
+    public byte[] serializeWithoutClassLoader() throws Exception {
+        return serializer.serialize(payload);
+    }
+
+    @Benchmark
+    public Object deserialize() throws Exception {
+        return serializer.deserialize(serialized, Object.class, classLoader);
+    }
+
+    @Benchmark
+    public Object roundTrip() throws Exception {
+        return serializer.deserialize(serializer.serialize(payload, classLoader), Object.class, classLoader);
+    }
+}
@@ -0,0 +1,56 @@
+package com.alibaba.jvm.sandbox.repeater.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.Identity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link IdentityBenchmark} {@link Identity}的构造（拼接uri）和解析（从uri还原）
+ *
+ * @author zhaoyb1990
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdentityBenchmark {
+
+    private Map<String, String> extra;
+
+    private String uri;
+
+    @Setup
+    public void setup() {
+        extra = BenchmarkSupport.attributes(2);
+        uri = new Identity("java", "com.alibaba.jvm.sandbox.repeater.benchmark.OrderService", "query~SI", extra).getUri();
+    }
+
+    @Benchmark
+    public Identity construct() {
+        return new Identity("java", "com.alibaba.jvm.sandbox.repeater.benchmark.OrderService", "query~SI", extra);
+    }
+
+    @Benchmark
+    public Identity constructWithoutExtra() {
+        return new Identity("java", "com.alibaba.jvm.sandbox.repeater.benchmark.OrderService", "query~SI", null);
+    }
+
+    @Benchmark
+    public String parse() {
+        return new Identity(uri).getEndpoint();
+    }
+}
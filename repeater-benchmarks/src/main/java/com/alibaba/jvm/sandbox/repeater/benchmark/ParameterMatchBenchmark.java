@@ -0,0 +1,124 @@
+package com.alibaba.jvm.sandbox.repeater.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.jvm.sandbox.api.event.BeforeEvent;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.impl.spi.ObjectMatchMockStrategy;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.impl.spi.ParameterMatchMockStrategy;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.SerializerWrapper;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.Identity;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.Invocation;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.InvokeType;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.RecordModel;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeatMeta;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.mock.MockRequest;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.mock.SelectResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link ParameterMatchBenchmark} 回放时{@link ParameterMatchMockStrategy#select}和{@link ObjectMatchMockStrategy#select}在N个同URI子调用中的匹配开销
+ * <p>
+ * 目标子调用位于末尾（最坏情况）；每次调用前复制子调用列表，避免命中后被移除影响下一次测量
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParameterMatchBenchmark {
+
+    @Param({"1", "16", "128"})
+    private int subInvocations;
+
+    private ExposedStrategy strategy;
+
+    private ExposedObjectStrategy objectStrategy;
+
+    private List<Invocation> recorded;
+
+    private RecordModel recordModel;
+
+    private MockRequest.MockRequestBuilder builder;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSupport.init();
+        strategy = new ExposedStrategy();
+        objectStrategy = new ExposedObjectStrategy();
+        Identity identity = new Identity(InvokeType.JAVA.name(), "com.alibaba.jvm.sandbox.repeater.benchmark.OrderService", "query~SI", null);
+        recorded = new ArrayList<Invocation>(subInvocations);
+        for (int i = 0; i < subInvocations; i++) {
+            Invocation invocation = new Invocation();
+            invocation.setType(InvokeType.JAVA);
+            invocation.setIdentity(identity);
+            invocation.setIndex(i);
+            invocation.setRequest(new Object[]{BenchmarkSupport.order(i)});
+            invocation.setResponse(BenchmarkSupport.order(i));
+            SerializerWrapper.inTimeSerialize(invocation);
+            recorded.add(invocation);
+        }
+        recordModel = new RecordModel();
+        Object[] argumentArray = new Object[]{BenchmarkSupport.order(subInvocations - 1)};
+        BeforeEvent event = new BeforeEvent(1, 1, ParameterMatchBenchmark.class.getClassLoader(),
+                "com.alibaba.jvm.sandbox.repeater.benchmark.OrderService", "query", "(Ljava/lang/Object;)Ljava/lang/Object;",
+                this, argumentArray);
+        builder = MockRequest.builder()
+                .event(event)
+                .argumentArray(argumentArray)
+                .type(InvokeType.JAVA)
+                .recordModel(recordModel)
+                .meta(new RepeatMeta())
+                .identity(identity)
+                .traceId("benchmark")
+                .repeatId("benchmark")
+                .index(subInvocations - 1);
+    }
+
+    @Benchmark
+    public SelectResult select() {
+        recordModel.setSubInvocations(new ArrayList<Invocation>(recorded));
+        return strategy.select(builder.build());
+    }
+
+    @Benchmark
+    public SelectResult objectSelect() {
+        recordModel.setSubInvocations(new ArrayList<Invocation>(recorded));
+        return objectStrategy.select(builder.build());
+    }
+
+    /**
+     * 暴露{@code select}以便直接测量匹配过程（绕开{@code execute}中的反序列化）
+     */
+    static class ExposedStrategy extends ParameterMatchMockStrategy {
+
+        @Override
+        public SelectResult select(MockRequest request) {
+            return super.select(request);
+        }
+    }
+
+    static class ExposedObjectStrategy extends ObjectMatchMockStrategy {
+
+        @Override
+        public SelectResult select(MockRequest request) {
+            return super.select(request);
+        }
+    }
+}
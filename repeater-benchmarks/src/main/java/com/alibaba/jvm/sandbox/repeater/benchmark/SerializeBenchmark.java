@@ -0,0 +1,58 @@
+package com.alibaba.jvm.sandbox.repeater.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.jvm.sandbox.repeater.benchmark.BenchmarkSupport.Shape;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.SerializerWrapper;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.Invocation;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.InvokeType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link SerializeBenchmark} {@link SerializerWrapper#inTimeSerialize(Invocation)}在几种典型入参/返回值形态下的开销
+ *
+ * @author zhaoyb1990
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializeBenchmark {
+
+    @Param({"PRIMITIVE", "POJO", "LIST", "MAP"})
+    private Shape shape;
+
+    private Object[] request;
+
+    private Object response;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.init();
+        request = shape.request();
+        response = shape.response();
+    }
+
+    @Benchmark
+    public Invocation inTimeSerialize() throws Exception {
+        Invocation invocation = new Invocation();
+        invocation.setType(InvokeType.JAVA);
+        invocation.setRequest(request);
+        invocation.setResponse(response);
+        SerializerWrapper.inTimeSerialize(invocation);
+        return invocation;
+    }
+}
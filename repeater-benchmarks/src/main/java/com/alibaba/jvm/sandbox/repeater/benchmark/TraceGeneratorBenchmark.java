@@ -0,0 +1,47 @@
+package com.alibaba.jvm.sandbox.repeater.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.TraceGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link TraceGeneratorBenchmark} traceId生成（单线程/多线程竞争）
+ *
+ * @author zhaoyb1990
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraceGeneratorBenchmark {
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.init();
+    }
+
+    @Benchmark
+    public String generate() {
+        return TraceGenerator.generate();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String generateContended() {
+        return TraceGenerator.generate();
+    }
+}
@@ -29,6 +29,7 @@ public interface RecordMapper {
             @Result(property = "appName", column = "app_name"),
             @Result(property = "traceId", column = "trace_id"),
             @Result(property = "wrapperRecord", column = "wrapper_record"),
+            @Result(property = "wrapperRecordBinary", column = "wrapper_record_binary"),
             @Result(property = "gmtRecord", column = "gmt_record"),
             @Result(property = "gmtCreate", column = "gmt_create")
     })
@@ -40,8 +41,8 @@ public interface RecordMapper {
      *
      * @param record 录制结果
      */
-    @Insert("insert into record(gmt_create,gmt_record,app_name,environment,host,trace_id,wrapper_record) " +
-            "VALUES (#{gmtCreate},#{gmtRecord},#{appName},#{environment},#{host},#{traceId},#{wrapperRecord})")
+    @Insert("insert into record(gmt_create,gmt_record,app_name,environment,host,trace_id,wrapper_record,wrapper_record_binary) " +
+            "VALUES (#{gmtCreate},#{gmtRecord},#{appName},#{environment},#{host},#{traceId},#{wrapperRecord},#{wrapperRecordBinary})")
     void insert(Record record);
 
     /**
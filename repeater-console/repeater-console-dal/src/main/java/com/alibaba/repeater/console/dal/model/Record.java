@@ -27,6 +27,8 @@ public class Record implements java.io.Serializable{
 
     private String wrapperRecord;
 
+    private byte[] wrapperRecordBinary;
+
     public Long getId() {
         return id;
     }
@@ -90,4 +92,12 @@ public class Record implements java.io.Serializable{
     public void setWrapperRecord(String wrapperRecord) {
         this.wrapperRecord = wrapperRecord;
     }
+
+    public byte[] getWrapperRecordBinary() {
+        return wrapperRecordBinary;
+    }
+
+    public void setWrapperRecordBinary(byte[] wrapperRecordBinary) {
+        this.wrapperRecordBinary = wrapperRecordBinary;
+    }
 }
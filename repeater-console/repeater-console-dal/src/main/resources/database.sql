@@ -17,8 +17,10 @@ CREATE TABLE recordModel (
   COMMENT '机器IP',
   trace_id       VARCHAR(32)  NOT NULL
   COMMENT '链路追踪ID',
-  wrapper_record LONGTEXT     NOT NULL
-  COMMENT '记录序列化信息'
+  wrapper_record LONGTEXT     NULL
+  COMMENT '记录序列化信息',
+  wrapper_record_binary LONGBLOB NULL
+  COMMENT '记录序列化信息（二进制传输）'
 )
   ENGINE = InnoDB
   COMMENT = '录制信息'
@@ -0,0 +1,17 @@
+-- 已有库升级：增加二进制传输的记录列，字符串列允许为空；可重复执行
+USE repeater;
+
+SET @ddl = (SELECT IF(COUNT(*) = 0,
+                      'ALTER TABLE record ADD COLUMN wrapper_record_binary LONGBLOB NULL COMMENT ''记录序列化信息（二进制传输）'' AFTER wrapper_record',
+                      'DO 0')
+            FROM information_schema.COLUMNS
+            WHERE TABLE_SCHEMA = DATABASE()
+              AND TABLE_NAME = 'record'
+              AND COLUMN_NAME = 'wrapper_record_binary');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+ALTER TABLE record
+  MODIFY wrapper_record LONGTEXT NULL
+  COMMENT '记录序列化信息';
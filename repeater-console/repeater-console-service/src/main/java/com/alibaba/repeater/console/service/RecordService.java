@@ -19,6 +19,30 @@ public interface RecordService {
      */
     RepeaterResult<String> saveRecord(String body);
 
+    /**
+     * 存储record（二进制传输）
+     *
+     * @param body post内容
+     * @return 存储结果
+     */
+    RepeaterResult<String> saveRecord(byte[] body);
+
+    /**
+     * 批量存储record
+     *
+     * @param body post内容（序列化的{@code List<byte[]>}，每个元素为单条记录的序列化载荷；兼容{@code List<RecordWrapper>}）
+     * @return 存储结果
+     */
+    RepeaterResult<String> batchSaveRecord(String body);
+
+    /**
+     * 批量存储record（二进制传输）
+     *
+     * @param body post内容（序列化的{@code List<byte[]>}，每个元素为单条记录的序列化载荷；兼容{@code List<RecordWrapper>}）
+     * @return 存储结果
+     */
+    RepeaterResult<String> batchSaveRecord(byte[] body);
+
     /**
      * 存储record
      *
@@ -27,6 +51,14 @@ public interface RecordService {
      */
     RepeaterResult<String> saveRepeat(String body);
 
+    /**
+     * 存储repeat（二进制传输）
+     *
+     * @param body post内容
+     * @return 存储结果
+     */
+    RepeaterResult<String> saveRepeat(byte[] body);
+
 
     /**
      * 查询
@@ -37,6 +69,15 @@ public interface RecordService {
      */
     RepeaterResult<String> get(String appName, String traceId);
 
+    /**
+     * 查询（二进制传输）
+     *
+     * @param appName 应用名
+     * @param traceId traceId
+     * @return 查询结果
+     */
+    RepeaterResult<byte[]> getBinary(String appName, String traceId);
+
     /**
      * 执行回放
      *
@@ -4,17 +4,35 @@ import com.alibaba.jvm.sandbox.repeater.plugin.Constants;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.TraceGenerator;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.util.HttpUtil;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.RecordWrapper;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.SerializerWrapper;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.Invocation;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeatMeta;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeaterResult;
 import com.alibaba.jvm.sandbox.repeater.plugin.spi.MockStrategy;
 import com.alibaba.repeater.console.dal.model.Record;
 import com.alibaba.repeater.console.service.RecordService;
+import com.alibaba.repeater.console.service.util.ConvertUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.io.BaseEncoding;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.EnumUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * {@link }
@@ -24,16 +42,295 @@ import java.util.Map;
  */
 public abstract class AbstractRecordService implements RecordService {
 
+    private final static Logger log = LoggerFactory.getLogger(AbstractRecordService.class);
+
     @Value("${repeat.repeat.url}")
     private String repeatURL;
 
+    @Value("${console.repeat.strategy:PARAMETER_MATCH}")
+    private String repeatStrategy;
+
+    /**
+     * 子调用分片暂存；key:appName-traceId，入口记录和全部分片到齐后重组
+     * <p>
+     * 暂存只在当前console实例的内存中：开启分片投递时，同一条记录的入口和全部分片必须投递到同一个console实例（单实例部署或按traceId路由），
+     * 否则记录无法重组。超时或超出容量被淘汰时，入口已到达的按已到齐的分片存储不完整的记录，只有分片的丢弃，两种情况都会打印日志并计数
+     */
+    private final Cache<String, PendingRecord> pendingChunks = CacheBuilder.newBuilder()
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .maximumSize(1024)
+            .removalListener(new RemovalListener<String, PendingRecord>() {
+                @Override
+                public void onRemoval(RemovalNotification<String, PendingRecord> notification) {
+                    if (notification.wasEvicted()) {
+                        onEvicted(notification.getKey(), notification.getValue());
+                    }
+                }
+            })
+            .build();
+
+    /**
+     * 分片未到齐被淘汰的记录数量（含存储了不完整记录的和整体丢弃的）
+     */
+    private final AtomicLong incompleteRecords = new AtomicLong();
+
+    @Override
+    public RepeaterResult<String> batchSaveRecord(String body) {
+        try {
+            List<?> elements = SerializerWrapper.hessianDeserialize(body, List.class);
+            return batchSave(elements, false);
+        } catch (Throwable throwable) {
+            return RepeaterResult.builder().success(false).message(throwable.getMessage()).build();
+        }
+    }
+
+    @Override
+    public RepeaterResult<String> batchSaveRecord(byte[] body) {
+        try {
+            List<?> elements = SerializerWrapper.hessianDeserialize(body, List.class);
+            return batchSave(elements, true);
+        } catch (Throwable throwable) {
+            return RepeaterResult.builder().success(false).message(throwable.getMessage()).build();
+        }
+    }
+
+    /**
+     * 存储一条录制记录
+     *
+     * @param record 录制记录
+     */
+    protected abstract void storeRecord(Record record);
+
+    /**
+     * 批量存储；批次元素为单条记录的序列化载荷（与逐条投递的body一致）时按原样入库，不再反序列化之后重新序列化，
+     * 无法解码的元素（agent序列化失败被截断）单独丢弃；
+     * 兼容旧版本agent投递的{@code List<RecordWrapper>}
+     *
+     * @param elements 批次元素
+     * @param binary   是否二进制传输
+     * @return 存储结果
+     * @throws SerializeException 序列化异常
+     */
+    private RepeaterResult<String> batchSave(List<?> elements, boolean binary) throws SerializeException {
+        if (elements == null) {
+            return RepeaterResult.builder().success(false).message("invalid request").build();
+        }
+        int saved = 0;
+        for (Object element : elements) {
+            final Record record;
+            if (element instanceof byte[]) {
+                byte[] bytes = (byte[]) element;
+                RecordWrapper wrapper;
+                try {
+                    wrapper = SerializerWrapper.hessianDeserialize(bytes, RecordWrapper.class);
+                } catch (Throwable throwable) {
+                    // agent序列化失败时元素被截断，丢弃这个元素，不影响同批次的其它元素
+                    log.warn("decode batch element failed, drop it, length={}", bytes.length, throwable);
+                    continue;
+                }
+                if (wrapper == null || StringUtils.isEmpty(wrapper.getAppName())) {
+                    continue;
+                }
+                record = binary ? assemble(wrapper, bytes) : assemble(wrapper, BaseEncoding.base64().encode(bytes));
+            } else if (element instanceof RecordWrapper && StringUtils.isNotEmpty(((RecordWrapper) element).getAppName())) {
+                RecordWrapper wrapper = merge((RecordWrapper) element, binary);
+                record = wrapper == null ? null : binary
+                        ? ConvertUtil.convertWrapper(wrapper, SerializerWrapper.hessianSerialize2Bytes(wrapper))
+                        : ConvertUtil.convertWrapper(wrapper, SerializerWrapper.hessianSerialize(wrapper));
+            } else {
+                continue;
+            }
+            saved++;
+            if (record != null) {
+                storeRecord(record);
+            }
+        }
+        return RepeaterResult.builder().success(true).message("operate success").data(saved + "/" + elements.size()).build();
+    }
+
+    /**
+     * 接收一条录制记录并转换为存储记录；子调用分片和分片未到齐的入口记录先暂存
+     *
+     * @param wrapper 录制记录
+     * @param body    原始载荷（base64字符串）
+     * @return 存储记录；记录尚不完整时返回null
+     * @throws SerializeException 序列化异常
+     */
+    protected Record assemble(RecordWrapper wrapper, String body) throws SerializeException {
+        // 重组会修改入口记录的分片数量，需要在重组之前判断
+        boolean whole = isWhole(wrapper);
+        RecordWrapper merged = merge(wrapper, false);
+        if (merged == null) {
+            return null;
+        }
+        // 重组过的记录需要重新序列化
+        return whole ? ConvertUtil.convertWrapper(wrapper, body)
+                : ConvertUtil.convertWrapper(merged, SerializerWrapper.hessianSerialize(merged));
+    }
+
+    /**
+     * 接收一条录制记录并转换为存储记录；子调用分片和分片未到齐的入口记录先暂存
+     *
+     * @param wrapper 录制记录
+     * @param body    原始载荷（二进制）
+     * @return 存储记录；记录尚不完整时返回null
+     * @throws SerializeException 序列化异常
+     */
+    protected Record assemble(RecordWrapper wrapper, byte[] body) throws SerializeException {
+        boolean whole = isWhole(wrapper);
+        RecordWrapper merged = merge(wrapper, true);
+        if (merged == null) {
+            return null;
+        }
+        return whole ? ConvertUtil.convertWrapper(wrapper, body)
+                : ConvertUtil.convertWrapper(merged, SerializerWrapper.hessianSerialize2Bytes(merged));
+    }
+
+    /**
+     * 重组子调用分片；分片和入口记录的到达顺序不确定（异步序列化/投递队列），全部到齐后按分片序号合并
+     *
+     * @param wrapper 录制记录或子调用分片
+     * @param binary  载荷是否二进制（淘汰时按同样的格式存储不完整记录）
+     * @return 完整记录；尚不完整时返回null
+     */
+    private RecordWrapper merge(RecordWrapper wrapper, boolean binary) {
+        if (isWhole(wrapper)) {
+            return wrapper;
+        }
+        final String key = wrapper.getAppName() + "-" + wrapper.getTraceId();
+        PendingRecord pending = pendingChunks.getIfPresent(key);
+        if (pending == null) {
+            PendingRecord created = new PendingRecord();
+            pending = pendingChunks.asMap().putIfAbsent(key, created);
+            if (pending == null) {
+                pending = created;
+            }
+        }
+        RecordWrapper merged;
+        // 缓存操作放在锁外，淘汰回调中会锁住被淘汰的记录
+        synchronized (pending) {
+            if (pending.done) {
+                log.warn("record already stored, drop late chunk, key={},chunkIndex={}", key, wrapper.getChunkIndex());
+                return null;
+            }
+            pending.binary = binary;
+            if (wrapper.isChunk()) {
+                pending.chunks.add(wrapper);
+            } else {
+                pending.entrance = wrapper;
+            }
+            if (pending.entrance == null || pending.chunks.size() < pending.entrance.getChunkCount()) {
+                return null;
+            }
+            pending.done = true;
+            merged = pending.merge();
+        }
+        pendingChunks.asMap().remove(key, pending);
+        return merged;
+    }
+
+    /**
+     * 是否未分片的完整记录
+     *
+     * @param wrapper 录制记录或子调用分片
+     * @return true/false
+     */
+    private boolean isWhole(RecordWrapper wrapper) {
+        return !wrapper.isChunk() && wrapper.getChunkCount() <= 0;
+    }
+
+    /**
+     * 分片未到齐被淘汰；入口已到达时存储不完整的记录，否则丢弃
+     *
+     * @param key     appName-traceId
+     * @param pending 暂存的记录
+     */
+    private void onEvicted(String key, PendingRecord pending) {
+        RecordWrapper merged;
+        int arrived;
+        int expected;
+        boolean binary;
+        synchronized (pending) {
+            if (pending.done) {
+                return;
+            }
+            pending.done = true;
+            arrived = pending.chunks.size();
+            expected = pending.entrance == null ? -1 : pending.entrance.getChunkCount();
+            binary = pending.binary;
+            merged = pending.entrance == null ? null : pending.merge();
+        }
+        long total = incompleteRecords.incrementAndGet();
+        if (merged == null) {
+            log.warn("sub invocation chunks evicted before entrance arrived, drop them, key={},chunks={},incompleteTotal={}", key, arrived, total);
+            return;
+        }
+        log.warn("sub invocation chunks evicted before all arrived, store incomplete record, key={},chunks={}/{},incompleteTotal={}", key, arrived, expected, total);
+        try {
+            storeRecord(binary ? ConvertUtil.convertWrapper(merged, SerializerWrapper.hessianSerialize2Bytes(merged))
+                    : ConvertUtil.convertWrapper(merged, SerializerWrapper.hessianSerialize(merged)));
+        } catch (Throwable throwable) {
+            log.error("store incomplete record failed, key={}", key, throwable);
+        }
+    }
+
+    /**
+     * 分片未到齐被淘汰的记录数量
+     *
+     * @return 数量
+     */
+    public long getIncompleteRecordCount() {
+        return incompleteRecords.get();
+    }
+
+    private static class PendingRecord {
+
+        private final List<RecordWrapper> chunks = new ArrayList<RecordWrapper>();
+
+        private RecordWrapper entrance;
+
+        private boolean binary;
+
+        /**
+         * 已经重组存储或者已经被淘汰
+         */
+        private boolean done;
+
+        private RecordWrapper merge() {
+            Collections.sort(chunks, new Comparator<RecordWrapper>() {
+                @Override
+                public int compare(RecordWrapper o1, RecordWrapper o2) {
+                    return o1.getChunkIndex() - o2.getChunkIndex();
+                }
+            });
+            List<Invocation> subInvocations = new ArrayList<Invocation>();
+            for (RecordWrapper chunk : chunks) {
+                if (CollectionUtils.isNotEmpty(chunk.getSubInvocations())) {
+                    subInvocations.addAll(chunk.getSubInvocations());
+                }
+                // 类定义字典只追加，保留最长的快照
+                if (chunk.getClassDefinitions() != null && (entrance.getClassDefinitions() == null
+                        || chunk.getClassDefinitions().size() > entrance.getClassDefinitions().size())) {
+                    entrance.setClassDefinitions(chunk.getClassDefinitions());
+                }
+            }
+            if (CollectionUtils.isNotEmpty(entrance.getSubInvocations())) {
+                subInvocations.addAll(entrance.getSubInvocations());
+            }
+            entrance.setSubInvocations(subInvocations);
+            entrance.setChunkCount(0);
+            return entrance;
+        }
+    }
+
     protected RepeaterResult<String> repeat(Record record, String repeatId) {
         RepeatMeta meta = new RepeatMeta();
         meta.setAppName(record.getAppName());
         meta.setTraceId(record.getTraceId());
         meta.setMock(true);
         meta.setRepeatId(StringUtils.isEmpty(repeatId) ? TraceGenerator.generate() : repeatId);
-        meta.setStrategyType(MockStrategy.StrategyType.PARAMETER_MATCH);
+        MockStrategy.StrategyType strategyType = EnumUtils.getEnum(MockStrategy.StrategyType.class, repeatStrategy);
+        meta.setStrategyType(strategyType == null ? MockStrategy.StrategyType.PARAMETER_MATCH : strategyType);
         Map<String, String> requestParams = new HashMap<String, String>(2);
         try {
             requestParams.put(Constants.DATA_TRANSPORT_IDENTIFY, SerializerWrapper.hessianSerialize(meta));
@@ -46,4 +343,56 @@ public abstract class AbstractRecordService implements RecordService {
         }
         return RepeaterResult.builder().success(false).message("operate failed").data(resp).build();
     }
+
+    /**
+     * 反序列化存储的录制记录；兼容base64字符串和二进制两种存储格式
+     *
+     * @param record 存储记录
+     * @return 录制记录
+     * @throws SerializeException 序列化异常
+     */
+    protected RecordWrapper decodeWrapper(Record record) throws SerializeException {
+        if (record.getWrapperRecordBinary() != null) {
+            return SerializerWrapper.hessianDeserialize(record.getWrapperRecordBinary(), RecordWrapper.class);
+        }
+        return SerializerWrapper.hessianDeserialize(record.getWrapperRecord(), RecordWrapper.class);
+    }
+
+    /**
+     * 反序列化调用的返回值；兼容base64字符串和二进制两种载体，按调用记录的序列化类型解码
+     *
+     * @param invocation       调用信息
+     * @param classDefinitions 录制记录中的类定义字典
+     * @return 返回值
+     * @throws SerializeException 序列化异常
+     */
+    protected Object decodeResponse(Invocation invocation, List<String[]> classDefinitions) throws SerializeException {
+        return SerializerWrapper.responseOf(invocation, classDefinitions);
+    }
+
+    /**
+     * 存储记录转换成字符串传输格式
+     *
+     * @param record 存储记录
+     * @return base64字符串
+     */
+    protected String asString(Record record) {
+        if (record.getWrapperRecord() != null) {
+            return record.getWrapperRecord();
+        }
+        return BaseEncoding.base64().encode(record.getWrapperRecordBinary());
+    }
+
+    /**
+     * 存储记录转换成二进制传输格式
+     *
+     * @param record 存储记录
+     * @return byte数组
+     */
+    protected byte[] asBytes(Record record) {
+        if (record.getWrapperRecordBinary() != null) {
+            return record.getWrapperRecordBinary();
+        }
+        return BaseEncoding.base64().decode(record.getWrapperRecord());
+    }
 }
@@ -1,12 +1,12 @@
 package com.alibaba.repeater.console.service.impl;
 
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.RecordWrapper;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.SerializerWrapper;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeatModel;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeaterResult;
 import com.alibaba.repeater.console.dal.model.Record;
 import com.alibaba.repeater.console.service.RecordService;
-import com.alibaba.repeater.console.service.util.ConvertUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 
@@ -44,8 +44,10 @@ public class RecordServiceLocalImpl extends AbstractRecordService implements Rec
             if (wrapper == null || StringUtils.isEmpty(wrapper.getAppName())) {
                 return RepeaterResult.builder().success(false).message("invalid request").build();
             }
-            Record record = ConvertUtil.convertWrapper(wrapper, body);
-            recordCache.put(buildUniqueKey(wrapper.getAppName(), wrapper.getTraceId()), record);
+            Record record = assemble(wrapper, body);
+            if (record != null) {
+                storeRecord(record);
+            }
             return RepeaterResult.builder().success(true).message("operate success").data("-/-").build();
         } catch (Throwable throwable) {
             return RepeaterResult.builder().success(false).message(throwable.getMessage()).build();
@@ -53,19 +55,53 @@ public class RecordServiceLocalImpl extends AbstractRecordService implements Rec
     }
 
     @Override
-    public RepeaterResult<String> saveRepeat(String body) {
+    public RepeaterResult<String> saveRecord(byte[] body) {
         try {
-            RepeatModel rm = SerializerWrapper.hessianDeserialize(body, RepeatModel.class);
-            Record record = repeatCache.remove(rm.getRepeatId());
-            if (record == null) {
-                return RepeaterResult.builder().success(false).message("invalid repeatId:" + rm.getRepeatId()).build();
+            RecordWrapper wrapper = SerializerWrapper.hessianDeserialize(body, RecordWrapper.class);
+            if (wrapper == null || StringUtils.isEmpty(wrapper.getAppName())) {
+                return RepeaterResult.builder().success(false).message("invalid request").build();
             }
-            RecordWrapper wrapper = SerializerWrapper.hessianDeserialize(record.getWrapperRecord(), RecordWrapper.class);
-            rm.setOriginResponse(SerializerWrapper.hessianDeserialize(wrapper.getEntranceInvocation().getResponseSerialized()));
-            repeatModelCache.put(rm.getRepeatId(), rm);
+            Record record = assemble(wrapper, body);
+            if (record != null) {
+                storeRecord(record);
+            }
+            return RepeaterResult.builder().success(true).message("operate success").data("-/-").build();
+        } catch (Throwable throwable) {
+            return RepeaterResult.builder().success(false).message(throwable.getMessage()).build();
+        }
+    }
+
+    @Override
+    protected void storeRecord(Record record) {
+        recordCache.put(buildUniqueKey(record.getAppName(), record.getTraceId()), record);
+    }
+
+    @Override
+    public RepeaterResult<String> saveRepeat(String body) {
+        try {
+            return saveRepeat(SerializerWrapper.hessianDeserialize(body, RepeatModel.class));
         } catch (Throwable throwable) {
             return RepeaterResult.builder().success(false).message(throwable.getMessage()).build();
         }
+    }
+
+    @Override
+    public RepeaterResult<String> saveRepeat(byte[] body) {
+        try {
+            return saveRepeat(SerializerWrapper.hessianDeserialize(body, RepeatModel.class));
+        } catch (Throwable throwable) {
+            return RepeaterResult.builder().success(false).message(throwable.getMessage()).build();
+        }
+    }
+
+    private RepeaterResult<String> saveRepeat(RepeatModel rm) throws SerializeException {
+        Record record = repeatCache.remove(rm.getRepeatId());
+        if (record == null) {
+            return RepeaterResult.builder().success(false).message("invalid repeatId:" + rm.getRepeatId()).build();
+        }
+        RecordWrapper wrapper = decodeWrapper(record);
+        rm.setOriginResponse(decodeResponse(wrapper.getEntranceInvocation(), wrapper.getClassDefinitions()));
+        repeatModelCache.put(rm.getRepeatId(), rm);
         return RepeaterResult.builder().success(true).message("operate success").data("-/-").build();
     }
 
@@ -75,7 +111,16 @@ public class RecordServiceLocalImpl extends AbstractRecordService implements Rec
         if (record == null) {
             return RepeaterResult.builder().success(false).message("data not exits").build();
         }
-        return RepeaterResult.builder().success(true).message("operate success").data(record.getWrapperRecord()).build();
+        return RepeaterResult.builder().success(true).message("operate success").data(asString(record)).build();
+    }
+
+    @Override
+    public RepeaterResult<byte[]> getBinary(String appName, String traceId) {
+        Record record = recordCache.get(buildUniqueKey(appName, traceId));
+        if (record == null) {
+            return RepeaterResult.builder().success(false).message("data not exits").build();
+        }
+        return RepeaterResult.builder().success(true).message("operate success").data(asBytes(record)).build();
     }
 
     @Override
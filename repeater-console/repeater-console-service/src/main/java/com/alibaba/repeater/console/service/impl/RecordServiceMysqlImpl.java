@@ -1,5 +1,8 @@
 package com.alibaba.repeater.console.service.impl;
 
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.compress.Compressor;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.compress.CompressorProvider;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.RecordWrapper;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.SerializerWrapper;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeatModel;
@@ -7,8 +10,11 @@ import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeaterResult;
 import com.alibaba.repeater.console.dal.mapper.RecordMapper;
 import com.alibaba.repeater.console.dal.model.Record;
 import com.alibaba.repeater.console.service.RecordService;
-import com.alibaba.repeater.console.service.util.ConvertUtil;
+import com.google.common.io.BaseEncoding;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
@@ -22,9 +28,17 @@ import javax.annotation.Resource;
 @Service("recordServiceMysql")
 public class RecordServiceMysqlImpl extends AbstractRecordService implements RecordService {
 
+    private final static Logger log = LoggerFactory.getLogger(RecordServiceMysqlImpl.class);
+
     @Resource
     private RecordMapper recordMapper;
 
+    /**
+     * 录制记录入库时的压缩算法（NONE/DEFLATE/GZIP）；agent已经压缩过的记录不会重复压缩
+     */
+    @Value("${console.record.compress:NONE}")
+    private String compressType;
+
     @Override
     public RepeaterResult<String> saveRecord(String body) {
         try {
@@ -32,26 +46,88 @@ public class RecordServiceMysqlImpl extends AbstractRecordService implements Rec
             if (wrapper == null || StringUtils.isEmpty(wrapper.getAppName())) {
                 return RepeaterResult.builder().success(false).message("invalid request").build();
             }
-            Record record = ConvertUtil.convertWrapper(wrapper, body);
-            recordMapper.insert(record);
+            Record record = assemble(wrapper, body);
+            if (record != null) {
+                storeRecord(record);
+            }
             return RepeaterResult.builder().success(true).message("operate success").data("-/-").build();
         } catch (Throwable throwable) {
             return RepeaterResult.builder().success(false).message(throwable.getMessage()).build();
         }
     }
 
+    @Override
+    public RepeaterResult<String> saveRecord(byte[] body) {
+        try {
+            RecordWrapper wrapper = SerializerWrapper.hessianDeserialize(body, RecordWrapper.class);
+            if (wrapper == null || StringUtils.isEmpty(wrapper.getAppName())) {
+                return RepeaterResult.builder().success(false).message("invalid request").build();
+            }
+            Record record = assemble(wrapper, body);
+            if (record != null) {
+                storeRecord(record);
+            }
+            return RepeaterResult.builder().success(true).message("operate success").data("-/-").build();
+        } catch (Throwable throwable) {
+            return RepeaterResult.builder().success(false).message(throwable.getMessage()).build();
+        }
+    }
+
+    @Override
+    protected void storeRecord(Record record) {
+        try {
+            compress(record);
+        } catch (SerializeException e) {
+            // 压缩失败仍然按原始数据入库
+            log.error("compress record failed, traceId={}", record.getTraceId(), e);
+        }
+        recordMapper.insert(record);
+    }
+
+    private void compress(Record record) throws SerializeException {
+        Compressor.Type type = Compressor.Type.parse(compressType);
+        if (type == Compressor.Type.NONE) {
+            return;
+        }
+        CompressorProvider provider = CompressorProvider.instance();
+        if (record.getWrapperRecordBinary() != null) {
+            if (!provider.isCompressed(record.getWrapperRecordBinary())) {
+                record.setWrapperRecordBinary(provider.compress(type, record.getWrapperRecordBinary()));
+            }
+        } else if (record.getWrapperRecord() != null) {
+            byte[] bytes = BaseEncoding.base64().decode(record.getWrapperRecord());
+            if (!provider.isCompressed(bytes)) {
+                record.setWrapperRecord(BaseEncoding.base64().encode(provider.compress(type, bytes)));
+            }
+        }
+    }
+
     @Override
     public RepeaterResult<String> saveRepeat(String body) {
         return RepeaterResult.builder().success(true).message("operate success").data("-/-").build();
     }
 
+    @Override
+    public RepeaterResult<String> saveRepeat(byte[] body) {
+        return RepeaterResult.builder().success(true).message("operate success").data("-/-").build();
+    }
+
     @Override
     public RepeaterResult<String> get(String appName, String traceId) {
         Record record = recordMapper.selectByAppNameAndTraceId(appName, traceId);
         if (record == null) {
             return RepeaterResult.builder().success(false).message("data not exits").build();
         }
-        return RepeaterResult.builder().success(true).message("operate success").data(record.getWrapperRecord()).build();
+        return RepeaterResult.builder().success(true).message("operate success").data(asString(record)).build();
+    }
+
+    @Override
+    public RepeaterResult<byte[]> getBinary(String appName, String traceId) {
+        Record record = recordMapper.selectByAppNameAndTraceId(appName, traceId);
+        if (record == null) {
+            return RepeaterResult.builder().success(false).message("data not exits").build();
+        }
+        return RepeaterResult.builder().success(true).message("operate success").data(asBytes(record)).build();
     }
 
     @Override
@@ -31,16 +31,41 @@ public class RecordServiceProxyImpl implements RecordService {
         return select().saveRecord(body);
     }
 
+    @Override
+    public RepeaterResult<String> saveRecord(byte[] body) {
+        return select().saveRecord(body);
+    }
+
+    @Override
+    public RepeaterResult<String> batchSaveRecord(String body) {
+        return select().batchSaveRecord(body);
+    }
+
+    @Override
+    public RepeaterResult<String> batchSaveRecord(byte[] body) {
+        return select().batchSaveRecord(body);
+    }
+
     @Override
     public RepeaterResult<String> saveRepeat(String body) {
         return select().saveRepeat(body);
     }
 
+    @Override
+    public RepeaterResult<String> saveRepeat(byte[] body) {
+        return select().saveRepeat(body);
+    }
+
     @Override
     public RepeaterResult<String> get(String appName, String traceId) {
         return select().get(appName, traceId);
     }
 
+    @Override
+    public RepeaterResult<byte[]> getBinary(String appName, String traceId) {
+        return select().getBinary(appName, traceId);
+    }
+
     @Override
     public RepeaterResult<String> repeat(String appName, String traceId, String repeatId) {
         return select().repeat(appName, traceId, repeatId);
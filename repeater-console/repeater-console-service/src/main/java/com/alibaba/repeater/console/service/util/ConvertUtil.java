@@ -14,6 +14,18 @@ import java.util.Date;
 public class ConvertUtil {
 
     public static Record convertWrapper(RecordWrapper wrapper,String body){
+        Record record = convertWrapper(wrapper);
+        record.setWrapperRecord(body);
+        return record;
+    }
+
+    public static Record convertWrapper(RecordWrapper wrapper,byte[] body){
+        Record record = convertWrapper(wrapper);
+        record.setWrapperRecordBinary(body);
+        return record;
+    }
+
+    private static Record convertWrapper(RecordWrapper wrapper){
         Record record = new Record();
         record.setAppName(wrapper.getAppName());
         record.setEnvironment(wrapper.getEnvironment());
@@ -21,7 +33,6 @@ public class ConvertUtil {
         record.setGmtRecord(new Date(wrapper.getTimestamp()));
         record.setHost(wrapper.getHost());
         record.setTraceId(wrapper.getTraceId());
-        record.setWrapperRecord(body);
         return record;
     }
 }
@@ -0,0 +1,209 @@
+package com.alibaba.repeater.console.service.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.RecordWrapper;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.SerializerWrapper;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.Invocation;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeaterResult;
+import com.alibaba.repeater.console.dal.model.Record;
+
+import com.google.common.base.Charsets;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * {@link AbstractRecordServiceTest} 子调用分片的重组、迟到分片和淘汰
+ * <p>
+ *
+ * @author zhaoyb1990
+ */
+public class AbstractRecordServiceTest {
+
+    private static final String APP_NAME = "unit";
+
+    private final CountingRecordService service = new CountingRecordService();
+
+    /**
+     * 脱离sandbox容器运行时没有cfg目录，序列化异常初始化ApplicationModel时读取的repeater.properties指向临时目录
+     */
+    @BeforeClass
+    public static void init() throws IOException {
+        File configPath = new File(System.getProperty("java.io.tmpdir"), "repeater-test");
+        if (!configPath.isDirectory() && !configPath.mkdirs()) {
+            throw new IOException("create config path failed, path=" + configPath);
+        }
+        OutputStream out = new FileOutputStream(new File(configPath, "repeater.properties"));
+        try {
+            out.write("repeat.standalone.mode=true\n".getBytes(Charsets.UTF_8));
+        } finally {
+            out.close();
+        }
+        System.setProperty("repeater.config.path", configPath.getAbsolutePath());
+    }
+
+    @Test
+    public void testUnchunkedStoredAsIs() throws Exception {
+        byte[] body = SerializerWrapper.hessianSerialize2Bytes(entrance("t-plain", 0, 1));
+        Assert.assertTrue(service.saveRecord(body).isSuccess());
+        Assert.assertEquals(1, service.stored.get());
+        Assert.assertSame(body, service.getBinary(APP_NAME, "t-plain").getData());
+    }
+
+    /**
+     * 分片先于入口乱序到达，入口到达后按分片序号合并，入口自带的子调用排在最后
+     */
+    @Test
+    public void testChunksBeforeEntrance() throws Exception {
+        String traceId = "t-before";
+        save(chunk(traceId, 2, 3, 4));
+        save(chunk(traceId, 1, 1, 2));
+        Assert.assertFalse(service.getBinary(APP_NAME, traceId).isSuccess());
+        save(entrance(traceId, 2, 5));
+        Assert.assertEquals(1, service.stored.get());
+        assertMerged(traceId, 1, 2, 3, 4, 5);
+    }
+
+    @Test
+    public void testEntranceBeforeChunks() throws Exception {
+        String traceId = "t-after";
+        Assert.assertTrue(service.saveRecord(SerializerWrapper.hessianSerialize(entrance(traceId, 2))).isSuccess());
+        Assert.assertTrue(service.saveRecord(SerializerWrapper.hessianSerialize(chunk(traceId, 2, 2))).isSuccess());
+        Assert.assertEquals(0, service.stored.get());
+        Assert.assertTrue(service.saveRecord(SerializerWrapper.hessianSerialize(chunk(traceId, 1, 1))).isSuccess());
+        Assert.assertEquals(1, service.stored.get());
+        assertMerged(traceId, 1, 2);
+    }
+
+    @Test
+    public void testLateChunkDropped() throws Exception {
+        String traceId = "t-late";
+        save(entrance(traceId, 1));
+        save(chunk(traceId, 1, 1));
+        save(chunk(traceId, 1, 1));
+        Assert.assertEquals(1, service.stored.get());
+        assertMerged(traceId, 1);
+    }
+
+    /**
+     * 批量投递的元素为单条记录的序列化载荷，分片和入口可以在同一批次中
+     */
+    @Test
+    public void testBatch() throws Exception {
+        List<byte[]> batch = new ArrayList<byte[]>();
+        batch.add(SerializerWrapper.hessianSerialize2Bytes(chunk("t-batch", 1, 1)));
+        batch.add(SerializerWrapper.hessianSerialize2Bytes(entrance("t-batch", 1, 2)));
+        batch.add(SerializerWrapper.hessianSerialize2Bytes(entrance("t-single", 0)));
+        RepeaterResult<String> result = service.batchSaveRecord(SerializerWrapper.hessianSerialize2Bytes(batch));
+        Assert.assertTrue(result.isSuccess());
+        Assert.assertEquals("3/3", result.getData());
+        Assert.assertEquals(2, service.stored.get());
+        assertMerged("t-batch", 1, 2);
+    }
+
+    /**
+     * agent序列化失败时元素被截断，只丢弃这个元素
+     */
+    @Test
+    public void testBatchTruncatedElement() throws Exception {
+        byte[] truncated = SerializerWrapper.hessianSerialize2Bytes(entrance("t-truncated", 0, 1));
+        List<byte[]> batch = new ArrayList<byte[]>();
+        batch.add(Arrays.copyOf(truncated, truncated.length / 2));
+        batch.add(SerializerWrapper.hessianSerialize2Bytes(entrance("t-intact", 0)));
+        RepeaterResult<String> result = service.batchSaveRecord(SerializerWrapper.hessianSerialize2Bytes(batch));
+        Assert.assertTrue(result.isSuccess());
+        Assert.assertEquals("1/2", result.getData());
+        Assert.assertTrue(service.getBinary(APP_NAME, "t-intact").isSuccess());
+        Assert.assertFalse(service.getBinary(APP_NAME, "t-truncated").isSuccess());
+    }
+
+    /**
+     * 超出暂存容量被淘汰时，入口已到达的存储不完整的记录，只有分片的丢弃
+     */
+    @Test
+    public void testEvicted() throws Exception {
+        int total = 4096;
+        for (int i = 0; i < total; i++) {
+            save(i % 2 == 0 ? entrance("t-evict-" + i, 2, i) : chunk("t-evict-" + i, 1, i));
+        }
+        long incomplete = service.getIncompleteRecordCount();
+        Assert.assertTrue(incomplete >= total - 1024);
+        Assert.assertTrue(service.stored.get() > 0);
+        Assert.assertTrue(service.stored.get() < incomplete);
+        for (int i = 0; i < total; i += 2) {
+            RepeaterResult<byte[]> result = service.getBinary(APP_NAME, "t-evict-" + i);
+            if (result.isSuccess()) {
+                RecordWrapper wrapper = SerializerWrapper.hessianDeserialize(result.getData(), RecordWrapper.class);
+                Assert.assertEquals(0, wrapper.getChunkCount());
+                Assert.assertEquals(1, wrapper.getSubInvocations().size());
+            }
+        }
+    }
+
+    private void save(RecordWrapper wrapper) throws Exception {
+        Assert.assertTrue(service.saveRecord(SerializerWrapper.hessianSerialize2Bytes(wrapper)).isSuccess());
+    }
+
+    private void assertMerged(String traceId, Integer... indexes) throws Exception {
+        RepeaterResult<byte[]> result = service.getBinary(APP_NAME, traceId);
+        Assert.assertTrue(result.isSuccess());
+        RecordWrapper wrapper = SerializerWrapper.hessianDeserialize(result.getData(), RecordWrapper.class);
+        Assert.assertEquals(0, wrapper.getChunkCount());
+        Assert.assertNotNull(wrapper.getEntranceInvocation());
+        List<Integer> actual = new ArrayList<Integer>();
+        for (Invocation invocation : wrapper.getSubInvocations()) {
+            actual.add(invocation.getIndex());
+        }
+        Assert.assertEquals(Arrays.asList(indexes), actual);
+    }
+
+    private static RecordWrapper entrance(String traceId, int chunkCount, Integer... subIndexes) {
+        RecordWrapper wrapper = wrapper(traceId, subIndexes);
+        Invocation invocation = new Invocation();
+        invocation.setEntrance(true);
+        invocation.setIndex(0);
+        wrapper.setEntranceInvocation(invocation);
+        wrapper.setChunkCount(chunkCount);
+        return wrapper;
+    }
+
+    private static RecordWrapper chunk(String traceId, int chunkIndex, Integer... subIndexes) {
+        RecordWrapper wrapper = wrapper(traceId, subIndexes);
+        wrapper.setChunkIndex(chunkIndex);
+        return wrapper;
+    }
+
+    private static RecordWrapper wrapper(String traceId, Integer... subIndexes) {
+        RecordWrapper wrapper = new RecordWrapper();
+        wrapper.setAppName(APP_NAME);
+        wrapper.setTraceId(traceId);
+        wrapper.setTimestamp(System.currentTimeMillis());
+        List<Invocation> subInvocations = new ArrayList<Invocation>();
+        for (Integer index : subIndexes) {
+            Invocation invocation = new Invocation();
+            invocation.setIndex(index);
+            subInvocations.add(invocation);
+        }
+        wrapper.setSubInvocations(subInvocations);
+        return wrapper;
+    }
+
+    private static class CountingRecordService extends RecordServiceLocalImpl {
+
+        private final AtomicInteger stored = new AtomicInteger();
+
+        @Override
+        protected void storeRecord(Record record) {
+            stored.incrementAndGet();
+            super.storeRecord(record);
+        }
+    }
+}
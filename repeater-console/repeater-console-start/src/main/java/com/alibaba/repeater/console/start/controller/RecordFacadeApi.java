@@ -3,6 +3,9 @@ package com.alibaba.repeater.console.start.controller;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeatModel;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeaterResult;
 import com.alibaba.repeater.console.service.RecordService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
@@ -27,6 +30,17 @@ public class RecordFacadeApi {
         return recordService.get(appName, traceId);
     }
 
+    @RequestMapping(value = "record/{appName}/{traceId}", method = RequestMethod.GET,
+            produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> getWrapperRecordBinary(@PathVariable("appName") String appName,
+                                                         @PathVariable("traceId") String traceId) {
+        RepeaterResult<byte[]> result = recordService.getBinary(appName, traceId);
+        if (!result.isSuccess()) {
+            return new ResponseEntity<byte[]>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<byte[]>(result.getData(), HttpStatus.OK);
+    }
+
     @RequestMapping(value = "repeat/{appName}/{traceId}", method = RequestMethod.GET)
     public RepeaterResult<String> repeat(@PathVariable("appName") String appName,
                                          @PathVariable("traceId") String traceId,
@@ -39,11 +53,34 @@ public class RecordFacadeApi {
         return recordService.saveRecord(body);
     }
 
+    @RequestMapping(value = "record/save", method = RequestMethod.POST,
+            consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public RepeaterResult<String> recordSave(@RequestBody byte[] body) {
+        return recordService.saveRecord(body);
+    }
+
+    @RequestMapping(value = "record/batchSave", method = RequestMethod.POST)
+    public RepeaterResult<String> recordBatchSave(@RequestBody String body) {
+        return recordService.batchSaveRecord(body);
+    }
+
+    @RequestMapping(value = "record/batchSave", method = RequestMethod.POST,
+            consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public RepeaterResult<String> recordBatchSave(@RequestBody byte[] body) {
+        return recordService.batchSaveRecord(body);
+    }
+
     @RequestMapping(value = "repeat/save", method = RequestMethod.POST)
     public RepeaterResult<String> repeatSave(@RequestBody String body) {
         return recordService.saveRepeat(body);
     }
 
+    @RequestMapping(value = "repeat/save", method = RequestMethod.POST,
+            consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public RepeaterResult<String> repeatSave(@RequestBody byte[] body) {
+        return recordService.saveRepeat(body);
+    }
+
     @RequestMapping(value = "repeat/callback/{repeatId}", method = RequestMethod.GET)
     public RepeaterResult<RepeatModel> callback(@PathVariable("repeatId") String repeatId) {
         return recordService.callback(repeatId);
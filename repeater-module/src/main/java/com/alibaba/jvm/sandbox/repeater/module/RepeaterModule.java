@@ -266,6 +266,7 @@ public class RepeaterModule implements Module, ModuleLifecycle {
      */
     private void noticeConfigChange(final RepeaterConfig config) {
         if (initialized.get()) {
+            ApplicationModel.instance().setConfig(config);
             for (InvokePlugin invokePlugin : invokePlugins) {
                 try {
                     invokePlugin.onConfigChange(config);
@@ -33,6 +33,11 @@ public class Constants {
      */
     public static final String DEFAULT_RECORD_BROADCASTER = "broadcaster.record.url";
 
+    /**
+     * 默认录制消息批量投递地址
+     */
+    public static final String DEFAULT_RECORD_BATCH_BROADCASTER = "broadcaster.record.batch.url";
+
     /**
      * 是否开启单机工作模式
      */
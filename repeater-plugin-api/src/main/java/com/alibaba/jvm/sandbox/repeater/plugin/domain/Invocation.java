@@ -1,5 +1,7 @@
 package com.alibaba.jvm.sandbox.repeater.plugin.domain;
 
+import java.util.List;
+
 /**
  * {@link Invocation} 描述一次调用
  *
@@ -64,6 +66,16 @@ public class Invocation implements java.io.Serializable {
      */
     private String requestSerialized;
 
+    /**
+     * 二进制传输模式下序列化之后的请求值，与{@link Invocation#requestSerialized}二选一
+     */
+    private byte[] requestSerializedBytes;
+
+    /**
+     * 请求序列化结果的64位摘要（录制时计算，回放时用于参数完全一致的快速匹配）
+     */
+    private Long requestDigest;
+
     /**
      * 返回结果 - snapshot 不做传输使用
      */
@@ -74,6 +86,11 @@ public class Invocation implements java.io.Serializable {
      */
     private String responseSerialized;
 
+    /**
+     * 二进制传输模式下序列化之后的返回值，与{@link Invocation#responseSerialized}二选一
+     */
+    private byte[] responseSerializedBytes;
+
     /**
      * 异常信息 - snapshot 不做传输使用
      */
@@ -84,6 +101,11 @@ public class Invocation implements java.io.Serializable {
      */
     private String throwableSerialized;
 
+    /**
+     * 二进制传输模式下序列化之后的异常值，与{@link Invocation#throwableSerialized}二选一
+     */
+    private byte[] throwableSerializedBytes;
+
     /**
      * 调用开始时间
      */
@@ -104,6 +126,21 @@ public class Invocation implements java.io.Serializable {
      */
     private transient ClassLoader classLoader;
 
+    /**
+     * 返回值/异常的序列化结果引用记录级的类定义字典
+     */
+    private boolean classDictionary;
+
+    /**
+     * 记录级的类定义字典（每项为类名+字段名）；录制时为共享的字典，回放时为记录中的快照（不做传输）
+     */
+    private transient List<String[]> classDefinitions;
+
+    /**
+     * 请求/返回值/异常使用的序列化类型（HESSIAN/COMPACT）；为空表示HESSIAN（兼容历史录制数据）
+     */
+    private String serializerType;
+
     public InvokeType getType() {
         return type;
     }
@@ -176,6 +213,22 @@ public class Invocation implements java.io.Serializable {
         this.requestSerialized = requestSerialized;
     }
 
+    public byte[] getRequestSerializedBytes() {
+        return requestSerializedBytes;
+    }
+
+    public void setRequestSerializedBytes(byte[] requestSerializedBytes) {
+        this.requestSerializedBytes = requestSerializedBytes;
+    }
+
+    public Long getRequestDigest() {
+        return requestDigest;
+    }
+
+    public void setRequestDigest(Long requestDigest) {
+        this.requestDigest = requestDigest;
+    }
+
     public Object getResponse() {
         return response;
     }
@@ -192,6 +245,14 @@ public class Invocation implements java.io.Serializable {
         this.responseSerialized = responseSerialized;
     }
 
+    public byte[] getResponseSerializedBytes() {
+        return responseSerializedBytes;
+    }
+
+    public void setResponseSerializedBytes(byte[] responseSerializedBytes) {
+        this.responseSerializedBytes = responseSerializedBytes;
+    }
+
     public Throwable getThrowable() {
         return throwable;
     }
@@ -208,6 +269,14 @@ public class Invocation implements java.io.Serializable {
         this.throwableSerialized = throwableSerialized;
     }
 
+    public byte[] getThrowableSerializedBytes() {
+        return throwableSerializedBytes;
+    }
+
+    public void setThrowableSerializedBytes(byte[] throwableSerializedBytes) {
+        this.throwableSerializedBytes = throwableSerializedBytes;
+    }
+
     public Long getStart() {
         return start;
     }
@@ -239,4 +308,28 @@ public class Invocation implements java.io.Serializable {
     public void setClassLoader(ClassLoader classLoader) {
         this.classLoader = classLoader;
     }
-}
\ No newline at end of file
+
+    public boolean isClassDictionary() {
+        return classDictionary;
+    }
+
+    public void setClassDictionary(boolean classDictionary) {
+        this.classDictionary = classDictionary;
+    }
+
+    public List<String[]> getClassDefinitions() {
+        return classDefinitions;
+    }
+
+    public void setClassDefinitions(List<String[]> classDefinitions) {
+        this.classDefinitions = classDefinitions;
+    }
+
+    public String getSerializerType() {
+        return serializerType;
+    }
+
+    public void setSerializerType(String serializerType) {
+        this.serializerType = serializerType;
+    }
+}
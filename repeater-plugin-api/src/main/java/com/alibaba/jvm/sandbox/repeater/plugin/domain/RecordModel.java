@@ -35,6 +35,16 @@ public class RecordModel implements java.io.Serializable {
 
     private List<Invocation> subInvocations;
 
+    /**
+     * 子调用分片序号（从1开始）；大于0表示该记录只是一段子调用分片，没有入口调用
+     */
+    private int chunkIndex;
+
+    /**
+     * 入口记录之前已经投递的子调用分片数量，服务端据此重组完整记录
+     */
+    private int chunkCount;
+
     public long getTimestamp() {
         return timestamp;
     }
@@ -90,4 +100,20 @@ public class RecordModel implements java.io.Serializable {
     public void setSubInvocations(List<Invocation> subInvocations) {
         this.subInvocations = subInvocations;
     }
-}
\ No newline at end of file
+
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public void setChunkIndex(int chunkIndex) {
+        this.chunkIndex = chunkIndex;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public void setChunkCount(int chunkCount) {
+        this.chunkCount = chunkCount;
+    }
+}
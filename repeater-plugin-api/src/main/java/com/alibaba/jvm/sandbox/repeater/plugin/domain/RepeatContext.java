@@ -9,11 +9,12 @@ public class RepeatContext {
     private RepeatMeta meta;
     private RecordModel recordModel;
     private String traceId;
+    private SubInvocationIndex subInvocationIndex;
 
     public RepeatContext(RepeatMeta meta, RecordModel recordModel, String traceId) {
         this.meta = meta;
-        this.recordModel = recordModel;
         this.traceId = traceId;
+        setRecordModel(recordModel);
     }
 
     public RepeatMeta getMeta() {
@@ -30,6 +31,11 @@ public class RepeatContext {
 
     public void setRecordModel(RecordModel recordModel) {
         this.recordModel = recordModel;
+        this.subInvocationIndex = SubInvocationIndex.build(recordModel == null ? null : recordModel.getSubInvocations());
+    }
+
+    public SubInvocationIndex getSubInvocationIndex() {
+        return subInvocationIndex;
     }
 
     public String getTraceId() {
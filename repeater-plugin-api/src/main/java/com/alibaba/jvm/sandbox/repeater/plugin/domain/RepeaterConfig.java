@@ -46,6 +46,26 @@ public class RepeaterConfig implements java.io.Serializable{
      */
     private Integer sampleRate = 10000;
 
+    /**
+     * 开启自适应采样；开启后{@link #sampleRate}作为采样率上限，实际采样率按录制开销和投递队列压力自动调整
+     */
+    private boolean adaptiveSample;
+
+    /**
+     * 自适应采样的最低采样率（万分比）
+     */
+    private Integer minSampleRate = 1;
+
+    /**
+     * 自适应采样的录制开销预算：每秒允许的录制耗时（毫秒，按所有线程累计）
+     */
+    private Integer sampleOverheadBudget = 50;
+
+    /**
+     * 入口级别的采样规则（采样率、每秒录制数、最大载荷），按顺序匹配
+     */
+    private List<SampleRule> sampleRules = Lists.newArrayList();
+
     /**
      * 插件地址
      */
@@ -56,6 +76,21 @@ public class RepeaterConfig implements java.io.Serializable{
      */
     private List<String> httpEntrancePatterns = Lists.newArrayList();
 
+    /**
+     * HTTP请求body的采集上限（字节），超出上限的请求不录制；默认1MB
+     */
+    private Integer httpBodyCaptureLimit = 1024 * 1024;
+
+    /**
+     * HTTP返回值的采集上限（字节），超出部分不复制，录制的返回值带截断标记；默认1MB
+     */
+    private Integer httpResponseCaptureLimit = 1024 * 1024;
+
+    /**
+     * 录制的HTTP请求header白名单（不区分大小写），避免cookie/鉴权等大header随每条记录复制和序列化；为空时录制全部header
+     */
+    private List<String> httpHeaderAllowList = Lists.newArrayList();
+
     /**
      * java入口插件动态增强的行为
      */
@@ -76,6 +111,75 @@ public class RepeaterConfig implements java.io.Serializable{
      */
     private List<String> repeatIdentities = Lists.newArrayList();
 
+    /**
+     * 是否开启异步序列化
+     * <p>
+     * 开启之后，录制对象的序列化会从业务线程转移到独立的序列化线程池中进行，减少对业务rt的影响；默认关闭
+     * <p>
+     * 需要注意：异步序列化只持有入参/返回值的引用，不做拷贝。对象在调用返回之后如果还会被业务修改（如复用的DTO、继续填充的集合），
+     * 录制到的是序列化时的状态而不是调用时的状态，回放匹配和结果对比都会受影响；这类调用类型需要配置在{@link RepeaterConfig#inlineSerializeTypes}中
+     */
+    private boolean asyncSerialize;
+
+    /**
+     * 开启异步序列化后，仍然需要在业务线程中及时序列化的调用类型（入参/返回值为可变对象的场景）
+     *
+     * @see com.alibaba.jvm.sandbox.repeater.plugin.domain.InvokeType#name()
+     */
+    private List<String> inlineSerializeTypes = Lists.newArrayList();
+
+    /**
+     * 是否使用二进制传输录制/回放数据
+     * <p>
+     * 开启后调用的序列化结果直接以byte[]保存，消息投递以application/octet-stream发送，避免两次base64编码带来的体积膨胀和编解码开销；
+     * 需要服务端支持二进制接口
+     */
+    private boolean binaryTransport;
+
+    /**
+     * 共享类定义字典
+     * <p>
+     * 开启后同一条录制记录中的返回值/异常共用一份类定义（类名+字段名），每个序列化结果中只保存字典序号，字典随记录投递一次；
+     * 请求参数不使用字典，保持与回放时序列化结果逐字节可比；默认关闭
+     */
+    private boolean classDictionary = false;
+
+    /**
+     * 录制记录投递/存储时的压缩算法（NONE/DEFLATE/GZIP），默认不压缩
+     * <p>
+     * 只压缩整条记录的外层载荷，调用的序列化结果不压缩，不影响参数相似度匹配
+     */
+    private String compressType;
+
+    /**
+     * 调用（请求/返回值/异常）的序列化类型（HESSIAN/COMPACT），默认HESSIAN
+     * <p>
+     * COMPACT不写字段名、序列化结果更小更快，但要求录制端与回放端的类字段结构一致；序列化类型随调用记录，不同类型的记录可以混合回放
+     */
+    private String recordSerializer;
+
+    /**
+     * 单次调用链路最多录制的子调用数量，超出部分丢弃并计数
+     */
+    private Integer maxSubInvocations = 2000;
+
+    /**
+     * 单次调用链路在内存中缓冲的子调用序列化字节上限（只统计已及时序列化的调用），默认32MB
+     * <p>
+     * 未开启分片投递时超出部分丢弃并计数；开启分片投递时达到上限会提前投递一个分片
+     * <p>
+     * 只对在业务线程中及时序列化的调用生效：开启{@link RepeaterConfig#asyncSerialize}后，未配置在{@link RepeaterConfig#inlineSerializeTypes}中的调用
+     * 收集时尚未序列化、按0字节计，此时只有{@link RepeaterConfig#maxSubInvocations}和分片大小生效
+     */
+    private Long maxSubInvocationBytes = 32L * 1024 * 1024;
+
+    /**
+     * 子调用分片投递的分片大小；大于0时每缓冲这么多子调用就先行投递一个分片，入口完成时再投递入口记录，由服务端重组
+     * <p>
+     * 服务端在内存中重组分片，同一条记录的入口和分片必须投递到同一个服务端实例；默认0，不分片
+     */
+    private Integer subInvocationChunkSize = 0;
+
     public boolean isUseTtl() {
         return useTtl;
     }
@@ -155,4 +259,132 @@ public class RepeaterConfig implements java.io.Serializable{
     public void setRepeatIdentities(List<String> repeatIdentities) {
         this.repeatIdentities = repeatIdentities;
     }
+
+    public boolean isAsyncSerialize() {
+        return asyncSerialize;
+    }
+
+    public void setAsyncSerialize(boolean asyncSerialize) {
+        this.asyncSerialize = asyncSerialize;
+    }
+
+    public List<String> getInlineSerializeTypes() {
+        return inlineSerializeTypes;
+    }
+
+    public void setInlineSerializeTypes(List<String> inlineSerializeTypes) {
+        this.inlineSerializeTypes = inlineSerializeTypes;
+    }
+
+    public boolean isBinaryTransport() {
+        return binaryTransport;
+    }
+
+    public void setBinaryTransport(boolean binaryTransport) {
+        this.binaryTransport = binaryTransport;
+    }
+
+    public boolean isClassDictionary() {
+        return classDictionary;
+    }
+
+    public void setClassDictionary(boolean classDictionary) {
+        this.classDictionary = classDictionary;
+    }
+
+    public String getCompressType() {
+        return compressType;
+    }
+
+    public void setCompressType(String compressType) {
+        this.compressType = compressType;
+    }
+
+    public String getRecordSerializer() {
+        return recordSerializer;
+    }
+
+    public void setRecordSerializer(String recordSerializer) {
+        this.recordSerializer = recordSerializer;
+    }
+
+    public Integer getMaxSubInvocations() {
+        return maxSubInvocations;
+    }
+
+    public void setMaxSubInvocations(Integer maxSubInvocations) {
+        this.maxSubInvocations = maxSubInvocations;
+    }
+
+    public Long getMaxSubInvocationBytes() {
+        return maxSubInvocationBytes;
+    }
+
+    public void setMaxSubInvocationBytes(Long maxSubInvocationBytes) {
+        this.maxSubInvocationBytes = maxSubInvocationBytes;
+    }
+
+    public Integer getSubInvocationChunkSize() {
+        return subInvocationChunkSize;
+    }
+
+    public void setSubInvocationChunkSize(Integer subInvocationChunkSize) {
+        this.subInvocationChunkSize = subInvocationChunkSize;
+    }
+
+    public boolean isAdaptiveSample() {
+        return adaptiveSample;
+    }
+
+    public void setAdaptiveSample(boolean adaptiveSample) {
+        this.adaptiveSample = adaptiveSample;
+    }
+
+    public Integer getMinSampleRate() {
+        return minSampleRate;
+    }
+
+    public void setMinSampleRate(Integer minSampleRate) {
+        this.minSampleRate = minSampleRate;
+    }
+
+    public Integer getSampleOverheadBudget() {
+        return sampleOverheadBudget;
+    }
+
+    public void setSampleOverheadBudget(Integer sampleOverheadBudget) {
+        this.sampleOverheadBudget = sampleOverheadBudget;
+    }
+
+    public List<SampleRule> getSampleRules() {
+        return sampleRules;
+    }
+
+    public void setSampleRules(List<SampleRule> sampleRules) {
+        this.sampleRules = sampleRules;
+    }
+
+    public Integer getHttpBodyCaptureLimit() {
+        return httpBodyCaptureLimit;
+    }
+
+    public void setHttpBodyCaptureLimit(Integer httpBodyCaptureLimit) {
+        this.httpBodyCaptureLimit = httpBodyCaptureLimit;
+    }
+
+    public Integer getHttpResponseCaptureLimit() {
+        return httpResponseCaptureLimit;
+    }
+
+    public void setHttpResponseCaptureLimit(Integer httpResponseCaptureLimit) {
+        this.httpResponseCaptureLimit = httpResponseCaptureLimit;
+    }
+
+    public List<String> getHttpHeaderAllowList() {
+        return httpHeaderAllowList;
+    }
+
+    public void setHttpHeaderAllowList(List<String> httpHeaderAllowList) {
+        this.httpHeaderAllowList = httpHeaderAllowList;
+    }
 }
\ No newline at end of file
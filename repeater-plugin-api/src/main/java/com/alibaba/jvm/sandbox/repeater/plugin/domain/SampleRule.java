@@ -0,0 +1,78 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.domain;
+
+/**
+ * {@link SampleRule} 入口级别的采样规则
+ * <p>
+ * 按入口类型 + 入口标识（http入口为requestURI，java入口为{@code 类名#方法名}）匹配，按配置顺序取第一条命中的规则；
+ * 未配置的项沿用全局配置
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+public class SampleRule implements java.io.Serializable {
+
+    /**
+     * 入口类型，对应{@link InvokeType#name()}；为空时匹配所有类型
+     */
+    private String invokeType;
+
+    /**
+     * 入口标识的匹配正则
+     */
+    private String pattern;
+
+    /**
+     * 采样率（万分比）；为空时使用全局{@link RepeaterConfig#getSampleRate()}
+     */
+    private Integer sampleRate;
+
+    /**
+     * 每秒最多录制的记录数（令牌桶）；为空或小于等于0时不限制
+     */
+    private Integer maxRecordsPerSecond;
+
+    /**
+     * 入口调用序列化后（请求+返回值）的最大字节数，超出后放弃该条记录；为空或小于等于0时不限制
+     */
+    private Integer maxPayloadSize;
+
+    public String getInvokeType() {
+        return invokeType;
+    }
+
+    public void setInvokeType(String invokeType) {
+        this.invokeType = invokeType;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public void setPattern(String pattern) {
+        this.pattern = pattern;
+    }
+
+    public Integer getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(Integer sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public Integer getMaxRecordsPerSecond() {
+        return maxRecordsPerSecond;
+    }
+
+    public void setMaxRecordsPerSecond(Integer maxRecordsPerSecond) {
+        this.maxRecordsPerSecond = maxRecordsPerSecond;
+    }
+
+    public Integer getMaxPayloadSize() {
+        return maxPayloadSize;
+    }
+
+    public void setMaxPayloadSize(Integer maxPayloadSize) {
+        this.maxPayloadSize = maxPayloadSize;
+    }
+}
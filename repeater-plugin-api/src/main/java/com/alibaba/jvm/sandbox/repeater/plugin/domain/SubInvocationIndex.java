@@ -0,0 +1,192 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.domain;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * {@link SubInvocationIndex} 回放上下文中的子调用候选索引
+ * <p>
+ * 创建回放上下文时按{@link Identity#getUri()}对录制的子调用分组，每组按{@link Invocation#getIndex()}排好序；
+ * mock时直接取对应URI的候选，命中后从组内移除（按顺序消费时为O(1)），不再扫描和排序全部子调用
+ * </p>
+ * <p>
+ * 组内再按{@link Invocation#getRequestDigest()}分桶，参数完全一致的调用可以直接按摘要命中；
+ * 未记录摘要的历史录制数据在构建索引时按请求的序列化结果补算（子调用此时还没有反序列化）
+ * </p>
+ * <p>
+ * 同一次回放的子调用可能在多个线程中发生，组内操作以组为单位加锁
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+public class SubInvocationIndex {
+
+    private final Map<String, Bucket> buckets;
+
+    private SubInvocationIndex(Map<String, Bucket> buckets) {
+        this.buckets = buckets;
+    }
+
+    /**
+     * 根据录制的子调用构建索引
+     *
+     * @param subInvocations 录制子调用
+     * @return 索引
+     */
+    public static SubInvocationIndex build(List<Invocation> subInvocations) {
+        Map<String, Bucket> buckets = new HashMap<String, Bucket>();
+        if (subInvocations == null || subInvocations.isEmpty()) {
+            return new SubInvocationIndex(buckets);
+        }
+        List<Invocation> sorted = new ArrayList<Invocation>(subInvocations);
+        Collections.sort(sorted, new Comparator<Invocation>() {
+            @Override
+            public int compare(Invocation o1, Invocation o2) {
+                return o1.getIndex() - o2.getIndex();
+            }
+        });
+        for (Invocation invocation : sorted) {
+            if (invocation.getIdentity() == null) {
+                continue;
+            }
+            String uri = invocation.getIdentity().getUri();
+            Bucket bucket = buckets.get(uri);
+            if (bucket == null) {
+                bucket = new Bucket();
+                buckets.put(uri, bucket);
+            }
+            fillDigest(invocation);
+            bucket.add(invocation);
+        }
+        return new SubInvocationIndex(buckets);
+    }
+
+    /**
+     * 计算序列化结果的64位摘要(murmur3_128)
+     *
+     * @param bytes 序列化byte数组
+     * @return 摘要
+     */
+    public static long digest(byte[] bytes) {
+        return Hashing.murmur3_128().hashBytes(bytes).asLong();
+    }
+
+    /**
+     * 补算历史录制数据缺失的请求摘要
+     *
+     * @param invocation 子调用
+     */
+    private static void fillDigest(Invocation invocation) {
+        if (invocation.getRequestDigest() != null) {
+            return;
+        }
+        if (invocation.getRequestSerializedBytes() != null) {
+            invocation.setRequestDigest(digest(invocation.getRequestSerializedBytes()));
+        } else if (invocation.getRequestSerialized() != null) {
+            invocation.setRequestDigest(digest(BaseEncoding.base64().decode(invocation.getRequestSerialized())));
+        }
+    }
+
+    /**
+     * 获取URI对应的剩余候选（按录制顺序）
+     *
+     * @param uri 调用URI
+     * @return 候选快照
+     */
+    public List<Invocation> candidates(String uri) {
+        Bucket bucket = buckets.get(uri);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        synchronized (bucket) {
+            return new ArrayList<Invocation>(bucket.ordered);
+        }
+    }
+
+    /**
+     * 获取URI下请求摘要一致的剩余候选（按录制顺序）；摘要可能碰撞，调用方需要自行校验
+     *
+     * @param uri    调用URI
+     * @param digest 请求摘要
+     * @return 候选快照
+     */
+    public List<Invocation> candidates(String uri, long digest) {
+        Bucket bucket = buckets.get(uri);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        synchronized (bucket) {
+            Deque<Invocation> deque = bucket.digested.get(digest);
+            return deque == null ? Collections.<Invocation>emptyList() : new ArrayList<Invocation>(deque);
+        }
+    }
+
+    /**
+     * 消费一个候选；命中队首时为O(1)
+     *
+     * @param uri        调用URI
+     * @param invocation 命中的子调用
+     * @return 是否移除成功（已被其他线程消费时返回false）
+     */
+    public boolean consume(String uri, Invocation invocation) {
+        Bucket bucket = buckets.get(uri);
+        if (bucket == null) {
+            return false;
+        }
+        synchronized (bucket) {
+            return bucket.remove(invocation);
+        }
+    }
+
+    private static class Bucket {
+
+        private final Deque<Invocation> ordered = new ArrayDeque<Invocation>();
+
+        private final Map<Long, Deque<Invocation>> digested = new HashMap<Long, Deque<Invocation>>();
+
+        private void add(Invocation invocation) {
+            ordered.addLast(invocation);
+            if (invocation.getRequestDigest() != null) {
+                Deque<Invocation> deque = digested.get(invocation.getRequestDigest());
+                if (deque == null) {
+                    deque = new ArrayDeque<Invocation>();
+                    digested.put(invocation.getRequestDigest(), deque);
+                }
+                deque.addLast(invocation);
+            }
+        }
+
+        private boolean remove(Invocation invocation) {
+            if (!removeFrom(ordered, invocation)) {
+                return false;
+            }
+            if (invocation.getRequestDigest() != null) {
+                Deque<Invocation> deque = digested.get(invocation.getRequestDigest());
+                if (deque != null) {
+                    removeFrom(deque, invocation);
+                    if (deque.isEmpty()) {
+                        digested.remove(invocation.getRequestDigest());
+                    }
+                }
+            }
+            return true;
+        }
+
+        private static boolean removeFrom(Deque<Invocation> deque, Invocation invocation) {
+            if (deque.peekFirst() == invocation) {
+                deque.pollFirst();
+                return true;
+            }
+            return deque.removeFirstOccurrence(invocation);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import com.alibaba.jvm.sandbox.repeater.plugin.domain.Identity;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.InvokeType;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RecordModel;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeatMeta;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.SubInvocationIndex;
 
 
 
@@ -39,8 +40,10 @@ public class MockRequest {
 
     private Set<Identity> modifiedInvocationIdentity;
 
-    @ConstructorProperties({"event", "argumentArray", "type", "recordModel", "meta", "identity", "traceId", "repeatId", "index", "modifiedInvocationIdentity"})
-    MockRequest(BeforeEvent event, Object[] argumentArray, InvokeType type, RecordModel recordModel, RepeatMeta meta, Identity identity, String traceId, String repeatId, int index, Set<Identity> modifiedInvocationIdentity) {
+    private SubInvocationIndex subInvocationIndex;
+
+    @ConstructorProperties({"event", "argumentArray", "type", "recordModel", "meta", "identity", "traceId", "repeatId", "index", "modifiedInvocationIdentity", "subInvocationIndex"})
+    MockRequest(BeforeEvent event, Object[] argumentArray, InvokeType type, RecordModel recordModel, RepeatMeta meta, Identity identity, String traceId, String repeatId, int index, Set<Identity> modifiedInvocationIdentity, SubInvocationIndex subInvocationIndex) {
         this.event = event;
         this.argumentArray = argumentArray;
         this.type = type;
@@ -51,6 +54,7 @@ public class MockRequest {
         this.repeatId = repeatId;
         this.index = index;
         this.modifiedInvocationIdentity = modifiedInvocationIdentity;
+        this.subInvocationIndex = subInvocationIndex;
     }
 
     public static MockRequest.MockRequestBuilder builder() {
@@ -136,6 +140,14 @@ public class MockRequest {
         this.modifiedInvocationIdentity = modifiedInvocationIdentity;
     }
 
+    public SubInvocationIndex getSubInvocationIndex() {
+        return subInvocationIndex;
+    }
+
+    public void setSubInvocationIndex(SubInvocationIndex subInvocationIndex) {
+        this.subInvocationIndex = subInvocationIndex;
+    }
+
     public static class MockRequestBuilder {
         private BeforeEvent event;
         private Object[] argumentArray;
@@ -147,6 +159,7 @@ public class MockRequest {
         private String repeatId;
         private int index;
         private Set<Identity> modifiedInvocationIdentity;
+        private SubInvocationIndex subInvocationIndex;
 
         MockRequestBuilder() {
         }
@@ -201,13 +214,18 @@ public class MockRequest {
             return this;
         }
 
+        public MockRequest.MockRequestBuilder subInvocationIndex(SubInvocationIndex subInvocationIndex) {
+            this.subInvocationIndex = subInvocationIndex;
+            return this;
+        }
+
         public MockRequest build() {
-            return new MockRequest(this.event, this.argumentArray, this.type, this.recordModel, this.meta, this.identity, this.traceId, this.repeatId, this.index, this.modifiedInvocationIdentity);
+            return new MockRequest(this.event, this.argumentArray, this.type, this.recordModel, this.meta, this.identity, this.traceId, this.repeatId, this.index, this.modifiedInvocationIdentity, this.subInvocationIndex);
         }
 
         @Override
         public String toString() {
-            return "MockRequest.MockRequestBuilder(event=" + this.event + ", argumentArray=" + Arrays.deepToString(this.argumentArray) + ", type=" + this.type + ", recordModel=" + this.recordModel + ", meta=" + this.meta + ", identity=" + this.identity + ", traceId=" + this.traceId + ", repeatId=" + this.repeatId + ", index=" + this.index + ", modifiedInvocationIdentity=" + this.modifiedInvocationIdentity + ")";
+            return "MockRequest.MockRequestBuilder(event=" + this.event + ", argumentArray=" + Arrays.deepToString(this.argumentArray) + ", type=" + this.type + ", recordModel=" + this.recordModel + ", meta=" + this.meta + ", identity=" + this.identity + ", traceId=" + this.traceId + ", repeatId=" + this.repeatId + ", index=" + this.index + ", modifiedInvocationIdentity=" + this.modifiedInvocationIdentity + ", subInvocationIndex=" + this.subInvocationIndex + ")";
         }
     }
 }
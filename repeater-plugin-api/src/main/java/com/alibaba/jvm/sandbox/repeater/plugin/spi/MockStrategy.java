@@ -34,6 +34,11 @@ public interface MockStrategy {
          */
         PARAMETER_MATCH("parameter_match"),
 
+        /**
+         * 参数结构化对比（逐字段摘要比较）
+         */
+        OBJECT_MATCH("object_match"),
+
         /**
          * 默认回放策略，阻断所有子调用
          */
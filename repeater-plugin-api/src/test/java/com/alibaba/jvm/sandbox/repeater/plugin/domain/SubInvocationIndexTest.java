@@ -0,0 +1,99 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link SubInvocationIndexTest} {@link SubInvocationIndex}的分组、摘要分桶和消费
+ * <p>
+ *
+ * @author zhaoyb1990
+ */
+public class SubInvocationIndexTest {
+
+    private static final String QUERY = "mybatis://select/user";
+
+    private static final String UPDATE = "mybatis://update/user";
+
+    @Test
+    public void testCandidatesOrderedByIndex() {
+        Invocation second = invocation(QUERY, 2, null);
+        Invocation first = invocation(QUERY, 1, null);
+        Invocation other = invocation(UPDATE, 3, null);
+        SubInvocationIndex index = SubInvocationIndex.build(Arrays.asList(second, other, first));
+        Assert.assertEquals(Arrays.asList(first, second), index.candidates(QUERY));
+        Assert.assertEquals(Arrays.asList(other), index.candidates(UPDATE));
+        Assert.assertTrue(index.candidates("mybatis://delete/user").isEmpty());
+    }
+
+    @Test
+    public void testConsume() {
+        Invocation first = invocation(QUERY, 1, null);
+        Invocation second = invocation(QUERY, 2, null);
+        Invocation third = invocation(QUERY, 3, null);
+        SubInvocationIndex index = SubInvocationIndex.build(Arrays.asList(first, second, third));
+        // 非队首元素
+        Assert.assertTrue(index.consume(QUERY, second));
+        Assert.assertFalse(index.consume(QUERY, second));
+        Assert.assertTrue(index.consume(QUERY, first));
+        Assert.assertEquals(Arrays.asList(third), index.candidates(QUERY));
+        Assert.assertFalse(index.consume(UPDATE, third));
+    }
+
+    @Test
+    public void testDigestBuckets() {
+        byte[] request = "request-a".getBytes(Charsets.UTF_8);
+        long digest = SubInvocationIndex.digest(request);
+        Invocation first = invocation(QUERY, 1, null);
+        first.setRequestDigest(digest);
+        Invocation second = invocation(QUERY, 2, null);
+        second.setRequestDigest(SubInvocationIndex.digest("request-b".getBytes(Charsets.UTF_8)));
+        Invocation third = invocation(QUERY, 3, null);
+        third.setRequestDigest(digest);
+        SubInvocationIndex index = SubInvocationIndex.build(Arrays.asList(first, second, third));
+        Assert.assertEquals(Arrays.asList(first, third), index.candidates(QUERY, digest));
+        Assert.assertTrue(index.consume(QUERY, first));
+        Assert.assertEquals(Arrays.asList(third), index.candidates(QUERY, digest));
+        Assert.assertTrue(index.consume(QUERY, third));
+        Assert.assertTrue(index.candidates(QUERY, digest).isEmpty());
+        Assert.assertEquals(Arrays.asList(second), index.candidates(QUERY));
+    }
+
+    /**
+     * 未记录摘要的历史数据按请求的序列化结果补算，字符串和二进制载体结果一致
+     */
+    @Test
+    public void testFillMissingDigest() {
+        byte[] request = "request-a".getBytes(Charsets.UTF_8);
+        Invocation binary = invocation(QUERY, 1, null);
+        binary.setRequestSerializedBytes(request);
+        Invocation text = invocation(QUERY, 2, BaseEncoding.base64().encode(request));
+        Invocation empty = invocation(QUERY, 3, null);
+        SubInvocationIndex index = SubInvocationIndex.build(Arrays.asList(binary, text, empty));
+        long digest = SubInvocationIndex.digest(request);
+        Assert.assertEquals(Long.valueOf(digest), binary.getRequestDigest());
+        Assert.assertEquals(Long.valueOf(digest), text.getRequestDigest());
+        Assert.assertNull(empty.getRequestDigest());
+        Assert.assertEquals(Arrays.asList(binary, text), index.candidates(QUERY, digest));
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertTrue(SubInvocationIndex.build(null).candidates(QUERY).isEmpty());
+        Assert.assertTrue(SubInvocationIndex.build(new ArrayList<Invocation>()).candidates(QUERY, 1L).isEmpty());
+    }
+
+    private Invocation invocation(String uri, int index, String requestSerialized) {
+        Invocation invocation = new Invocation();
+        invocation.setIdentity(new Identity(uri));
+        invocation.setIndex(index);
+        invocation.setRequestSerialized(requestSerialized);
+        return invocation;
+    }
+}
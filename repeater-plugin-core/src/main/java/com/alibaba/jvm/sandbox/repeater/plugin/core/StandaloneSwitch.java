@@ -7,6 +7,7 @@ import com.alibaba.jvm.sandbox.repeater.plugin.core.impl.api.DefaultBroadcaster;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.impl.api.DefaultConfigManager;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.impl.standalone.StandaloneBroadcaster;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.impl.standalone.StandaloneConfigManager;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.AdaptiveSampler;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.util.PropertyUtil;
 
 /**
@@ -38,6 +39,7 @@ public class StandaloneSwitch {
             configManager = new DefaultConfigManager();
             broadcaster = new DefaultBroadcaster();
         }
+        AdaptiveSampler.instance().watch(broadcaster);
     }
 
     public ConfigManager getConfigManager() {
@@ -54,6 +56,7 @@ public class StandaloneSwitch {
 
     public void setBroadcaster(Broadcaster broadcaster) {
         this.broadcaster = broadcaster;
+        AdaptiveSampler.instance().watch(broadcaster);
     }
 }
 
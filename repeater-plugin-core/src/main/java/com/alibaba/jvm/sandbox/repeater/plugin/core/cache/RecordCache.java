@@ -1,15 +1,22 @@
 package com.alibaba.jvm.sandbox.repeater.plugin.core.cache;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.alibaba.jvm.sandbox.repeater.plugin.core.util.IntObjectMap;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.Invocation;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * {@link RecordCache} 录制缓存
@@ -19,16 +26,29 @@ import com.google.common.collect.Lists;
  */
 public class RecordCache {
 
-    private static final LoadingCache<Integer, Invocation> INVOCATION_CACHE = CacheBuilder
-            .newBuilder()
-            .maximumSize(4096)
-            .expireAfterWrite(30, TimeUnit.SECONDS)
-            .build(new CacheLoader<Integer, Invocation>() {
-                @Override
-                public Invocation load(Integer s) throws Exception {
-                    return new Invocation();
-                }
-            });
+    private final static Logger log = LoggerFactory.getLogger(RecordCache.class);
+
+    /**
+     * 未被取走的调用超过该时间视为孤儿（只有BEFORE没有RETURN/THROWS）
+     */
+    private static final long ORPHAN_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * 每放置多少次检查一次是否需要清理
+     */
+    private static final int SWEEP_CHECK_MASK = 1023;
+
+    private static final IntObjectMap<Invocation> INVOCATION_CACHE = new IntObjectMap<Invocation>();
+
+    private static final AtomicInteger PUT_COUNT = new AtomicInteger();
+
+    private static final AtomicLong LAST_SWEEP = new AtomicLong(System.currentTimeMillis());
+
+    private static final AtomicLong ORPHAN_BEFORE = new AtomicLong();
+
+    private static final AtomicLong ORPHAN_FINISH = new AtomicLong();
+
+    private static final AtomicLong SUB_INVOCATION_OVERFLOW = new AtomicLong();
 
     private static final LoadingCache<String, List<Invocation>> SUB_INVOCATION_CACHE = CacheBuilder
             .newBuilder()
@@ -37,32 +57,103 @@ public class RecordCache {
             .build(new CacheLoader<String, List<Invocation>>() {
                 @Override
                 public List<Invocation> load(String s){
-                    return Lists.newArrayList();
+                    return Collections.synchronizedList(Lists.<Invocation>newArrayList());
                 }
             });
 
+    /**
+     * 入口未完成时追踪已经结束（如异步http），已投递的子调用分片数量随子调用一起转存，由完成时的线程取走
+     */
+    private static final Cache<String, Integer> PARKED_CHUNK_COUNT = CacheBuilder
+            .newBuilder()
+            .maximumSize(4096)
+            .expireAfterWrite(30, TimeUnit.SECONDS)
+            .build();
+
     /**
      * 缓存调用；根据{@link com.alibaba.jvm.sandbox.api.event.InvokeEvent#invokeId}进行缓存，根据traceId在多入口场景下会乱
+     * <p>
+     * 不做容量淘汰，调用完成时需要{@link #removeInvocation(int)}；超时未取走的调用会被定期清理并计入孤儿
      *
      * @param invokeId   调用ID
      * @param invocation 调用
      */
     public static void cacheInvocation(int invokeId, Invocation invocation) {
-        INVOCATION_CACHE.put(invokeId, invocation);
+        final long now = System.currentTimeMillis();
+        INVOCATION_CACHE.put(invokeId, invocation, now);
+        if ((PUT_COUNT.incrementAndGet() & SWEEP_CHECK_MASK) == 0) {
+            sweepIfNecessary(now);
+        }
     }
 
     /**
-     * 获取调用
+     * 获取调用（不移除）
      *
      * @param invokeId 调用ID
      * @return 调用
      */
     public static Invocation getInvocation(int invokeId) {
-        return INVOCATION_CACHE.getIfPresent(invokeId);
+        return INVOCATION_CACHE.get(invokeId);
+    }
+
+    /**
+     * 取走调用；调用完成时使用
+     *
+     * @param invokeId 调用ID
+     * @return 调用，不存在时返回null并计入孤儿
+     */
+    public static Invocation removeInvocation(int invokeId) {
+        Invocation invocation = INVOCATION_CACHE.remove(invokeId);
+        if (invocation == null) {
+            ORPHAN_FINISH.incrementAndGet();
+        }
+        return invocation;
+    }
+
+    /**
+     * 只有BEFORE、超时被清理的调用数量
+     *
+     * @return 数量
+     */
+    public static long getOrphanBeforeCount() {
+        return ORPHAN_BEFORE.get();
+    }
+
+    /**
+     * 找不到BEFORE的RETURN/THROWS数量
+     *
+     * @return 数量
+     */
+    public static long getOrphanFinishCount() {
+        return ORPHAN_FINISH.get();
+    }
+
+    /**
+     * 当前等待完成的调用数量
+     *
+     * @return 数量
+     */
+    public static int getPendingInvocationCount() {
+        return INVOCATION_CACHE.size();
+    }
+
+    private static void sweepIfNecessary(long now) {
+        long last = LAST_SWEEP.get();
+        if (now - last < ORPHAN_TIMEOUT || !LAST_SWEEP.compareAndSet(last, now)) {
+            return;
+        }
+        int swept = INVOCATION_CACHE.sweep(now - ORPHAN_TIMEOUT);
+        if (swept > 0) {
+            ORPHAN_BEFORE.addAndGet(swept);
+            log.warn("sweep {} orphan invocations which have no return/throw event in {}ms", swept, ORPHAN_TIMEOUT);
+        }
     }
 
     /**
      * 缓存子调用
+     * <p>
+     * 子调用优先收集在{@link com.alibaba.jvm.sandbox.repeater.plugin.core.trace.TraceContext}上，
+     * 这里只承接拿不到上下文的子调用（跨线程且未开启ttl、入口在其他线程完成等）
      *
      * @param invocation 子调用
      */
@@ -74,6 +165,42 @@ public class RecordCache {
         }
     }
 
+    /**
+     * 批量缓存子调用；追踪结束时入口还未完成（如异步http），将上下文中收集到的子调用和已投递的分片数量转存
+     *
+     * @param traceId        追踪ID
+     * @param subInvocations 子调用
+     * @param chunkCount     已投递的分片数量
+     */
+    public static void cacheSubInvocations(String traceId, List<Invocation> subInvocations, int chunkCount) {
+        if (chunkCount > 0) {
+            PARKED_CHUNK_COUNT.put(traceId, chunkCount);
+        }
+        if (subInvocations.isEmpty()) {
+            return;
+        }
+        try {
+            SUB_INVOCATION_CACHE.get(traceId).addAll(subInvocations);
+        } catch (ExecutionException e) {
+            // impossible
+        }
+    }
+
+    /**
+     * 取走转存的分片数量
+     *
+     * @param traceId 追踪ID
+     * @return 分片数量；没有转存返回0
+     */
+    public static int getChunkCount(String traceId) {
+        try {
+            Integer chunkCount = PARKED_CHUNK_COUNT.getIfPresent(traceId);
+            return chunkCount == null ? 0 : chunkCount;
+        } finally {
+            PARKED_CHUNK_COUNT.invalidate(traceId);
+        }
+    }
+
     public static List<Invocation> getSubInvocation(String traceId) {
         try{
             return SUB_INVOCATION_CACHE.getIfPresent(traceId);
@@ -81,4 +208,20 @@ public class RecordCache {
             SUB_INVOCATION_CACHE.invalidate(traceId);
         }
     }
+
+    /**
+     * 记录超出单链路上限被丢弃的子调用
+     */
+    public static void subInvocationOverflow() {
+        SUB_INVOCATION_OVERFLOW.incrementAndGet();
+    }
+
+    /**
+     * 超出单链路上限被丢弃的子调用数量
+     *
+     * @return 数量
+     */
+    public static long getSubInvocationOverflowCount() {
+        return SUB_INVOCATION_OVERFLOW.get();
+    }
 }
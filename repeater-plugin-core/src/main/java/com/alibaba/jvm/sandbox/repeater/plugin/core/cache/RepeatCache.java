@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.TraceContext;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.Tracer;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.MockInvocation;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RecordModel;
@@ -68,7 +69,7 @@ public class RepeatCache {
      * @return 是否回放流量
      */
     public static boolean isRepeatFlow() {
-        return StringUtils.isNotEmpty(Tracer.getTraceId()) && CONTEXT_CACHE.getIfPresent(Tracer.getTraceId()) != null;
+        return Tracer.isRepeatFlow();
     }
 
     /**
@@ -79,6 +80,11 @@ public class RepeatCache {
      */
     public static void putRepeatContext(RepeatContext context) {
         CONTEXT_CACHE.put(context.getTraceId(), context);
+        // 追踪已经开启的情况下（如standalone模式入口处拉取录制记录）直接标记当前上下文
+        TraceContext current = Tracer.getContext();
+        if (current != null && StringUtils.equals(current.getTraceId(), context.getTraceId())) {
+            current.setRepeatFlow(true);
+        }
     }
 
     /**
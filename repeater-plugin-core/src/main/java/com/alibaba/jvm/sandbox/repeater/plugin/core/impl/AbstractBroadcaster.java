@@ -1,13 +1,16 @@
 package com.alibaba.jvm.sandbox.repeater.plugin.core.impl;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.alibaba.jvm.sandbox.repeater.plugin.api.Broadcaster;
-import com.alibaba.jvm.sandbox.repeater.plugin.core.util.ExecutorInner;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RecordModel;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeatModel;
 
@@ -20,6 +23,9 @@ import org.slf4j.LoggerFactory;
  * <p>
  * 由于录制过程发生在程序调用期间；因此序列化/消息发送需要异步进行，不占用主程序的rt（response time）
  * <p/>
+ * 录制消息进入有界阻塞队列，消费线程阻塞等待消息，按批次（数量达到{@link AbstractBroadcaster#maxBatchSize}或者等待超过{@link AbstractBroadcaster#maxBatchDelay}）
+ * 取出后交给{@link AbstractBroadcaster#broadcastRecords(List)}一次投递
+ * <p/>
  *
  * @author zhaoyb1990
  */
@@ -27,12 +33,18 @@ public abstract class AbstractBroadcaster implements Broadcaster {
 
     protected final static Logger log = LoggerFactory.getLogger(AbstractBroadcaster.class);
 
-    private final ConcurrentLinkedQueue<RecordModel> queue = new ConcurrentLinkedQueue<RecordModel>();
-
     /**
      * 最大队列深度
      */
     private final static int maxQueueSize = 4096;
+    /**
+     * 单批次最大消息数
+     */
+    private final static int maxBatchSize = 32;
+    /**
+     * 单批次最长等待时间（毫秒）
+     */
+    private final static long maxBatchDelay = 10L;
     /**
      * 消费队列任务数
      */
@@ -45,6 +57,23 @@ public abstract class AbstractBroadcaster implements Broadcaster {
         new BasicThreadFactory.Builder().namingPattern("queue-consumer-pool-%d").build(),
         new ThreadPoolExecutor.CallerRunsPolicy());
 
+    private final BlockingQueue<RecordModel> queue = new ArrayBlockingQueue<RecordModel>(maxQueueSize);
+
+    /**
+     * 入队消息数
+     */
+    private final AtomicLong enqueuedCount = new AtomicLong();
+
+    /**
+     * 队列满被丢弃的消息数
+     */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * 投递批次数
+     */
+    private final AtomicLong batchCount = new AtomicLong();
+
     public AbstractBroadcaster() {
         for (int i = 0; i < consumerThreadNum; i++) {
             executor.execute(new QueueConsumerTask());
@@ -53,12 +82,12 @@ public abstract class AbstractBroadcaster implements Broadcaster {
 
     @Override
     public void sendRecord(RecordModel recordModel) {
-        final int size = queue.size();
-        if (size >= maxQueueSize) {
-            log.info("can't offer queue cause size limit,aboard this record;current={},max={}", size, maxQueueSize);
+        if (!queue.offer(recordModel)) {
+            long dropped = droppedCount.incrementAndGet();
+            log.info("can't offer queue cause size limit,aboard this record;max={},dropped={}", maxQueueSize, dropped);
             return;
         }
-        queue.offer(recordModel);
+        enqueuedCount.incrementAndGet();
     }
 
     @Override
@@ -73,6 +102,17 @@ public abstract class AbstractBroadcaster implements Broadcaster {
      */
     abstract protected void broadcastRecord(RecordModel recordModel);
 
+    /**
+     * 批量执行消息分发；默认逐条分发，支持批量接口的实现可以覆盖
+     *
+     * @param recordModels 录制消息
+     */
+    protected void broadcastRecords(List<RecordModel> recordModels) {
+        for (RecordModel recordModel : recordModels) {
+            broadcastRecord(recordModel);
+        }
+    }
+
     /**
      * 真正执行消息分发
      *
@@ -80,6 +120,26 @@ public abstract class AbstractBroadcaster implements Broadcaster {
      */
     abstract protected void broadcastRepeat(RepeatModel record);
 
+    public long getEnqueuedCount() {
+        return enqueuedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return maxQueueSize;
+    }
+
     /**
      * 消费队列任务（线程比较消耗CPU，因为存在多次序列化动作）
      */
@@ -89,24 +149,46 @@ public abstract class AbstractBroadcaster implements Broadcaster {
 
         @Override
         public void run() {
+            final List<RecordModel> batch = new ArrayList<RecordModel>(maxBatchSize);
             while (working) {
                 try {
-                    final RecordModel recordModel = queue.poll();
-                    if (recordModel != null) {
-                        ExecutorInner.execute(new Runnable() {
-                            @Override
-                            public void run() {
-                                broadcastRecord(recordModel);
-                            }
-                        });
-                    } else {
-                        Thread.sleep(50);
-                    }
+                    drainBatch(batch);
+                    batchCount.incrementAndGet();
+                    broadcastRecords(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    working = false;
                 } catch (Throwable throwable) {
                     log.error("uncaught exception occurred in queue consumer thread : {};stop this job",
                         Thread.currentThread().getName(), throwable);
                     working = false;
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        /**
+         * 阻塞直到取到第一条消息，然后在{@link AbstractBroadcaster#maxBatchDelay}内尽量凑满一个批次
+         *
+         * @param batch 批次容器
+         * @throws InterruptedException 线程中断
+         */
+        private void drainBatch(List<RecordModel> batch) throws InterruptedException {
+            batch.add(queue.take());
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBatchDelay);
+            while (batch.size() < maxBatchSize) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                RecordModel recordModel = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (recordModel == null) {
+                    break;
                 }
+                batch.add(recordModel);
+                queue.drainTo(batch, maxBatchSize - batch.size());
             }
         }
     }
@@ -64,6 +64,7 @@ public abstract class AbstractInvocationProcessor implements InvocationProcessor
                         .identity(this.assembleIdentity(event))
                         .meta(context.getMeta())
                         .recordModel(context.getRecordModel())
+                        .subInvocationIndex(context.getSubInvocationIndex())
                         .traceId(context.getTraceId())
                         .type(type)
                         .repeatId(context.getMeta().getRepeatId())
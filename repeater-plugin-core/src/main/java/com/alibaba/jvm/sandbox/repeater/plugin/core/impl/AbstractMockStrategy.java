@@ -1,9 +1,17 @@
 package com.alibaba.jvm.sandbox.repeater.plugin.core.impl;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
 import com.alibaba.jvm.sandbox.repeater.plugin.core.cache.RepeatCache;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.SequenceGenerator;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.SerializerWrapper;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.Invocation;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.MockInvocation;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.SubInvocationIndex;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.mock.MockRequest;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.mock.MockResponse;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.mock.MockResponse.Action;
@@ -11,6 +19,7 @@ import com.alibaba.jvm.sandbox.repeater.plugin.domain.mock.SelectResult;
 import com.alibaba.jvm.sandbox.repeater.plugin.exception.RepeatException;
 import com.alibaba.jvm.sandbox.repeater.plugin.spi.MockStrategy;
 
+import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,6 +65,8 @@ public abstract class AbstractMockStrategy implements MockStrategy {
             RepeatCache.addMockInvocation(mi);
             // matching success
             if (select.isMatch() && invocation != null) {
+                // 子调用在拉取时没有反序列化，命中后才解出返回值
+                SerializerWrapper.materialize(invocation);
                 response = MockResponse.builder()
                         .action(invocation.getThrowable() == null ? Action.RETURN_IMMEDIATELY : Action.THROWS_IMMEDIATELY)
                         .throwable(invocation.getThrowable())
@@ -82,4 +93,84 @@ public abstract class AbstractMockStrategy implements MockStrategy {
         }
         return response;
     }
+
+    /**
+     * 获取当前调用URI对应的候选子调用（按录制顺序）
+     * <p>
+     * 优先使用回放上下文中的{@link SubInvocationIndex}；没有索引时退化为遍历全部子调用过滤并排序
+     *
+     * @param request mock回放请求
+     * @return 候选子调用
+     */
+    protected List<Invocation> candidates(final MockRequest request) {
+        final String uri = request.getIdentity().getUri();
+        SubInvocationIndex index = request.getSubInvocationIndex();
+        if (index != null) {
+            return index.candidates(uri);
+        }
+        List<Invocation> target = Lists.newArrayList();
+        List<Invocation> subInvocations = request.getRecordModel().getSubInvocations();
+        if (subInvocations == null) {
+            return target;
+        }
+        for (Invocation invocation : subInvocations) {
+            if (invocation.getIdentity().getUri().equals(uri)) {
+                target.add(invocation);
+            }
+        }
+        Collections.sort(target, new Comparator<Invocation>() {
+            @Override
+            public int compare(Invocation o1, Invocation o2) {
+                return o1.getIndex() - o2.getIndex();
+            }
+        });
+        return target;
+    }
+
+    /**
+     * 消费命中的子调用，同一条子调用只会被mock一次
+     *
+     * @param request    mock回放请求
+     * @param invocation 命中的子调用
+     */
+    protected void consume(final MockRequest request, final Invocation invocation) {
+        SubInvocationIndex index = request.getSubInvocationIndex();
+        if (index != null) {
+            index.consume(request.getIdentity().getUri(), invocation);
+            return;
+        }
+        Iterator<Invocation> ite = request.getRecordModel().getSubInvocations().iterator();
+        while (ite.hasNext()) {
+            if (invocation.equals(ite.next())) {
+                ite.remove();
+                break;
+            }
+        }
+    }
+
+    /**
+     * 按请求摘要精确匹配；摘要命中后再逐字节校验，未命中返回null由调用方走相似度匹配
+     *
+     * @param request    mock回放请求
+     * @param serialized 当前调用参数的序列化结果
+     * @return 命中的子调用（已消费）
+     */
+    protected Invocation exactMatch(final MockRequest request, final byte[] serialized) {
+        SubInvocationIndex index = request.getSubInvocationIndex();
+        if (index == null || serialized == null) {
+            return null;
+        }
+        final String uri = request.getIdentity().getUri();
+        for (Invocation invocation : index.candidates(uri, SerializerWrapper.digest(serialized))) {
+            // 被修改过的子调用录制摘要已失效
+            if (request.getModifiedInvocationIdentity() != null &&
+                    request.getModifiedInvocationIdentity().contains(invocation.getIdentity())) {
+                continue;
+            }
+            if (Arrays.equals(serialized, SerializerWrapper.requestBytes(invocation)) && index.consume(uri, invocation)) {
+                return invocation;
+            }
+        }
+        return null;
+    }
 }
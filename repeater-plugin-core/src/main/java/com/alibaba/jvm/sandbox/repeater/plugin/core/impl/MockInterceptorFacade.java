@@ -4,11 +4,15 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ServiceLoader;
 
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.SerializerWrapper;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.mock.MockRequest;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.mock.MockResponse;
 import com.alibaba.jvm.sandbox.repeater.plugin.spi.MockInterceptor;
 
 import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * {@link MockInterceptorFacade}作为{@link MockInterceptor}的包装，负责管理和执行所有的SPI实现
@@ -18,6 +22,8 @@ import com.google.common.collect.Lists;
  */
 public class MockInterceptorFacade implements MockInterceptor {
 
+    private final static Logger log = LoggerFactory.getLogger(MockInterceptorFacade.class);
+
     private static final MockInterceptorFacade INSTANCE = new MockInterceptorFacade();
 
     public static MockInterceptorFacade instance() {
@@ -36,13 +42,31 @@ public class MockInterceptorFacade implements MockInterceptor {
 
     @Override
     public void beforeSelect(final MockRequest request) {
+        boolean materialized = false;
         for (MockInterceptor interceptor : interceptors) {
             if (interceptor.matchingSelect(request)) {
+                if (!materialized) {
+                    materialize(request);
+                    materialized = true;
+                }
                 interceptor.beforeSelect(request);
             }
         }
     }
 
+    /**
+     * 子调用在拉取时保持序列化形态；拦截器可能读取/修改任意子调用，执行拦截器之前全部解出
+     *
+     * @param request mock回放请求
+     */
+    private void materialize(final MockRequest request) {
+        try {
+            SerializerWrapper.materializeSubInvocations(request.getRecordModel());
+        } catch (SerializeException e) {
+            log.error("deserialize sub invocations occurred error, traceId={}", request.getTraceId(), e);
+        }
+    }
+
     @Override
     public void beforeReturn(final MockRequest request, final MockResponse response) {
         for (MockInterceptor interceptor : interceptors) {
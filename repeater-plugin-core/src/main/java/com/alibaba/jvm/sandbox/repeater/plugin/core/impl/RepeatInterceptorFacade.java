@@ -4,10 +4,14 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ServiceLoader;
 
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.SerializerWrapper;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RecordModel;
 import com.alibaba.jvm.sandbox.repeater.plugin.spi.RepeatInterceptor;
 
 import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * {@link RepeatInterceptorFacade}作为{@link RepeatInterceptor}的包装，负责管理和执行所有的SPI实现
@@ -17,6 +21,8 @@ import com.google.common.collect.Lists;
  */
 public class RepeatInterceptorFacade implements RepeatInterceptor {
 
+    private final static Logger log = LoggerFactory.getLogger(RepeatInterceptorFacade.class);
+
     private static final RepeatInterceptorFacade INSTANCE = new RepeatInterceptorFacade();
 
     public static RepeatInterceptorFacade instance() {
@@ -35,13 +41,31 @@ public class RepeatInterceptorFacade implements RepeatInterceptor {
 
     @Override
     public void beforeInvoke(RecordModel recordModel) {
+        boolean materialized = false;
         for (RepeatInterceptor interceptor : interceptors) {
             if (interceptor.matchingInvoke(recordModel)) {
+                if (!materialized) {
+                    materialize(recordModel);
+                    materialized = true;
+                }
                 interceptor.beforeInvoke(recordModel);
             }
         }
     }
 
+    /**
+     * 子调用在拉取时保持序列化形态；拦截器可能读取/修改任意子调用，执行拦截器之前全部解出
+     *
+     * @param recordModel 录制记录
+     */
+    private void materialize(RecordModel recordModel) {
+        try {
+            SerializerWrapper.materializeSubInvocations(recordModel);
+        } catch (SerializeException e) {
+            log.error("deserialize sub invocations occurred error, traceId={}", recordModel.getTraceId(), e);
+        }
+    }
+
     @Override
     public void beforeReturn(RecordModel recordModel, Object response) {
         for (RepeatInterceptor interceptor : interceptors) {
@@ -1,21 +1,24 @@
 package com.alibaba.jvm.sandbox.repeater.plugin.core.impl.api;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.TypeReference;
 import com.alibaba.jvm.sandbox.repeater.plugin.Constants;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.impl.AbstractBroadcaster;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.model.ApplicationModel;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.util.HttpUtil;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.util.HttpUtil.Resp;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.util.PropertyUtil;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.HessianRequestBody;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.RecordWrapper;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.SerializerWrapper;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.*;
 
 import com.google.common.collect.Maps;
-import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -25,11 +28,21 @@ import org.apache.commons.lang3.StringUtils;
  */
 public class DefaultBroadcaster extends AbstractBroadcaster {
 
+    /**
+     * 二进制传输的content-type
+     */
+    private static final String OCTET_STREAM = "application/octet-stream";
+
     /**
      * 录制消息投递的URL
      */
     private String broadcastRecordUrl = PropertyUtil.getPropertyOrDefault(Constants.DEFAULT_RECORD_BROADCASTER, "");
 
+    /**
+     * 录制消息批量投递的URL
+     */
+    private String broadcastRecordBatchUrl = PropertyUtil.getPropertyOrDefault(Constants.DEFAULT_RECORD_BATCH_BROADCASTER, "");
+
     /**
      * 回放消息投递URL
      */
@@ -45,6 +58,10 @@ public class DefaultBroadcaster extends AbstractBroadcaster {
         this.broadcastRecordUrl = broadcastRecordUrl;
     }
 
+    public void setBroadcastRecordBatchUrl(String broadcastRecordBatchUrl) {
+        this.broadcastRecordBatchUrl = broadcastRecordBatchUrl;
+    }
+
     public void setBroadcastRepeatUrl(String broadcastRepeatUrl) {
         this.broadcastRepeatUrl = broadcastRepeatUrl;
     }
@@ -60,21 +77,50 @@ public class DefaultBroadcaster extends AbstractBroadcaster {
     @Override
     protected void broadcastRecord(RecordModel recordModel) {
         try {
-            RecordWrapper wrapper = new RecordWrapper(recordModel);
-            String body = SerializerWrapper.hessianSerialize(wrapper);
+            HessianRequestBody body = new HessianRequestBody(new RecordWrapper(recordModel),
+                    ApplicationModel.instance().getCompressType(), ApplicationModel.instance().isBinaryTransport());
             broadcast(broadcastRecordUrl, body, recordModel.getTraceId());
-        } catch (SerializeException e) {
-            log.error("broadcast record failed", e);
+            if (body.getFailure() != null) {
+                log.error("broadcast record failed", body.getFailure());
+            }
         } catch (Throwable throwable) {
             log.error("[Error-0000]-broadcast record failed", throwable);
         }
     }
 
+    @Override
+    protected void broadcastRecords(List<RecordModel> recordModels) {
+        if (recordModels.size() == 1 || StringUtils.isEmpty(broadcastRecordBatchUrl)) {
+            super.broadcastRecords(recordModels);
+            return;
+        }
+        String batchId = recordModels.get(0).getTraceId() + "+" + (recordModels.size() - 1);
+        try {
+            // 每条记录单独序列化（含压缩帧）直接写入请求，console按元素原样入库，无需反序列化后重新序列化
+            List<RecordWrapper> wrappers = new ArrayList<RecordWrapper>(recordModels.size());
+            for (RecordModel recordModel : recordModels) {
+                wrappers.add(new RecordWrapper(recordModel));
+            }
+            HessianRequestBody body = HessianRequestBody.batch(wrappers, ApplicationModel.instance().getCompressType(),
+                    ApplicationModel.instance().isBinaryTransport());
+            broadcast(broadcastRecordBatchUrl, body, batchId);
+            if (body.getFailure() != null) {
+                // 无法序列化的记录被console丢弃，不影响同批次的其它记录
+                log.error("serialize record failed, dropped from batch, batchId={}", batchId, body.getFailure());
+            }
+        } catch (Throwable throwable) {
+            log.error("[Error-0000]-broadcast record batch failed", throwable);
+        }
+    }
+
     @Override
     protected void broadcastRepeat(RepeatModel record) {
         try {
-            String body = SerializerWrapper.hessianSerialize(record);
-            broadcast(broadcastRepeatUrl, body, record.getTraceId());
+            if (ApplicationModel.instance().isBinaryTransport()) {
+                broadcast(broadcastRepeatUrl, SerializerWrapper.hessianSerialize2Bytes(record), record.getTraceId());
+            } else {
+                broadcast(broadcastRepeatUrl, SerializerWrapper.hessianSerialize(record), record.getTraceId());
+            }
         } catch (SerializeException e) {
             log.error("broadcast record failed", e);
         } catch (Throwable throwable) {
@@ -99,6 +145,41 @@ public class DefaultBroadcaster extends AbstractBroadcaster {
         }
     }
 
+    /**
+     * 二进制请求发送
+     * @param url 地址
+     * @param body 请求内容
+     * @param traceId traceId
+     */
+    private void broadcast(String url, byte[] body, String traceId) {
+        HashMap<String, String> headers = Maps.newHashMap();
+        headers.put("content-type", OCTET_STREAM);
+        Resp resp = HttpUtil.invokePostBody(url, headers, body);
+        if (resp.isSuccess()) {
+            log.info("broadcast success,traceId={},resp={}", traceId, resp);
+        } else {
+            log.info("broadcast failed ,traceId={},resp={}", traceId, resp);
+        }
+    }
+
+    /**
+     * 流式请求发送；序列化结果直接写入请求
+     * <p>
+     * 录制消息在消费线程内同步投递，使用短超时且不重试，避免console不可用时消费线程长时间阻塞、队列积压丢弃
+     *
+     * @param url 地址
+     * @param body 请求内容
+     * @param traceId traceId
+     */
+    private void broadcast(String url, HessianRequestBody body, String traceId) {
+        Resp resp = HttpUtil.invokePostBodyOnce(url, Maps.<String, String>newHashMap(), body);
+        if (resp.isSuccess()) {
+            log.info("broadcast success,traceId={},resp={}", traceId, resp);
+        } else {
+            log.info("broadcast failed ,traceId={},resp={}", traceId, resp);
+        }
+    }
+
     @Override
     public RepeaterResult<RecordModel> pullRecord(RepeatMeta meta) {
         String url;
@@ -107,28 +188,39 @@ public class DefaultBroadcaster extends AbstractBroadcaster {
         } else {
             url = meta.getDatasource();
         }
-        final HttpUtil.Resp resp = HttpUtil.doGet(url);
-        if (!resp.isSuccess() || StringUtils.isEmpty(resp.getBody())) {
-            log.info("get repeat data failed, datasource={}, response={}", meta.getDatasource(), resp);
-            return RepeaterResult.builder().success(false).message("get repeat data failed").build();
-        }
-        RepeaterResult<String> pr = JSON.parseObject(resp.getBody(), new TypeReference<RepeaterResult<String>>() {
-        });
-        if (!pr.isSuccess()) {
-            log.info("invalid repeat data found, datasource={}, response={}", meta.getDatasource(), resp);
-            return RepeaterResult.builder().success(false).message("repeat data found").build();
+        final boolean binary = ApplicationModel.instance().isBinaryTransport();
+        final HttpUtil.Resp resp;
+        String data = null;
+        if (binary) {
+            HashMap<String, String> headers = Maps.newHashMap();
+            headers.put("Accept", OCTET_STREAM);
+            resp = HttpUtil.doGetBytes(url, headers);
+            if (!resp.isSuccess() || resp.getContent() == null || resp.getContent().length == 0) {
+                log.info("get repeat data failed, datasource={}, response={}", meta.getDatasource(), resp);
+                return RepeaterResult.builder().success(false).message("get repeat data failed").build();
+            }
+        } else {
+            resp = HttpUtil.doGet(url);
+            if (!resp.isSuccess() || StringUtils.isEmpty(resp.getBody())) {
+                log.info("get repeat data failed, datasource={}, response={}", meta.getDatasource(), resp);
+                return RepeaterResult.builder().success(false).message("get repeat data failed").build();
+            }
+            RepeaterResult<String> pr = JSON.parseObject(resp.getBody(), new TypeReference<RepeaterResult<String>>() {
+            });
+            if (!pr.isSuccess()) {
+                log.info("invalid repeat data found, datasource={}, response={}", meta.getDatasource(), resp);
+                return RepeaterResult.builder().success(false).message("repeat data found").build();
+            }
+            data = pr.getData();
         }
         // swap classloader cause this method will be call in target app thread
         ClassLoader swap = Thread.currentThread().getContextClassLoader();
         try {
             Thread.currentThread().setContextClassLoader(DefaultBroadcaster.class.getClassLoader());
-            RecordWrapper wrapper = SerializerWrapper.hessianDeserialize(pr.getData(), RecordWrapper.class);
-            SerializerWrapper.inTimeDeserialize(wrapper.getEntranceInvocation());
-            if (meta.isMock() && CollectionUtils.isNotEmpty(wrapper.getSubInvocations())) {
-                for (Invocation invocation : wrapper.getSubInvocations()) {
-                    SerializerWrapper.inTimeDeserialize(invocation);
-                }
-            }
+            RecordWrapper wrapper = binary ? SerializerWrapper.hessianDeserialize(resp.getContent(), RecordWrapper.class)
+                    : SerializerWrapper.hessianDeserialize(data, RecordWrapper.class);
+            // 子调用保持序列化形态，mock选中时才解出
+            SerializerWrapper.inTimeDeserialize(wrapper.getEntranceInvocation(), wrapper.getClassDefinitions());
             return RepeaterResult.builder().success(true).message("operate success").data(wrapper.reTransform()).build();
         } catch (SerializeException e) {
             return RepeaterResult.builder().success(false).message(e.getMessage()).build();
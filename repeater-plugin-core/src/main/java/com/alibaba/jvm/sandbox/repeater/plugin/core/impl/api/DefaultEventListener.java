@@ -8,9 +8,10 @@ import com.alibaba.jvm.sandbox.repeater.plugin.api.InvocationListener;
 import com.alibaba.jvm.sandbox.repeater.plugin.api.InvocationProcessor;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.bridge.ClassloaderBridge;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.cache.RecordCache;
-import com.alibaba.jvm.sandbox.repeater.plugin.core.cache.RepeatCache;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.model.ApplicationModel;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.AdaptiveSampler;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.SampleRuleMatcher;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.SequenceGenerator;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.TraceContext;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.Tracer;
@@ -75,6 +76,18 @@ public class DefaultEventListener implements EventListener {
                 }
                 return;
             }
+            /*
+             * 入口预过滤；未通过的请求不开启Tracer，只放置未采样标记，保证下级入口不采集
+             */
+            if (!preFilter(event)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("event pre filter failed,type={},event={}", invokeType, event);
+                }
+                if (entrance && isEntranceBegin(event)) {
+                    Tracer.startUnsampled(invokeType);
+                }
+                return;
+            }
             /*
              * 初始化Tracer
              */
@@ -109,18 +122,25 @@ public class DefaultEventListener implements EventListener {
             /*
              * 分发事件处理（对于一次around事件可以收集到入参/返回值的可以直接使用；需要从多次before实践获取的）
              */
-            switch (event.type) {
-                case BEFORE:
-                    doBefore((BeforeEvent) event);
-                    break;
-                case RETURN:
-                    doReturn((ReturnEvent) event);
-                    break;
-                case THROWS:
-                    doThrow((ThrowsEvent) event);
-                    break;
-                default:
-                    break;
+            final TraceContext context = Tracer.getContext();
+            final long start = System.nanoTime();
+            try {
+                switch (event.type) {
+                    case BEFORE:
+                        doBefore((BeforeEvent) event);
+                        break;
+                    case RETURN:
+                        doReturn((ReturnEvent) event);
+                        break;
+                    case THROWS:
+                        doThrow((ThrowsEvent) event);
+                        break;
+                    default:
+                        break;
+                }
+            } finally {
+                // 录制开销计入自适应采样
+                AdaptiveSampler.instance().overhead(context, System.nanoTime() - start);
             }
         } catch (ProcessControlException pe) {
             /*
@@ -148,7 +168,7 @@ public class DefaultEventListener implements EventListener {
      */
     protected void doBefore(BeforeEvent event) throws ProcessControlException {
         // 回放流量；如果是入口则放弃；子调用则进行mock
-        if (RepeatCache.isRepeatFlow(Tracer.getTraceId())) {
+        if (Tracer.isRepeatFlow()) {
             processor.doMock(event, entrance, invokeType);
             return;
         }
@@ -164,11 +184,15 @@ public class DefaultEventListener implements EventListener {
         invocation.setRequest(processor.assembleRequest(event));
         invocation.setResponse(processor.assembleResponse(event));
         invocation.setSerializeToken(ClassloaderBridge.instance().encode(event.javaClassLoader));
-        try {
-            SerializerWrapper.inTimeSerialize(invocation);
-        } catch (SerializeException e) {
-            Tracer.getContext().setSampled(false);
-            log.error("Error occurred serialize", e);
+        // 异步序列化时这里只持有入参/返回值的引用，不做拷贝：调用之后被业务修改的对象录制到的是修改后的状态，
+        // 需要保留调用时状态的调用类型配置在inlineSerializeTypes中，在业务线程中及时序列化
+        if (ApplicationModel.instance().isInlineSerialize(invokeType)) {
+            try {
+                SerializerWrapper.inTimeSerialize(invocation);
+            } catch (SerializeException e) {
+                Tracer.getContext().setSampled(false);
+                log.error("Error occurred serialize", e);
+            }
         }
         RecordCache.cacheInvocation(event.invokeId, invocation);
     }
@@ -180,24 +204,39 @@ public class DefaultEventListener implements EventListener {
      * @return 是否采样
      */
     protected boolean sample(Event event) {
+        final TraceContext context = Tracer.getContext();
+        if (context == null) {
+            return false;
+        }
         if (entrance && event.type == Type.BEFORE) {
-            return Tracer.getContext().inTimeSample(invokeType);
+            // 只有需要按入口区分采样时才计算入口标识
+            String key = AdaptiveSampler.instance().isEnabled() || !SampleRuleMatcher.current().isEmpty() ? sampleKey((BeforeEvent) event) : null;
+            return context.inTimeSample(invokeType, key);
         } else {
-            final TraceContext context = Tracer.getContext();
-            return context != null && context.isSampled();
+            return context.isSampled();
         }
     }
 
+    /**
+     * 采样规则/自适应采样的入口标识；默认为类名#方法名
+     *
+     * @param event before事件
+     * @return 入口标识
+     */
+    protected String sampleKey(BeforeEvent event) {
+        return event.javaClassName + "#" + event.javaMethodName;
+    }
+
     /**
      * 处理return事件
      *
      * @param event return事件
      */
     protected void doReturn(ReturnEvent event) {
-        if (RepeatCache.isRepeatFlow(Tracer.getTraceId())) {
+        if (Tracer.isRepeatFlow()) {
             return;
         }
-        Invocation invocation = RecordCache.getInvocation(event.invokeId);
+        Invocation invocation = RecordCache.removeInvocation(event.invokeId);
         if (invocation == null) {
             log.debug("no valid invocation found in return,type={},traceId={}", invokeType, Tracer.getTraceId());
             return;
@@ -213,10 +252,10 @@ public class DefaultEventListener implements EventListener {
      * @param event throw事件
      */
     protected void doThrow(ThrowsEvent event) {
-        if (RepeatCache.isRepeatFlow(Tracer.getTraceId())) {
+        if (Tracer.isRepeatFlow()) {
             return;
         }
-        Invocation invocation = RecordCache.getInvocation(event.invokeId);
+        Invocation invocation = RecordCache.removeInvocation(event.invokeId);
         if (invocation == null) {
             log.debug("no valid invocation found in throw,type={},traceId={}", invokeType, Tracer.getTraceId());
             return;
@@ -253,6 +292,20 @@ public class DefaultEventListener implements EventListener {
         return isTop;
     }
 
+    /**
+     * 入口预过滤；在{@link #initContext(Event)}之前执行
+     * <p>
+     * 入口插件可以重写，在开启追踪之前用廉价的判断（开关、降级、入口匹配、采样预判）放弃大部分不采样的请求；
+     * 未通过的入口不会开启追踪，只放置共享的未采样标记（{@link Tracer#startUnsampled(InvokeType)}），
+     * 后续的return/throw事件、子调用事件和下级入口都不会被采集，标记在入口完成时清理
+     *
+     * @param event 事件
+     * @return 是否通过
+     */
+    protected boolean preFilter(Event event) {
+        return true;
+    }
+
     /**
      * 初始化上下文；
      * 只有entrance插件负责初始化和清理上下文
@@ -294,9 +347,12 @@ public class DefaultEventListener implements EventListener {
      * @return true/false
      */
     protected boolean isEntranceFinish(Event event) {
+        final TraceContext context = Tracer.getContext();
         return event.type != Type.BEFORE
+                // 预过滤未通过时没有开启trace
+                && context != null
                 // 开启trace的类型负责清理
-                && Tracer.getContext().getInvokeType() == invokeType;
+                && context.getInvokeType() == invokeType;
     }
 
     /**
@@ -309,7 +365,7 @@ public class DefaultEventListener implements EventListener {
      */
     protected boolean access(Event event) {
         return ApplicationModel.instance().isWorkingOn() &&
-                (!ApplicationModel.instance().isDegrade() || RepeatCache.isRepeatFlow(Tracer.getTraceId()));
+                (!ApplicationModel.instance().isDegrade() || Tracer.isRepeatFlow());
     }
 
     @Override
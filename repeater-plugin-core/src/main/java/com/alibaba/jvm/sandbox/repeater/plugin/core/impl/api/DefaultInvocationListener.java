@@ -1,6 +1,8 @@
 package com.alibaba.jvm.sandbox.repeater.plugin.core.impl.api;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -9,13 +11,16 @@ import com.alibaba.jvm.sandbox.repeater.plugin.api.InvocationListener;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.cache.RecordCache;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.model.ApplicationModel;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.TraceContext;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.Tracer;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.SerializeStage;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.SerializerWrapper;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.Invocation;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.InvokeType;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RecordModel;
 
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,29 +42,143 @@ public class DefaultInvocationListener implements InvocationListener {
 
     @Override
     public void onInvocation(Invocation invocation) {
-        try {
-            SerializerWrapper.inTimeSerialize(invocation);
-        } catch (SerializeException e) {
-            Tracer.getContext().setSampled(false);
-            log.error("Error occurred serialize", e);
+        SerializerWrapper.attachClassDictionary(invocation);
+        if (ApplicationModel.instance().isInlineSerialize(invocation.getType())) {
+            try {
+                SerializerWrapper.inTimeSerialize(invocation);
+            } catch (SerializeException e) {
+                Tracer.getContext().setSampled(false);
+                log.error("Error occurred serialize", e);
+            }
         }
         if (invocation.isEntrance()) {
-            ApplicationModel am = ApplicationModel.instance();
-            RecordModel recordModel = new RecordModel();
-            recordModel.setAppName(am.getAppName());
-            recordModel.setEnvironment(am.getEnvironment());
-            recordModel.setHost(am.getHost());
-            recordModel.setTraceId(invocation.getTraceId());
-            recordModel.setTimestamp(invocation.getStart());
+            RecordModel recordModel = newRecordModel(invocation.getTraceId(), invocation.getStart());
             recordModel.setEntranceInvocation(invocation);
-            recordModel.setSubInvocations(RecordCache.getSubInvocation(invocation.getTraceId()));
+            recordModel.setSubInvocations(collectSubInvocations(invocation.getTraceId()));
+            recordModel.setChunkCount(chunkCount(invocation.getTraceId()));
             if (log.isDebugEnabled()){
-                log.debug("sampleOnRecord:traceId={},rootType={},subTypes={}", recordModel.getTraceId(), invocation.getType(), assembleTypes(recordModel));
+                log.debug("sampleOnRecord:traceId={},rootType={},subTypes={},chunks={}", recordModel.getTraceId(), invocation.getType(), assembleTypes(recordModel), recordModel.getChunkCount());
             }
-            broadcast.sendRecord(recordModel);
+            final long maxPayloadSize = maxPayloadSize(invocation.getTraceId());
+            if (ApplicationModel.instance().isAsyncSerialize()) {
+                SerializeStage.submit(recordModel, broadcast, maxPayloadSize);
+            } else if (maxPayloadSize > 0 && SerializerWrapper.serializedSize(invocation) > maxPayloadSize) {
+                log.info("entrance payload exceed sample rule limit {}, abandon this record, traceId={}", maxPayloadSize, invocation.getTraceId());
+            } else {
+                broadcast.sendRecord(recordModel);
+            }
+        } else {
+            final TraceContext context = Tracer.getContext();
+            if (context != null && !context.isDrained() && StringUtils.equals(context.getTraceId(), invocation.getTraceId())) {
+                ApplicationModel am = ApplicationModel.instance();
+                final int chunkSize = am.getSubInvocationChunkSize();
+                final long byteLimit = am.getMaxSubInvocationBytes();
+                // 分片投递时字节上限只用于触发提前投递，不丢弃
+                if (!context.addSubInvocation(invocation, am.getMaxSubInvocations(), chunkSize > 0 ? Long.MAX_VALUE : byteLimit)) {
+                    RecordCache.subInvocationOverflow();
+                    if (log.isDebugEnabled()) {
+                        log.debug("sub invocation overflow or entrance finished, abandon it, traceId={},identity={}", invocation.getTraceId(), invocation.getIdentity());
+                    }
+                } else if (chunkSize > 0 && (context.getBufferedCount() >= chunkSize || context.getBufferedBytes() >= byteLimit)) {
+                    spill(context);
+                }
+            } else {
+                RecordCache.cacheSubInvocation(invocation);
+            }
+        }
+    }
+
+    /**
+     * 将上下文中缓冲的子调用作为一个分片先行投递，分片没有入口调用，由服务端按traceId重组
+     *
+     * @param context 追踪上下文
+     */
+    private void spill(TraceContext context) {
+        List<Invocation> chunk = new ArrayList<Invocation>(ApplicationModel.instance().getSubInvocationChunkSize());
+        int chunkIndex = context.drainChunk(chunk);
+        if (chunkIndex <= 0) {
+            return;
+        }
+        RecordModel recordModel = newRecordModel(context.getTraceId(), context.getTimestamp());
+        recordModel.setSubInvocations(chunk);
+        recordModel.setChunkIndex(chunkIndex);
+        if (log.isDebugEnabled()) {
+            log.debug("spill sub invocations chunk:traceId={},chunkIndex={},size={}", context.getTraceId(), chunkIndex, chunk.size());
+        }
+        send(recordModel);
+    }
+
+    private RecordModel newRecordModel(String traceId, long timestamp) {
+        ApplicationModel am = ApplicationModel.instance();
+        RecordModel recordModel = new RecordModel();
+        recordModel.setAppName(am.getAppName());
+        recordModel.setEnvironment(am.getEnvironment());
+        recordModel.setHost(am.getHost());
+        recordModel.setTraceId(traceId);
+        recordModel.setTimestamp(timestamp);
+        return recordModel;
+    }
+
+    private void send(RecordModel recordModel) {
+        if (ApplicationModel.instance().isAsyncSerialize()) {
+            SerializeStage.submit(recordModel, broadcast);
         } else {
-            RecordCache.cacheSubInvocation(invocation);
+            broadcast.sendRecord(recordModel);
+        }
+    }
+
+    /**
+     * 入口命中的采样规则的最大载荷
+     *
+     * @param traceId 追踪ID
+     * @return 最大字节数；小于等于0表示不限制
+     */
+    private long maxPayloadSize(String traceId) {
+        final TraceContext context = Tracer.getContext();
+        if (context == null || context.getSampleRule() == null || !StringUtils.equals(context.getTraceId(), traceId)) {
+            return 0;
+        }
+        return context.getSampleRule().getMaxPayloadSize();
+    }
+
+    /**
+     * 入口已投递的子调用分片数量；入口在其他线程完成时（追踪已结束）从转存中取
+     *
+     * @param traceId 追踪ID
+     * @return 分片数量
+     */
+    private int chunkCount(String traceId) {
+        final TraceContext context = Tracer.getContext();
+        if (context != null && StringUtils.equals(context.getTraceId(), traceId)) {
+            return context.getChunkCount();
+        }
+        return RecordCache.getChunkCount(traceId);
+    }
+
+    /**
+     * 取走入口调用的全部子调用：上下文中收集的 + 缓存中承接的
+     *
+     * @param traceId 追踪ID
+     * @return 子调用
+     */
+    private List<Invocation> collectSubInvocations(String traceId) {
+        final TraceContext context = Tracer.getContext();
+        List<Invocation> subInvocations = null;
+        if (context != null && StringUtils.equals(context.getTraceId(), traceId)) {
+            subInvocations = context.drainSubInvocations();
+            if (context.getOverflowCount() > 0) {
+                log.warn("sub invocations exceed limit {}, {} abandoned, traceId={}", ApplicationModel.instance().getMaxSubInvocations(), context.getOverflowCount(), traceId);
+            }
+        }
+        List<Invocation> cached = RecordCache.getSubInvocation(traceId);
+        if (CollectionUtils.isEmpty(cached)) {
+            return subInvocations;
+        }
+        if (CollectionUtils.isEmpty(subInvocations)) {
+            return cached;
         }
+        subInvocations.addAll(cached);
+        return subInvocations;
     }
 
     private String assembleTypes(RecordModel recordModel) {
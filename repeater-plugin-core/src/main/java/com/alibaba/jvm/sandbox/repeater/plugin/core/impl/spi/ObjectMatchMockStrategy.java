@@ -0,0 +1,159 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.impl.spi;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.core.impl.AbstractMockStrategy;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.util.ArgumentDigest;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.SerializerWrapper;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.Invocation;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.mock.MockRequest;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.mock.SelectResult;
+import com.alibaba.jvm.sandbox.repeater.plugin.spi.MockStrategy;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.MetaInfServices;
+
+/**
+ * {@link ObjectMatchMockStrategy} 结构化参数匹配策略
+ * <p>
+ * 与{@link ParameterMatchMockStrategy}对序列化字符串整体计算编辑距离不同，这里基于{@link ArgumentDigest}逐字段比较：
+ * <ul>
+ * <li>摘要完全一致直接命中</li>
+ * <li>否则按叶子逐一比较，相等得1分；字符串叶子不等时用有上限的编辑距离给部分分</li>
+ * <li>剩余叶子全部命中也达不到匹配度且不优于当前最佳候选时提前终止</li>
+ * </ul>
+ * 当前调用的参数只计算一次摘要，录制子调用的摘要按invocation缓存
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+@MetaInfServices(MockStrategy.class)
+public class ObjectMatchMockStrategy extends AbstractMockStrategy {
+
+    /**
+     * 字符串叶子编辑距离上限；超过上限视为不相等
+     */
+    private static final int MAX_EDIT_DISTANCE = 64;
+
+    private final Cache<Invocation, ArgumentDigest> digestCache = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(4096)
+            .build();
+
+    @Override
+    protected SelectResult select(MockRequest request) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        List<Invocation> target = candidates(request);
+        if (CollectionUtils.isEmpty(target)) {
+            log.error("can't find any sub invocation type={},identity={}", type().name(), request.getIdentity().getUri());
+            return SelectResult.builder().match(false).cost(stopwatch.stop().elapsed(TimeUnit.MILLISECONDS)).build();
+        }
+        ArgumentDigest current = ArgumentDigest.of(request.getArgumentArray());
+        double threshold = request.getMeta().getMatchPercentage() / 100.0;
+        double best = -1;
+        Invocation bestInvocation = null;
+        for (Invocation invocation : target) {
+            ArgumentDigest recorded;
+            try {
+                recorded = digest(invocation, request);
+            } catch (SerializeException e) {
+                log.error("deserialize sub invocation occurred error, identity={}", request.getIdentity().getUri(), e);
+                return SelectResult.builder().match(false).cost(stopwatch.stop().elapsed(TimeUnit.MILLISECONDS)).build();
+            }
+            double similarity = calcSimilarity(current, recorded, threshold, best);
+            // 如果匹配就直接返回了
+            if (similarity >= threshold) {
+                consume(request, invocation);
+                digestCache.invalidate(invocation);
+                log.info("find target invocation by {},identity={},invocation={}", type().name(), request.getIdentity().getUri(), invocation);
+                return SelectResult.builder().match(true).invocation(invocation).cost(stopwatch.stop().elapsed(TimeUnit.MILLISECONDS)).build();
+            }
+            if (similarity > best) {
+                best = similarity;
+                bestInvocation = invocation;
+            }
+        }
+        // 如果没有找到，返回相似度最高的一条
+        log.info("find invocation by {},but similarity not match similarity={},identity={}, invocation={}", type().name(), best, request.getIdentity().getUri(), bestInvocation);
+        return SelectResult.builder().match(false).invocation(bestInvocation).cost(stopwatch.stop().elapsed(TimeUnit.MILLISECONDS)).build();
+    }
+
+    @Override
+    public StrategyType type() {
+        return StrategyType.OBJECT_MATCH;
+    }
+
+    private ArgumentDigest digest(Invocation invocation, MockRequest request) throws SerializeException {
+        // 被修改过的子调用不缓存摘要
+        if (CollectionUtils.isNotEmpty(request.getModifiedInvocationIdentity()) &&
+                request.getModifiedInvocationIdentity().contains(invocation.getIdentity())) {
+            return ArgumentDigest.of(SerializerWrapper.requestOf(invocation));
+        }
+        ArgumentDigest digest = digestCache.getIfPresent(invocation);
+        if (digest == null) {
+            // 未被选中的子调用只保留摘要，反序列化出的参数不回填
+            digest = ArgumentDigest.of(SerializerWrapper.requestOf(invocation));
+            digestCache.put(invocation, digest);
+        }
+        return digest;
+    }
+
+    /**
+     * 计算相似度
+     *
+     * @param current   当前调用参数摘要
+     * @param recorded  录制调用参数摘要
+     * @param threshold 匹配阈值
+     * @param best      当前最佳相似度
+     * @return 相似度；提前终止时返回-1
+     */
+    private double calcSimilarity(ArgumentDigest current, ArgumentDigest recorded, double threshold, double best) {
+        if (current.sameAs(recorded)) {
+            return 1;
+        }
+        int base = Math.max(current.size(), recorded.size());
+        if (base == 0) {
+            return 1;
+        }
+        Map<String, Object> recordedLeaves = recorded.getLeaves();
+        int remaining = current.size();
+        int common = 0;
+        double score = 0;
+        for (Map.Entry<String, Object> entry : current.getLeaves().entrySet()) {
+            remaining--;
+            Object other = recordedLeaves.get(entry.getKey());
+            if (other != null) {
+                common++;
+                score += leafScore(entry.getValue(), other);
+            }
+            // 分母至少为base，剩余叶子全部命中的上界
+            double upper = (score + remaining) / base;
+            if (upper < threshold && upper <= best) {
+                return -1;
+            }
+        }
+        return score / (current.size() + recorded.size() - common);
+    }
+
+    private double leafScore(Object current, Object recorded) {
+        if (current.equals(recorded)) {
+            return 1;
+        }
+        if (current instanceof String && recorded instanceof String) {
+            String s = (String) current;
+            String t = (String) recorded;
+            int length = Math.max(s.length(), t.length());
+            int limit = Math.min(length / 2, MAX_EDIT_DISTANCE);
+            int distance = StringUtils.getLevenshteinDistance(s, t, limit);
+            return distance < 0 ? 0 : 1 - (double) distance / length;
+        }
+        return 0;
+    }
+}
@@ -3,13 +3,14 @@ package com.alibaba.jvm.sandbox.repeater.plugin.core.impl.spi;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import com.alibaba.jvm.sandbox.repeater.plugin.core.impl.AbstractMockStrategy;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.Serializer;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.SerializerWrapper;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.Invocation;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.mock.MockRequest;
@@ -18,8 +19,8 @@ import com.alibaba.jvm.sandbox.repeater.plugin.spi.MockStrategy;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Stopwatch;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.io.BaseEncoding;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.kohsuke.MetaInfServices;
@@ -36,51 +37,45 @@ public class ParameterMatchMockStrategy extends AbstractMockStrategy {
     @Override
     protected SelectResult select(MockRequest request) {
         Stopwatch stopwatch = Stopwatch.createStarted();
-        List<Invocation> subInvocations = request.getRecordModel().getSubInvocations();
-        List<Invocation> target = Lists.newArrayList();
-        // 先根据URI进行过滤
-        for (Invocation invocation : subInvocations){
-            if (invocation.getIdentity().getUri().equals(request.getIdentity().getUri())) {
-                target.add(invocation);
-            }
-        }
+        List<Invocation> target = candidates(request);
         if (CollectionUtils.isEmpty(target)) {
             log.error("can't find any sub invocation type={},identity={}", type().name() , request.getIdentity().getUri());
             return SelectResult.builder().match(false).cost(stopwatch.stop().elapsed(TimeUnit.MILLISECONDS)).build();
         }
-        String requestSerialized;
+        // 当前参数按子调用录制时的序列化类型序列化才能逐字节比较；混合录制时每种类型只序列化一次
+        Map<Serializer.Type, String> requestSerialized = new EnumMap<Serializer.Type, String>(Serializer.Type.class);
         try {
-            requestSerialized = SerializerWrapper.hessianSerialize(request.getArgumentArray(), request.getEvent().javaClassLoader);
+            for (Invocation invocation : target) {
+                Serializer.Type serializerType = SerializerWrapper.serializerTypeOf(invocation);
+                if (requestSerialized.containsKey(serializerType)) {
+                    continue;
+                }
+                byte[] requestBytes = SerializerWrapper.serialize(request.getArgumentArray(), request.getEvent().javaClassLoader, serializerType);
+                // 参数完全一致直接命中，不计算相似度
+                Invocation exact = exactMatch(request, requestBytes);
+                if (exact != null) {
+                    log.info("find target invocation by {} with exact digest,identity={},invocation={}", type().name(), request.getIdentity().getUri(), exact);
+                    return SelectResult.builder().match(true).invocation(exact).cost(stopwatch.stop().elapsed(TimeUnit.MILLISECONDS)).build();
+                }
+                requestSerialized.put(serializerType, asSequence(requestBytes));
+            }
         } catch (Exception e) {
             log.error("serialize request occurred error, identity={}", type().name(), e);
             return SelectResult.builder().match(false).cost(stopwatch.stop().elapsed(TimeUnit.MILLISECONDS)).build();
         }
-        // 根据index排序
-        Collections.sort(target, new Comparator<Invocation>() {
-            @Override
-            public int compare(Invocation o1, Invocation o2) {
-                return o1.getIndex() - o2.getIndex();
-            }
-        });
         Map<Double,Invocation> invocationMap = Maps.newHashMap();
         // 计算相似度;根据相似度进行排序
         for (Invocation invocation : target) {
             double similarity;
             try {
-                similarity = calcSimilarity(invocation, request, requestSerialized);
+                similarity = calcSimilarity(invocation, request, requestSerialized.get(SerializerWrapper.serializerTypeOf(invocation)));
             } catch (SerializeException e) {
                 log.error("serialize request occurred error, identity={}", type().name(), e);
                 return SelectResult.builder().match(false).cost(stopwatch.stop().elapsed(TimeUnit.MILLISECONDS)).build();
             }
             // 如果匹配就直接返回了
             if (similarity >= request.getMeta().getMatchPercentage() / 100) {
-                Iterator<Invocation> ite = subInvocations.iterator();
-                while (ite.hasNext()) {
-                    if (invocation.equals(ite.next())) {
-                        ite.remove();
-                        break;
-                    }
-                }
+                consume(request, invocation);
                 log.info("find target invocation by {},identity={},invocation={}", type().name(), request.getIdentity().getUri(), invocation);
                 return SelectResult.builder().match(true).invocation(invocation).cost(stopwatch.stop().elapsed(TimeUnit.MILLISECONDS)).build();
             }
@@ -112,11 +107,23 @@ public class ParameterMatchMockStrategy extends AbstractMockStrategy {
         String requestSerializedTarget;
         if (CollectionUtils.isNotEmpty(request.getModifiedInvocationIdentity()) &&
             request.getModifiedInvocationIdentity().contains(invocation.getIdentity())) {
-            requestSerializedTarget = SerializerWrapper.hessianSerialize(invocation.getRequest(),request.getEvent().javaClassLoader);
+            requestSerializedTarget = asSequence(SerializerWrapper.serialize(SerializerWrapper.requestOf(invocation),
+                    request.getEvent().javaClassLoader, SerializerWrapper.serializerTypeOf(invocation)));
         } else {
-            requestSerializedTarget = invocation.getRequestSerialized();
+            requestSerializedTarget = asSequence(SerializerWrapper.requestBytes(invocation));
         }
         int distance = StringUtils.getLevenshteinDistance(requestSerialized, requestSerializedTarget);
         return 1 - (double) distance / Math.max(requestSerialized.length(), requestSerializedTarget.length());
     }
+
+    /**
+     * 相似度始终基于序列化结果的base64文本计算（与录制记录的传输载体无关），保持与字符串传输时一致的评分，
+     * 已配置的{@code matchPercentage}阈值含义不变
+     *
+     * @param bytes 序列化byte数组
+     * @return 字符序列
+     */
+    private String asSequence(byte[] bytes) {
+        return bytes == null ? "" : BaseEncoding.base64().encode(bytes);
+    }
 }
@@ -2,6 +2,7 @@ package com.alibaba.jvm.sandbox.repeater.plugin.core.impl.standalone;
 
 import com.alibaba.jvm.sandbox.repeater.plugin.core.impl.AbstractBroadcaster;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.impl.api.DefaultBroadcaster;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.model.ApplicationModel;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.util.PathUtils;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.RecordWrapper;
@@ -12,6 +13,8 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * {@link StandaloneBroadcaster} 能够脱机工作，不依赖服务端的实现
@@ -25,11 +28,26 @@ public class StandaloneBroadcaster extends AbstractBroadcaster {
 
     private String repeatSuffix = "repeat";
 
+    /**
+     * 二进制传输时的文件后缀
+     */
+    private String binaryExtension = ".bin";
+
+    /**
+     * 子调用分片的文件名后缀，后接分片序号
+     */
+    private String chunkExtension = ".chunk";
+
     @Override
     protected void broadcastRecord(RecordModel rm) {
         try {
-            String body = SerializerWrapper.hessianSerialize(rm);
-            broadcast(body, rm.getTraceId(), recordSuffix);
+            String name = rm.getChunkIndex() > 0 ? rm.getTraceId() + chunkExtension + rm.getChunkIndex() : rm.getTraceId();
+            if (ApplicationModel.instance().isBinaryTransport()) {
+                broadcast(SerializerWrapper.hessianSerialize2Bytes(new RecordWrapper(rm), ApplicationModel.instance().getCompressType()), name, recordSuffix);
+            } else {
+                String body = SerializerWrapper.hessianSerialize(rm, ApplicationModel.instance().getCompressType());
+                broadcast(body, name, recordSuffix);
+            }
             log.info("broadcast success,traceId={},resp={}", rm.getTraceId(), "success");
         } catch (SerializeException e) {
             log.error("broadcast record failed", e);
@@ -41,8 +59,12 @@ public class StandaloneBroadcaster extends AbstractBroadcaster {
     @Override
     protected void broadcastRepeat(RepeatModel rm) {
         try {
-            String body = SerializerWrapper.hessianSerialize(rm);
-            broadcast(body, rm.getRepeatId(), repeatSuffix);
+            if (ApplicationModel.instance().isBinaryTransport()) {
+                broadcast(SerializerWrapper.hessianSerialize2Bytes(rm), rm.getRepeatId(), repeatSuffix);
+            } else {
+                String body = SerializerWrapper.hessianSerialize(rm);
+                broadcast(body, rm.getRepeatId(), repeatSuffix);
+            }
         } catch (SerializeException e) {
             log.error("broadcast record failed", e);
         } catch (Throwable throwable) {
@@ -54,15 +76,30 @@ public class StandaloneBroadcaster extends AbstractBroadcaster {
     public RepeaterResult<RecordModel> pullRecord(RepeatMeta meta) {
         ClassLoader swap = Thread.currentThread().getContextClassLoader();
         try {
-            String record = FileUtils.readFileToString(new File(assembleFileName(meta.getTraceId(), recordSuffix)), "UTF-8");
             Thread.currentThread().setContextClassLoader(DefaultBroadcaster.class.getClassLoader());
-            RecordWrapper wrapper = SerializerWrapper.hessianDeserialize(record, RecordWrapper.class);
-            if (meta.isMock() && CollectionUtils.isNotEmpty(wrapper.getSubInvocations())) {
-                for (Invocation invocation : wrapper.getSubInvocations()) {
-                    SerializerWrapper.inTimeDeserialize(invocation);
+            RecordWrapper wrapper = readWrapper(meta.getTraceId());
+            // 先行投递的子调用分片按序号合并到入口记录的子调用之前
+            if (wrapper.getChunkCount() > 0) {
+                List<Invocation> subInvocations = new ArrayList<Invocation>();
+                for (int i = 1; i <= wrapper.getChunkCount(); i++) {
+                    RecordWrapper chunk = readWrapper(meta.getTraceId() + chunkExtension + i);
+                    if (CollectionUtils.isNotEmpty(chunk.getSubInvocations())) {
+                        subInvocations.addAll(chunk.getSubInvocations());
+                    }
+                    // 字典只追加，保留最长的快照
+                    if (chunk.getClassDefinitions() != null && (wrapper.getClassDefinitions() == null
+                            || chunk.getClassDefinitions().size() > wrapper.getClassDefinitions().size())) {
+                        wrapper.setClassDefinitions(chunk.getClassDefinitions());
+                    }
+                }
+                if (CollectionUtils.isNotEmpty(wrapper.getSubInvocations())) {
+                    subInvocations.addAll(wrapper.getSubInvocations());
                 }
+                wrapper.setSubInvocations(subInvocations);
+                wrapper.setChunkCount(0);
             }
-            SerializerWrapper.inTimeDeserialize(wrapper.getEntranceInvocation());
+            // 子调用保持序列化形态，mock选中时才解出
+            SerializerWrapper.inTimeDeserialize(wrapper.getEntranceInvocation(), wrapper.getClassDefinitions());
             return RepeaterResult.builder().success(true).message("operate success").data(wrapper.reTransform()).build();
         } catch (Throwable e) {
             return RepeaterResult.builder().success(false).message(e.getMessage()).build();
@@ -71,10 +108,23 @@ public class StandaloneBroadcaster extends AbstractBroadcaster {
         }
     }
 
+    private RecordWrapper readWrapper(String name) throws IOException, SerializeException {
+        File binary = new File(assembleFileName(name, recordSuffix) + binaryExtension);
+        if (binary.exists()) {
+            return SerializerWrapper.hessianDeserialize(FileUtils.readFileToByteArray(binary), RecordWrapper.class);
+        }
+        String record = FileUtils.readFileToString(new File(assembleFileName(name, recordSuffix)), "UTF-8");
+        return SerializerWrapper.hessianDeserialize(record, RecordWrapper.class);
+    }
+
     private void broadcast(String body, String name, String folder) throws IOException {
         FileUtils.writeStringToFile(new File(assembleFileName(name, folder)), body, "UTF-8");
     }
 
+    private void broadcast(byte[] body, String name, String folder) throws IOException {
+        FileUtils.writeByteArrayToFile(new File(assembleFileName(name, folder) + binaryExtension), body);
+    }
+
 
     private String assembleFileName(String name, String folder) {
         return PathUtils.getModulePath() + File.separator + "repeater-data" + File.separator + folder + File.separator + name;
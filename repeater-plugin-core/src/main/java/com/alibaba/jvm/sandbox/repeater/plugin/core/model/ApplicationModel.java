@@ -2,7 +2,14 @@ package com.alibaba.jvm.sandbox.repeater.plugin.core.model;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.List;
 
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.Serializer;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializerProvider;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.compress.Compressor;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.SampleRuleMatcher;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.Tracer;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.InvokeType;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeaterConfig;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.util.ExceptionAware;
 
@@ -86,6 +93,161 @@ public class ApplicationModel {
         return config == null ? 0 : config.getSampleRate();
     }
 
+    /**
+     * HTTP请求body的采集上限
+     *
+     * @return 字节数
+     */
+    public int getHttpBodyCaptureLimit() {
+        final RepeaterConfig rc = config;
+        return rc == null || rc.getHttpBodyCaptureLimit() == null || rc.getHttpBodyCaptureLimit() <= 0 ? 1024 * 1024 : rc.getHttpBodyCaptureLimit();
+    }
+
+    /**
+     * HTTP返回值的采集上限
+     *
+     * @return 字节数
+     */
+    public int getHttpResponseCaptureLimit() {
+        final RepeaterConfig rc = config;
+        return rc == null || rc.getHttpResponseCaptureLimit() == null || rc.getHttpResponseCaptureLimit() < 0 ? 1024 * 1024 : rc.getHttpResponseCaptureLimit();
+    }
+
+    /**
+     * 录制的HTTP请求header白名单
+     *
+     * @return header名称；为空时录制全部header
+     */
+    public List<String> getHttpHeaderAllowList() {
+        final RepeaterConfig rc = config;
+        return rc == null ? null : rc.getHttpHeaderAllowList();
+    }
+
+    /**
+     * 是否开启自适应采样
+     *
+     * @return true/false
+     */
+    public boolean isAdaptiveSample() {
+        final RepeaterConfig rc = config;
+        return rc != null && rc.isAdaptiveSample();
+    }
+
+    /**
+     * 自适应采样的最低采样率
+     *
+     * @return 采样率（万分比）
+     */
+    public int getMinSampleRate() {
+        final RepeaterConfig rc = config;
+        return rc == null || rc.getMinSampleRate() == null ? 1 : rc.getMinSampleRate();
+    }
+
+    /**
+     * 自适应采样的录制开销预算
+     *
+     * @return 每秒允许的录制耗时（毫秒）
+     */
+    public int getSampleOverheadBudget() {
+        final RepeaterConfig rc = config;
+        return rc == null || rc.getSampleOverheadBudget() == null ? 50 : rc.getSampleOverheadBudget();
+    }
+
+    /**
+     * 是否开启异步序列化
+     *
+     * @return true/false
+     */
+    public boolean isAsyncSerialize() {
+        return config != null && config.isAsyncSerialize();
+    }
+
+    /**
+     * 调用是否需要在业务线程中及时序列化
+     *
+     * @param invokeType 调用类型
+     * @return true/false
+     */
+    public boolean isInlineSerialize(InvokeType invokeType) {
+        final RepeaterConfig rc = config;
+        if (rc == null || !rc.isAsyncSerialize() || invokeType == null) {
+            return true;
+        }
+        return rc.getInlineSerializeTypes() != null && rc.getInlineSerializeTypes().contains(invokeType.name());
+    }
+
+    /**
+     * 是否使用二进制传输
+     *
+     * @return true/false
+     */
+    public boolean isBinaryTransport() {
+        return config != null && config.isBinaryTransport();
+    }
+
+    /**
+     * 是否开启共享类定义字典
+     *
+     * @return true/false
+     */
+    public boolean isClassDictionary() {
+        return config != null && config.isClassDictionary();
+    }
+
+    /**
+     * 录制记录投递/存储的压缩类型
+     *
+     * @return 压缩类型
+     */
+    public Compressor.Type getCompressType() {
+        final RepeaterConfig rc = config;
+        return rc == null ? Compressor.Type.NONE : Compressor.Type.parse(rc.getCompressType());
+    }
+
+    /**
+     * 调用的序列化类型；只支持HESSIAN/COMPACT，无法识别或没有对应实现时使用HESSIAN
+     *
+     * @return 序列化类型
+     */
+    public Serializer.Type getRecordSerializer() {
+        final RepeaterConfig rc = config;
+        final Serializer.Type type = rc == null ? Serializer.Type.HESSIAN : Serializer.Type.parse(rc.getRecordSerializer());
+        if (type == Serializer.Type.COMPACT && SerializerProvider.instance().isSupported(type)) {
+            return type;
+        }
+        return Serializer.Type.HESSIAN;
+    }
+
+    /**
+     * 单次调用链路最多录制的子调用数量
+     *
+     * @return 数量上限
+     */
+    public int getMaxSubInvocations() {
+        final RepeaterConfig rc = config;
+        return rc == null || rc.getMaxSubInvocations() == null ? 2000 : rc.getMaxSubInvocations();
+    }
+
+    /**
+     * 单次调用链路在内存中缓冲的子调用序列化字节上限
+     *
+     * @return 字节上限
+     */
+    public long getMaxSubInvocationBytes() {
+        final RepeaterConfig rc = config;
+        return rc == null || rc.getMaxSubInvocationBytes() == null ? 32L * 1024 * 1024 : rc.getMaxSubInvocationBytes();
+    }
+
+    /**
+     * 子调用分片投递的分片大小；小于等于0表示不分片
+     *
+     * @return 分片大小
+     */
+    public int getSubInvocationChunkSize() {
+        final RepeaterConfig rc = config;
+        return rc == null || rc.getSubInvocationChunkSize() == null ? 0 : rc.getSubInvocationChunkSize();
+    }
+
     public String getAppName() {
         return appName;
     }
@@ -116,6 +278,8 @@ public class ApplicationModel {
 
     public void setConfig(RepeaterConfig config) {
         this.config = config;
+        Tracer.useTtl(config != null && config.isUseTtl());
+        SampleRuleMatcher.compile(config == null ? null : config.getSampleRules());
     }
 
     public ExceptionAware getEa() {
@@ -0,0 +1,709 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.serialize;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.kohsuke.MetaInfServices;
+
+/**
+ * {@link CompactSerializer} 紧凑的二进制序列化实现（无schema）
+ * <p>
+ * 编码方式参考Kryo：
+ * <ul>
+ * <li>常用类型预先注册，只写注册序号；其余类型在一次序列化中第一次出现时写类名，之后只写动态序号</li>
+ * <li>对象按字段顺序（父类在前，类内按字段名）逐个写值，基本类型字段不写标签，整数采用zigzag变长编码</li>
+ * <li>引用跟踪：同一个对象第二次出现时只写引用序号，支持循环引用</li>
+ * </ul>
+ * 与hessian相比不写字段名，序列化结果更小、编解码更快；但要求两端的类字段结构一致：
+ * 每个类在一次序列化中第一次按字段编码时写出字段结构的指纹（字段名+字段类型），两端不一致时反序列化失败，不会按错位的字段读出数据
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+@MetaInfServices(Serializer.class)
+public class CompactSerializer extends AbstractSerializerAdapter {
+
+    private static final byte NULL = 0;
+    private static final byte REF = 1;
+    private static final byte TRUE = 2;
+    private static final byte FALSE = 3;
+    private static final byte INT = 4;
+    private static final byte LONG = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte FLOAT = 7;
+    private static final byte SHORT = 8;
+    private static final byte BYTE = 9;
+    private static final byte CHAR = 10;
+    private static final byte STRING = 11;
+    private static final byte OBJECT = 12;
+    private static final byte ARRAY = 13;
+    private static final byte COLLECTION = 14;
+    private static final byte MAP = 15;
+    private static final byte ENUM = 16;
+    private static final byte DATE = 17;
+    private static final byte BIG_DECIMAL = 18;
+    private static final byte BIG_INTEGER = 19;
+    private static final byte CLASS = 20;
+
+    /**
+     * 预先注册的类型；序号即下标，只能在末尾追加
+     */
+    private static final Class<?>[] REGISTERED = new Class<?>[]{
+            Object.class, Object[].class, String[].class, ArrayList.class, LinkedList.class, HashMap.class,
+            LinkedHashMap.class, TreeMap.class, HashSet.class, LinkedHashSet.class, TreeSet.class,
+            ConcurrentHashMap.class, Date.class, Timestamp.class, java.sql.Date.class, StackTraceElement.class,
+            StackTraceElement[].class, byte[].class, int[].class, long[].class, char[].class
+    };
+
+    private static final Map<Class<?>, Integer> REGISTRATION = new HashMap<Class<?>, Integer>(REGISTERED.length * 2);
+
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<String, Class<?>>(16);
+
+    static {
+        for (int i = 0; i < REGISTERED.length; i++) {
+            REGISTRATION.put(REGISTERED[i], i);
+        }
+        for (Class<?> primitive : new Class<?>[]{boolean.class, byte.class, char.class, short.class,
+                int.class, long.class, float.class, double.class, void.class}) {
+            PRIMITIVES.put(primitive.getName(), primitive);
+        }
+    }
+
+    private final Cache<Class<?>, ClassInfo> classInfos = CacheBuilder.newBuilder().weakKeys().build();
+
+    @Override
+    public Type type() {
+        return Type.COMPACT;
+    }
+
+    @Override
+    public byte[] serialize(Object object, ClassLoader classLoader) throws SerializeException {
+        try {
+            Writer writer = new Writer();
+            writer.writeObject(object);
+            return writer.toByteArray();
+        } catch (Throwable t) {
+            // may produce sof exception
+            throw new SerializeException("[Error-1001]-compact-serialize-error", t);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T deserialize(byte[] bytes, Class<T> type, ClassLoader classLoader) throws SerializeException {
+        try {
+            return (T) new Reader(bytes, classLoader).readObject();
+        } catch (Throwable t) {
+            throw new SerializeException("[Error-1002]-compact-deserialize-error", t);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializeException {
+        return deserialize(bytes, null, null);
+    }
+
+    private ClassInfo classInfo(Class<?> clazz) {
+        ClassInfo info = classInfos.getIfPresent(clazz);
+        if (info == null) {
+            info = new ClassInfo(clazz);
+            classInfos.put(clazz, info);
+        }
+        return info;
+    }
+
+    /**
+     * 类型的编码信息：序列化字段和可用的无参构造器
+     */
+    private static class ClassInfo {
+
+        private final Field[] fields;
+
+        /**
+         * 字段结构指纹（按编码顺序的字段名和字段类型）
+         */
+        private final int fingerprint;
+
+        private final Constructor<?> constructor;
+
+        private final boolean collection;
+
+        private final boolean map;
+
+        private ClassInfo(Class<?> clazz) {
+            List<Field> fields = new ArrayList<Field>();
+            collectFields(clazz, fields);
+            this.fields = fields.toArray(new Field[0]);
+            Hasher hasher = Hashing.murmur3_32().newHasher();
+            for (Field field : this.fields) {
+                hasher.putString(field.getName(), Charsets.UTF_8).putString(field.getType().getName(), Charsets.UTF_8);
+            }
+            this.fingerprint = hasher.hash().asInt();
+            Constructor<?> constructor = null;
+            try {
+                constructor = clazz.getDeclaredConstructor();
+                constructor.setAccessible(true);
+            } catch (Throwable t) {
+                // 没有无参构造器，集合类型按字段编码
+            }
+            this.constructor = constructor;
+            this.collection = constructor != null && Collection.class.isAssignableFrom(clazz);
+            this.map = constructor != null && Map.class.isAssignableFrom(clazz);
+        }
+
+        private static void collectFields(Class<?> clazz, List<Field> fields) {
+            if (clazz == null || clazz == Object.class) {
+                return;
+            }
+            collectFields(clazz.getSuperclass(), fields);
+            Field[] declared = clazz.getDeclaredFields();
+            Arrays.sort(declared, new Comparator<Field>() {
+                @Override
+                public int compare(Field o1, Field o2) {
+                    return o1.getName().compareTo(o2.getName());
+                }
+            });
+            for (Field field : declared) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                fields.add(field);
+            }
+        }
+
+        private Object newInstance(Class<?> clazz) throws Exception {
+            if (constructor != null) {
+                return constructor.newInstance();
+            }
+            return UnsafeAllocator.allocate(clazz);
+        }
+    }
+
+    /**
+     * 不调用构造器创建对象
+     */
+    private static class UnsafeAllocator {
+
+        private static final Object UNSAFE;
+
+        private static final java.lang.reflect.Method ALLOCATE;
+
+        static {
+            Object unsafe = null;
+            java.lang.reflect.Method allocate = null;
+            try {
+                Class<?> clazz = Class.forName("sun.misc.Unsafe");
+                Field field = clazz.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = field.get(null);
+                allocate = clazz.getMethod("allocateInstance", Class.class);
+            } catch (Throwable t) {
+                // ignore
+            }
+            UNSAFE = unsafe;
+            ALLOCATE = allocate;
+        }
+
+        private static Object allocate(Class<?> clazz) throws Exception {
+            if (ALLOCATE == null) {
+                throw new InstantiationException("no accessible constructor for " + clazz.getName());
+            }
+            return ALLOCATE.invoke(UNSAFE, clazz);
+        }
+    }
+
+    private class Writer {
+
+        private byte[] buffer = new byte[256];
+
+        private int position;
+
+        private final IdentityHashMap<Object, Integer> references = new IdentityHashMap<Object, Integer>();
+
+        private final Map<Class<?>, Integer> classes = new HashMap<Class<?>, Integer>();
+
+        /**
+         * 已经写出字段结构指纹的类
+         */
+        private final Set<Class<?>> described = new HashSet<Class<?>>();
+
+        private void writeObject(Object value) throws Exception {
+            if (value == null) {
+                writeByte(NULL);
+                return;
+            }
+            Class<?> clazz = value.getClass();
+            if (clazz == String.class) {
+                writeByte(STRING);
+                writeString((String) value);
+            } else if (clazz == Integer.class) {
+                writeByte(INT);
+                writeVarLong((Integer) value);
+            } else if (clazz == Long.class) {
+                writeByte(LONG);
+                writeVarLong((Long) value);
+            } else if (clazz == Boolean.class) {
+                writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (clazz == Double.class) {
+                writeByte(DOUBLE);
+                writeLong(Double.doubleToRawLongBits((Double) value));
+            } else if (clazz == Float.class) {
+                writeByte(FLOAT);
+                writeVarLong(Float.floatToRawIntBits((Float) value));
+            } else if (clazz == Short.class) {
+                writeByte(SHORT);
+                writeVarLong((Short) value);
+            } else if (clazz == Byte.class) {
+                writeByte(BYTE);
+                writeByte((Byte) value);
+            } else if (clazz == Character.class) {
+                writeByte(CHAR);
+                writeVarLong((Character) value);
+            } else if (value instanceof Enum) {
+                writeByte(ENUM);
+                writeClass(((Enum<?>) value).getDeclaringClass());
+                writeString(((Enum<?>) value).name());
+            } else if (clazz == BigDecimal.class) {
+                writeByte(BIG_DECIMAL);
+                writeString(value.toString());
+            } else if (clazz == BigInteger.class) {
+                writeByte(BIG_INTEGER);
+                writeString(value.toString());
+            } else if (value instanceof Class) {
+                writeByte(CLASS);
+                writeString(((Class<?>) value).getName());
+            } else if (value instanceof Date) {
+                writeByte(DATE);
+                writeClass(clazz);
+                writeVarLong(((Date) value).getTime());
+                if (value instanceof Timestamp) {
+                    writeVarLong(((Timestamp) value).getNanos());
+                }
+            } else {
+                writeReference(value, clazz);
+            }
+        }
+
+        /**
+         * 可变对象做引用跟踪
+         */
+        private void writeReference(Object value, Class<?> clazz) throws Exception {
+            Integer reference = references.get(value);
+            if (reference != null) {
+                writeByte(REF);
+                writeVarInt(reference);
+                return;
+            }
+            references.put(value, references.size());
+            if (clazz.isArray()) {
+                writeByte(ARRAY);
+                writeClass(clazz);
+                writeArray(value, clazz.getComponentType());
+                return;
+            }
+            ClassInfo info = classInfo(clazz);
+            if (info.collection) {
+                writeByte(COLLECTION);
+                writeClass(clazz);
+                Collection<?> collection = (Collection<?>) value;
+                writeVarInt(collection.size());
+                for (Object element : collection) {
+                    writeObject(element);
+                }
+            } else if (info.map) {
+                writeByte(MAP);
+                writeClass(clazz);
+                Map<?, ?> map = (Map<?, ?>) value;
+                writeVarInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeObject(entry.getKey());
+                    writeObject(entry.getValue());
+                }
+            } else {
+                if (value instanceof Throwable) {
+                    // 异常栈延迟填充，写字段前先触发
+                    ((Throwable) value).getStackTrace();
+                }
+                writeByte(OBJECT);
+                writeClass(clazz);
+                // 字段结构指纹用于校验两端类结构是否一致，每个类只写一次
+                if (described.add(clazz)) {
+                    writeVarLong(info.fingerprint);
+                }
+                for (Field field : info.fields) {
+                    writeField(value, field);
+                }
+            }
+        }
+
+        private void writeArray(Object array, Class<?> componentType) throws Exception {
+            int length = Array.getLength(array);
+            writeVarInt(length);
+            if (componentType == byte.class) {
+                ensure(length);
+                System.arraycopy(array, 0, buffer, position, length);
+                position += length;
+            } else if (componentType.isPrimitive()) {
+                for (int i = 0; i < length; i++) {
+                    writePrimitive(componentType, Array.get(array, i));
+                }
+            } else {
+                Object[] objects = (Object[]) array;
+                for (Object element : objects) {
+                    writeObject(element);
+                }
+            }
+        }
+
+        private void writeField(Object value, Field field) throws Exception {
+            Class<?> type = field.getType();
+            if (type.isPrimitive()) {
+                writePrimitive(type, field.get(value));
+            } else {
+                writeObject(field.get(value));
+            }
+        }
+
+        private void writePrimitive(Class<?> type, Object value) {
+            if (type == int.class) {
+                writeVarLong((Integer) value);
+            } else if (type == long.class) {
+                writeVarLong((Long) value);
+            } else if (type == boolean.class) {
+                writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (type == double.class) {
+                writeLong(Double.doubleToRawLongBits((Double) value));
+            } else if (type == float.class) {
+                writeVarLong(Float.floatToRawIntBits((Float) value));
+            } else if (type == short.class) {
+                writeVarLong((Short) value);
+            } else if (type == byte.class) {
+                writeByte((Byte) value);
+            } else if (type == char.class) {
+                writeVarLong((Character) value);
+            }
+        }
+
+        /**
+         * 类型编码：0-新类型（后跟类名）；1~注册数量-注册类型；其余为本次序列化的动态序号
+         */
+        private void writeClass(Class<?> clazz) {
+            Integer registered = REGISTRATION.get(clazz);
+            if (registered != null) {
+                writeVarInt(registered + 1);
+                return;
+            }
+            Integer id = classes.get(clazz);
+            if (id != null) {
+                writeVarInt(REGISTERED.length + 1 + id);
+                return;
+            }
+            classes.put(clazz, classes.size());
+            writeVarInt(0);
+            writeString(clazz.getName());
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(Charsets.UTF_8);
+            writeVarInt(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        /**
+         * zigzag变长编码
+         */
+        private void writeVarLong(long value) {
+            writeVarUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        private void writeVarInt(int value) {
+            writeVarUnsigned(value);
+        }
+
+        private void writeVarUnsigned(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeByte(int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        private void ensure(int size) {
+            if (position + size > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + size));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private class Reader {
+
+        private final byte[] buffer;
+
+        private int position;
+
+        private final ClassLoader classLoader;
+
+        private final List<Object> references = new ArrayList<Object>();
+
+        private final List<Class<?>> classes = new ArrayList<Class<?>>();
+
+        /**
+         * 已经校验过字段结构指纹的类
+         */
+        private final Set<Class<?>> verified = new HashSet<Class<?>>();
+
+        private Reader(byte[] buffer, ClassLoader classLoader) {
+            this.buffer = buffer;
+            this.classLoader = classLoader != null ? classLoader : Thread.currentThread().getContextClassLoader();
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object readObject() throws Exception {
+            byte tag = buffer[position++];
+            switch (tag) {
+                case NULL:
+                    return null;
+                case REF:
+                    return references.get(readVarInt());
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case INT:
+                    return (int) readVarLong();
+                case LONG:
+                    return readVarLong();
+                case DOUBLE:
+                    return Double.longBitsToDouble(readLong());
+                case FLOAT:
+                    return Float.intBitsToFloat((int) readVarLong());
+                case SHORT:
+                    return (short) readVarLong();
+                case BYTE:
+                    return buffer[position++];
+                case CHAR:
+                    return (char) readVarLong();
+                case STRING:
+                    return readString();
+                case ENUM:
+                    return Enum.valueOf((Class<Enum>) readClass(), readString());
+                case BIG_DECIMAL:
+                    return new BigDecimal(readString());
+                case BIG_INTEGER:
+                    return new BigInteger(readString());
+                case CLASS:
+                    return resolve(readString());
+                case DATE:
+                    return readDate(readClass());
+                case ARRAY:
+                    return readArray(readClass().getComponentType());
+                case COLLECTION:
+                    return readCollection(readClass());
+                case MAP:
+                    return readMap(readClass());
+                case OBJECT:
+                    return readFields(readClass());
+                default:
+                    throw new IllegalStateException("unknown tag " + tag + " at " + (position - 1));
+            }
+        }
+
+        private Object readDate(Class<?> clazz) throws Exception {
+            long time = readVarLong();
+            Date date = (Date) clazz.getConstructor(long.class).newInstance(time);
+            if (date instanceof Timestamp) {
+                ((Timestamp) date).setNanos((int) readVarLong());
+            }
+            return date;
+        }
+
+        private Object readArray(Class<?> componentType) throws Exception {
+            int length = readVarInt();
+            Object array = Array.newInstance(componentType, length);
+            references.add(array);
+            if (componentType == byte.class) {
+                System.arraycopy(buffer, position, array, 0, length);
+                position += length;
+            } else if (componentType.isPrimitive()) {
+                for (int i = 0; i < length; i++) {
+                    Array.set(array, i, readPrimitive(componentType));
+                }
+            } else {
+                Object[] objects = (Object[]) array;
+                for (int i = 0; i < length; i++) {
+                    objects[i] = readObject();
+                }
+            }
+            return array;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object readCollection(Class<?> clazz) throws Exception {
+            Collection<Object> collection = (Collection<Object>) classInfo(clazz).newInstance(clazz);
+            references.add(collection);
+            int size = readVarInt();
+            for (int i = 0; i < size; i++) {
+                collection.add(readObject());
+            }
+            return collection;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object readMap(Class<?> clazz) throws Exception {
+            Map<Object, Object> map = (Map<Object, Object>) classInfo(clazz).newInstance(clazz);
+            references.add(map);
+            int size = readVarInt();
+            for (int i = 0; i < size; i++) {
+                Object key = readObject();
+                map.put(key, readObject());
+            }
+            return map;
+        }
+
+        private Object readFields(Class<?> clazz) throws Exception {
+            ClassInfo info = classInfo(clazz);
+            Object value = UnsafeAllocator.allocate(clazz);
+            references.add(value);
+            if (verified.add(clazz)) {
+                int fingerprint = (int) readVarLong();
+                if (fingerprint != info.fingerprint) {
+                    throw new IllegalStateException("class structure changed, class=" + clazz.getName()
+                            + ",expect fingerprint=" + fingerprint + ",actual=" + info.fingerprint);
+                }
+            }
+            for (Field field : info.fields) {
+                Class<?> type = field.getType();
+                field.set(value, type.isPrimitive() ? readPrimitive(type) : readObject());
+            }
+            return value;
+        }
+
+        private Object readPrimitive(Class<?> type) {
+            if (type == int.class) {
+                return (int) readVarLong();
+            } else if (type == long.class) {
+                return readVarLong();
+            } else if (type == boolean.class) {
+                return buffer[position++] == TRUE;
+            } else if (type == double.class) {
+                return Double.longBitsToDouble(readLong());
+            } else if (type == float.class) {
+                return Float.intBitsToFloat((int) readVarLong());
+            } else if (type == short.class) {
+                return (short) readVarLong();
+            } else if (type == byte.class) {
+                return buffer[position++];
+            } else {
+                return (char) readVarLong();
+            }
+        }
+
+        private Class<?> readClass() throws ClassNotFoundException {
+            int id = readVarInt();
+            if (id == 0) {
+                Class<?> clazz = resolve(readString());
+                classes.add(clazz);
+                return clazz;
+            }
+            if (id <= REGISTERED.length) {
+                return REGISTERED[id - 1];
+            }
+            return classes.get(id - REGISTERED.length - 1);
+        }
+
+        private Class<?> resolve(String name) throws ClassNotFoundException {
+            Class<?> primitive = PRIMITIVES.get(name);
+            if (primitive != null) {
+                return primitive;
+            }
+            try {
+                return Class.forName(name, false, classLoader);
+            } catch (ClassNotFoundException e) {
+                return Class.forName(name, false, CompactSerializer.class.getClassLoader());
+            }
+        }
+
+        private String readString() {
+            int length = readVarInt();
+            String value = new String(buffer, position, length, Charsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private long readVarLong() {
+            long value = readVarUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private int readVarInt() {
+            return (int) readVarUnsigned();
+        }
+
+        private long readVarUnsigned() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+    }
+}
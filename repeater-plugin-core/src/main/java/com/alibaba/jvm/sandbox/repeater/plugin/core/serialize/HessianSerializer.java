@@ -4,12 +4,18 @@ import com.alibaba.jvm.sandbox.repeater.plugin.core.bridge.ClassloaderBridge;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.hessian.LocalDateTimeDeserializer;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.hessian.LocalDateTimeSerializer;
 import com.caucho.hessian.io.*;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 import org.kohsuke.MetaInfServices;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
  * {@link HessianSerializer} hessian序列化实现
@@ -20,8 +26,39 @@ import java.util.Map;
 @MetaInfServices(Serializer.class)
 public class HessianSerializer extends AbstractSerializerAdapter {
 
+    /**
+     * 池化的输出缓冲区最大保留大小；超过之后丢弃，避免大对象序列化之后长期占用内存
+     */
+    private final static int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    /**
+     * 编解码器池的容量；超出的编解码器用完即丢弃
+     */
+    private final static int MAX_POOLED_CODECS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final static String BOOTSTRAP_CLASSLOADER = "BootstrapClassLoader";
+
     private Map<String, SerializerFactory> cached = Maps.newConcurrentMap();
 
+    /**
+     * classLoader为null时按线程上下文类加载器缓存序列化工厂（与{@code new SerializerFactory()}行为一致）
+     */
+    private Cache<ClassLoader, SerializerFactory> contextCached = CacheBuilder.newBuilder().weakKeys().build();
+
+    /**
+     * 线程上下文类加载器也为null时使用的序列化工厂
+     */
+    private volatile SerializerFactory bootstrapFactory;
+
+    /**
+     * 编解码器池，复用buffer和hessian输入输出流
+     * <p>
+     * 不使用ThreadLocal：业务线程的ThreadLocalMap不持有模块内的对象，模块卸载后编解码器随序列化实例一起回收，不会钉住模块类加载器；
+     * 取出即独占，序列化过程中重入（例如writeReplace中再次序列化）时取到的是另一个编解码器
+     * </p>
+     */
+    private final BlockingQueue<Codec> codecs = new ArrayBlockingQueue<Codec>(MAX_POOLED_CODECS);
+
     @Override
     public Type type() {
         return Type.HESSIAN;
@@ -29,9 +66,85 @@ public class HessianSerializer extends AbstractSerializerAdapter {
 
     @Override
     public byte[] serialize(Object object, ClassLoader classLoader) throws SerializeException {
-        ByteArrayOutputStream byteArray = new ByteArrayOutputStream();
-        Hessian2Output output = new Hessian2Output(byteArray);
+        return serialize(object, classLoader, (ClassDictionary) null);
+    }
+
+    /**
+     * 使用共享的类定义字典序列化；流中不再写入类定义，只引用字典中的序号
+     *
+     * @param object      对象
+     * @param classLoader 类加载器
+     * @param dictionary  类定义字典；为null时与普通序列化一致
+     * @return 序列化byte数组
+     * @throws SerializeException 序列化异常
+     */
+    public byte[] serialize(Object object, ClassLoader classLoader, ClassDictionary dictionary) throws SerializeException {
+        final Codec codec = acquire();
+        boolean broken = true;
+        try {
+            byte[] bytes = serialize(object, classLoader, dictionary, codec.buffer, codec.output);
+            broken = false;
+            return bytes;
+        } finally {
+            release(codec, broken || codec.buffer.size() > MAX_RETAINED_BUFFER);
+        }
+    }
+
+    /**
+     * 流式序列化；直接写入输出流，只占用hessian输出的固定缓冲区，不关闭输出流
+     *
+     * @param object      对象
+     * @param classLoader 类加载器
+     * @param out         输出流
+     * @throws SerializeException 序列化异常
+     */
+    public void serialize(Object object, ClassLoader classLoader, OutputStream out) throws SerializeException {
+        final Codec codec = acquire();
+        final Hessian2Output output = codec.output;
+        boolean broken = true;
+        try {
+            output.init(out);
+            output.setSerializerFactory(getFactory(classLoader));
+            try {
+                output.writeObject(object);
+                output.close();
+            } catch (Throwable t) {
+                throw new SerializeException("[Error-1001]-hessian-serialize-error", t);
+            }
+            broken = false;
+        } finally {
+            release(codec, broken);
+        }
+    }
+
+    @Override
+    public <T> T deserialize(byte[] bytes, Class<T> type, ClassLoader classLoader) throws SerializeException {
+        return deserialize(bytes, type, classLoader, null, true);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializeException {
+        return deserialize(bytes, null, null, null, false);
+    }
+
+    /**
+     * 反序列化使用类定义字典序列化的数据
+     *
+     * @param bytes            序列化byte数组
+     * @param classLoader      类加载器
+     * @param classDefinitions 类定义字典（或其快照）；为null时与普通反序列化一致
+     * @return 反序列化后的对象
+     * @throws SerializeException 序列化异常
+     */
+    public Object deserialize(byte[] bytes, ClassLoader classLoader, List<String[]> classDefinitions) throws SerializeException {
+        return deserialize(bytes, null, classLoader, classDefinitions, true);
+    }
+
+    private byte[] serialize(Object object, ClassLoader classLoader, ClassDictionary dictionary, ByteArrayOutputStream buffer, Hessian2Output output) throws SerializeException {
+        buffer.reset();
+        output.init(buffer);
         output.setSerializerFactory(getFactory(classLoader));
+        output.setClassDictionary(dictionary);
         try {
             output.writeObject(object);
             output.close();
@@ -39,36 +152,60 @@ public class HessianSerializer extends AbstractSerializerAdapter {
             // may produce sof exception
             throw new SerializeException("[Error-1001]-hessian-serialize-error", t);
         }
-        return byteArray.toByteArray();
+        return buffer.toByteArray();
     }
 
-    @Override
     @SuppressWarnings("unchecked")
-    public <T> T deserialize(byte[] bytes, Class<T> type, ClassLoader classLoader) throws SerializeException {
-        Hessian2Input input = new Hessian2Input(new ByteArrayInputStream(bytes));
-        input.setSerializerFactory(getFactory(classLoader));
-        Object readObject;
+    private <T> T deserialize(byte[] bytes, Class<T> type, ClassLoader classLoader, List<String[]> classDefinitions, boolean typed) throws SerializeException {
+        final Codec codec = acquire();
+        final Hessian2Input input = codec.input;
+        boolean broken = true;
         try {
-            readObject = input.readObject(type);
-            input.close();
-        } catch (Throwable t) {
-            throw new SerializeException("[Error-1002]-hessian-deserialize-error", t);
+            input.init(new ByteArrayInputStream(bytes));
+            input.setSerializerFactory(getFactory(classLoader));
+            input.setClassDictionary(classDefinitions);
+            Object readObject;
+            try {
+                readObject = typed ? input.readObject(type) : input.readObject();
+                input.close();
+            } catch (Throwable t) {
+                throw new SerializeException("[Error-1002]-hessian-deserialize-error", t);
+            }
+            broken = !resetBuffer(input);
+            return (T) readObject;
+        } finally {
+            release(codec, broken);
         }
-        return (T) readObject;
     }
 
-    @Override
-    public Object deserialize(byte[] bytes) throws SerializeException {
-        Hessian2Input input = new Hessian2Input(new ByteArrayInputStream(bytes));
-        input.setSerializerFactory(getFactory(null));
-        Object readObject;
+    /**
+     * 清空输入流的读缓冲区；存在未读完的数据时返回false，编解码器不再复用
+     */
+    private boolean resetBuffer(Hessian2Input input) {
         try {
-            readObject = input.readObject();
-            input.close();
-        } catch (Throwable t) {
-            throw new SerializeException("[Error-1002]-hessian-deserialize-error", t);
+            input.resetBuffer();
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private Codec acquire() {
+        final Codec codec = codecs.poll();
+        return codec == null ? new Codec() : codec;
+    }
+
+    /**
+     * 归还编解码器；异常中断或者缓冲区过大时丢弃，池已满时同样丢弃；
+     * 归还前清空引用表，池中的编解码器不持有上一次编解码的业务对象
+     */
+    private void release(Codec codec, boolean discard) {
+        if (!discard) {
+            codec.output.reset();
+            codec.input.reset();
+            codec.buffer.reset();
+            codecs.offer(codec);
         }
-        return readObject;
     }
 
     /**
@@ -79,27 +216,52 @@ public class HessianSerializer extends AbstractSerializerAdapter {
      * @see com.alibaba.jvm.sandbox.repeater.plugin.core.bridge.ClassloaderBridge
      */
     private SerializerFactory getFactory(ClassLoader classLoader) {
-        String token = getToken(classLoader);
         if (classLoader == null) {
-            final SerializerFactory factory = new SerializerFactory();
-            factory.setAllowNonSerializable(true);
-            registerLocalDateTime(factory);
-            return factory;
+            return getContextFactory();
         }
+        String token = getToken(classLoader);
         SerializerFactory factory = cached.get(token);
         if (factory == null) {
-            factory = new SerializerFactory(classLoader);
-            factory.setAllowNonSerializable(true);
-            registerLocalDateTime(factory);
+            factory = createFactory(classLoader);
             cached.put(token, factory);
         }
         return factory;
     }
 
+    /**
+     * 未指定classLoader时使用线程上下文类加载器（调用方会切换上下文类加载器来控制反序列化）
+     *
+     * @return 序列化工厂
+     */
+    private SerializerFactory getContextFactory() {
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        if (contextClassLoader == null) {
+            SerializerFactory factory = bootstrapFactory;
+            if (factory == null) {
+                factory = createFactory(null);
+                bootstrapFactory = factory;
+            }
+            return factory;
+        }
+        SerializerFactory factory = contextCached.getIfPresent(contextClassLoader);
+        if (factory == null) {
+            factory = createFactory(contextClassLoader);
+            contextCached.put(contextClassLoader, factory);
+        }
+        return factory;
+    }
+
+    private SerializerFactory createFactory(ClassLoader classLoader) {
+        final SerializerFactory factory = new SerializerFactory(classLoader);
+        factory.setAllowNonSerializable(true);
+        registerLocalDateTime(factory);
+        return factory;
+    }
+
     private String getToken(ClassLoader classLoader) {
         ClassloaderBridge instance = ClassloaderBridge.instance();
         if (instance == null) {
-            return classLoader == null ? "BootstrapClassLoader" : classLoader.getClass().getName();
+            return classLoader == null ? BOOTSTRAP_CLASSLOADER : classLoader.getClass().getName();
         }
         return instance.encode(classLoader);
     }
@@ -116,4 +278,16 @@ public class HessianSerializer extends AbstractSerializerAdapter {
             // ignore
         }
     }
+
+    /**
+     * 池化的编解码器，同一时刻只被一个线程持有
+     */
+    private static class Codec {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+
+        private final Hessian2Output output = new Hessian2Output();
+
+        private final Hessian2Input input = new Hessian2Input();
+    }
 }
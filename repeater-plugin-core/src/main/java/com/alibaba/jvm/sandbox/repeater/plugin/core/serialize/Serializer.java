@@ -127,6 +127,25 @@ public interface Serializer {
         HESSIAN,
         JSON,
         JAVA,
-        NONE
+        COMPACT,
+        NONE;
+
+        /**
+         * 按名称解析序列化类型（忽略大小写）
+         *
+         * @param name 类型名称
+         * @return 序列化类型；无法识别时返回{@link #NONE}
+         */
+        public static Type parse(String name) {
+            if (name == null) {
+                return NONE;
+            }
+            for (Type type : values()) {
+                if (type.name().equalsIgnoreCase(name.trim())) {
+                    return type;
+                }
+            }
+            return NONE;
+        }
     }
 }
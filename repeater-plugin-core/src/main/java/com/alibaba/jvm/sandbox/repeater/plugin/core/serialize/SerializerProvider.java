@@ -42,4 +42,14 @@ public class SerializerProvider {
         Serializer serializer = supplier.get(type);
         return serializer == null ? supplier.get(Type.NONE) : serializer;
     }
+
+    /**
+     * 是否存在指定类型的序列化实现
+     *
+     * @param type 序列化类型
+     * @return true/false
+     */
+    public boolean isSupported(Type type) {
+        return supplier.containsKey(type);
+    }
 }
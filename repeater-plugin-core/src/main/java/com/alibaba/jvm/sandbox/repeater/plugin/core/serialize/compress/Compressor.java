@@ -0,0 +1,121 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.compress;
+
+import java.io.OutputStream;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
+
+/**
+ * {@link Compressor} 传输/存储边界的数据压缩
+ * <p>
+ * 只作用于整条录制记录的外层载荷（消息投递、文件、数据库），调用内部的序列化结果保持不压缩，参数相似度匹配不受影响；
+ * 压缩结果由{@link CompressorProvider}加上帧头，解压时根据帧头识别算法，未加帧头的数据原样返回；
+ * 解压结果的长度同时受{@link #MAX_ORIGIN_LENGTH}和压缩数据长度（{@link #MAX_RATIO}倍）限制，避免损坏或伪造的帧头触发超大内存分配
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+public interface Compressor {
+
+    /**
+     * 解压结果的长度上限
+     */
+    int MAX_ORIGIN_LENGTH = 128 * 1024 * 1024;
+
+    /**
+     * deflate/gzip的理论最大压缩比（约1032:1）
+     */
+    int MAX_RATIO = 1032;
+
+    /**
+     * 获取压缩算法类型
+     *
+     * @return type 类型
+     */
+    Type type();
+
+    /**
+     * 压缩；相同输入必须得到相同输出
+     *
+     * @param bytes 原始数据
+     * @return 压缩后的数据（不含帧头）
+     * @throws SerializeException 压缩异常
+     */
+    byte[] compress(byte[] bytes) throws SerializeException;
+
+    /**
+     * 流式压缩；写入返回的流即压缩到{@code out}，关闭返回的流时写完剩余数据并关闭{@code out}
+     *
+     * @param out 压缩数据（不含帧头）的输出
+     * @return 压缩输出流
+     * @throws SerializeException 压缩异常
+     */
+    OutputStream compress(OutputStream out) throws SerializeException;
+
+    /**
+     * 解压
+     *
+     * @param bytes        压缩后的数据（不含帧头）
+     * @param originLength 原始数据长度；流式压缩的数据为-1
+     * @return 原始数据
+     * @throws SerializeException 解压异常；原始长度或解压结果超过上限时同样抛出
+     */
+    byte[] decompress(byte[] bytes, int originLength) throws SerializeException;
+
+    enum Type {
+        /**
+         * 不压缩
+         */
+        NONE((byte) 0),
+        /**
+         * deflate
+         */
+        DEFLATE((byte) 1),
+        /**
+         * gzip
+         */
+        GZIP((byte) 2);
+
+        private final byte code;
+
+        Type(byte code) {
+            this.code = code;
+        }
+
+        public byte getCode() {
+            return code;
+        }
+
+        /**
+         * 根据帧头编码查找类型
+         *
+         * @param code 编码
+         * @return 类型；未知编码返回null
+         */
+        public static Type ofCode(byte code) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 解析配置值，无法识别时不压缩
+         *
+         * @param name 配置值
+         * @return 类型
+         */
+        public static Type parse(String name) {
+            if (name == null) {
+                return NONE;
+            }
+            for (Type type : values()) {
+                if (type.name().equalsIgnoreCase(name.trim())) {
+                    return type;
+                }
+            }
+            return NONE;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.compress;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.compress.Compressor.Type;
+
+/**
+ * {@link CompressorProvider} 提供压缩实现，并负责压缩数据的帧格式
+ * <p>
+ * 帧格式：magic(3 byte) + version(1 byte) + type(1 byte) + 原始长度(4 byte) + 压缩数据；流式压缩时原始长度未知，记为-1
+ * <p>
+ * hessian对象流可以以magic开头（0xF0~0xFF是两字节的紧凑long，如1874序列化为0xFF 'R'），
+ * 压缩帧的判断依赖magic、版本号、算法类型和原始长度的共同校验；原始长度超过上限的帧直接拒绝，不做内存分配
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+public class CompressorProvider {
+
+    private static final byte[] MAGIC = new byte[]{(byte) 0xFF, 'R', 'Z'};
+
+    private static final byte VERSION = 1;
+
+    private static final int VERSION_OFFSET = MAGIC.length;
+
+    private static final int TYPE_OFFSET = VERSION_OFFSET + 1;
+
+    private static final int LENGTH_OFFSET = TYPE_OFFSET + 1;
+
+    private static final int HEADER_LENGTH = LENGTH_OFFSET + 4;
+
+    private static final int UNKNOWN_LENGTH = -1;
+
+    private volatile Map<Type, Compressor> supplier = new HashMap<Type, Compressor>();
+
+    private static CompressorProvider instance = new CompressorProvider();
+
+    public static CompressorProvider instance() {
+        return instance;
+    }
+
+    private CompressorProvider() {
+        ServiceLoader<Compressor> compressors = ServiceLoader.load(Compressor.class, this.getClass().getClassLoader());
+        Iterator<Compressor> iterator = compressors.iterator();
+        while (iterator.hasNext()) {
+            Compressor next = iterator.next();
+            supplier.put(next.type(), next);
+        }
+    }
+
+    /**
+     * 提供指定类型的压缩实现
+     *
+     * @param type 压缩类型
+     * @return 压缩实现；不存在返回null
+     */
+    public Compressor provide(Type type) {
+        return supplier.get(type);
+    }
+
+    /**
+     * 压缩并加上帧头；{@link Type#NONE}或者没有对应实现时原样返回
+     *
+     * @param type  压缩类型
+     * @param bytes 原始数据
+     * @return 压缩后的数据
+     * @throws SerializeException 压缩异常
+     */
+    public byte[] compress(Type type, byte[] bytes) throws SerializeException {
+        Compressor compressor = type == null || type == Type.NONE ? null : supplier.get(type);
+        if (compressor == null || bytes == null) {
+            return bytes;
+        }
+        byte[] compressed = compressor.compress(bytes);
+        byte[] framed = new byte[HEADER_LENGTH + compressed.length];
+        writeHeader(framed, type, bytes.length);
+        System.arraycopy(compressed, 0, framed, HEADER_LENGTH, compressed.length);
+        return framed;
+    }
+
+    /**
+     * 流式压缩：先写出帧头，返回的流写入即压缩；{@link Type#NONE}或者没有对应实现时直接返回{@code out}
+     * <p>
+     * 关闭返回的流时写完剩余数据并关闭{@code out}
+     *
+     * @param type 压缩类型
+     * @param out  输出
+     * @return 压缩输出流
+     * @throws SerializeException 压缩异常
+     */
+    public OutputStream compress(Type type, OutputStream out) throws SerializeException {
+        Compressor compressor = type == null || type == Type.NONE ? null : supplier.get(type);
+        if (compressor == null) {
+            return out;
+        }
+        byte[] header = new byte[HEADER_LENGTH];
+        writeHeader(header, type, UNKNOWN_LENGTH);
+        try {
+            out.write(header);
+        } catch (IOException e) {
+            throw new SerializeException("[Error-1004]-encode error", e);
+        }
+        return compressor.compress(out);
+    }
+
+    /**
+     * 解压；没有帧头的数据视为未压缩，原样返回
+     *
+     * @param bytes 数据
+     * @return 原始数据
+     * @throws SerializeException 解压异常
+     */
+    public byte[] decompress(byte[] bytes) throws SerializeException {
+        if (!isCompressed(bytes)) {
+            return bytes;
+        }
+        Type type = Type.ofCode(bytes[TYPE_OFFSET]);
+        Compressor compressor = supplier.get(type);
+        if (compressor == null) {
+            throw new SerializeException("[Error-1005]-unsupported compress type, code=" + bytes[TYPE_OFFSET]);
+        }
+        byte[] compressed = new byte[bytes.length - HEADER_LENGTH];
+        System.arraycopy(bytes, HEADER_LENGTH, compressed, 0, compressed.length);
+        return compressor.decompress(compressed, readInt(bytes, LENGTH_OFFSET));
+    }
+
+    /**
+     * 是否带有合法的压缩帧头：magic、版本号、算法类型都匹配，且原始长度未超过上限
+     *
+     * @param bytes 数据
+     * @return true/false
+     */
+    public boolean isCompressed(byte[] bytes) {
+        if (bytes == null || bytes.length < HEADER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        if (bytes[VERSION_OFFSET] != VERSION) {
+            return false;
+        }
+        Type type = Type.ofCode(bytes[TYPE_OFFSET]);
+        if (type == null || type == Type.NONE) {
+            return false;
+        }
+        int originLength = readInt(bytes, LENGTH_OFFSET);
+        return originLength == UNKNOWN_LENGTH
+                || (originLength >= 0 && originLength <= maxOriginLength(bytes.length - HEADER_LENGTH));
+    }
+
+    /**
+     * 压缩数据可以还原出的最大长度
+     *
+     * @param compressedLength 压缩数据长度
+     * @return 不超过{@link Compressor#MAX_ORIGIN_LENGTH}
+     */
+    static int maxOriginLength(int compressedLength) {
+        return (int) Math.min(Compressor.MAX_ORIGIN_LENGTH, (long) compressedLength * Compressor.MAX_RATIO + 64);
+    }
+
+    private static void writeHeader(byte[] header, Type type, int originLength) {
+        System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+        header[VERSION_OFFSET] = VERSION;
+        header[TYPE_OFFSET] = type.getCode();
+        writeInt(header, LENGTH_OFFSET, originLength);
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,123 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.compress;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
+
+import org.kohsuke.MetaInfServices;
+
+/**
+ * {@link DeflateCompressor} deflate压缩实现；采用最快压缩级别，减少agent侧的CPU开销
+ * <p>
+ *
+ * @author zhaoyb1990
+ */
+@MetaInfServices(Compressor.class)
+public class DeflateCompressor implements Compressor {
+
+    @Override
+    public Type type() {
+        return Type.DEFLATE;
+    }
+
+    @Override
+    public byte[] compress(byte[] bytes) throws SerializeException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (Throwable t) {
+            throw new SerializeException("[Error-1004]-encode error", t);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) throws SerializeException {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        return new DeflaterOutputStream(out, deflater, 4096) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes, int originLength) throws SerializeException {
+        if (originLength < 0) {
+            return decompress(bytes);
+        }
+        int limit = CompressorProvider.maxOriginLength(bytes.length);
+        if (originLength > limit) {
+            throw new SerializeException("[Error-1003]-decode error, origin length exceeds limit, length=" + originLength + ",limit=" + limit);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            byte[] origin = new byte[originLength];
+            int offset = 0;
+            while (offset < originLength && !inflater.finished()) {
+                int count = inflater.inflate(origin, offset, originLength - offset);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += count;
+            }
+            if (offset != originLength) {
+                throw new DataFormatException("truncated deflate data, expect=" + originLength + ",actual=" + offset);
+            }
+            return origin;
+        } catch (Throwable t) {
+            throw new SerializeException("[Error-1003]-decode error", t);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 解压原始长度未知的数据，解压结果超过上限时中止
+     */
+    private byte[] decompress(byte[] bytes) throws SerializeException {
+        int limit = CompressorProvider.maxOriginLength(bytes.length);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, Math.min(limit, bytes.length * 4)));
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("truncated deflate data, actual=" + out.size());
+                }
+                if (out.size() + count > limit) {
+                    throw new DataFormatException("deflate data exceeds limit, limit=" + limit);
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (Throwable t) {
+            throw new SerializeException("[Error-1003]-decode error", t);
+        } finally {
+            inflater.end();
+        }
+    }
+}
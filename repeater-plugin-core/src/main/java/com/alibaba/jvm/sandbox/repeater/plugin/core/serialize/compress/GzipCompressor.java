@@ -0,0 +1,91 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.compress;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
+
+import org.apache.commons.io.IOUtils;
+import org.kohsuke.MetaInfServices;
+
+/**
+ * {@link GzipCompressor} gzip压缩实现（头部时间戳固定为0，相同输入输出一致）
+ * <p>
+ *
+ * @author zhaoyb1990
+ */
+@MetaInfServices(Compressor.class)
+public class GzipCompressor implements Compressor {
+
+    @Override
+    public Type type() {
+        return Type.GZIP;
+    }
+
+    @Override
+    public byte[] compress(byte[] bytes) throws SerializeException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+        GZIPOutputStream gzip = null;
+        try {
+            gzip = new GZIPOutputStream(out, 4096);
+            gzip.write(bytes);
+            gzip.finish();
+            return out.toByteArray();
+        } catch (Throwable t) {
+            throw new SerializeException("[Error-1004]-encode error", t);
+        } finally {
+            IOUtils.closeQuietly(gzip);
+        }
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) throws SerializeException {
+        try {
+            return new GZIPOutputStream(out, 4096);
+        } catch (IOException e) {
+            throw new SerializeException("[Error-1004]-encode error", e);
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] bytes, int originLength) throws SerializeException {
+        int limit = CompressorProvider.maxOriginLength(bytes.length);
+        if (originLength > limit) {
+            throw new SerializeException("[Error-1003]-decode error, origin length exceeds limit, length=" + originLength + ",limit=" + limit);
+        }
+        GZIPInputStream gzip = null;
+        try {
+            gzip = new GZIPInputStream(new ByteArrayInputStream(bytes), 4096);
+            if (originLength < 0) {
+                return readLimited(gzip, limit);
+            }
+            byte[] origin = new byte[originLength];
+            IOUtils.readFully(gzip, origin);
+            return origin;
+        } catch (Throwable t) {
+            throw new SerializeException("[Error-1003]-decode error", t);
+        } finally {
+            IOUtils.closeQuietly(gzip);
+        }
+    }
+
+    /**
+     * 读取原始长度未知的数据，超过上限时中止
+     */
+    private byte[] readLimited(GZIPInputStream gzip, int limit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = gzip.read(buffer)) != -1) {
+            if (out.size() + count > limit) {
+                throw new IOException("gzip data exceeds limit, limit=" + limit);
+            }
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+}
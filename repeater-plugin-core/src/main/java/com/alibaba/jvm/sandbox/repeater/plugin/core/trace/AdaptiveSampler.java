@@ -0,0 +1,221 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.trace;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.api.Broadcaster;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.impl.AbstractBroadcaster;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.model.ApplicationModel;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.InvokeType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link AdaptiveSampler} 自适应采样
+ * <p>
+ * 开启{@link com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeaterConfig#adaptiveSample}之后，
+ * 按入口类型+入口标识（java入口为类名#方法名，http入口为URI）分别维护实际采样率，配置的{@code sampleRate}（或命中的{@link SampleRuleMatcher.Rule}的采样率）作为上限：
+ * <ul>
+ * <li>统计每个采样入口在事件监听（含及时序列化、投递）和异步序列化中的耗时</li>
+ * <li>每秒调整一次：投递队列堆积过半或有丢弃时全部减半；总耗时超过预算时，耗时超过平均份额的入口减半；总耗时低于预算80%时全部加性增长</li>
+ * </ul>
+ * 新入口从上限的1/20开始逐步增长，避免高峰期新入口一上来就全量录制
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+public class AdaptiveSampler {
+
+    private final static Logger log = LoggerFactory.getLogger(AdaptiveSampler.class);
+
+    /**
+     * 调整周期
+     */
+    private static final long ADJUST_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 最多维护的入口数量；超出后按入口类型合并
+     */
+    private static final int MAX_GAUGES = 512;
+
+    /**
+     * 加性增长的步长（上限的1/20）
+     */
+    private static final int INCREASE_STEPS = 20;
+
+    private static AdaptiveSampler instance = new AdaptiveSampler();
+
+    private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<String, Gauge>();
+
+    /**
+     * 当前周期内的录制总耗时（纳秒）
+     */
+    private final AtomicLong overheadNanos = new AtomicLong();
+
+    private final AtomicLong lastAdjust = new AtomicLong(System.nanoTime());
+
+    private volatile AbstractBroadcaster broadcaster;
+
+    private volatile long lastDropped;
+
+    public static AdaptiveSampler instance() {
+        return instance;
+    }
+
+    private AdaptiveSampler() {
+    }
+
+    /**
+     * 观察消息投递的队列深度和丢弃数量
+     *
+     * @param broadcaster 消息投递
+     */
+    public void watch(Broadcaster broadcaster) {
+        if (broadcaster instanceof AbstractBroadcaster) {
+            this.broadcaster = (AbstractBroadcaster) broadcaster;
+            this.lastDropped = this.broadcaster.getDroppedCount();
+        }
+    }
+
+    public boolean isEnabled() {
+        return ApplicationModel.instance().isAdaptiveSample();
+    }
+
+    /**
+     * 入口的实际采样率（万分比）
+     *
+     * @param invokeType 入口类型
+     * @param key        入口标识；为空时按入口类型
+     * @param ceiling    采样率上限
+     * @return 采样率
+     */
+    public int rate(InvokeType invokeType, String key, int ceiling) {
+        if (!isEnabled()) {
+            return ceiling;
+        }
+        maybeAdjust();
+        Gauge gauge = gauge(gaugeKey(invokeType, key), ceiling);
+        if (gauge.ceiling != ceiling) {
+            gauge.ceiling = ceiling;
+        }
+        return Math.min(gauge.rate, ceiling);
+    }
+
+    /**
+     * 入口对应的统计标识
+     *
+     * @param invokeType 入口类型
+     * @param key        入口标识
+     * @return 统计标识
+     */
+    public String gaugeKey(InvokeType invokeType, String key) {
+        if (key == null || (gauges.size() >= MAX_GAUGES && !gauges.containsKey(invokeType.name() + ":" + key))) {
+            return invokeType.name();
+        }
+        return invokeType.name() + ":" + key;
+    }
+
+    /**
+     * 累计录制耗时
+     *
+     * @param context 追踪上下文；为空时只计入总耗时（例如异步序列化）
+     * @param nanos   耗时
+     */
+    public void overhead(TraceContext context, long nanos) {
+        if (!isEnabled() || (context != null && context.isRepeatFlow())) {
+            return;
+        }
+        overheadNanos.addAndGet(nanos);
+        if (context != null && context.getSampleKey() != null) {
+            Gauge gauge = gauges.get(context.getSampleKey());
+            if (gauge != null) {
+                gauge.overheadNanos.addAndGet(nanos);
+            }
+        }
+    }
+
+    private Gauge gauge(String key, int ceiling) {
+        Gauge gauge = gauges.get(key);
+        if (gauge == null) {
+            Gauge created = new Gauge(Math.max(ApplicationModel.instance().getMinSampleRate(), ceiling / INCREASE_STEPS), ceiling);
+            gauge = gauges.putIfAbsent(key, created);
+            if (gauge == null) {
+                gauge = created;
+            }
+        }
+        return gauge;
+    }
+
+    private void maybeAdjust() {
+        final long now = System.nanoTime();
+        final long last = lastAdjust.get();
+        if (now - last < ADJUST_INTERVAL || !lastAdjust.compareAndSet(last, now)) {
+            return;
+        }
+        adjust(now - last);
+    }
+
+    private void adjust(long elapsed) {
+        ApplicationModel am = ApplicationModel.instance();
+        final long budget = TimeUnit.MILLISECONDS.toNanos(am.getSampleOverheadBudget()) * elapsed / TimeUnit.SECONDS.toNanos(1);
+        final long total = overheadNanos.getAndSet(0);
+        final boolean congested = congested();
+        final long share = gauges.isEmpty() ? budget : budget / gauges.size();
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            Gauge gauge = entry.getValue();
+            final int ceiling = gauge.ceiling;
+            final int floor = Math.min(am.getMinSampleRate(), ceiling);
+            final int step = Math.max(1, ceiling / INCREASE_STEPS);
+            long overhead = gauge.overheadNanos.getAndSet(0);
+            int rate = gauge.rate;
+            if (congested || (total > budget && overhead > share)) {
+                rate = Math.max(floor, rate / 2);
+            } else if (total * 5 <= budget * 4) {
+                rate = Math.min(ceiling, rate + step);
+            }
+            if (rate != gauge.rate) {
+                gauge.rate = rate;
+                if (log.isDebugEnabled()) {
+                    log.debug("adjust sample rate,key={},rate={},overhead={}ns,total={}ns,budget={}ns,congested={}", entry.getKey(), rate, overhead, total, budget, congested);
+                }
+            }
+        }
+    }
+
+    /**
+     * 投递队列堆积过半或者上个周期有丢弃
+     *
+     * @return 是否拥塞
+     */
+    private boolean congested() {
+        final AbstractBroadcaster ab = broadcaster;
+        if (ab == null) {
+            return false;
+        }
+        long dropped = ab.getDroppedCount();
+        boolean congested = dropped > lastDropped || ab.getQueueSize() * 2 > ab.getQueueCapacity();
+        lastDropped = dropped;
+        return congested;
+    }
+
+    private static class Gauge {
+
+        private volatile int rate;
+
+        /**
+         * 采样率上限；全局采样率或命中规则的采样率
+         */
+        private volatile int ceiling;
+
+        private final AtomicLong overheadNanos = new AtomicLong();
+
+        private Gauge(int rate, int ceiling) {
+            this.rate = rate;
+            this.ceiling = ceiling;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.trace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.InvokeType;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.SampleRule;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link SampleRuleMatcher} 编译后的入口采样规则
+ * <p>
+ * 配置变更时编译一次{@link SampleRule}（正则预编译、每条规则一个令牌桶），入口标识到规则的匹配结果放入有界缓存，
+ * 热点入口只在第一次命中时执行正则匹配
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+public class SampleRuleMatcher {
+
+    private final static Logger log = LoggerFactory.getLogger(SampleRuleMatcher.class);
+
+    private static final Rule NO_MATCH = new Rule(null, null, null, 0, 0);
+
+    private static volatile SampleRuleMatcher current = new SampleRuleMatcher(Collections.<Rule>emptyList());
+
+    private final List<Rule> rules;
+
+    private final Cache<String, Rule> decisions = CacheBuilder.newBuilder().maximumSize(4096).build();
+
+    private SampleRuleMatcher(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    public static SampleRuleMatcher current() {
+        return current;
+    }
+
+    /**
+     * 编译采样规则并替换当前规则；非法正则的规则直接忽略
+     *
+     * @param sampleRules 采样规则
+     */
+    public static void compile(List<SampleRule> sampleRules) {
+        List<Rule> rules = new ArrayList<Rule>();
+        if (sampleRules != null) {
+            for (SampleRule sr : sampleRules) {
+                if (sr == null || StringUtils.isEmpty(sr.getPattern())) {
+                    continue;
+                }
+                try {
+                    rules.add(new Rule(sr.getInvokeType(), Pattern.compile(sr.getPattern()), sr.getSampleRate(),
+                            sr.getMaxRecordsPerSecond() == null ? 0 : sr.getMaxRecordsPerSecond(),
+                            sr.getMaxPayloadSize() == null ? 0 : sr.getMaxPayloadSize()));
+                } catch (PatternSyntaxException e) {
+                    log.error("invalid sample rule pattern, ignore it, pattern={}", sr.getPattern(), e);
+                }
+            }
+        }
+        current = new SampleRuleMatcher(rules);
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    /**
+     * 匹配入口的采样规则
+     *
+     * @param invokeType 入口类型
+     * @param key        入口标识
+     * @return 命中的规则；未命中返回null
+     */
+    public Rule match(InvokeType invokeType, String key) {
+        if (rules.isEmpty() || key == null) {
+            return null;
+        }
+        final String cacheKey = invokeType.name() + ":" + key;
+        Rule rule = decisions.getIfPresent(cacheKey);
+        if (rule == null) {
+            rule = NO_MATCH;
+            for (Rule candidate : rules) {
+                if (candidate.matches(invokeType, key)) {
+                    rule = candidate;
+                    break;
+                }
+            }
+            decisions.put(cacheKey, rule);
+        }
+        return rule == NO_MATCH ? null : rule;
+    }
+
+    public static class Rule {
+
+        private final String invokeType;
+
+        private final Pattern pattern;
+
+        private final Integer sampleRate;
+
+        private final int maxRecordsPerSecond;
+
+        private final long maxPayloadSize;
+
+        /**
+         * 令牌桶；容量为每秒记录数
+         */
+        private double tokens;
+
+        private long lastRefill = System.nanoTime();
+
+        private Rule(String invokeType, Pattern pattern, Integer sampleRate, int maxRecordsPerSecond, long maxPayloadSize) {
+            this.invokeType = invokeType;
+            this.pattern = pattern;
+            this.sampleRate = sampleRate;
+            this.maxRecordsPerSecond = maxRecordsPerSecond;
+            this.maxPayloadSize = maxPayloadSize;
+            this.tokens = maxRecordsPerSecond;
+        }
+
+        private boolean matches(InvokeType type, String key) {
+            return (invokeType == null || invokeType.equalsIgnoreCase(type.name())) && pattern.matcher(key).matches();
+        }
+
+        /**
+         * 规则的采样率
+         *
+         * @param defaultRate 全局采样率
+         * @return 采样率（万分比）
+         */
+        public int getSampleRate(int defaultRate) {
+            return sampleRate == null ? defaultRate : sampleRate;
+        }
+
+        /**
+         * 获取一个录制令牌
+         *
+         * @return 是否获取成功
+         */
+        public synchronized boolean tryAcquire() {
+            if (maxRecordsPerSecond <= 0) {
+                return true;
+            }
+            final long now = System.nanoTime();
+            tokens = Math.min(maxRecordsPerSecond, tokens + (double) (now - lastRefill) * maxRecordsPerSecond / TimeUnit.SECONDS.toNanos(1));
+            lastRefill = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+
+        /**
+         * @return 入口调用序列化后的最大字节数；小于等于0表示不限制
+         */
+        public long getMaxPayloadSize() {
+            return maxPayloadSize;
+        }
+    }
+}
@@ -1,14 +1,24 @@
 package com.alibaba.jvm.sandbox.repeater.plugin.core.trace;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.alibaba.jvm.sandbox.repeater.plugin.core.model.ApplicationModel;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.SerializerWrapper;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.Invocation;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.InvokeType;
+import com.caucho.hessian.io.ClassDictionary;
 
-import static com.alibaba.jvm.sandbox.repeater.plugin.core.trace.TraceGenerator.getSampleBit;
 import static com.alibaba.jvm.sandbox.repeater.plugin.core.trace.TraceGenerator.isValid;
-import static java.lang.Long.parseLong;
+import static com.alibaba.jvm.sandbox.repeater.plugin.core.trace.TraceGenerator.sampleBucket;
 
 /**
  * {@link TraceContext} 定义一个简单的上下文，用于串联一次完成调用
@@ -19,6 +29,11 @@ import static java.lang.Long.parseLong;
  */
 public class TraceContext {
 
+    /**
+     * 各入口类型的未采样标记
+     */
+    private static final ConcurrentHashMap<InvokeType, TraceContext> UNSAMPLED_MARKERS = new ConcurrentHashMap<InvokeType, TraceContext>(8);
+
     /**
      * 唯一标识一次调用
      */
@@ -34,6 +49,21 @@ public class TraceContext {
      */
     private volatile boolean sampled;
 
+    /**
+     * 回放流量 - 开启追踪或放置回放上下文时标记
+     */
+    private volatile boolean repeatFlow;
+
+    /**
+     * 入口的自适应采样统计标识；录制开销按此归属
+     */
+    private volatile String sampleKey;
+
+    /**
+     * 入口命中的采样规则
+     */
+    private volatile SampleRuleMatcher.Rule sampleRule;
+
     /**
      * 调用的类型{@link com.alibaba.jvm.sandbox.repeater.plugin.domain.InvokeType}
      */
@@ -44,9 +74,78 @@ public class TraceContext {
      */
     private Map<String, String> extra = new HashMap<String, String>();
 
+    /**
+     * 子调用收集；开启ttl时多个线程共享同一个上下文，只追加不修改
+     */
+    private final Queue<Invocation> subInvocations = new ConcurrentLinkedQueue<Invocation>();
+
+    private final AtomicInteger subInvocationCount = new AtomicInteger();
+
+    private final AtomicInteger overflowCount = new AtomicInteger();
+
+    /**
+     * 当前缓冲（尚未投递）的子调用数量和序列化字节数
+     */
+    private final AtomicInteger bufferedCount = new AtomicInteger();
+
+    private final AtomicLong bufferedBytes = new AtomicLong();
+
+    /**
+     * 已经投递的子调用分片序号
+     */
+    private final AtomicInteger chunkIndex = new AtomicInteger();
+
+    /**
+     * 同一时刻只允许一个线程取分片
+     */
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    /**
+     * 子调用已经被入口取走
+     */
+    private volatile boolean drained;
+
+    /**
+     * 整条记录共享的类定义字典；开启{@link com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeaterConfig#classDictionary}时按需创建
+     */
+    private volatile ClassDictionary classDictionary;
+
+    /**
+     * 未采样标记：预过滤未通过的入口放置，多个请求共享，不可修改
+     */
+    private final boolean unsampledMarker;
+
     TraceContext(String traceId) {
         this.timestamp = System.currentTimeMillis();
         this.traceId = traceId;
+        this.unsampledMarker = false;
+    }
+
+    private TraceContext(InvokeType invokeType) {
+        this.timestamp = System.currentTimeMillis();
+        this.invokeType = invokeType;
+        this.unsampledMarker = true;
+    }
+
+    /**
+     * 获取入口类型的未采样标记
+     * <p>
+     * 预过滤未通过的入口不生成traceId、不开启完整的追踪，只放置这个标记：与未采样的上下文一样，
+     * 下级入口（dubbo provider、MQ consumer等）看到已有的上下文不再开启自己的追踪，也不会被采集
+     *
+     * @param invokeType 入口类型
+     * @return 未采样标记
+     */
+    static TraceContext unsampled(InvokeType invokeType) {
+        TraceContext marker = UNSAMPLED_MARKERS.get(invokeType);
+        if (marker == null) {
+            TraceContext created = new TraceContext(invokeType);
+            marker = UNSAMPLED_MARKERS.putIfAbsent(invokeType, created);
+            if (marker == null) {
+                marker = created;
+            }
+        }
+        return marker;
     }
 
     public String getTraceId() {
@@ -62,6 +161,9 @@ public class TraceContext {
     }
 
     public String putExtra(String key, String value) {
+        if (unsampledMarker) {
+            return null;
+        }
         return extra.put(key, value);
     }
 
@@ -70,7 +172,27 @@ public class TraceContext {
     }
 
     public void setSampled(boolean sampled) {
-        this.sampled = sampled;
+        if (!unsampledMarker) {
+            this.sampled = sampled;
+        }
+    }
+
+    public boolean isRepeatFlow() {
+        return repeatFlow;
+    }
+
+    public void setRepeatFlow(boolean repeatFlow) {
+        if (!unsampledMarker) {
+            this.repeatFlow = repeatFlow;
+        }
+    }
+
+    public String getSampleKey() {
+        return sampleKey;
+    }
+
+    public SampleRuleMatcher.Rule getSampleRule() {
+        return sampleRule;
     }
 
     public InvokeType getInvokeType() {
@@ -78,7 +200,129 @@ public class TraceContext {
     }
 
     public void setInvokeType(InvokeType invokeType) {
-        this.invokeType = invokeType;
+        if (!unsampledMarker) {
+            this.invokeType = invokeType;
+        }
+    }
+
+    public boolean isUnsampledMarker() {
+        return unsampledMarker;
+    }
+
+    /**
+     * 收集子调用
+     *
+     * @param invocation 子调用
+     * @param limit      数量上限（整条链路）
+     * @param byteLimit  缓冲字节上限（只统计已序列化的部分；异步序列化的调用按0计，不受字节上限约束）
+     * @return 是否收集成功；超出上限或已经被入口取走时返回false
+     */
+    public boolean addSubInvocation(Invocation invocation, int limit, long byteLimit) {
+        if (drained || unsampledMarker) {
+            return false;
+        }
+        if (subInvocationCount.incrementAndGet() > limit || bufferedBytes.get() >= byteLimit) {
+            overflowCount.incrementAndGet();
+            return false;
+        }
+        bufferedBytes.addAndGet(SerializerWrapper.serializedSize(invocation));
+        bufferedCount.incrementAndGet();
+        subInvocations.offer(invocation);
+        return true;
+    }
+
+    /**
+     * 取走当前缓冲的子调用作为一个分片
+     *
+     * @param drainTo 分片
+     * @return 分片序号；其他线程正在取分片或已经被入口取走时返回0
+     */
+    public int drainChunk(List<Invocation> drainTo) {
+        if (drained || !flushing.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            if (drained) {
+                return 0;
+            }
+            poll(drainTo);
+            return drainTo.isEmpty() ? 0 : chunkIndex.incrementAndGet();
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    /**
+     * 取走收集到的子调用，入口调用完成时调用
+     *
+     * @return 子调用
+     */
+    public List<Invocation> drainSubInvocations() {
+        drained = true;
+        // 等待正在进行的分片完成，保证之后读到的分片数量是最终值
+        while (!flushing.compareAndSet(false, true)) {
+            Thread.yield();
+        }
+        try {
+            List<Invocation> drainTo = new ArrayList<Invocation>(bufferedCount.get());
+            poll(drainTo);
+            return drainTo;
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    private void poll(List<Invocation> drainTo) {
+        Invocation invocation;
+        while ((invocation = subInvocations.poll()) != null) {
+            bufferedCount.decrementAndGet();
+            bufferedBytes.addAndGet(-SerializerWrapper.serializedSize(invocation));
+            drainTo.add(invocation);
+        }
+    }
+
+    public int getBufferedCount() {
+        return bufferedCount.get();
+    }
+
+    public long getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    /**
+     * 已经投递的分片数量
+     *
+     * @return 分片数量
+     */
+    public int getChunkCount() {
+        return chunkIndex.get();
+    }
+
+    public boolean isDrained() {
+        return drained;
+    }
+
+    public int getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    /**
+     * 获取记录级的类定义字典；开启ttl时多个线程共享同一份
+     *
+     * @return 类定义字典
+     */
+    public ClassDictionary getClassDictionary() {
+        ClassDictionary dictionary = classDictionary;
+        if (dictionary == null) {
+            synchronized (this) {
+                dictionary = classDictionary;
+                if (dictionary == null) {
+                    dictionary = new ClassDictionary();
+                    classDictionary = dictionary;
+                }
+            }
+        }
+        return dictionary;
     }
 
     /**
@@ -87,15 +331,52 @@ public class TraceContext {
      * @return 是否被采样
      */
     public boolean inTimeSample(InvokeType invokeType) {
+        return inTimeSample(invokeType, null);
+    }
+
+    /**
+     * 及时计算采样
+     * @param invokeType 调用类型
+     * @param key        入口标识（按入口匹配采样规则、自适应调整采样率）
+     * @return 是否被采样
+     */
+    public boolean inTimeSample(InvokeType invokeType, String key) {
+        if (unsampledMarker) {
+            return false;
+        }
         // 第一级入口流量才会计算采样；非自身入口类型直接抛弃
         if (this.invokeType == null || this.invokeType == invokeType) {
-            boolean sampled = isValid(traceId) && parseLong(getSampleBit(traceId)) % 10000 < ApplicationModel.instance().getSampleRate();
+            final AdaptiveSampler sampler = AdaptiveSampler.instance();
+            final SampleRuleMatcher.Rule rule = SampleRuleMatcher.current().match(invokeType, key);
+            // 先按采样率过滤，命中后才消耗令牌
+            boolean sampled = isValid(traceId) && sampleBucket(traceId) < sampleRate(invokeType, key)
+                    && (rule == null || rule.tryAcquire());
             this.invokeType = invokeType;
             this.sampled = sampled;
+            this.sampleRule = sampled ? rule : null;
+            if (sampled && sampler.isEnabled()) {
+                this.sampleKey = sampler.gaugeKey(invokeType, key);
+            }
             return sampled;
         } else {
             // 下级入口不采集
             return false;
         }
     }
+
+    /**
+     * 入口的实际采样率（万分比）：命中的采样规则或全局采样率作为上限，再经过自适应调整
+     * <p>
+     * 不依赖追踪上下文，入口插件可以在开启追踪之前用它做采样预判
+     *
+     * @param invokeType 入口类型
+     * @param key        入口标识
+     * @return 采样率
+     */
+    public static int sampleRate(InvokeType invokeType, String key) {
+        final SampleRuleMatcher.Rule rule = SampleRuleMatcher.current().match(invokeType, key);
+        final int globalRate = ApplicationModel.instance().getSampleRate();
+        final int ceiling = rule == null ? globalRate : rule.getSampleRate(globalRate);
+        return AdaptiveSampler.instance().rate(invokeType, key, ceiling);
+    }
 }
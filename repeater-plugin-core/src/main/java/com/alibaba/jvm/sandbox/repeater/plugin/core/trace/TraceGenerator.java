@@ -22,13 +22,42 @@ public class TraceGenerator {
     private static String END_FLAG = "ed";
 
     public static String generate() {
+        return generate(getNext());
+    }
+
+    /**
+     * 使用预先占用的序号生成traceId；序号即采样位
+     *
+     * @param sequence {@link #nextSequence()}返回的序号
+     * @return traceId
+     */
+    public static String generate(int sequence) {
         StringBuilder builder = new StringBuilder(32);
         builder.append(IP_COMPLETION)
                 .append(System.currentTimeMillis())
-                .append(getNext()).append(END_FLAG);
+                .append(sequence).append(END_FLAG);
         return builder.toString();
     }
 
+    /**
+     * 占用一个序号；用于在生成traceId之前先做采样判断
+     *
+     * @return 序号
+     */
+    public static int nextSequence() {
+        return getNext();
+    }
+
+    /**
+     * traceId对应的采样桶
+     *
+     * @param traceId traceId
+     * @return 采样桶[0, 10000)，与采样率（万分比）比较
+     */
+    public static int sampleBucket(String traceId) {
+        return Integer.parseInt(getSampleBit(traceId)) % 10000;
+    }
+
     public static boolean isValid(String traceId) {
         if (StringUtils.isBlank(traceId)) {
             return false;
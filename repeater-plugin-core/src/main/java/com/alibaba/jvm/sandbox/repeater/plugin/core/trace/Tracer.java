@@ -1,6 +1,11 @@
 package com.alibaba.jvm.sandbox.repeater.plugin.core.trace;
 
-import com.alibaba.jvm.sandbox.repeater.plugin.core.model.ApplicationModel;
+import java.util.List;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.core.cache.RecordCache;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.cache.RepeatCache;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.Invocation;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.InvokeType;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeaterConfig;
 import com.alibaba.ttl.TransmittableThreadLocal;
 import org.slf4j.Logger;
@@ -14,6 +19,8 @@ import org.slf4j.LoggerFactory;
  * 如果不开启{@link RepeaterConfig#useTtl}，只能录制到单线程的子调用信息
  * <p>
  * 由于上下文信息是从entrance插件开启{@code Tracer.start()}，必须在entrance插件进行关闭({@code Tracer.end()})，否则会出现上下文错乱问题
+ * <p>
+ * 载体在配置变更时({@link #useTtl(boolean)})确定，事件处理路径上只做一次threadLocal读取；是否回放流量标记在{@link TraceContext}上
  * </p>
  *
  * @author zhaoyb1990
@@ -27,6 +34,21 @@ public class Tracer {
 
     private static ThreadLocal<TraceContext> normalContext = new ThreadLocal<TraceContext>();
 
+    /**
+     * 当前使用的载体
+     */
+    private static volatile ThreadLocal<TraceContext> carrier = normalContext;
+
+    /**
+     * 切换上下文载体，配置变更时调用
+     *
+     * @param useTtl 是否使用ttl
+     * @see com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeaterConfig#useTtl
+     */
+    public static void useTtl(boolean useTtl) {
+        carrier = useTtl ? ttlContext : normalContext;
+    }
+
     /**
      * 开启追踪一次调用，非线程安全
      *
@@ -43,28 +65,49 @@ public class Tracer {
      * @return 调用上下文
      */
     public static TraceContext start(String traceId) {
-        TraceContext context = Tracer.getContextCarrie().get();
+        final ThreadLocal<TraceContext> carrier = Tracer.carrier;
+        TraceContext context = carrier.get();
         if (context != null) {
             return context;
         }
-        if (!TraceGenerator.isValid(traceId)) {
+        boolean repeatFlow = false;
+        if (TraceGenerator.isValid(traceId)) {
+            // 透传traceId开启的追踪；回放上下文在此之前已经放置的情况下只在这里查询一次
+            repeatFlow = RepeatCache.isRepeatFlow(traceId);
+        } else {
             traceId = TraceGenerator.generate();
         }
         context = new TraceContext(traceId);
+        context.setRepeatFlow(repeatFlow);
         if(log.isDebugEnabled()){
             log.debug("[Tracer] start trace success,traceId={},timestamp={}", context.getTraceId(), context.getTimestamp());
         }
-        Tracer.getContextCarrie().set(context);
+        carrier.set(context);
         return context;
     }
 
+    /**
+     * 放置未采样标记，预过滤未通过的入口调用；已有上下文时不做处理
+     * <p>
+     * 标记与开启追踪一样由入口在完成时{@link #end()}清理
+     *
+     * @param invokeType 入口类型
+     * @see TraceContext#unsampled(InvokeType)
+     */
+    public static void startUnsampled(InvokeType invokeType) {
+        final ThreadLocal<TraceContext> carrier = Tracer.carrier;
+        if (carrier.get() == null) {
+            carrier.set(TraceContext.unsampled(invokeType));
+        }
+    }
+
     /**
      * 获取当前上下文
      *
      * @return TraceContext
      */
     public static TraceContext getContext() {
-        return Tracer.getContextCarrie().get();
+        return carrier.get();
     }
 
     /**
@@ -73,7 +116,18 @@ public class Tracer {
      * @return 调用追踪ID
      */
     public static String getTraceId() {
-        return Tracer.getContextCarrie().get() == null ? null : Tracer.getContextCarrie().get().getTraceId();
+        final TraceContext context = carrier.get();
+        return context == null ? null : context.getTraceId();
+    }
+
+    /**
+     * 当前调用是否回放流量
+     *
+     * @return 是否回放流量
+     */
+    public static boolean isRepeatFlow() {
+        final TraceContext context = carrier.get();
+        return context != null && context.isRepeatFlow();
     }
 
     /**
@@ -84,16 +138,13 @@ public class Tracer {
         if (context != null && log.isDebugEnabled()) {
             log.debug("[Tracer] stop  trace success,type={},traceId={},cost={}ms", context.getInvokeType(), context.getTraceId(), System.currentTimeMillis() - context.getTimestamp());
         }
-        getContextCarrie().remove();
-    }
-
-    /**
-     * 根据用户是否开启ttl选择合适的载体
-     *
-     * @return 上下文threadLocal载体
-     * @see com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeaterConfig#useTtl
-     */
-    private static ThreadLocal<TraceContext> getContextCarrie() {
-        return ApplicationModel.instance().getConfig().isUseTtl() ? ttlContext : normalContext;
+        // 入口调用尚未完成（如异步http）时，把已收集的子调用和分片数量转存到缓存，由完成时的线程取走
+        if (context != null && context.isSampled() && !context.isDrained()) {
+            List<Invocation> subInvocations = context.drainSubInvocations();
+            RecordCache.cacheSubInvocations(context.getTraceId(), subInvocations, context.getChunkCount());
+        }
+        // 载体可能在追踪过程中被切换，两个载体都清理
+        ttlContext.remove();
+        normalContext.remove();
     }
 }
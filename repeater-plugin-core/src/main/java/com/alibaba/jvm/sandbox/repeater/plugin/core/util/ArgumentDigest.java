@@ -0,0 +1,314 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.util;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+
+/**
+ * {@link ArgumentDigest} 参数的结构化摘要
+ * <p>
+ * 将参数对象图按字段展开为{@code 路径 -> 叶子值}，叶子值统一归一化为基础类型/字符串，同时计算与遍历顺序无关的64位摘要；
+ * 摘要只依赖叶子值本身（不依赖identityHashCode），跨JVM稳定
+ * </p>
+ * <p>
+ * 数组、List等有序容器的路径使用下标；无序的Set按元素自身的摘要排序，路径使用元素摘要；Map的路径使用key：
+ * 基础类型的key取归一化的值，其余key取key的摘要（不使用{@code toString}，避免identityHashCode进入路径）
+ * </p>
+ * <p>
+ * 展开深度和叶子数量有上限，超出部分以类型名代替；JDK内部类型（java.*）直接按{@code toString}作为叶子，不做反射
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+public class ArgumentDigest {
+
+    private static final int MAX_DEPTH = 8;
+
+    private static final int MAX_LEAVES = 2048;
+
+    /**
+     * null叶子
+     */
+    private static final String NULL = "\u0000null";
+
+    private static final String CYCLE = "\u0000cycle";
+
+    private static final ArgumentDigest EMPTY = new ArgumentDigest(Collections.<String, Object>emptyMap(), 0L);
+
+    /**
+     * 字段缓存；业务类由业务classloader加载，不能强引用
+     */
+    private static final Cache<Class<?>, Field[]> FIELD_CACHE = CacheBuilder.newBuilder().weakKeys().softValues().build();
+
+    private final Map<String, Object> leaves;
+
+    private final long hash;
+
+    private ArgumentDigest(Map<String, Object> leaves, long hash) {
+        this.leaves = leaves;
+        this.hash = hash;
+    }
+
+    /**
+     * 计算参数数组的结构化摘要
+     *
+     * @param arguments 参数数组
+     * @return 摘要
+     */
+    public static ArgumentDigest of(Object[] arguments) {
+        if (arguments == null || arguments.length == 0) {
+            return EMPTY;
+        }
+        Map<String, Object> leaves = new LinkedHashMap<String, Object>();
+        IdentityHashMap<Object, Boolean> visiting = new IdentityHashMap<Object, Boolean>();
+        for (int i = 0; i < arguments.length; i++) {
+            flatten("[" + i + "]", arguments[i], 0, leaves, visiting);
+        }
+        return new ArgumentDigest(leaves, hash(leaves));
+    }
+
+    /**
+     * 与另一个摘要完全一致（摘要相等且叶子逐一相等）
+     *
+     * @param other 另一个摘要
+     * @return 是否一致
+     */
+    public boolean sameAs(ArgumentDigest other) {
+        return other != null && hash == other.hash && leaves.equals(other.leaves);
+    }
+
+    public Map<String, Object> getLeaves() {
+        return leaves;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    public int size() {
+        return leaves.size();
+    }
+
+    private static void flatten(String path, Object value, int depth, Map<String, Object> leaves, IdentityHashMap<Object, Boolean> visiting) {
+        if (leaves.size() >= MAX_LEAVES) {
+            return;
+        }
+        if (value == null) {
+            leaves.put(path, NULL);
+            return;
+        }
+        Class<?> clazz = value.getClass();
+        if (isLeaf(clazz)) {
+            leaves.put(path, normalize(value));
+            return;
+        }
+        if (depth >= MAX_DEPTH) {
+            leaves.put(path, clazz.getName());
+            return;
+        }
+        if (visiting.containsKey(value)) {
+            leaves.put(path, CYCLE);
+            return;
+        }
+        visiting.put(value, Boolean.TRUE);
+        try {
+            if (clazz.isArray()) {
+                int length = Array.getLength(value);
+                leaves.put(path + "#", length);
+                for (int i = 0; i < length; i++) {
+                    flatten(path + "[" + i + "]", Array.get(value, i), depth + 1, leaves, visiting);
+                }
+            } else if (value instanceof Set && !(value instanceof SortedSet)) {
+                flattenSet(path, (Set<?>) value, depth, leaves, visiting);
+            } else if (value instanceof Collection) {
+                leaves.put(path + "#", ((Collection<?>) value).size());
+                int i = 0;
+                for (Object element : (Collection<?>) value) {
+                    flatten(path + "[" + i++ + "]", element, depth + 1, leaves, visiting);
+                }
+            } else if (value instanceof Map) {
+                leaves.put(path + "#", ((Map<?, ?>) value).size());
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    flatten(path + "{" + keyOf(entry.getKey(), depth + 1, visiting) + "}", entry.getValue(), depth + 1, leaves, visiting);
+                }
+            } else if (clazz.getName().startsWith("java.")) {
+                leaves.put(path, String.valueOf(value));
+            } else {
+                for (Field field : fields(clazz)) {
+                    Object fieldValue;
+                    try {
+                        fieldValue = field.get(value);
+                    } catch (IllegalAccessException e) {
+                        continue;
+                    }
+                    flatten(path + "." + field.getName(), fieldValue, depth + 1, leaves, visiting);
+                }
+            }
+        } finally {
+            visiting.remove(value);
+        }
+    }
+
+    /**
+     * 展开无序集合；元素按摘要排序，摘要相同（结构完全一致）的元素追加出现次数
+     */
+    private static void flattenSet(String path, Set<?> set, int depth, Map<String, Object> leaves, IdentityHashMap<Object, Boolean> visiting) {
+        leaves.put(path + "#", set.size());
+        List<Subtree> elements = new ArrayList<Subtree>(set.size());
+        for (Object element : set) {
+            elements.add(Subtree.of(element, depth + 1, visiting));
+        }
+        Collections.sort(elements);
+        int occurrence = 0;
+        for (int i = 0; i < elements.size(); i++) {
+            Subtree element = elements.get(i);
+            occurrence = i > 0 && elements.get(i - 1).hash == element.hash ? occurrence + 1 : 0;
+            String token = Long.toHexString(element.hash) + (occurrence > 0 ? "~" + occurrence : "");
+            element.copyTo(path + "[#" + token + "]", leaves);
+        }
+    }
+
+    /**
+     * map key在路径中的表示
+     */
+    private static String keyOf(Object key, int depth, IdentityHashMap<Object, Boolean> visiting) {
+        if (key == null) {
+            return NULL;
+        }
+        if (isLeaf(key.getClass())) {
+            return String.valueOf(normalize(key));
+        }
+        return "#" + Long.toHexString(Subtree.of(key, depth, visiting).hash);
+    }
+
+    /**
+     * 求和保证与展开顺序无关（HashMap等容器的遍历顺序不可靠）
+     */
+    private static long hash(Map<String, Object> leaves) {
+        long hash = 0L;
+        for (Map.Entry<String, Object> entry : leaves.entrySet()) {
+            hash += mix(entry.getKey().hashCode(), entry.getValue().hashCode());
+        }
+        return hash;
+    }
+
+    private static boolean isLeaf(Class<?> clazz) {
+        return clazz == String.class
+                || clazz == Integer.class
+                || clazz == Long.class
+                || clazz == Boolean.class
+                || clazz == Character.class
+                || clazz == Short.class
+                || clazz == Byte.class
+                || clazz == Double.class
+                || clazz == Float.class
+                || clazz == BigDecimal.class
+                || clazz == BigInteger.class
+                || clazz == Class.class
+                || clazz.isEnum()
+                || (clazz.getSuperclass() != null && clazz.getSuperclass().isEnum())
+                || Date.class.isAssignableFrom(clazz);
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof Class) {
+            return ((Class<?>) value).getName();
+        }
+        return value;
+    }
+
+    private static Field[] fields(Class<?> clazz) {
+        Field[] cached = FIELD_CACHE.getIfPresent(clazz);
+        if (cached != null) {
+            return cached;
+        }
+        List<Field> fields = Lists.newArrayList();
+        for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                } catch (RuntimeException e) {
+                    continue;
+                }
+                fields.add(field);
+            }
+        }
+        cached = fields.toArray(new Field[fields.size()]);
+        FIELD_CACHE.put(clazz, cached);
+        return cached;
+    }
+
+    /**
+     * 以自身为根展开的子树（路径相对于子树的根）
+     */
+    private static class Subtree implements Comparable<Subtree> {
+
+        private final Map<String, Object> leaves;
+
+        private final long hash;
+
+        private Subtree(Map<String, Object> leaves, long hash) {
+            this.leaves = leaves;
+            this.hash = hash;
+        }
+
+        private static Subtree of(Object value, int depth, IdentityHashMap<Object, Boolean> visiting) {
+            Map<String, Object> leaves = new LinkedHashMap<String, Object>();
+            flatten("", value, depth, leaves, visiting);
+            return new Subtree(leaves, hash(leaves));
+        }
+
+        private void copyTo(String path, Map<String, Object> target) {
+            for (Map.Entry<String, Object> entry : leaves.entrySet()) {
+                if (target.size() >= MAX_LEAVES) {
+                    return;
+                }
+                target.put(path + entry.getKey(), entry.getValue());
+            }
+        }
+
+        @Override
+        public int compareTo(Subtree o) {
+            return hash < o.hash ? -1 : (hash == o.hash ? 0 : 1);
+        }
+    }
+
+    /**
+     * murmur3 fmix64
+     */
+    private static long mix(int pathHash, int valueHash) {
+        long k = ((long) pathHash << 32) ^ (valueHash & 0xffffffffL);
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -30,6 +30,17 @@ public class HttpUtil {
             .writeTimeout(10, TimeUnit.SECONDS)
             .build();
 
+    /**
+     * 录制消息投递使用的client：与{@link #client}共享连接池和调度器，超时更短且不自动重试；
+     * 投递在消费线程内同步执行，单次投递阻塞不超过连接、写、读超时之和
+     */
+    private static final OkHttpClient broadcastClient = client.newBuilder()
+            .connectTimeout(1, TimeUnit.SECONDS)
+            .readTimeout(3, TimeUnit.SECONDS)
+            .writeTimeout(3, TimeUnit.SECONDS)
+            .retryOnConnectionFailure(false)
+            .build();
+
     /**
      * 执行GET请求，返回body的string
      *
@@ -56,6 +67,23 @@ public class HttpUtil {
         return executeRequest(builder.build());
     }
 
+    /**
+     * 执行GET请求，返回body的byte数组（二进制传输）
+     *
+     * @param url     请求URL
+     * @param headers 请求头
+     * @return response的内容，通过{@link Resp#getContent()}获取
+     */
+    public static Resp doGetBytes(String url, Map<String, String> headers) {
+        final Request.Builder builder = new Request.Builder().get().url(url);
+        if (MapUtils.isNotEmpty(headers)) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                builder.header(entry.getKey(), entry.getValue());
+            }
+        }
+        return executeRequest(builder.build(), 3, true);
+    }
+
     /**
      * 执行GET请求，返回body的string
      *
@@ -265,6 +293,74 @@ public class HttpUtil {
         return executeRequest(rb.build());
     }
 
+    /**
+     * Post方法请求（二进制body）
+     *
+     * @param url     url地址
+     * @param headers 请求头
+     * @param body    请求body
+     * @return resp
+     */
+    public static Resp invokePostBody(String url,
+                                      Map<String, String> headers,
+                                      byte[] body) {
+        String contentType = headers.get("Content-Type");
+        if (contentType == null) {
+            contentType = headers.get("content-type");
+        }
+        if (contentType == null) {
+            contentType = "application/octet-stream";
+        }
+        RequestBody b = RequestBody.create(MediaType.parse(contentType), body);
+        Request.Builder rb = new Request.Builder().post(b).url(url);
+        if (MapUtils.isNotEmpty(headers)) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                rb.header(entry.getKey(), entry.getValue());
+            }
+        }
+        return executeRequest(rb.build());
+    }
+
+    /**
+     * Post方法请求（流式body）；body在每次发送（包括重试）时写出，content-type由body决定
+     *
+     * @param url     url地址
+     * @param headers 请求头
+     * @param body    请求body
+     * @return resp
+     */
+    public static Resp invokePostBody(String url,
+                                      Map<String, String> headers,
+                                      RequestBody body) {
+        Request.Builder rb = new Request.Builder().post(body).url(url);
+        if (MapUtils.isNotEmpty(headers)) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                rb.header(entry.getKey(), entry.getValue());
+            }
+        }
+        return executeRequest(rb.build());
+    }
+
+    /**
+     * Post方法请求（流式body），用于录制消息投递；使用更短的超时并且只请求一次，失败不重试
+     *
+     * @param url     url地址
+     * @param headers 请求头
+     * @param body    请求body
+     * @return resp
+     */
+    public static Resp invokePostBodyOnce(String url,
+                                          Map<String, String> headers,
+                                          RequestBody body) {
+        Request.Builder rb = new Request.Builder().post(body).url(url);
+        if (MapUtils.isNotEmpty(headers)) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                rb.header(entry.getKey(), entry.getValue());
+            }
+        }
+        return executeRequest(broadcastClient, rb.build(), 1, false);
+    }
+
     /**
      * 执行request
      *
@@ -283,15 +379,40 @@ public class HttpUtil {
      * @return body字符串
      */
     private static Resp executeRequest(Request request, int retryTime) {
+        return executeRequest(request, retryTime, false);
+    }
+
+    /**
+     * 执行request;
+     *
+     * @param request   请求
+     * @param retryTime 重试次数
+     * @param binary    是否以byte数组读取body
+     * @return resp
+     */
+    private static Resp executeRequest(Request request, int retryTime, boolean binary) {
+        return executeRequest(client, request, retryTime, binary);
+    }
+
+    /**
+     * 执行request;
+     *
+     * @param client    http client
+     * @param request   请求
+     * @param retryTime 重试次数
+     * @param binary    是否以byte数组读取body
+     * @return resp
+     */
+    private static Resp executeRequest(OkHttpClient client, Request request, int retryTime, boolean binary) {
         try {
             Response response = client.newCall(request).execute();
             if (response.isSuccessful()) {
-                return Resp.builder().code(response.code())
-                        .body(bodyToString(response.body())).build();
+                return binary ? Resp.builder().code(response.code()).content(bodyToBytes(response.body())).build()
+                        : Resp.builder().code(response.code()).body(bodyToString(response.body())).build();
             }
             if (--retryTime > 0) {
                 TimeUnit.MILLISECONDS.sleep(100);
-                return executeRequest(request, retryTime);
+                return executeRequest(client, request, retryTime, binary);
             }
             return Resp.builder().code(response.code())
                     .body(bodyToString(response.body()))
@@ -304,7 +425,7 @@ public class HttpUtil {
                 } catch (InterruptedException e1) {
                     // ignore
                 }
-                return executeRequest(request, retryTime);
+                return executeRequest(client, request, retryTime, binary);
             }
             return Resp.builder().code(500)
                     .message("Invoke occurred exception, request=" + request.toString() + ";message=" + e.getMessage())
@@ -316,6 +437,10 @@ public class HttpUtil {
         return body == null ? "" : body.string();
     }
 
+    private static byte[] bodyToBytes(ResponseBody body) throws IOException {
+        return body == null ? new byte[0] : body.bytes();
+    }
+
     enum HttpMethod {
 
         /**
@@ -345,12 +470,14 @@ public class HttpUtil {
         private int code;
         private String body;
         private String message;
+        private byte[] content;
 
-        @ConstructorProperties({"code", "body", "message"})
-        Resp(int code, String body, String message) {
+        @ConstructorProperties({"code", "body", "message", "content"})
+        Resp(int code, String body, String message, byte[] content) {
             this.code = code;
             this.body = body;
             this.message = message;
+            this.content = content;
         }
 
         public static HttpUtil.Resp.RespBuilder builder() {
@@ -373,6 +500,10 @@ public class HttpUtil {
             return this.message;
         }
 
+        public byte[] getContent() {
+            return this.content;
+        }
+
         @Override
         public String toString() {
             return "HttpUtil.Resp(code=" + this.getCode() + ", body=" + this.getBody() + ", message=" + this.getMessage() + ")";
@@ -382,6 +513,7 @@ public class HttpUtil {
             private int code;
             private String body;
             private String message;
+            private byte[] content;
 
             RespBuilder() {
             }
@@ -401,8 +533,13 @@ public class HttpUtil {
                 return this;
             }
 
+            public HttpUtil.Resp.RespBuilder content(byte[] content) {
+                this.content = content;
+                return this;
+            }
+
             public HttpUtil.Resp build() {
-                return new HttpUtil.Resp(this.code, this.body, this.message);
+                return new HttpUtil.Resp(this.code, this.body, this.message, this.content);
             }
 
             @Override
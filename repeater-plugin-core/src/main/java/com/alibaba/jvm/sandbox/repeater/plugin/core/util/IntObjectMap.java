@@ -0,0 +1,230 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.util;
+
+/**
+ * {@link IntObjectMap} int为键的分段开放寻址表
+ * <p>
+ * 用于按{@code invokeId}关联BEFORE和RETURN/THROWS事件：键不装箱，不做容量淘汰，只在显式删除或{@link #sweep(long)}时移除；
+ * 每个分段独立加锁，分段内线性探测，删除时回移后续元素（不留墓碑）
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+public class IntObjectMap<V> {
+
+    private static final int SEGMENT_BITS = 4;
+
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    private final Segment[] segments;
+
+    public IntObjectMap() {
+        this(64);
+    }
+
+    /**
+     * @param initialCapacity 每个分段的初始容量
+     */
+    public IntObjectMap(int initialCapacity) {
+        int capacity = 8;
+        while (capacity < initialCapacity) {
+            capacity <<= 1;
+        }
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    /**
+     * 放置元素
+     *
+     * @param key       键
+     * @param value     值，不能为null
+     * @param timestamp 放置时间，用于{@link #sweep(long)}
+     * @return 被替换的旧值
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value, long timestamp) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        final int hash = hash(key);
+        final Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            return (V) segment.put(key, hash, value, timestamp);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        final int hash = hash(key);
+        final Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            return (V) segment.get(key, hash);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        final int hash = hash(key);
+        final Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            return (V) segment.remove(key, hash);
+        }
+    }
+
+    /**
+     * 清理放置时间早于deadline的元素
+     *
+     * @param deadline 截止时间
+     * @return 清理数量
+     */
+    public int sweep(long deadline) {
+        int swept = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                swept += segment.sweep(deadline);
+            }
+        }
+        return swept;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> (32 - SEGMENT_BITS)];
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static class Segment {
+
+        private int[] keys;
+
+        private Object[] values;
+
+        private long[] timestamps;
+
+        private int size;
+
+        Segment(int capacity) {
+            keys = new int[capacity];
+            values = new Object[capacity];
+            timestamps = new long[capacity];
+        }
+
+        Object get(int key, int hash) {
+            final int mask = keys.length - 1;
+            for (int i = hash & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        Object put(int key, int hash, Object value, long timestamp) {
+            final int mask = keys.length - 1;
+            int i = hash & mask;
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    Object old = values[i];
+                    values[i] = value;
+                    timestamps[i] = timestamp;
+                    return old;
+                }
+            }
+            keys[i] = key;
+            values[i] = value;
+            timestamps[i] = timestamp;
+            if (++size > keys.length >> 1) {
+                resize();
+            }
+            return null;
+        }
+
+        Object remove(int key, int hash) {
+            final int mask = keys.length - 1;
+            for (int i = hash & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    Object old = values[i];
+                    delete(i);
+                    return old;
+                }
+            }
+            return null;
+        }
+
+        int sweep(long deadline) {
+            int swept = 0;
+            int i = 0;
+            while (i < keys.length) {
+                if (values[i] != null && timestamps[i] < deadline) {
+                    // 回移之后当前位置可能是新的元素，需要重新检查
+                    delete(i);
+                    swept++;
+                } else {
+                    i++;
+                }
+            }
+            return swept;
+        }
+
+        /**
+         * 删除指定位置并回移同一探测链上的后续元素
+         */
+        private void delete(int slot) {
+            final int mask = keys.length - 1;
+            int gap = slot;
+            int i = (slot + 1) & mask;
+            while (values[i] != null) {
+                int home = hash(keys[i]) & mask;
+                // home不在(gap, i]区间内时，元素可以回移到gap
+                boolean movable = gap <= i ? (home <= gap || home > i) : (home <= gap && home > i);
+                if (movable) {
+                    keys[gap] = keys[i];
+                    values[gap] = values[i];
+                    timestamps[gap] = timestamps[i];
+                    gap = i;
+                }
+                i = (i + 1) & mask;
+            }
+            values[gap] = null;
+            size--;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            Object[] oldValues = values;
+            long[] oldTimestamps = timestamps;
+            int capacity = oldKeys.length << 1;
+            keys = new int[capacity];
+            values = new Object[capacity];
+            timestamps = new long[capacity];
+            final int mask = capacity - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] == null) {
+                    continue;
+                }
+                int i = hash(oldKeys[j]) & mask;
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+                timestamps[i] = oldTimestamps[j];
+            }
+        }
+    }
+}
@@ -42,11 +42,15 @@ public class PathUtils {
     }
 
     /**
-     * 获取配置文件路径
+     * 获取配置文件路径；可以通过系统属性{@code repeater.config.path}指定（脱离sandbox运行时使用，例如基准测试）
      *
      * @return 配置绝对路径
      */
     public static String getConfigPath() {
+        String configPath = System.getProperty("repeater.config.path");
+        if (StringUtils.isNotEmpty(configPath)) {
+            return configPath;
+        }
         String modulePath = getModulePath();
         if (StringUtils.isEmpty(modulePath)) {
             return null;
@@ -0,0 +1,139 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.List;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.compress.Compressor;
+
+import com.caucho.hessian.io.Hessian2Output;
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+
+/**
+ * {@link HessianRequestBody} 流式写出的录制消息请求体
+ * <p>
+ * hessian序列化结果经过压缩（可选）、base64编码（字符串传输时）直接写入请求的sink，
+ * 投递一条记录只占用固定大小的缓冲区，不再先后生成完整的byte数组、base64字符串和请求体拷贝
+ * <p>
+ * 请求重试时重新序列化；序列化失败之后不再重复序列化，通过{@link #getFailure()}获取异常
+ * <p>
+ * 批量投递（{@link #batch(List, Compressor.Type, boolean)}）的请求体是元素为byte数组的hessian列表，
+ * 每个元素是一条记录单独序列化、压缩的载荷（与逐条投递的载荷一致），以分块的binary直接写入请求；
+ * 单个元素序列化失败时已写出的部分无法撤回，这个元素被截断，由console丢弃，不影响同批次的其它元素
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+public class HessianRequestBody extends RequestBody {
+
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private final Object object;
+
+    private final List<?> elements;
+
+    private final Compressor.Type compressType;
+
+    private final boolean binary;
+
+    private volatile SerializeException failure;
+
+    /**
+     * @param object       投递对象
+     * @param compressType 压缩类型
+     * @param binary       二进制传输；否则写出base64字符串
+     */
+    public HessianRequestBody(Object object, Compressor.Type compressType, boolean binary) {
+        this(object, null, compressType, binary);
+    }
+
+    private HessianRequestBody(Object object, List<?> elements, Compressor.Type compressType, boolean binary) {
+        this.object = object;
+        this.elements = elements;
+        this.compressType = compressType;
+        this.binary = binary;
+    }
+
+    /**
+     * 批量投递的请求体
+     *
+     * @param elements     投递对象
+     * @param compressType 每个元素的压缩类型
+     * @param binary       二进制传输；否则写出base64字符串
+     * @return 请求体
+     */
+    public static HessianRequestBody batch(List<?> elements, Compressor.Type compressType, boolean binary) {
+        return new HessianRequestBody(null, elements, compressType, binary);
+    }
+
+    @Override
+    public MediaType contentType() {
+        return binary ? OCTET_STREAM : JSON;
+    }
+
+    @Override
+    public long contentLength() {
+        // 长度未知，分块传输
+        return -1;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        if (failure != null && elements == null) {
+            throw new IOException(failure);
+        }
+        if (binary) {
+            write(sink.outputStream());
+        } else {
+            OutputStreamWriter writer = new OutputStreamWriter(new CloseShieldOutputStream(sink.outputStream()), Charsets.US_ASCII);
+            OutputStream encoder = BaseEncoding.base64().encodingStream(writer);
+            write(encoder);
+            // 写出base64的补齐字符并刷新到sink
+            encoder.close();
+        }
+    }
+
+    private void write(OutputStream out) throws IOException {
+        if (elements == null) {
+            try {
+                SerializerWrapper.hessianSerialize(object, compressType, out);
+            } catch (SerializeException e) {
+                failure = e;
+                throw new IOException(e);
+            }
+            return;
+        }
+        Hessian2Output output = new Hessian2Output(out);
+        output.writeListBegin(elements.size(), null);
+        for (Object element : elements) {
+            OutputStream bytes = output.getBytesOutputStream();
+            try {
+                SerializerWrapper.hessianSerialize(element, compressType, bytes);
+            } catch (SerializeException e) {
+                failure = e;
+            }
+            bytes.close();
+        }
+        output.flush();
+    }
+
+    /**
+     * 序列化异常
+     * <p>
+     * 批量投递时为最后一个序列化失败的元素的异常，其它元素正常投递
+     *
+     * @return 序列化失败时的异常；未失败返回null
+     */
+    public SerializeException getFailure() {
+        return failure;
+    }
+}
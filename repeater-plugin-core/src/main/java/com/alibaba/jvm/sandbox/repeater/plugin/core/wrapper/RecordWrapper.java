@@ -5,6 +5,7 @@ import java.util.List;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.Invocation;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RecordModel;
 
+import com.caucho.hessian.io.ClassDictionary;
 
 /**
  * <p>
@@ -35,6 +36,21 @@ public class RecordWrapper {
      */
     private List<Invocation> subInvocations;
 
+    /**
+     * 子调用分片序号（从1开始）；大于0表示该记录只是一段子调用分片，没有入口调用
+     */
+    private int chunkIndex;
+
+    /**
+     * 入口记录之前已经投递的子调用分片数量，服务端据此重组完整记录
+     */
+    private int chunkCount;
+
+    /**
+     * 记录级的类定义字典快照；返回值/异常引用了字典的调用依赖它解码
+     */
+    private List<String[]> classDefinitions;
+
     public RecordWrapper() {}
 
     public RecordWrapper(RecordModel recordModel) {
@@ -43,9 +59,14 @@ public class RecordWrapper {
         this.environment = recordModel.getEnvironment();
         this.host = recordModel.getHost();
         this.traceId = recordModel.getTraceId();
-        this.entranceDesc = recordModel.getEntranceInvocation().getIdentity().getUri();
+        if (recordModel.getEntranceInvocation() != null) {
+            this.entranceDesc = recordModel.getEntranceInvocation().getIdentity().getUri();
+        }
         this.entranceInvocation = recordModel.getEntranceInvocation();
         this.subInvocations = recordModel.getSubInvocations();
+        this.chunkIndex = recordModel.getChunkIndex();
+        this.chunkCount = recordModel.getChunkCount();
+        this.classDefinitions = snapshotClassDefinitions(recordModel);
     }
 
     /**
@@ -63,9 +84,39 @@ public class RecordWrapper {
         recordModel.setHost(this.host);
         recordModel.setEntranceInvocation(this.entranceInvocation);
         recordModel.setSubInvocations(this.subInvocations);
+        recordModel.setChunkIndex(this.chunkIndex);
+        recordModel.setChunkCount(this.chunkCount);
+        bindClassDefinitions(this.entranceInvocation);
+        if (this.subInvocations != null) {
+            for (Invocation invocation : this.subInvocations) {
+                bindClassDefinitions(invocation);
+            }
+        }
         return recordModel;
     }
 
+    /**
+     * 字典只追加，投递时的快照能解码此前写入的所有序列化结果
+     */
+    private static List<String[]> snapshotClassDefinitions(RecordModel recordModel) {
+        List<String[]> definitions = recordModel.getEntranceInvocation() == null ? null : recordModel.getEntranceInvocation().getClassDefinitions();
+        if (!(definitions instanceof ClassDictionary) && recordModel.getSubInvocations() != null) {
+            for (Invocation invocation : recordModel.getSubInvocations()) {
+                if (invocation.getClassDefinitions() instanceof ClassDictionary) {
+                    definitions = invocation.getClassDefinitions();
+                    break;
+                }
+            }
+        }
+        return definitions instanceof ClassDictionary ? ((ClassDictionary) definitions).snapshot() : null;
+    }
+
+    private void bindClassDefinitions(Invocation invocation) {
+        if (invocation != null && invocation.isClassDictionary()) {
+            invocation.setClassDefinitions(this.classDefinitions);
+        }
+    }
+
     public long getTimestamp() {
         return timestamp;
     }
@@ -129,4 +180,37 @@ public class RecordWrapper {
     public void setSubInvocations(List<Invocation> subInvocations) {
         this.subInvocations = subInvocations;
     }
+
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public void setChunkIndex(int chunkIndex) {
+        this.chunkIndex = chunkIndex;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public void setChunkCount(int chunkCount) {
+        this.chunkCount = chunkCount;
+    }
+
+    public List<String[]> getClassDefinitions() {
+        return classDefinitions;
+    }
+
+    public void setClassDefinitions(List<String[]> classDefinitions) {
+        this.classDefinitions = classDefinitions;
+    }
+
+    /**
+     * 是否子调用分片
+     *
+     * @return true/false
+     */
+    public boolean isChunk() {
+        return chunkIndex > 0 && entranceInvocation == null;
+    }
 }
@@ -0,0 +1,99 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.api.Broadcaster;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.AdaptiveSampler;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.Invocation;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.RecordModel;
+
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link SerializeStage} 异步序列化阶段
+ * <p>
+ * 开启{@link com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeaterConfig#asyncSerialize}之后，入口调用完成时将整个{@link RecordModel}
+ * 交给独立的序列化线程池，完成入口调用和子调用的序列化之后再投递给{@link Broadcaster}
+ * <p>
+ * 线程池队列满时由调用线程直接执行，退化为业务线程中及时序列化
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+public class SerializeStage {
+
+    private final static Logger log = LoggerFactory.getLogger(SerializeStage.class);
+
+    private static ExecutorService executor = new ThreadPoolExecutor(2, 2,
+            5L, TimeUnit.MINUTES, new LinkedBlockingDeque<Runnable>(1024),
+            new BasicThreadFactory.Builder().namingPattern("serialize-stage-pool-%d").build(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
+    /**
+     * 提交序列化任务，序列化完成后投递录制消息
+     *
+     * @param recordModel 录制记录
+     * @param broadcaster 消息投递
+     */
+    public static void submit(final RecordModel recordModel, final Broadcaster broadcaster) {
+        submit(recordModel, broadcaster, 0);
+    }
+
+    /**
+     * 提交序列化任务，序列化完成后投递录制消息；入口调用序列化结果超出最大载荷时放弃
+     *
+     * @param recordModel    录制记录
+     * @param broadcaster    消息投递
+     * @param maxPayloadSize 入口调用的最大载荷（字节）；小于等于0表示不限制
+     */
+    public static void submit(final RecordModel recordModel, final Broadcaster broadcaster, final long maxPayloadSize) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long start = System.nanoTime();
+                try {
+                    serialize(recordModel);
+                } catch (SerializeException e) {
+                    log.error("Error occurred serialize, abandon this record, traceId={}", recordModel.getTraceId(), e);
+                    return;
+                } catch (Throwable throwable) {
+                    log.error("[Error-0000]-uncaught exception occurred when serialize record, traceId={}", recordModel.getTraceId(), throwable);
+                    return;
+                } finally {
+                    AdaptiveSampler.instance().overhead(null, System.nanoTime() - start);
+                }
+                if (maxPayloadSize > 0 && recordModel.getEntranceInvocation() != null
+                        && SerializerWrapper.serializedSize(recordModel.getEntranceInvocation()) > maxPayloadSize) {
+                    log.info("entrance payload exceed sample rule limit {}, abandon this record, traceId={}", maxPayloadSize, recordModel.getTraceId());
+                    return;
+                }
+                broadcaster.sendRecord(recordModel);
+            }
+        });
+    }
+
+    /**
+     * 序列化录制记录中的所有调用；已经及时序列化过的调用不会重复序列化
+     *
+     * @param recordModel 录制记录
+     * @throws SerializeException 序列化异常
+     */
+    private static void serialize(RecordModel recordModel) throws SerializeException {
+        // 子调用分片没有入口调用
+        if (recordModel.getEntranceInvocation() != null) {
+            SerializerWrapper.inTimeSerialize(recordModel.getEntranceInvocation());
+        }
+        if (CollectionUtils.isNotEmpty(recordModel.getSubInvocations())) {
+            for (Invocation invocation : recordModel.getSubInvocations()) {
+                SerializerWrapper.inTimeSerialize(invocation);
+            }
+        }
+    }
+}
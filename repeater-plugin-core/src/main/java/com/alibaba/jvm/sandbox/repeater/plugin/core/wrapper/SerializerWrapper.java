@@ -1,11 +1,28 @@
 package com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
 import com.alibaba.jvm.sandbox.repeater.plugin.core.bridge.ClassloaderBridge;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.model.ApplicationModel;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.HessianSerializer;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.Serializer;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.Serializer.Type;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializerProvider;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.compress.Compressor;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.compress.CompressorProvider;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.TraceContext;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.Tracer;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.Invocation;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.RecordModel;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.SubInvocationIndex;
+
+import com.caucho.hessian.io.ClassDictionary;
+import com.google.common.io.BaseEncoding;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.lang3.StringUtils;
 
 /**
  * {@link SerializerWrapper} 序列化工具；目标能够直接序列化{@link RecordModel}
@@ -17,6 +34,8 @@ public class SerializerWrapper {
 
     private static SerializerProvider provider = SerializerProvider.instance();
 
+    private static CompressorProvider compressor = CompressorProvider.instance();
+
     /**
      * 传输对象默认采用JSON序列化
      *
@@ -64,7 +83,118 @@ public class SerializerWrapper {
     }
 
     /**
-     * hessian反序列化
+     * hessian序列化到byte数组（二进制传输）
+     *
+     * @param object 对象
+     * @return 序列化byte数组
+     * @throws SerializeException 序列化异常
+     */
+    public static byte[] hessianSerialize2Bytes(Object object) throws SerializeException {
+        return provider.provide(Type.HESSIAN).serialize(object);
+    }
+
+    /**
+     * hessian序列化到byte数组（二进制传输）
+     *
+     * @param object      对象
+     * @param classLoader 类加载器
+     * @return 序列化byte数组
+     * @throws SerializeException 序列化异常
+     */
+    public static byte[] hessianSerialize2Bytes(Object object, ClassLoader classLoader) throws SerializeException {
+        return provider.provide(Type.HESSIAN).serialize(object, classLoader);
+    }
+
+    /**
+     * hessian序列化并压缩（用于整条记录的投递/存储）
+     *
+     * @param object       对象
+     * @param compressType 压缩类型
+     * @return 序列化byte数组
+     * @throws SerializeException 序列化异常
+     */
+    public static byte[] hessianSerialize2Bytes(Object object, Compressor.Type compressType) throws SerializeException {
+        return compressor.compress(compressType, provider.provide(Type.HESSIAN).serialize(object));
+    }
+
+    /**
+     * hessian序列化并压缩（用于整条记录的投递/存储）
+     *
+     * @param object       对象
+     * @param compressType 压缩类型
+     * @return 序列化字符串
+     * @throws SerializeException 序列化异常
+     */
+    public static String hessianSerialize(Object object, Compressor.Type compressType) throws SerializeException {
+        return BaseEncoding.base64().encode(hessianSerialize2Bytes(object, compressType));
+    }
+
+    /**
+     * hessian流式序列化并压缩（用于整条记录的投递）；序列化结果不在内存中完整生成，不关闭输出流
+     *
+     * @param object       对象
+     * @param compressType 压缩类型
+     * @param out          输出流
+     * @throws SerializeException 序列化异常
+     */
+    public static void hessianSerialize(Object object, Compressor.Type compressType, OutputStream out) throws SerializeException {
+        final Serializer serializer = provider.provide(Type.HESSIAN);
+        try {
+            if (!(serializer instanceof HessianSerializer)) {
+                out.write(hessianSerialize2Bytes(object, compressType));
+                return;
+            }
+            OutputStream compressed = compressor.compress(compressType, new CloseShieldOutputStream(out));
+            ((HessianSerializer) serializer).serialize(object, null, compressed);
+            // 写完压缩数据的尾部
+            compressed.close();
+        } catch (IOException e) {
+            throw new SerializeException("[Error-1004]-encode error", e);
+        }
+    }
+
+    /**
+     * hessian反序列化；兼容压缩后的数据
+     *
+     * @param bytes  序列化byte数组
+     * @param tClass 对象类型
+     * @param <T>    泛型对象
+     * @return 反序列化后的对象
+     * @throws SerializeException 序列化异常
+     */
+    public static <T> T hessianDeserialize(byte[] bytes, Class<T> tClass) throws SerializeException {
+        return provider.provide(Type.HESSIAN).deserialize(compressor.decompress(bytes), tClass);
+    }
+
+    /**
+     * hessian反序列化；兼容压缩后的数据
+     *
+     * @param bytes 序列化byte数组
+     * @return 反序列化后的对象
+     * @throws SerializeException 序列化异常
+     */
+    public static Object hessianDeserialize(byte[] bytes) throws SerializeException {
+        return provider.provide(Type.HESSIAN).deserialize(compressor.decompress(bytes));
+    }
+
+    /**
+     * hessian反序列化引用了类定义字典的数据
+     *
+     * @param bytes            序列化byte数组
+     * @param classDefinitions 记录中的类定义字典
+     * @return 反序列化后的对象
+     * @throws SerializeException 序列化异常
+     */
+    public static Object hessianDeserialize(byte[] bytes, List<String[]> classDefinitions) throws SerializeException {
+        final Serializer serializer = provider.provide(Type.HESSIAN);
+        if (classDefinitions != null && serializer instanceof HessianSerializer) {
+            return ((HessianSerializer) serializer).deserialize(bytes, null, classDefinitions);
+        }
+        return serializer.deserialize(bytes);
+    }
+
+    /**
+     * hessian反序列化；兼容压缩后的数据
      *
      * @param sequence 序列化字符串
      * @param tClass   对象类型
@@ -73,57 +203,316 @@ public class SerializerWrapper {
      * @throws SerializeException 序列化异常
      */
     public static <T> T hessianDeserialize(String sequence, Class<T> tClass) throws SerializeException {
-        return provider.provide(Type.HESSIAN).deserialize(sequence, tClass);
+        return hessianDeserialize(BaseEncoding.base64().decode(sequence), tClass);
     }
 
     /**
-     * hessian反序列化
+     * hessian反序列化；兼容压缩后的数据
      *
      * @param sequence 序列化字符串
      * @return 反序列化后的对象
      * @throws SerializeException 序列化异常
      */
     public static Object hessianDeserialize(String sequence) throws SerializeException {
-        return provider.provide(Type.HESSIAN).deserialize(sequence);
+        return hessianDeserialize(BaseEncoding.base64().decode(sequence));
     }
 
     /**
-     * 及时序列化
+     * 绑定记录级的类定义字典；只在业务线程中、返回值/异常尚未序列化时绑定，异步序列化阶段沿用绑定结果
+     *
+     * @param invocation 调用信息
+     */
+    public static void attachClassDictionary(Invocation invocation) {
+        if (!ApplicationModel.instance().isClassDictionary() || invocation.isClassDictionary()
+                || bindSerializerType(invocation) != Type.HESSIAN) {
+            return;
+        }
+        final TraceContext context = Tracer.getContext();
+        if (context == null || !StringUtils.equals(context.getTraceId(), invocation.getTraceId())
+                || !isAbsent(invocation.getResponseSerialized(), invocation.getResponseSerializedBytes())
+                || !isAbsent(invocation.getThrowableSerialized(), invocation.getThrowableSerializedBytes())) {
+            return;
+        }
+        invocation.setClassDefinitions(context.getClassDictionary());
+        invocation.setClassDictionary(true);
+    }
+
+    /**
+     * 及时序列化；开启二进制传输时序列化结果保存为byte数组
+     * <p>
+     * 绑定了类定义字典时返回值/异常的序列化结果只引用字典中的类定义；入参保持独立编码，回放时按字节比较。
+     * 序列化类型按配置绑定到调用上，同一个调用的请求/返回值/异常使用同一种序列化
      *
      * @param invocation 调用信息
      */
     public static void inTimeSerialize(Invocation invocation) throws SerializeException {
-        if (invocation.getResponse() != null && invocation.getResponseSerialized() == null) {
-            invocation.setResponseSerialized(provider.provide(Type.HESSIAN)
-                    .serialize2String(invocation.getResponse(), invocation.getClassLoader()));
+        final boolean binary = ApplicationModel.instance().isBinaryTransport();
+        final Serializer serializer = provider.provide(bindSerializerType(invocation));
+        final ClassDictionary dictionary = dictionaryOf(invocation, serializer);
+        if (invocation.getResponse() != null && isAbsent(invocation.getResponseSerialized(), invocation.getResponseSerializedBytes())) {
+            if (dictionary != null) {
+                setResponse(invocation, ((HessianSerializer) serializer).serialize(invocation.getResponse(), invocation.getClassLoader(), dictionary), binary);
+            } else if (binary) {
+                invocation.setResponseSerializedBytes(serializer.serialize(invocation.getResponse(), invocation.getClassLoader()));
+            } else {
+                invocation.setResponseSerialized(serializer.serialize2String(invocation.getResponse(), invocation.getClassLoader()));
+            }
         }
-        if (invocation.getRequest() != null && invocation.getRequestSerialized() == null) {
-            invocation.setRequestSerialized(provider.provide(Type.HESSIAN)
-                    .serialize2String(invocation.getRequest(), invocation.getClassLoader()));
+        if (invocation.getRequest() != null && isAbsent(invocation.getRequestSerialized(), invocation.getRequestSerializedBytes())) {
+            byte[] bytes = serializer.serialize(invocation.getRequest(), invocation.getClassLoader());
+            invocation.setRequestDigest(digest(bytes));
+            if (binary) {
+                invocation.setRequestSerializedBytes(bytes);
+            } else {
+                invocation.setRequestSerialized(BaseEncoding.base64().encode(bytes));
+            }
         }
-        if (invocation.getThrowable() != null && invocation.getThrowableSerialized() == null) {
-            invocation.setThrowableSerialized(provider.provide(Type.HESSIAN)
-                    .serialize2String(invocation.getThrowable(), invocation.getClassLoader()));
+        if (invocation.getThrowable() != null && isAbsent(invocation.getThrowableSerialized(), invocation.getThrowableSerializedBytes())) {
+            if (dictionary != null) {
+                setThrowable(invocation, ((HessianSerializer) serializer).serialize(invocation.getThrowable(), invocation.getClassLoader(), dictionary), binary);
+            } else if (binary) {
+                invocation.setThrowableSerializedBytes(serializer.serialize(invocation.getThrowable(), invocation.getClassLoader()));
+            } else {
+                invocation.setThrowableSerialized(serializer.serialize2String(invocation.getThrowable(), invocation.getClassLoader()));
+            }
         }
     }
 
     /**
-     * 及时序列化(回放时只需要解出request)
+     * 及时序列化(回放时只需要解出request)；兼容字符串和二进制两种载体
      *
      * @param invocation 调用信息
      */
     public static void inTimeDeserialize(Invocation invocation) throws SerializeException {
-        if (invocation.getRequest() == null && invocation.getRequestSerialized() != null) {
-            invocation.setRequest((Object[]) provider.provide(Type.HESSIAN).deserialize(invocation.getRequestSerialized(), null,
-                    ClassloaderBridge.instance().decode(invocation.getSerializeToken())));
+        inTimeDeserialize(invocation, invocation.getClassDefinitions());
+    }
+
+    /**
+     * 及时序列化(回放时只需要解出request)；兼容字符串和二进制两种载体
+     *
+     * @param invocation       调用信息
+     * @param classDefinitions 记录中的类定义字典；返回值/异常引用了字典时必须提供
+     */
+    public static void inTimeDeserialize(Invocation invocation, List<String[]> classDefinitions) throws SerializeException {
+        final List<String[]> definitions = invocation.isClassDictionary() ? classDefinitions : null;
+        if (invocation.getRequest() == null) {
+            invocation.setRequest((Object[]) deserialize(invocation.getRequestSerialized(), invocation.getRequestSerializedBytes(),
+                    invocation, null));
+        }
+        if (invocation.getResponse() == null) {
+            invocation.setResponse(deserialize(invocation.getResponseSerialized(), invocation.getResponseSerializedBytes(),
+                    invocation, definitions));
+        }
+        if (invocation.getThrowable() == null) {
+            invocation.setThrowable((Throwable) deserialize(invocation.getThrowableSerialized(), invocation.getThrowableSerializedBytes(),
+                    invocation, definitions));
+        }
+        // 兼容未记录摘要的历史录制数据
+        if (invocation.getRequestDigest() == null) {
+            byte[] bytes = requestBytes(invocation);
+            if (bytes != null) {
+                invocation.setRequestDigest(digest(bytes));
+            }
+        }
+    }
+
+    /**
+     * 回放时按需解出子调用（请求、返回值、异常）；拉取录制记录时子调用保持序列化形态，只有被mock选中的才解出
+     *
+     * @param invocation 调用信息
+     * @return 解出后的调用信息
+     * @throws SerializeException 序列化异常
+     */
+    public static Invocation materialize(Invocation invocation) throws SerializeException {
+        // 同一次回放的子调用可能在多个线程中被选中
+        synchronized (invocation) {
+            inTimeDeserialize(invocation);
         }
-        if (invocation.getResponse() == null && invocation.getResponseSerialized() != null) {
-            invocation.setResponse(provider.provide(Type.HESSIAN).deserialize(invocation.getResponseSerialized(), null,
-                    ClassloaderBridge.instance().decode(invocation.getSerializeToken())));
+        return invocation;
+    }
+
+    /**
+     * 解出录制记录的全部子调用；供需要访问任意子调用的扩展点（拦截器）使用
+     *
+     * @param recordModel 录制记录
+     * @throws SerializeException 序列化异常
+     */
+    public static void materializeSubInvocations(RecordModel recordModel) throws SerializeException {
+        if (recordModel == null || recordModel.getSubInvocations() == null) {
+            return;
+        }
+        for (Invocation invocation : recordModel.getSubInvocations()) {
+            materialize(invocation);
+        }
+    }
+
+    /**
+     * 获取子调用的请求参数；尚未解出时临时反序列化（只用于参数匹配，不回填到调用上）
+     *
+     * @param invocation 调用信息
+     * @return 请求参数
+     * @throws SerializeException 序列化异常
+     */
+    public static Object[] requestOf(Invocation invocation) throws SerializeException {
+        Object[] request = invocation.getRequest();
+        if (request != null) {
+            return request;
+        }
+        return (Object[]) deserialize(invocation.getRequestSerialized(), invocation.getRequestSerializedBytes(),
+                invocation, null);
+    }
+
+    /**
+     * 反序列化子调用的返回值；不依赖录制时的类加载器（如console侧展示）
+     *
+     * @param invocation       调用信息
+     * @param classDefinitions 记录中的类定义字典
+     * @return 返回值
+     * @throws SerializeException 序列化异常
+     */
+    public static Object responseOf(Invocation invocation, List<String[]> classDefinitions) throws SerializeException {
+        return deserialize(invocation.getResponseSerialized(), invocation.getResponseSerializedBytes(), null,
+                serializerTypeOf(invocation), invocation.isClassDictionary() ? classDefinitions : null);
+    }
+
+    /**
+     * 调用记录的序列化类型；未记录类型的历史数据为HESSIAN
+     *
+     * @param invocation 调用信息
+     * @return 序列化类型
+     */
+    public static Type serializerTypeOf(Invocation invocation) {
+        return invocation.getSerializerType() == null ? Type.HESSIAN : Type.parse(invocation.getSerializerType());
+    }
+
+    /**
+     * 按指定类型序列化；用于回放时以子调用录制时的序列化类型序列化当前参数
+     *
+     * @param object      序列化对象
+     * @param classLoader 类加载器
+     * @param type        序列化类型
+     * @return 序列化byte数组
+     * @throws SerializeException 序列化异常
+     */
+    public static byte[] serialize(Object object, ClassLoader classLoader, Type type) throws SerializeException {
+        return provider.provide(type).serialize(object, classLoader);
+    }
+
+    /**
+     * 计算序列化结果的64位摘要(murmur3_128)
+     *
+     * @param bytes 序列化byte数组
+     * @return 摘要
+     */
+    public static long digest(byte[] bytes) {
+        return SubInvocationIndex.digest(bytes);
+    }
+
+    /**
+     * 获取调用请求的序列化byte数组（用于参数相似度比较）
+     *
+     * @param invocation 调用信息
+     * @return 序列化byte数组；未序列化返回null
+     */
+    public static byte[] requestBytes(Invocation invocation) {
+        if (invocation.getRequestSerializedBytes() != null) {
+            return invocation.getRequestSerializedBytes();
+        }
+        if (invocation.getRequestSerialized() != null) {
+            return BaseEncoding.base64().decode(invocation.getRequestSerialized());
+        }
+        return null;
+    }
+
+    /**
+     * 调用序列化结果占用的大小（字符串载体按长度计）；尚未序列化的部分计0
+     *
+     * @param invocation 调用信息
+     * @return 大小
+     */
+    public static long serializedSize(Invocation invocation) {
+        return sizeOf(invocation.getRequestSerialized(), invocation.getRequestSerializedBytes())
+                + sizeOf(invocation.getResponseSerialized(), invocation.getResponseSerializedBytes())
+                + sizeOf(invocation.getThrowableSerialized(), invocation.getThrowableSerializedBytes());
+    }
+
+    private static long sizeOf(String sequence, byte[] bytes) {
+        if (bytes != null) {
+            return bytes.length;
+        }
+        return sequence == null ? 0 : sequence.length();
+    }
+
+    private static Object deserialize(String sequence, byte[] bytes, Invocation invocation, List<String[]> classDefinitions) throws SerializeException {
+        if (bytes == null && sequence == null) {
+            return null;
+        }
+        return deserialize(sequence, bytes, ClassloaderBridge.instance().decode(invocation.getSerializeToken()),
+                serializerTypeOf(invocation), classDefinitions);
+    }
+
+    private static Object deserialize(String sequence, byte[] bytes, ClassLoader classLoader, Type type, List<String[]> classDefinitions) throws SerializeException {
+        if (bytes == null && sequence != null && classDefinitions != null) {
+            bytes = BaseEncoding.base64().decode(sequence);
+        }
+        final Serializer serializer = provider.provide(type);
+        if (bytes != null) {
+            if (classDefinitions != null && serializer instanceof HessianSerializer) {
+                return ((HessianSerializer) serializer).deserialize(bytes, classLoader, classDefinitions);
+            }
+            return serializer.deserialize(bytes, null, classLoader);
         }
-        if (invocation.getThrowable() == null && invocation.getThrowableSerialized() != null) {
-            invocation.setThrowable((Throwable) provider.provide(Type.HESSIAN).deserialize(invocation.getThrowableSerialized(), null,
-                    ClassloaderBridge.instance().decode(invocation.getSerializeToken())));
+        if (sequence != null) {
+            return serializer.deserialize(sequence, null, classLoader);
         }
+        return null;
+    }
+
+    /**
+     * 录制时绑定调用的序列化类型；已绑定的沿用（异步序列化阶段与业务线程保持一致）
+     */
+    private static Type bindSerializerType(Invocation invocation) {
+        if (invocation.getSerializerType() == null) {
+            invocation.setSerializerType(ApplicationModel.instance().getRecordSerializer().name());
+        }
+        return serializerTypeOf(invocation);
+    }
+
+    /**
+     * 调用绑定的类定义字典；序列化器不是hessian时不使用字典
+     */
+    private static ClassDictionary dictionaryOf(Invocation invocation, Serializer serializer) {
+        if (!invocation.isClassDictionary()) {
+            return null;
+        }
+        if (invocation.getClassDefinitions() instanceof ClassDictionary && serializer instanceof HessianSerializer) {
+            return (ClassDictionary) invocation.getClassDefinitions();
+        }
+        // 还没有按字典编码的结果时退回独立编码
+        if (isAbsent(invocation.getResponseSerialized(), invocation.getResponseSerializedBytes())
+                && isAbsent(invocation.getThrowableSerialized(), invocation.getThrowableSerializedBytes())) {
+            invocation.setClassDictionary(false);
+        }
+        return null;
+    }
+
+    private static void setResponse(Invocation invocation, byte[] bytes, boolean binary) {
+        if (binary) {
+            invocation.setResponseSerializedBytes(bytes);
+        } else {
+            invocation.setResponseSerialized(BaseEncoding.base64().encode(bytes));
+        }
+    }
+
+    private static void setThrowable(Invocation invocation, byte[] bytes, boolean binary) {
+        if (binary) {
+            invocation.setThrowableSerializedBytes(bytes);
+        } else {
+            invocation.setThrowableSerialized(BaseEncoding.base64().encode(bytes));
+        }
+    }
+
+    private static boolean isAbsent(String sequence, byte[] bytes) {
+        return sequence == null && bytes == null;
     }
 }
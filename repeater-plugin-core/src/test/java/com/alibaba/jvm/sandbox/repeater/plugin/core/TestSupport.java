@@ -0,0 +1,37 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * {@link TestSupport} 单元测试的运行环境
+ * <p>
+ * 脱离sandbox容器运行时没有cfg目录，{@link com.alibaba.jvm.sandbox.repeater.plugin.core.model.ApplicationModel}
+ * 初始化时读取的repeater.properties通过系统属性{@code repeater.config.path}指向临时目录
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+public class TestSupport {
+
+    private static volatile boolean initialized = false;
+
+    /**
+     * 初始化运行环境；必须在访问ApplicationModel（含创建序列化异常）之前调用
+     */
+    public static synchronized void init() {
+        if (initialized) {
+            return;
+        }
+        try {
+            File configPath = new File(System.getProperty("java.io.tmpdir"), "repeater-test");
+            FileUtils.writeStringToFile(new File(configPath, "repeater.properties"), "repeat.standalone.mode=true\n", "UTF-8");
+            System.setProperty("repeater.config.path", configPath.getAbsolutePath());
+        } catch (IOException e) {
+            throw new IllegalStateException("prepare test config failed", e);
+        }
+        initialized = true;
+    }
+}
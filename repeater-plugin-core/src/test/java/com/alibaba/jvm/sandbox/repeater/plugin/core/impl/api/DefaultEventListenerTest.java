@@ -0,0 +1,145 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.impl.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.alibaba.jvm.sandbox.api.event.BeforeEvent;
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.api.event.ReturnEvent;
+import com.alibaba.jvm.sandbox.api.resource.LoadedClassDataSource;
+import com.alibaba.jvm.sandbox.repeater.plugin.api.InvocationListener;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.TestSupport;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.bridge.ClassloaderBridge;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.model.ApplicationModel;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.TraceContext;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.Tracer;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.Invocation;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.InvokeType;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeaterConfig;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * {@link DefaultEventListenerTest} 预过滤未通过的入口下，下级入口和子调用不采集
+ * <p>
+ *
+ * @author zhaoyb1990
+ */
+public class DefaultEventListenerTest {
+
+    private static int invokeId = 0;
+
+    @BeforeClass
+    public static void init() {
+        TestSupport.init();
+        ClassloaderBridge.init(new LoadedClassDataSource() {
+            @Override
+            public Iterator<Class<?>> iteratorForLoadedClasses() {
+                return list().iterator();
+            }
+
+            @Override
+            public Set<Class<?>> list() {
+                return Collections.emptySet();
+            }
+        });
+        RepeaterConfig config = new RepeaterConfig();
+        config.setSampleRate(10000);
+        config.setAsyncSerialize(true);
+        ApplicationModel.instance().setConfig(config);
+    }
+
+    @AfterClass
+    public static void destroy() {
+        ApplicationModel.instance().setConfig(null);
+    }
+
+    @Test
+    public void testNestedEntranceRecorded() throws Throwable {
+        CountingListener inner = new CountingListener();
+        DefaultEventListener dubbo = listener(InvokeType.DUBBO, true, inner);
+        invoke(dubbo);
+        Assert.assertEquals(1, inner.invocations.size());
+        Assert.assertNull(Tracer.getContext());
+    }
+
+    /**
+     * 外层入口预过滤未通过（如requestURI不匹配、采样预判未命中），内层的dubbo入口和子调用都不采集
+     */
+    @Test
+    public void testNestedEntranceUnderRejected() throws Throwable {
+        CountingListener outer = new CountingListener();
+        CountingListener inner = new CountingListener();
+        DefaultEventListener http = new RejectingListener(outer);
+        DefaultEventListener dubbo = listener(InvokeType.DUBBO, true, inner);
+        DefaultEventListener redis = listener(InvokeType.REDIS, false, inner);
+
+        int outerId = ++invokeId;
+        http.onEvent(before(outerId));
+        TraceContext marker = Tracer.getContext();
+        Assert.assertNotNull(marker);
+        Assert.assertTrue(marker.isUnsampledMarker());
+        Assert.assertFalse(marker.isSampled());
+
+        invoke(dubbo);
+        invoke(redis);
+        // 标记不可修改
+        marker.setSampled(true);
+        marker.setInvokeType(InvokeType.DUBBO);
+        Assert.assertFalse(marker.isSampled());
+        Assert.assertSame(marker, Tracer.getContext());
+        invoke(dubbo);
+
+        http.onEvent(new ReturnEvent(outerId, outerId, null));
+        Assert.assertEquals(0, outer.invocations.size());
+        Assert.assertEquals(0, inner.invocations.size());
+        Assert.assertNull(Tracer.getContext());
+
+        // 标记清理后，同一线程上的下一个请求正常采集
+        invoke(dubbo);
+        Assert.assertEquals(1, inner.invocations.size());
+    }
+
+    private static void invoke(DefaultEventListener listener) throws Throwable {
+        int id = ++invokeId;
+        listener.onEvent(before(id));
+        listener.onEvent(new ReturnEvent(id, id, "ok"));
+    }
+
+    private static BeforeEvent before(int id) {
+        return new BeforeEvent(id, id, DefaultEventListenerTest.class.getClassLoader(),
+                "com.example.OrderService", "query", "(Ljava/lang/String;)Ljava/lang/String;", null, new Object[]{"order-" + id});
+    }
+
+    private static DefaultEventListener listener(InvokeType invokeType, boolean entrance, InvocationListener listener) {
+        return new DefaultEventListener(invokeType, entrance, listener, new DefaultInvocationProcessor(invokeType));
+    }
+
+    private static class RejectingListener extends DefaultEventListener {
+
+        RejectingListener(InvocationListener listener) {
+            super(InvokeType.HTTP, true, listener, new DefaultInvocationProcessor(InvokeType.HTTP));
+        }
+
+        @Override
+        protected boolean preFilter(Event event) {
+            return event.type != Event.Type.BEFORE;
+        }
+    }
+
+    private static class CountingListener implements InvocationListener {
+
+        private final List<Invocation> invocations = new ArrayList<Invocation>();
+
+        @Override
+        public void onInvocation(Invocation invocation) {
+            invocations.add(invocation);
+        }
+    }
+}
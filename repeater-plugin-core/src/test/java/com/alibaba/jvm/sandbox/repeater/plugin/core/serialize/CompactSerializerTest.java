@@ -0,0 +1,263 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.serialize;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.core.TestSupport;
+
+import com.google.common.base.Charsets;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * {@link CompactSerializerTest} {@link CompactSerializer}的往返、引用/循环引用和类结构变化校验
+ * <p>
+ *
+ * @author zhaoyb1990
+ */
+public class CompactSerializerTest {
+
+    private final CompactSerializer serializer = new CompactSerializer();
+
+    @BeforeClass
+    public static void init() {
+        TestSupport.init();
+    }
+
+    @Test
+    public void testScalars() throws Exception {
+        Object[] values = new Object[]{null, "repeater", "", 0, -1, Integer.MIN_VALUE, Long.MAX_VALUE, 1.5d, -0.25f,
+                (short) -3, (byte) 7, 'x', true, false, new BigDecimal("12345.678900"),
+                new BigInteger("123456789012345678901234567890"), Status.PAID, String.class, int.class};
+        for (Object value : values) {
+            Assert.assertEquals(value, roundTrip(value));
+        }
+    }
+
+    @Test
+    public void testDates() throws Exception {
+        Timestamp timestamp = new Timestamp(1559347200123L);
+        timestamp.setNanos(123456789);
+        Assert.assertEquals(timestamp, roundTrip(timestamp));
+        Assert.assertEquals(new Date(1559347200123L), roundTrip(new Date(1559347200123L)));
+        Assert.assertEquals(new java.sql.Date(1559347200000L), roundTrip(new java.sql.Date(1559347200000L)));
+    }
+
+    @Test
+    public void testArraysAndContainers() throws Exception {
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) roundTrip(new byte[]{1, 2, 3}));
+        Assert.assertArrayEquals(new int[]{-1, 0, 1 << 30}, (int[]) roundTrip(new int[]{-1, 0, 1 << 30}));
+        Assert.assertArrayEquals(new String[]{"a", null}, (String[]) roundTrip(new String[]{"a", null}));
+        List<Object> list = new ArrayList<Object>(Arrays.<Object>asList(1, "two", 3L, null));
+        Assert.assertEquals(list, roundTrip(list));
+        Map<String, Object> map = new TreeMap<String, Object>();
+        map.put("a", 1);
+        map.put("b", Arrays.asList("x", "y"));
+        Assert.assertEquals(map, roundTrip(map));
+        LinkedHashSet<String> set = new LinkedHashSet<String>(Arrays.asList("c", "a", "b"));
+        Assert.assertEquals(new ArrayList<String>(set), new ArrayList<Object>((LinkedHashSet<?>) roundTrip(set)));
+    }
+
+    @Test
+    public void testObjectGraph() throws Exception {
+        Order order = new Order(7L, "alice");
+        order.status = Status.CREATED;
+        order.amount = 12.5d;
+        order.tags = new String[]{"vip"};
+        order.extra = new HashMap<String, Object>();
+        order.extra.put("channel", "app");
+        order.items = new ArrayList<Item>(Arrays.asList(new Item("book", 2), new Item("pen", 10)));
+        Order copy = (Order) roundTrip(order);
+        Assert.assertEquals(7L, copy.id);
+        Assert.assertEquals("alice", copy.owner);
+        Assert.assertEquals(Status.CREATED, copy.status);
+        Assert.assertEquals(12.5d, copy.amount, 0d);
+        Assert.assertArrayEquals(new String[]{"vip"}, copy.tags);
+        Assert.assertEquals("app", copy.extra.get("channel"));
+        Assert.assertEquals(2, copy.items.size());
+        Assert.assertEquals("pen", copy.items.get(1).name);
+        Assert.assertEquals(10, copy.items.get(1).quantity);
+        // transient字段不序列化
+        Assert.assertNull(copy.cache);
+    }
+
+    @Test
+    public void testThrowable() throws Exception {
+        IllegalStateException exception = new IllegalStateException("boom", new RuntimeException("cause"));
+        IllegalStateException copy = (IllegalStateException) roundTrip(exception);
+        Assert.assertEquals("boom", copy.getMessage());
+        Assert.assertEquals("cause", copy.getCause().getMessage());
+        Assert.assertEquals(exception.getStackTrace().length, copy.getStackTrace().length);
+        Assert.assertEquals(exception.getStackTrace()[0], copy.getStackTrace()[0]);
+    }
+
+    @Test
+    public void testSharedReferences() throws Exception {
+        Item shared = new Item("book", 1);
+        List<Item> items = new ArrayList<Item>(Arrays.asList(shared, shared, new Item("book", 1)));
+        @SuppressWarnings("unchecked")
+        List<Item> copy = (List<Item>) roundTrip(items);
+        Assert.assertSame(copy.get(0), copy.get(1));
+        Assert.assertNotSame(copy.get(0), copy.get(2));
+    }
+
+    @Test
+    public void testCycles() throws Exception {
+        Node first = new Node("first");
+        Node second = new Node("second");
+        first.next = second;
+        second.next = first;
+        Node copy = (Node) roundTrip(first);
+        Assert.assertEquals("first", copy.name);
+        Assert.assertEquals("second", copy.next.name);
+        Assert.assertSame(copy, copy.next.next);
+        // 自引用
+        Node self = new Node("self");
+        self.next = self;
+        Node selfCopy = (Node) roundTrip(self);
+        Assert.assertSame(selfCopy, selfCopy.next);
+        // 容器中的环
+        List<Object> list = new ArrayList<Object>();
+        list.add("head");
+        list.add(list);
+        List<?> listCopy = (List<?>) roundTrip(list);
+        Assert.assertSame(listCopy, listCopy.get(1));
+    }
+
+    /**
+     * 同名类的字段数量一致但字段名或字段类型变化时，反序列化失败而不是按错位的字段读出数据
+     */
+    @Test
+    public void testClassStructureChanged() throws Exception {
+        PayloadA payload = new PayloadA();
+        payload.name = "repeater";
+        payload.count = 3;
+        byte[] bytes = serializer.serialize(payload);
+        Assert.assertEquals("repeater", ((PayloadA) serializer.deserialize(bytes)).name);
+        assertChanged(rename(bytes, PayloadA.class, PayloadB.class));
+        assertChanged(rename(bytes, PayloadA.class, PayloadC.class));
+        assertChanged(rename(bytes, PayloadA.class, PayloadD.class));
+    }
+
+    @Test
+    public void testCorruptedInput() {
+        try {
+            serializer.deserialize(new byte[]{99});
+            Assert.fail();
+        } catch (SerializeException e) {
+            // expected
+        }
+    }
+
+    private Object roundTrip(Object value) throws SerializeException {
+        return serializer.deserialize(serializer.serialize(value));
+    }
+
+    private void assertChanged(byte[] bytes) {
+        try {
+            serializer.deserialize(bytes);
+            Assert.fail("class structure change not detected");
+        } catch (SerializeException e) {
+            Assert.assertTrue(e.getCause().getMessage().contains("class structure changed"));
+        }
+    }
+
+    /**
+     * 把序列化结果中的类名替换为同样长度的另一个类名，模拟对端类结构发生变化
+     */
+    private byte[] rename(byte[] bytes, Class<?> from, Class<?> to) {
+        byte[] source = from.getName().getBytes(Charsets.UTF_8);
+        byte[] target = to.getName().getBytes(Charsets.UTF_8);
+        Assert.assertEquals(source.length, target.length);
+        byte[] renamed = bytes.clone();
+        for (int i = 0; i + source.length <= renamed.length; i++) {
+            if (Arrays.equals(source, Arrays.copyOfRange(renamed, i, i + source.length))) {
+                System.arraycopy(target, 0, renamed, i, target.length);
+                return renamed;
+            }
+        }
+        throw new AssertionError("class name not found");
+    }
+
+    enum Status {
+        CREATED, PAID
+    }
+
+    static class Order {
+        long id;
+        String owner;
+        Status status;
+        double amount;
+        String[] tags;
+        Map<String, Object> extra;
+        List<Item> items;
+        transient Object cache = new Object();
+
+        /**
+         * 没有无参构造器
+         */
+        Order(long id, String owner) {
+            this.id = id;
+            this.owner = owner;
+        }
+    }
+
+    static class Item {
+        String name;
+        int quantity;
+
+        Item(String name, int quantity) {
+            this.name = name;
+            this.quantity = quantity;
+        }
+    }
+
+    static class Node {
+        String name;
+        Node next;
+
+        Node(String name) {
+            this.name = name;
+        }
+    }
+
+    static class PayloadA {
+        String name;
+        int count;
+    }
+
+    /**
+     * 字段改名
+     */
+    static class PayloadB {
+        String title;
+        int count;
+    }
+
+    /**
+     * 字段类型变化
+     */
+    static class PayloadC {
+        String name;
+        long count;
+    }
+
+    /**
+     * 新增字段
+     */
+    static class PayloadD {
+        String name;
+        int count;
+        int version;
+    }
+}
@@ -0,0 +1,158 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.compress;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.core.TestSupport;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.SerializeException;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.compress.Compressor.Type;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper.SerializerWrapper;
+
+import com.google.common.base.Charsets;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * {@link CompressorProviderTest} 压缩帧格式、各压缩实现的往返和解压长度上限
+ * <p>
+ *
+ * @author zhaoyb1990
+ */
+public class CompressorProviderTest {
+
+    private final CompressorProvider provider = CompressorProvider.instance();
+
+    @BeforeClass
+    public static void init() {
+        TestSupport.init();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        byte[] origin = payload(64 * 1024);
+        for (Type type : new Type[]{Type.DEFLATE, Type.GZIP}) {
+            byte[] compressed = provider.compress(type, origin);
+            Assert.assertTrue(type.name(), provider.isCompressed(compressed));
+            Assert.assertTrue(type.name(), compressed.length < origin.length);
+            Assert.assertArrayEquals(type.name(), origin, provider.decompress(compressed));
+            // 相同输入相同输出
+            Assert.assertArrayEquals(type.name(), compressed, provider.compress(type, origin));
+        }
+    }
+
+    @Test
+    public void testStreamRoundTrip() throws Exception {
+        byte[] origin = payload(20000);
+        for (Type type : new Type[]{Type.DEFLATE, Type.GZIP}) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            OutputStream out = provider.compress(type, bos);
+            out.write(origin, 0, 100);
+            out.write(origin, 100, origin.length - 100);
+            out.close();
+            byte[] compressed = bos.toByteArray();
+            Assert.assertTrue(type.name(), provider.isCompressed(compressed));
+            Assert.assertArrayEquals(type.name(), origin, provider.decompress(compressed));
+        }
+    }
+
+    @Test
+    public void testNone() throws Exception {
+        byte[] origin = payload(100);
+        Assert.assertSame(origin, provider.compress(Type.NONE, origin));
+        Assert.assertSame(origin, provider.compress(null, origin));
+        Assert.assertFalse(provider.isCompressed(origin));
+        Assert.assertSame(origin, provider.decompress(origin));
+        Assert.assertNull(provider.decompress(null));
+    }
+
+    /**
+     * 以magic开头但版本、类型或长度不合法的数据不是压缩帧，原样返回
+     */
+    @Test
+    public void testUncompressedWithMagicPrefix() throws Exception {
+        byte[] framed = provider.compress(Type.DEFLATE, payload(1000));
+        byte[] wrongVersion = framed.clone();
+        wrongVersion[3] = 9;
+        Assert.assertFalse(provider.isCompressed(wrongVersion));
+        Assert.assertSame(wrongVersion, provider.decompress(wrongVersion));
+        byte[] wrongType = framed.clone();
+        wrongType[4] = 0;
+        Assert.assertFalse(provider.isCompressed(wrongType));
+        byte[] unknownType = framed.clone();
+        unknownType[4] = 7;
+        Assert.assertFalse(provider.isCompressed(unknownType));
+        byte[] shortHeader = Arrays.copyOf(framed, 8);
+        Assert.assertFalse(provider.isCompressed(shortHeader));
+    }
+
+    /**
+     * 以magic开头的未压缩hessian数据：紧凑long 1874序列化为0xFF 'R'
+     */
+    @Test
+    public void testHessianWithMagicPrefix() throws Exception {
+        byte[] serialized = SerializerWrapper.hessianSerialize2Bytes(1874L);
+        Assert.assertArrayEquals(new byte[]{(byte) 0xFF, 'R'}, serialized);
+        byte[] bytes = Arrays.copyOf(serialized, 16);
+        bytes[2] = 'Z';
+        Assert.assertFalse(provider.isCompressed(bytes));
+        Assert.assertSame(bytes, provider.decompress(bytes));
+        Assert.assertEquals(1874L, SerializerWrapper.hessianDeserialize(bytes));
+    }
+
+    /**
+     * 帧头声明的原始长度超过上限时不分配内存，不视为压缩帧
+     */
+    @Test
+    public void testOriginLengthCap() throws Exception {
+        byte[] framed = provider.compress(Type.GZIP, payload(1000));
+        byte[] hostile = framed.clone();
+        writeInt(hostile, 5, Integer.MAX_VALUE);
+        Assert.assertFalse(provider.isCompressed(hostile));
+        byte[] negative = framed.clone();
+        writeInt(negative, 5, -2);
+        Assert.assertFalse(provider.isCompressed(negative));
+        for (Type type : new Type[]{Type.DEFLATE, Type.GZIP}) {
+            Compressor compressor = provider.provide(type);
+            byte[] compressed = compressor.compress(payload(100));
+            try {
+                compressor.decompress(compressed, compressed.length * Compressor.MAX_RATIO + 65);
+                Assert.fail(type.name());
+            } catch (SerializeException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testLengthMismatch() throws Exception {
+        for (Type type : new Type[]{Type.DEFLATE, Type.GZIP}) {
+            Compressor compressor = provider.provide(type);
+            byte[] compressed = compressor.compress(payload(1000));
+            try {
+                compressor.decompress(compressed, 2000);
+                Assert.fail(type.name());
+            } catch (SerializeException e) {
+                // expected
+            }
+        }
+    }
+
+    private byte[] payload(int size) {
+        StringBuilder sb = new StringBuilder(size);
+        Random random = new Random(size);
+        while (sb.length() < size) {
+            sb.append("{\"id\":").append(random.nextInt(100)).append(",\"name\":\"repeater\"}");
+        }
+        return sb.substring(0, size).getBytes(Charsets.UTF_8);
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,100 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.trace;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.InvokeType;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.SampleRule;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link SampleRuleMatcherTest} {@link SampleRuleMatcher}的规则匹配和令牌桶限流
+ * <p>
+ *
+ * @author zhaoyb1990
+ */
+public class SampleRuleMatcherTest {
+
+    @After
+    public void tearDown() {
+        SampleRuleMatcher.compile(null);
+    }
+
+    @Test
+    public void testMatchInOrder() {
+        SampleRuleMatcher.compile(Arrays.asList(
+                rule("http", "/order/.*", 100, null),
+                rule(null, "/order/create", 10000, null),
+                rule(null, "[invalid", 1, null)));
+        SampleRuleMatcher matcher = SampleRuleMatcher.current();
+        SampleRuleMatcher.Rule http = matcher.match(InvokeType.HTTP, "/order/create");
+        Assert.assertNotNull(http);
+        Assert.assertEquals(100, http.getSampleRate(0));
+        // 缓存的匹配结果返回同一条规则
+        Assert.assertSame(http, matcher.match(InvokeType.HTTP, "/order/create"));
+        SampleRuleMatcher.Rule dubbo = matcher.match(InvokeType.DUBBO, "/order/create");
+        Assert.assertNotNull(dubbo);
+        Assert.assertEquals(10000, dubbo.getSampleRate(0));
+        Assert.assertNull(matcher.match(InvokeType.HTTP, "/user/query"));
+        Assert.assertNull(matcher.match(InvokeType.HTTP, null));
+    }
+
+    @Test
+    public void testDefaultRate() {
+        SampleRuleMatcher.compile(Collections.singletonList(rule(null, "/.*", null, null)));
+        Assert.assertEquals(42, SampleRuleMatcher.current().match(InvokeType.HTTP, "/a").getSampleRate(42));
+    }
+
+    @Test
+    public void testEmpty() {
+        SampleRuleMatcher.compile(null);
+        Assert.assertTrue(SampleRuleMatcher.current().isEmpty());
+        Assert.assertNull(SampleRuleMatcher.current().match(InvokeType.HTTP, "/a"));
+    }
+
+    @Test
+    public void testUnlimited() {
+        SampleRuleMatcher.compile(Collections.singletonList(rule(null, "/.*", null, 0)));
+        SampleRuleMatcher.Rule rule = SampleRuleMatcher.current().match(InvokeType.HTTP, "/a");
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(rule.tryAcquire());
+        }
+    }
+
+    /**
+     * 初始令牌为每秒记录数，用完之后按时间补充，补充量不超过容量
+     */
+    @Test
+    public void testTokenBucket() throws InterruptedException {
+        SampleRuleMatcher.compile(Collections.singletonList(rule(null, "/.*", null, 5)));
+        SampleRuleMatcher.Rule rule = SampleRuleMatcher.current().match(InvokeType.HTTP, "/a");
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(rule.tryAcquire());
+        }
+        Assert.assertFalse(rule.tryAcquire());
+        // 5/s，250ms补充1.25个令牌
+        TimeUnit.MILLISECONDS.sleep(250);
+        Assert.assertTrue(rule.tryAcquire());
+        Assert.assertFalse(rule.tryAcquire());
+        // 空闲再久也只补满到容量
+        TimeUnit.MILLISECONDS.sleep(1500);
+        int acquired = 0;
+        while (rule.tryAcquire()) {
+            acquired++;
+        }
+        Assert.assertEquals(5, acquired);
+    }
+
+    private SampleRule rule(String invokeType, String pattern, Integer sampleRate, Integer maxRecordsPerSecond) {
+        SampleRule rule = new SampleRule();
+        rule.setInvokeType(invokeType);
+        rule.setPattern(pattern);
+        rule.setSampleRate(sampleRate);
+        rule.setMaxRecordsPerSecond(maxRecordsPerSecond);
+        return rule;
+    }
+}
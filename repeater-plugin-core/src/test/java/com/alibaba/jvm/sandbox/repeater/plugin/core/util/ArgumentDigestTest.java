@@ -0,0 +1,208 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.util;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link ArgumentDigestTest} {@link ArgumentDigest}的展开和摘要
+ * <p>
+ *
+ * @author zhaoyb1990
+ */
+public class ArgumentDigestTest {
+
+    @Test
+    public void testSameStructureSameDigest() {
+        ArgumentDigest first = ArgumentDigest.of(new Object[]{order(1L, "alice"), 3});
+        ArgumentDigest second = ArgumentDigest.of(new Object[]{order(1L, "alice"), 3});
+        Assert.assertEquals(first.getHash(), second.getHash());
+        Assert.assertTrue(first.sameAs(second));
+    }
+
+    @Test
+    public void testLeafDifference() {
+        ArgumentDigest first = ArgumentDigest.of(new Object[]{order(1L, "alice")});
+        ArgumentDigest second = ArgumentDigest.of(new Object[]{order(1L, "bob")});
+        Assert.assertFalse(first.sameAs(second));
+        Assert.assertEquals("alice", first.getLeaves().get("[0].owner"));
+        Assert.assertEquals("bob", second.getLeaves().get("[0].owner"));
+        Assert.assertEquals(first.getLeaves().get("[0].id"), second.getLeaves().get("[0].id"));
+    }
+
+    /**
+     * 摘要与容器的遍历顺序无关
+     */
+    @Test
+    public void testMapOrderIndependent() {
+        Map<String, Object> forward = new LinkedHashMap<String, Object>();
+        forward.put("a", 1);
+        forward.put("b", "x");
+        Map<String, Object> backward = new LinkedHashMap<String, Object>();
+        backward.put("b", "x");
+        backward.put("a", 1);
+        ArgumentDigest first = ArgumentDigest.of(new Object[]{forward});
+        ArgumentDigest second = ArgumentDigest.of(new Object[]{backward});
+        Assert.assertEquals(first.getHash(), second.getHash());
+        Assert.assertTrue(first.sameAs(second));
+    }
+
+    /**
+     * 无序集合的摘要与遍历顺序无关
+     */
+    @Test
+    public void testSetOrderIndependent() {
+        Set<Object> forward = new LinkedHashSet<Object>(Arrays.<Object>asList("a", 1, order(1L, "alice")));
+        Set<Object> backward = new LinkedHashSet<Object>(Arrays.<Object>asList(order(1L, "alice"), 1, "a"));
+        ArgumentDigest first = ArgumentDigest.of(new Object[]{forward});
+        ArgumentDigest second = ArgumentDigest.of(new Object[]{backward});
+        Assert.assertEquals(first.getHash(), second.getHash());
+        Assert.assertTrue(first.sameAs(second));
+        Assert.assertFalse(first.sameAs(ArgumentDigest.of(new Object[]{new LinkedHashSet<Object>(Arrays.<Object>asList("a", 2, order(1L, "alice")))})));
+    }
+
+    /**
+     * 元素没有重写hashCode，每次构造的HashSet遍历顺序随identityHashCode变化
+     */
+    @Test
+    public void testHashSetOfPojos() {
+        ArgumentDigest expected = ArgumentDigest.of(new Object[]{pojoSet()});
+        for (int i = 0; i < 20; i++) {
+            ArgumentDigest digest = ArgumentDigest.of(new Object[]{pojoSet()});
+            Assert.assertEquals(expected.getHash(), digest.getHash());
+            Assert.assertTrue(expected.sameAs(digest));
+        }
+        // 结构完全相同的元素各自保留
+        Set<Object> twins = new HashSet<Object>(Arrays.<Object>asList(order(1L, "alice"), order(1L, "alice")));
+        Assert.assertEquals(2, twins.size());
+        Assert.assertEquals(2 * ArgumentDigest.of(new Object[]{order(1L, "alice")}).size() + 1,
+                ArgumentDigest.of(new Object[]{twins}).size());
+    }
+
+    /**
+     * key没有重写toString时路径不包含identityHashCode
+     */
+    @Test
+    public void testPojoMapKey() {
+        ArgumentDigest first = ArgumentDigest.of(new Object[]{pojoKeyed()});
+        ArgumentDigest second = ArgumentDigest.of(new Object[]{pojoKeyed()});
+        Assert.assertEquals(first.getHash(), second.getHash());
+        Assert.assertTrue(first.sameAs(second));
+        for (String path : first.getLeaves().keySet()) {
+            Assert.assertFalse(path, path.contains("@"));
+        }
+        Map<Object, Object> other = new HashMap<Object, Object>();
+        other.put(order(3L, "carol"), "first");
+        other.put(order(2L, "bob"), "second");
+        Assert.assertFalse(first.sameAs(ArgumentDigest.of(new Object[]{other})));
+    }
+
+    @Test
+    public void testNormalizedLeaves() {
+        ArgumentDigest digest = ArgumentDigest.of(new Object[]{Status.PAID, new Date(1000L), String.class, null});
+        Assert.assertEquals("PAID", digest.getLeaves().get("[0]"));
+        Assert.assertEquals(1000L, digest.getLeaves().get("[1]"));
+        Assert.assertEquals("java.lang.String", digest.getLeaves().get("[2]"));
+        Assert.assertTrue(digest.getLeaves().containsKey("[3]"));
+    }
+
+    @Test
+    public void testCollections() {
+        List<Object> items = new ArrayList<Object>();
+        items.add("a");
+        items.add(new int[]{7, 8});
+        ArgumentDigest digest = ArgumentDigest.of(new Object[]{items});
+        Assert.assertEquals(2, digest.getLeaves().get("[0]#"));
+        Assert.assertEquals("a", digest.getLeaves().get("[0][0]"));
+        Assert.assertEquals(2, digest.getLeaves().get("[0][1]#"));
+        Assert.assertEquals(8, digest.getLeaves().get("[0][1][1]"));
+    }
+
+    @Test
+    public void testCycle() {
+        Node head = new Node();
+        head.next = new Node();
+        head.next.next = head;
+        ArgumentDigest digest = ArgumentDigest.of(new Object[]{head});
+        Assert.assertTrue(digest.size() > 0);
+        Assert.assertTrue(digest.sameAs(ArgumentDigest.of(new Object[]{head})));
+        // 同一对象被引用两次不是环
+        Node shared = new Node();
+        Map<String, Object> twice = new HashMap<String, Object>();
+        twice.put("left", shared);
+        twice.put("right", shared);
+        Assert.assertTrue(ArgumentDigest.of(new Object[]{twice}).getLeaves().get("[0]{left}.next") != null);
+        Assert.assertTrue(ArgumentDigest.of(new Object[]{twice}).getLeaves().get("[0]{right}.next") != null);
+    }
+
+    @Test
+    public void testDepthLimit() {
+        Node head = new Node();
+        Node current = head;
+        for (int i = 0; i < 32; i++) {
+            current.next = new Node();
+            current = current.next;
+        }
+        ArgumentDigest digest = ArgumentDigest.of(new Object[]{head});
+        Assert.assertTrue(digest.getLeaves().containsValue(Node.class.getName()));
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertEquals(0, ArgumentDigest.of(null).size());
+        Assert.assertTrue(ArgumentDigest.of(new Object[0]).sameAs(ArgumentDigest.of(null)));
+    }
+
+    private static Set<Object> pojoSet() {
+        Set<Object> set = new HashSet<Object>();
+        for (int i = 0; i < 16; i++) {
+            set.add(order(i, "owner-" + i));
+        }
+        return set;
+    }
+
+    private static Map<Object, Object> pojoKeyed() {
+        Map<Object, Object> map = new HashMap<Object, Object>();
+        map.put(order(1L, "alice"), "first");
+        map.put(order(2L, "bob"), "second");
+        return map;
+    }
+
+    private static Order order(long id, String owner) {
+        Order order = new Order();
+        order.id = id;
+        order.owner = owner;
+        order.status = Status.CREATED;
+        Map<String, Object> extra = new HashMap<String, Object>();
+        extra.put("channel", "app");
+        extra.put("coupon", null);
+        order.extra = extra;
+        return order;
+    }
+
+    enum Status {
+        CREATED, PAID
+    }
+
+    static class Order {
+        long id;
+        String owner;
+        Status status;
+        Map<String, Object> extra;
+        transient String ignored = String.valueOf(System.nanoTime());
+    }
+
+    static class Node {
+        Node next;
+    }
+}
@@ -0,0 +1,94 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link IntObjectMapTest} {@link IntObjectMap}的删除回移和过期清理
+ * <p>
+ *
+ * @author zhaoyb1990
+ */
+public class IntObjectMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        IntObjectMap<String> map = new IntObjectMap<String>();
+        Assert.assertNull(map.put(1, "a", 0L));
+        Assert.assertEquals("a", map.put(1, "b", 0L));
+        Assert.assertEquals("b", map.get(1));
+        Assert.assertEquals(1, map.size());
+        Assert.assertEquals("b", map.remove(1));
+        Assert.assertNull(map.get(1));
+        Assert.assertNull(map.remove(1));
+        Assert.assertEquals(0, map.size());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullValue() {
+        new IntObjectMap<String>().put(1, null, 0L);
+    }
+
+    /**
+     * 小容量下大量冲突（含探测链绕回表头），随机删除之后剩余元素必须都能查到
+     */
+    @Test
+    public void testRemoveKeepsProbeChains() {
+        Random random = new Random(20190601L);
+        IntObjectMap<Integer> map = new IntObjectMap<Integer>(8);
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        for (int round = 0; round < 20000; round++) {
+            int key = random.nextInt(2048) - 1024;
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                Assert.assertEquals(expected.put(key, round), map.put(key, round, 0L));
+            }
+            if (round % 997 == 0) {
+                assertSame(expected, map);
+            }
+        }
+        assertSame(expected, map);
+    }
+
+    @Test
+    public void testSweep() {
+        Random random = new Random(20190602L);
+        IntObjectMap<Integer> map = new IntObjectMap<Integer>(8);
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        Map<Integer, Long> timestamps = new HashMap<Integer, Long>();
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt();
+            long timestamp = random.nextInt(100);
+            map.put(key, i, timestamp);
+            expected.put(key, i);
+            timestamps.put(key, timestamp);
+        }
+        int swept = 0;
+        for (Iterator<Map.Entry<Integer, Long>> it = timestamps.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, Long> entry = it.next();
+            if (entry.getValue() < 50) {
+                expected.remove(entry.getKey());
+                it.remove();
+                swept++;
+            }
+        }
+        Assert.assertEquals(swept, map.sweep(50));
+        assertSame(expected, map);
+        Assert.assertEquals(0, map.sweep(50));
+        Assert.assertEquals(expected.size(), map.sweep(Long.MAX_VALUE));
+        Assert.assertEquals(0, map.size());
+    }
+
+    private void assertSame(Map<Integer, Integer> expected, IntObjectMap<Integer> map) {
+        Assert.assertEquals(expected.size(), map.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            Assert.assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+}
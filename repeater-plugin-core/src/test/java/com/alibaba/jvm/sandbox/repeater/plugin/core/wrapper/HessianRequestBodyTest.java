@@ -0,0 +1,88 @@
+package com.alibaba.jvm.sandbox.repeater.plugin.core.wrapper;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.core.TestSupport;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.compress.Compressor;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.serialize.compress.CompressorProvider;
+
+import com.google.common.base.Strings;
+import com.google.common.io.BaseEncoding;
+import okio.Buffer;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * {@link HessianRequestBodyTest} 批量投递请求体：元素为单条记录的载荷，序列化失败的元素不影响其它元素
+ * <p>
+ *
+ * @author zhaoyb1990
+ */
+public class HessianRequestBodyTest {
+
+    @BeforeClass
+    public static void init() {
+        TestSupport.init();
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        // 超过输出缓冲区的记录跨多个binary分块
+        List<RecordWrapper> wrappers = Arrays.asList(wrapper("t-1"), wrapper(Strings.repeat("t", 20000)), wrapper("t-3"));
+        for (Compressor.Type type : Compressor.Type.values()) {
+            for (boolean binary : new boolean[]{true, false}) {
+                List<?> elements = decode(HessianRequestBody.batch(wrappers, type, binary), binary);
+                Assert.assertEquals(3, elements.size());
+                for (int i = 0; i < elements.size(); i++) {
+                    byte[] payload = (byte[]) elements.get(i);
+                    Assert.assertEquals(type != Compressor.Type.NONE, CompressorProvider.instance().isCompressed(payload));
+                    // 与逐条投递的载荷一致
+                    Assert.assertArrayEquals(SerializerWrapper.hessianSerialize2Bytes(wrappers.get(i)),
+                            CompressorProvider.instance().decompress(payload));
+                    RecordWrapper wrapper = SerializerWrapper.hessianDeserialize(payload, RecordWrapper.class);
+                    Assert.assertEquals(wrappers.get(i).getTraceId(), wrapper.getTraceId());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBrokenElement() throws Exception {
+        List<Object> objects = new ArrayList<Object>();
+        objects.add(wrapper("t-1"));
+        objects.add(new ArrayList<Object>(Arrays.asList(Strings.repeat("x", 20000), new Broken())));
+        objects.add(wrapper("t-3"));
+        HessianRequestBody body = HessianRequestBody.batch(objects, Compressor.Type.GZIP, true);
+        List<?> elements = decode(body, true);
+        Assert.assertNotNull(body.getFailure());
+        Assert.assertEquals(3, elements.size());
+        Assert.assertEquals("t-1", SerializerWrapper.hessianDeserialize((byte[]) elements.get(0), RecordWrapper.class).getTraceId());
+        Assert.assertEquals("t-3", SerializerWrapper.hessianDeserialize((byte[]) elements.get(2), RecordWrapper.class).getTraceId());
+    }
+
+    private static List<?> decode(HessianRequestBody body, boolean binary) throws Exception {
+        Buffer sink = new Buffer();
+        body.writeTo(sink);
+        byte[] bytes = binary ? sink.readByteArray() : BaseEncoding.base64().decode(sink.readUtf8());
+        return SerializerWrapper.hessianDeserialize(bytes, List.class);
+    }
+
+    private static RecordWrapper wrapper(String traceId) {
+        RecordWrapper wrapper = new RecordWrapper();
+        wrapper.setAppName("unit");
+        wrapper.setTraceId(traceId);
+        wrapper.setTimestamp(System.currentTimeMillis());
+        return wrapper;
+    }
+
+    private static class Broken implements Serializable {
+
+        private Object writeReplace() {
+            throw new IllegalStateException("broken");
+        }
+    }
+}
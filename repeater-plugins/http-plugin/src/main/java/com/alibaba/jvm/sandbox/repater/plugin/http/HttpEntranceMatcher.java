@@ -0,0 +1,250 @@
+package com.alibaba.jvm.sandbox.repater.plugin.http;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.alibaba.jvm.sandbox.repeater.plugin.core.util.LogUtil;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * {@link HttpEntranceMatcher} 预编译的httpEntrancePatterns匹配器
+ * <p>
+ * 每个配置版本（{@code httpEntrancePatterns}列表实例）只编译一次，语义与逐个{@code requestURI.matches(pattern)}一致：
+ * <ul>
+ * <li>纯字面量的pattern放入集合精确匹配</li>
+ * <li>字面量前缀 + {@code .*}的pattern放入前缀树</li>
+ * <li>其余正则合并为一个预编译的分支表达式</li>
+ * </ul>
+ * 匹配结果放入有界的URI缓存
+ * </p>
+ *
+ * @author zhaoyb1990
+ */
+class HttpEntranceMatcher {
+
+    private static final String REGEX_META = "\\.[]{}()*+?^$|";
+
+    /**
+     * 含反向引用的正则合并后分组序号会变化，不能合并
+     */
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\[1-9]");
+
+    private static volatile HttpEntranceMatcher current = new HttpEntranceMatcher(null);
+
+    /**
+     * 编译来源；用于判断配置版本是否变化
+     */
+    private final List<String> source;
+
+    private final Set<String> literals = new HashSet<String>();
+
+    private final TrieNode prefixes = new TrieNode();
+
+    private final List<Pattern> regexes = new ArrayList<Pattern>();
+
+    private final Cache<String, Boolean> decisions = CacheBuilder.newBuilder().maximumSize(4096).build();
+
+    private HttpEntranceMatcher(List<String> source) {
+        this.source = source;
+        if (source == null) {
+            return;
+        }
+        List<String> complex = new ArrayList<String>();
+        for (String pattern : source) {
+            if (pattern == null) {
+                continue;
+            }
+            String body = stripAnchors(pattern);
+            String literal = literalOf(body);
+            if (literal != null) {
+                literals.add(literal);
+                continue;
+            }
+            if (body.endsWith(".*")) {
+                String prefix = literalOf(body.substring(0, body.length() - 2));
+                if (prefix != null) {
+                    prefixes.insert(prefix);
+                    continue;
+                }
+            }
+            complex.add(pattern);
+        }
+        compileRegexes(complex);
+    }
+
+    /**
+     * 获取配置对应的匹配器；配置未变化时复用已编译的匹配器
+     *
+     * @param patterns httpEntrancePatterns
+     * @return 匹配器
+     */
+    static HttpEntranceMatcher of(List<String> patterns) {
+        HttpEntranceMatcher matcher = current;
+        if (matcher.source != patterns) {
+            matcher = rebuild(patterns);
+        }
+        return matcher;
+    }
+
+    /**
+     * 重新编译匹配器
+     *
+     * @param patterns httpEntrancePatterns
+     * @return 匹配器
+     */
+    static HttpEntranceMatcher rebuild(List<String> patterns) {
+        HttpEntranceMatcher matcher = new HttpEntranceMatcher(patterns);
+        current = matcher;
+        return matcher;
+    }
+
+    /**
+     * 是否命中需要采样的requestURI
+     *
+     * @param requestURI 请求URI
+     * @return 是否命中
+     */
+    boolean matches(String requestURI) {
+        if (requestURI == null || source == null || source.isEmpty()) {
+            return false;
+        }
+        Boolean decision = decisions.getIfPresent(requestURI);
+        if (decision == null) {
+            decision = match0(requestURI);
+            decisions.put(requestURI, decision);
+        }
+        return decision;
+    }
+
+    private boolean match0(String requestURI) {
+        if (literals.contains(requestURI) || prefixes.hasPrefixOf(requestURI)) {
+            return true;
+        }
+        for (Pattern regex : regexes) {
+            if (regex.matcher(requestURI).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 合并为一个分支表达式；含反向引用的正则单独编译
+     * <p>
+     * 单独合法的正则合并后仍可能无法编译（如重复的命名分组、未结束的{@code \Q}），此时退回逐个编译的正则
+     */
+    private void compileRegexes(List<String> complex) {
+        List<Pattern> mergeable = new ArrayList<Pattern>();
+        StringBuilder alternation = new StringBuilder();
+        for (String pattern : complex) {
+            try {
+                Pattern compiled = Pattern.compile(pattern);
+                if (BACK_REFERENCE.matcher(pattern).find()) {
+                    regexes.add(compiled);
+                    continue;
+                }
+                mergeable.add(compiled);
+            } catch (PatternSyntaxException e) {
+                LogUtil.error("invalid httpEntrancePattern, ignore it, pattern={}", pattern);
+                continue;
+            }
+            if (alternation.length() > 0) {
+                alternation.append('|');
+            }
+            alternation.append("(?:").append(pattern).append(')');
+        }
+        if (mergeable.size() == 1) {
+            regexes.addAll(mergeable);
+        } else if (mergeable.size() > 1) {
+            try {
+                regexes.add(Pattern.compile(alternation.toString()));
+            } catch (PatternSyntaxException e) {
+                LogUtil.warn("merge httpEntrancePatterns failed, match them one by one, reason={}", e.getDescription());
+                regexes.addAll(mergeable);
+            }
+        }
+    }
+
+    private static String stripAnchors(String pattern) {
+        String body = pattern;
+        if (body.startsWith("^")) {
+            body = body.substring(1);
+        }
+        if (body.endsWith("$") && !body.endsWith("\\$")) {
+            body = body.substring(0, body.length() - 1);
+        }
+        return body;
+    }
+
+    /**
+     * 解析纯字面量的正则
+     *
+     * @param regex 正则
+     * @return 字面量；含有正则语法时返回null
+     */
+    private static String literalOf(String regex) {
+        StringBuilder literal = new StringBuilder(regex.length());
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                // 只接受转义的元字符，\d \w等仍然是正则
+                if (i + 1 < regex.length() && REGEX_META.indexOf(regex.charAt(i + 1)) >= 0) {
+                    literal.append(regex.charAt(++i));
+                    continue;
+                }
+                return null;
+            }
+            if (REGEX_META.indexOf(c) >= 0) {
+                return null;
+            }
+            literal.append(c);
+        }
+        return literal.toString();
+    }
+
+    private static class TrieNode {
+
+        private final Map<Character, TrieNode> children = new HashMap<Character, TrieNode>(4);
+
+        private boolean terminal;
+
+        private void insert(String prefix) {
+            TrieNode node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                Character c = prefix.charAt(i);
+                TrieNode child = node.children.get(c);
+                if (child == null) {
+                    child = new TrieNode();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            node.terminal = true;
+        }
+
+        private boolean hasPrefixOf(String value) {
+            TrieNode node = this;
+            if (node.terminal) {
+                return true;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                node = node.children.get(value.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+                if (node.terminal) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
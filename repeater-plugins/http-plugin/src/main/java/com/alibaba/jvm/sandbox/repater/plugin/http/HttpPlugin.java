@@ -7,6 +7,8 @@ import com.alibaba.jvm.sandbox.repeater.plugin.api.InvocationProcessor;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.impl.AbstractInvokePluginAdapter;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.model.EnhanceModel;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.InvokeType;
+import com.alibaba.jvm.sandbox.repeater.plugin.domain.RepeaterConfig;
+import com.alibaba.jvm.sandbox.repeater.plugin.exception.PluginLifeCycleException;
 import com.alibaba.jvm.sandbox.repeater.plugin.spi.InvokePlugin;
 import com.google.common.collect.Lists;
 import org.kohsuke.MetaInfServices;
@@ -48,6 +50,13 @@ public class HttpPlugin extends AbstractInvokePluginAdapter {
         return new HttpStandaloneListener(getType(), isEntrance(), listener, getInvocationProcessor());
     }
 
+    @Override
+    public void onConfigChange(RepeaterConfig config) throws PluginLifeCycleException {
+        // 配置变更时重新编译httpEntrancePatterns
+        HttpEntranceMatcher.rebuild(config.getHttpEntrancePatterns());
+        super.onConfigChange(config);
+    }
+
     @Override
     public InvokeType getType() {
         return InvokeType.HTTP;
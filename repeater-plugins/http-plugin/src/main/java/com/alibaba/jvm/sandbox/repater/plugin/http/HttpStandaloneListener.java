@@ -17,19 +17,18 @@ import com.alibaba.jvm.sandbox.repeater.plugin.core.cache.RecordCache;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.cache.RepeatCache;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.impl.api.DefaultEventListener;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.model.ApplicationModel;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.TraceContext;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.TraceGenerator;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.trace.Tracer;
 import com.alibaba.jvm.sandbox.repeater.plugin.core.util.LogUtil;
 import com.alibaba.jvm.sandbox.repeater.plugin.domain.*;
 import com.alibaba.jvm.sandbox.repeater.plugin.spi.MockStrategy;
-import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 
@@ -50,6 +49,59 @@ public class HttpStandaloneListener extends DefaultEventListener implements Invo
         super(invokeType, entrance, listener, processor);
     }
 
+    /**
+     * 预过滤通过且预先生成的traceId；在{@link #initContext(Event)}中使用
+     */
+    private final ThreadLocal<String> sampledTraceId = new ThreadLocal<String>();
+
+    /**
+     * 开启追踪之前的预过滤：回放流量直接通过；降级、requestURI不匹配、采样预判未命中的请求不开启追踪也不包装请求，
+     * 只放置未采样标记，请求内的下级入口（dubbo、MQ等）同样不采集
+     * <p>
+     * 未透传traceId时先占用traceId的序号做采样判断，命中之后再用这个序号生成traceId，与{@link com.alibaba.jvm.sandbox.repeater.plugin.core.trace.TraceContext#inTimeSample}的结果一致
+     *
+     * @param event 事件
+     * @return 是否通过
+     */
+    @Override
+    protected boolean preFilter(Event event) {
+        if (event.type != Event.Type.BEFORE) {
+            return true;
+        }
+        Object request = ((BeforeEvent) event).argumentArray[0];
+        if (!(request instanceof HttpServletRequest) || Tracer.getContext() != null) {
+            return true;
+        }
+        ApplicationModel am = ApplicationModel.instance();
+        if (!am.isWorkingOn()) {
+            return false;
+        }
+        HttpServletRequest req = (HttpServletRequest) request;
+        if (TraceGenerator.isValid(getTraceId(req, Constants.HEADER_TRACE_ID_X))) {
+            return true;
+        }
+        // 降级之后只有回放流量可以通过
+        if (am.isDegrade()) {
+            return false;
+        }
+        // 根据 requestURI 进行采样匹配
+        final String requestURI = req.getRequestURI();
+        if (!HttpEntranceMatcher.of(am.getConfig().getHttpEntrancePatterns()).matches(requestURI)) {
+            return false;
+        }
+        final int rate = TraceContext.sampleRate(invokeType, requestURI);
+        String traceId = getTraceId(req, Constants.HEADER_TRACE_ID);
+        if (TraceGenerator.isValid(traceId)) {
+            return TraceGenerator.sampleBucket(traceId) < rate;
+        }
+        int sequence = TraceGenerator.nextSequence();
+        if (sequence % 10000 >= rate) {
+            return false;
+        }
+        sampledTraceId.set(TraceGenerator.generate(sequence));
+        return true;
+    }
+
     /**
      * 重写initContext；对于http请求；before事件里面
      *
@@ -59,15 +111,18 @@ public class HttpStandaloneListener extends DefaultEventListener implements Invo
     @Override
     protected void initContext(Event event) {
         if (event.type == Event.Type.BEFORE) {
+            String sampled = sampledTraceId.get();
+            if (sampled != null) {
+                sampledTraceId.remove();
+                Tracer.start(sampled);
+                return;
+            }
             BeforeEvent be = (BeforeEvent) event;
             Object request = be.argumentArray[0];
             if (request instanceof HttpServletRequest) {
                 HttpServletRequest req = ((HttpServletRequest) request);
                 // header透传开始回放；
-                String traceIdX = req.getHeader(Constants.HEADER_TRACE_ID_X);
-                if (StringUtils.isEmpty(traceIdX)){
-                    traceIdX = req.getParameter(Constants.HEADER_TRACE_ID_X);
-                }
+                String traceIdX = getTraceId(req, Constants.HEADER_TRACE_ID_X);
                 if (TraceGenerator.isValid(traceIdX)) {
                     RepeatMeta meta = new RepeatMeta();
                     meta.setAppName(ApplicationModel.instance().getAppName());
@@ -85,10 +140,7 @@ public class HttpStandaloneListener extends DefaultEventListener implements Invo
                     }
                 }
                 // header透传traceId
-                String traceId = req.getHeader(Constants.HEADER_TRACE_ID);
-                if (StringUtils.isEmpty(traceId)){
-                    traceId = req.getParameter(Constants.HEADER_TRACE_ID);
-                }
+                String traceId = getTraceId(req, Constants.HEADER_TRACE_ID);
                 if (TraceGenerator.isValid(traceId)) {
                     Tracer.start(traceId);
                     return;
@@ -98,10 +150,43 @@ public class HttpStandaloneListener extends DefaultEventListener implements Invo
         super.initContext(event);
     }
 
+    /**
+     * 从header或者query参数中获取透传的traceId；query中没有出现参数名时不解析参数，避免提前读取表单body
+     *
+     * @param req  请求
+     * @param name header/参数名
+     * @return traceId
+     */
+    private String getTraceId(HttpServletRequest req, String name) {
+        String traceId = req.getHeader(name);
+        if (StringUtils.isEmpty(traceId)) {
+            String queryString = req.getQueryString();
+            if (queryString != null && queryString.contains(name)) {
+                traceId = req.getParameter(name);
+            }
+        }
+        return traceId;
+    }
+
+    /**
+     * 按requestURI匹配采样规则、区分自适应采样的入口
+     *
+     * @param event before事件
+     * @return 入口标识
+     */
+    @Override
+    protected String sampleKey(BeforeEvent event) {
+        Object request = event.argumentArray[0];
+        if (request instanceof HttpServletRequest) {
+            return ((HttpServletRequest) request).getRequestURI();
+        }
+        return super.sampleKey(event);
+    }
+
     @Override
     protected void doBefore(BeforeEvent event) throws ProcessControlException {
         // 回放流量；入口直接返回
-        if (RepeatCache.isRepeatFlow(Tracer.getTraceId())) {
+        if (Tracer.isRepeatFlow()) {
             return;
         }
         Object request = event.argumentArray[0];
@@ -111,26 +196,26 @@ public class HttpStandaloneListener extends DefaultEventListener implements Invo
         }
         HttpServletRequest req = (HttpServletRequest) request;
         HttpServletResponse resp = (HttpServletResponse) response;
-        // 根据 requestURI 进行采样匹配
-        List<String> patterns = ApplicationModel.instance().getConfig().getHttpEntrancePatterns();
-        if (!matchRequestURI(patterns, req.getRequestURI())) {
-            LogUtil.debug("current uri {} can't match any httpEntrancePatterns, ignore this request", req.getRequestURI());
-            Tracer.getContext().setSampled(false);
-            return;
-        }
-        WrapperResponseCopier wrapperRes = new WrapperResponseCopier(resp);
+        // requestURI已经在预过滤中匹配
+        WrapperResponseCopier wrapperRes = new WrapperResponseCopier(resp, ApplicationModel.instance().getHttpResponseCaptureLimit());
         WrapperRequest wrapperReq;
         try {
-            wrapperReq = new WrapperRequest(req, wrapperRes, this);
+            wrapperReq = new WrapperRequest(req, wrapperRes, this, ApplicationModel.instance().getHttpBodyCaptureLimit());
         } catch (IOException e) {
             LogUtil.error("error occurred when assemble wrapper request", e);
             Tracer.getContext().setSampled(false);
             return;
         }
-        WrapperTransModel wtm = WrapperTransModel.build(wrapperReq);
-        wtm.setBody(wrapperReq.getBody());
-        wtm.copier = wrapperRes;
-        wtm.request = wrapperReq;
+        if (wrapperReq.isTruncated()) {
+            // body已经被部分读取，必须替换请求；超出采集上限的请求不录制
+            LogUtil.debug("request body exceed capture limit, ignore this request, uri={}", req.getRequestURI());
+            Tracer.getContext().setSampled(false);
+            event.argumentArray[0] = wrapperReq;
+            return;
+        }
+        // body、header、参数在录制时才解码/复制
+        WrapperTransModel wtm = WrapperTransModel.build(wrapperReq, wrapperRes, ApplicationModel.instance().getHttpHeaderAllowList());
+        wrapperReq.setTransModel(wtm);
         onRequest(wrapperReq, event);
         event.argumentArray[0] = wrapperReq;
         event.argumentArray[1] = wrapperRes;
@@ -148,7 +233,7 @@ public class HttpStandaloneListener extends DefaultEventListener implements Invo
     }
 
     private void doFinish() {
-        if (RepeatCache.isRepeatFlow(Tracer.getTraceId())) {
+        if (Tracer.isRepeatFlow()) {
             return;
         }
         WrapperTransModel wtm = wtmRef.get();
@@ -171,7 +256,7 @@ public class HttpStandaloneListener extends DefaultEventListener implements Invo
 
     @Override
     public void onComplete(WrapperRequest request, WrapperTransModel wtm) {
-        HttpInvocation invocation = (HttpInvocation) RecordCache.getInvocation(request.hashCode());
+        HttpInvocation invocation = (HttpInvocation) RecordCache.removeInvocation(request.hashCode());
         if (invocation == null) {
             return;
         }
@@ -199,11 +284,8 @@ public class HttpStandaloneListener extends DefaultEventListener implements Invo
         if (invocation == null || invocation.isAsync()) {
             return;
         }
-        try {
-            wtm.setResponse(new String(wtm.copier.getResponseData(), wtm.copier.getCharacterEncoding()));
-        } catch (Exception e) {
-            LogUtil.error("error occurred when get response,message = {}", e.getMessage());
-        }
+        RecordCache.removeInvocation(request.hashCode());
+        // 返回值在录制时才解码
         onFinish(invocation, wtm);
     }
 
@@ -239,23 +321,4 @@ public class HttpStandaloneListener extends DefaultEventListener implements Invo
         invocation.setResponse(wtm.getResponse());
         invocation.setIdentity(identity);
     }
-
-    /**
-     * 是否命中需要采样的requestURI
-     *
-     * @param patterns   匹配正则
-     * @param requestURI 请求URI
-     * @return 是否命中
-     */
-    private boolean matchRequestURI(List<String> patterns, String requestURI) {
-        if (CollectionUtils.isEmpty(patterns)) {
-            return false;
-        }
-        for (String pattern : patterns) {
-            if (requestURI.matches(pattern)) {
-                return true;
-            }
-        }
-        return false;
-    }
 }
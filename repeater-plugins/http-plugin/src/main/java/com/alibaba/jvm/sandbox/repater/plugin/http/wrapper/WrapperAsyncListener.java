@@ -1,6 +1,7 @@
 package com.alibaba.jvm.sandbox.repater.plugin.http.wrapper;
 
 import com.alibaba.jvm.sandbox.repater.plugin.http.HttpStandaloneListener;
+import com.alibaba.jvm.sandbox.repeater.plugin.core.model.ApplicationModel;
 
 import javax.servlet.AsyncEvent;
 import javax.servlet.AsyncListener;
@@ -25,26 +26,25 @@ public class WrapperAsyncListener implements AsyncListener {
 
     @Override
     public void onComplete(AsyncEvent event) throws IOException {
-        WrapperTransModel wtm = WrapperTransModel.build(request);
-        wtm.setBody(request.getBody());
-        wtm.setResponse(new String(copier.getResponseData(), copier.getCharacterEncoding()));
-        listener.onComplete(request, wtm);
+        listener.onComplete(request, transModel());
     }
 
     @Override
     public void onTimeout(AsyncEvent event) throws IOException {
-        WrapperTransModel wtm = WrapperTransModel.build(request);
-        wtm.setBody(request.getBody());
-        wtm.setResponse(new String(copier.getResponseData(), copier.getCharacterEncoding()));
-        listener.onComplete(request, wtm);
+        listener.onComplete(request, transModel());
     }
 
     @Override
     public void onError(AsyncEvent event) throws IOException {
-        WrapperTransModel wtm = WrapperTransModel.build(request);
-        wtm.setBody(request.getBody());
-        wtm.setResponse(new String(copier.getResponseData(), copier.getCharacterEncoding()));
-        listener.onComplete(request, wtm);
+        listener.onComplete(request, transModel());
+    }
+
+    /**
+     * 复用请求开始时创建的快照；同一请求只复制一次
+     */
+    private WrapperTransModel transModel() {
+        WrapperTransModel wtm = request.getTransModel();
+        return wtm != null ? wtm : WrapperTransModel.build(request, copier, ApplicationModel.instance().getHttpHeaderAllowList());
     }
 
     @Override
@@ -1,32 +1,204 @@
 package com.alibaba.jvm.sandbox.repater.plugin.http.wrapper;
 
 import javax.servlet.ServletOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>
+ * 返回值旁路复制：按块复制到池化的缓冲区，超出采集上限后只透传不复制；解码时直接从分块解码，之后归还缓冲区
+ * </p>
+ * <p>
+ * 异步请求中onTimeout/onError之后应用仍可能在其他线程写出，复制与解码（归还缓冲区）在同一把锁内进行，
+ * 解码之后的写出只透传，不会写入已经归还、可能正被其他请求使用的缓冲块；透传写出本身不加锁
+ * </p>
  *
  * @author zhaoyb1990
  */
 public class WrapperOutputStreamCopier extends ServletOutputStream {
 
+    private static final int CHUNK_SIZE = 4096;
+
+    /**
+     * 最多池化的缓冲块数量
+     */
+    private static final int MAX_POOLED_CHUNKS = 512;
+
+    private static final Queue<byte[]> POOL = new ConcurrentLinkedQueue<byte[]>();
+
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
     private OutputStream out;
-    private ByteArrayOutputStream copier;
 
-    WrapperOutputStreamCopier(OutputStream out) {
+    private final int captureLimit;
+
+    private final List<byte[]> chunks = new ArrayList<byte[]>(4);
+
+    /**
+     * 已复制的字节数
+     */
+    private int captured;
+
+    /**
+     * 应用写出的总字节数
+     */
+    private long written;
+
+    /**
+     * 已经解码并归还缓冲区，不再复制
+     */
+    private boolean released;
+
+    WrapperOutputStreamCopier(OutputStream out, int captureLimit) {
         this.out = out;
-        this.copier = new ByteArrayOutputStream(1024);
+        this.captureLimit = captureLimit;
     }
 
     @Override
     public void write(int b) throws IOException {
         out.write(b);
-        copier.write(b);
+        copy(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        copy(b, off, len);
+    }
+
+    private synchronized void copy(int b) {
+        written++;
+        if (captured < captureLimit && !released) {
+            int offset = captured % CHUNK_SIZE;
+            if (offset == 0) {
+                chunks.add(acquire());
+            }
+            chunks.get(chunks.size() - 1)[offset] = (byte) b;
+            captured++;
+        }
+    }
+
+    private synchronized void copy(byte[] b, int off, int len) {
+        written += len;
+        if (released) {
+            return;
+        }
+        int copy = Math.min(len, captureLimit - captured);
+        while (copy > 0) {
+            int offset = captured % CHUNK_SIZE;
+            if (offset == 0) {
+                chunks.add(acquire());
+            }
+            int n = Math.min(copy, CHUNK_SIZE - offset);
+            System.arraycopy(b, off, chunks.get(chunks.size() - 1), offset, n);
+            off += n;
+            copy -= n;
+            captured += n;
+        }
     }
 
-    byte[] getCopy() {
-        return copier.toByteArray();
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * 超出采集上限
+     *
+     * @return true/false
+     */
+    synchronized boolean isTruncated() {
+        return written > captured;
+    }
+
+    synchronized long getWritten() {
+        return written;
+    }
+
+    /**
+     * 解码复制的内容并归还缓冲区
+     *
+     * @param charset 编码
+     * @return 字符串
+     * @throws IOException 编码不支持
+     */
+    synchronized String decode(String charset) throws IOException {
+        released = true;
+        try {
+            if (chunks.isEmpty()) {
+                return "";
+            }
+            if (chunks.size() == 1) {
+                return new String(chunks.get(0), 0, captured, charset);
+            }
+            StringBuilder builder = new StringBuilder(captured);
+            Reader reader = new InputStreamReader(new ChunkInputStream(), charset);
+            char[] buffer = new char[CHUNK_SIZE];
+            int read;
+            while ((read = reader.read(buffer)) > 0) {
+                builder.append(buffer, 0, read);
+            }
+            return builder.toString();
+        } finally {
+            for (byte[] chunk : chunks) {
+                release(chunk);
+            }
+            chunks.clear();
+        }
+    }
+
+    private static byte[] acquire() {
+        byte[] chunk = POOL.poll();
+        if (chunk == null) {
+            return new byte[CHUNK_SIZE];
+        }
+        POOLED.decrementAndGet();
+        return chunk;
+    }
+
+    private static void release(byte[] chunk) {
+        if (POOLED.incrementAndGet() <= MAX_POOLED_CHUNKS) {
+            POOL.offer(chunk);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+
+    /**
+     * 按顺序读取分块
+     */
+    private class ChunkInputStream extends InputStream {
+
+        private int position;
+
+        @Override
+        public int read() {
+            if (position >= captured) {
+                return -1;
+            }
+            byte b = chunks.get(position / CHUNK_SIZE)[position % CHUNK_SIZE];
+            position++;
+            return b & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= captured) {
+                return -1;
+            }
+            int offset = position % CHUNK_SIZE;
+            int n = Math.min(len, Math.min(CHUNK_SIZE - offset, captured - position));
+            System.arraycopy(chunks.get(position / CHUNK_SIZE), offset, b, off, n);
+            position += n;
+            return n;
+        }
     }
-}
\ No newline at end of file
+}
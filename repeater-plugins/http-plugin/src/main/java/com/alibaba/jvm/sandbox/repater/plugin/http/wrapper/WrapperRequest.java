@@ -1,7 +1,6 @@
 package com.alibaba.jvm.sandbox.repater.plugin.http.wrapper;
 
 import com.alibaba.jvm.sandbox.repater.plugin.http.HttpStandaloneListener;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import javax.servlet.AsyncContext;
@@ -12,58 +11,107 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
+import java.util.Arrays;
 
 /**
  * <p>
+ * 按字节读取一次请求body（json/text/xml），应用读取的流直接基于同一份字节，不再重新编码；字符串只在真正录制时才解码
+ * <p>
+ * 表单提交（application/x-www-form-urlencoded）不读取body，由容器解析为参数后通过paramsMap录制；
+ * body超出采集上限时只读取上限内的部分，剩余部分仍由原始流提供给应用，该请求不录制
+ * </p>
  *
  * @author zhaoyb1990
  */
 public class WrapperRequest extends HttpServletRequestWrapper {
 
+    /**
+     * 读取缓冲区，按线程复用
+     */
+    private static final ThreadLocal<byte[]> READ_BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[8192];
+        }
+    };
+
+    private static final byte[] EMPTY = new byte[0];
+
     private final HttpServletResponse response;
 
-    private final String body;
+    private final byte[] bodyBytes;
+
+    /**
+     * body超出采集上限，未读取的部分
+     */
+    private final InputStream remaining;
 
     private final HttpStandaloneListener listener;
 
     private final boolean usingBody;
 
+    private String body;
+
+    /**
+     * 请求快照；同步结束和异步回调共用
+     */
+    private WrapperTransModel transModel;
+
     /**
      * Constructs a request object wrapping the given request.
      *
-     * @param request 请求
+     * @param request      请求
+     * @param response     返回
+     * @param listener     监听器
+     * @param captureLimit body采集上限（字节）
      * @throws IOException if the request is null
      */
-    public WrapperRequest(HttpServletRequest request, HttpServletResponse response, HttpStandaloneListener listener)
-            throws IOException {
+    public WrapperRequest(HttpServletRequest request, HttpServletResponse response, HttpStandaloneListener listener,
+                          int captureLimit) throws IOException {
         super(request);
         this.response = response;
         this.listener = listener;
-        // application/json的方式提交，需要拦截body
-        this.usingBody = StringUtils.contains(request.getContentType(), "application/json");
-        StringBuilder stringBuilder = new StringBuilder();
-        BufferedReader bufferedReader = null;
-        if (usingBody) {
-            try {
-                InputStream inputStream = request.getInputStream();
-                if (inputStream != null) {
-                    String ce = request.getCharacterEncoding();
-                    if (StringUtils.isNotEmpty(ce)) {
-                        bufferedReader = new BufferedReader(new InputStreamReader(inputStream, ce));
-                    } else {
-                        bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
-                    }
-                    char[] charBuffer = new char[128];
-                    int bytesRead;
-                    while ((bytesRead = bufferedReader.read(charBuffer)) > 0) {
-                        stringBuilder.append(charBuffer, 0, bytesRead);
-                    }
-                }
-            } finally {
-                IOUtils.closeQuietly(bufferedReader);
+        this.usingBody = isCapturable(request.getContentType());
+        if (!usingBody) {
+            this.bodyBytes = EMPTY;
+            this.remaining = null;
+            return;
+        }
+        InputStream inputStream = request.getInputStream();
+        if (inputStream == null) {
+            this.bodyBytes = EMPTY;
+            this.remaining = null;
+            return;
+        }
+        int contentLength = request.getContentLength();
+        byte[] captured = new byte[contentLength > 0 ? Math.min(contentLength, captureLimit) : Math.min(1024, captureLimit)];
+        byte[] buffer = READ_BUFFER.get();
+        int size = 0;
+        int read;
+        while (size < captureLimit && (read = inputStream.read(buffer, 0, Math.min(buffer.length, captureLimit - size))) > 0) {
+            if (size + read > captured.length) {
+                captured = Arrays.copyOf(captured, Math.min(captureLimit, Math.max(captured.length << 1, size + read)));
             }
+            System.arraycopy(buffer, 0, captured, size, read);
+            size += read;
+        }
+        this.bodyBytes = size == captured.length ? captured : Arrays.copyOf(captured, size);
+        // 读满上限且长度未知或超出上限时，剩余部分交给原始流
+        this.remaining = size >= captureLimit && (contentLength < 0 || contentLength > captureLimit) ? inputStream : null;
+    }
+
+    /**
+     * 需要采集body的内容类型：json/text/xml
+     *
+     * @param contentType 内容类型
+     * @return 是否采集
+     */
+    private static boolean isCapturable(String contentType) {
+        if (contentType == null) {
+            return false;
         }
-        body = stringBuilder.toString();
+        String type = contentType.toLowerCase();
+        return type.contains("json") || type.startsWith("text/") || type.contains("xml");
     }
 
     @Override
@@ -83,12 +131,23 @@ public class WrapperRequest extends HttpServletRequestWrapper {
     @Override
     public ServletInputStream getInputStream() throws IOException {
         if (usingBody) {
-            final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(body.getBytes());
+            final InputStream inputStream = remaining == null ? new ByteArrayInputStream(bodyBytes)
+                    : new SequenceInputStream(new ByteArrayInputStream(bodyBytes), remaining);
 
             return new ServletInputStream() {
                 @Override
-                public int read() {
-                    return byteArrayInputStream.read();
+                public int read() throws IOException {
+                    return inputStream.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    return inputStream.read(b, off, len);
+                }
+
+                @Override
+                public int available() throws IOException {
+                    return inputStream.available();
                 }
             };
         } else {
@@ -99,13 +158,50 @@ public class WrapperRequest extends HttpServletRequestWrapper {
     @Override
     public BufferedReader getReader() throws IOException {
         if (usingBody) {
-            return new BufferedReader(new InputStreamReader(this.getInputStream()));
+            return new BufferedReader(new InputStreamReader(this.getInputStream(), charset()));
         } else {
             return super.getReader();
         }
     }
 
+    /**
+     * body超出采集上限
+     *
+     * @return true/false
+     */
+    public boolean isTruncated() {
+        return remaining != null;
+    }
+
+    /**
+     * 解码body；只在录制时调用
+     *
+     * @return body字符串
+     */
     public String getBody() {
-        return this.body;
+        if (body == null) {
+            try {
+                body = new String(bodyBytes, charset());
+            } catch (UnsupportedEncodingException e) {
+                body = new String(bodyBytes);
+            }
+        }
+        return body;
+    }
+
+    public WrapperTransModel getTransModel() {
+        return transModel;
+    }
+
+    public void setTransModel(WrapperTransModel transModel) {
+        this.transModel = transModel;
+    }
+
+    /**
+     * 请求未声明编码时按UTF-8处理（json默认编码）
+     */
+    private String charset() {
+        String ce = getCharacterEncoding();
+        return StringUtils.isNotEmpty(ce) ? ce : "UTF-8";
     }
-}
\ No newline at end of file
+}
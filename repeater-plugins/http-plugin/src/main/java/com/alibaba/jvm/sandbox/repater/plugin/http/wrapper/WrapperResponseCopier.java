@@ -17,9 +17,15 @@ public class WrapperResponseCopier extends HttpServletResponseWrapper {
     private ServletOutputStream outputStream;
     private PrintWriter writer;
     private WrapperOutputStreamCopier copier;
+    /**
+     * 返回值采集上限（字节）
+     */
+    private final int captureLimit;
+    private String responseBody;
 
-    public WrapperResponseCopier(HttpServletResponse response) {
+    public WrapperResponseCopier(HttpServletResponse response, int captureLimit) {
         super(response);
+        this.captureLimit = captureLimit;
     }
 
     @Override
@@ -29,7 +35,7 @@ public class WrapperResponseCopier extends HttpServletResponseWrapper {
         }
         if (outputStream == null) {
             outputStream = getResponse().getOutputStream();
-            copier = new WrapperOutputStreamCopier(outputStream);
+            copier = new WrapperOutputStreamCopier(outputStream, captureLimit);
         }
         return copier;
     }
@@ -40,7 +46,7 @@ public class WrapperResponseCopier extends HttpServletResponseWrapper {
             throw new IllegalStateException("getWriter() has already been called over once");
         }
         if (writer == null) {
-            copier = new WrapperOutputStreamCopier(getResponse().getOutputStream());
+            copier = new WrapperOutputStreamCopier(getResponse().getOutputStream(), captureLimit);
             writer = new PrintWriter(new OutputStreamWriter(copier, getResponse().getCharacterEncoding()), true);
         }
         return writer;
@@ -55,12 +61,24 @@ public class WrapperResponseCopier extends HttpServletResponseWrapper {
         }
     }
 
-    public byte[] getResponseData() throws IOException {
+    /**
+     * 解码复制的返回值（只解码一次，解码后归还复制缓冲区）；超出采集上限时追加截断标记
+     *
+     * @return 返回值
+     * @throws IOException 编码不支持
+     */
+    public String getResponseBody() throws IOException {
+        if (responseBody != null) {
+            return responseBody;
+        }
         flushBuffer();
-        if (copier != null) {
-            return copier.getCopy();
+        if (copier == null) {
+            responseBody = "";
+        } else if (copier.isTruncated()) {
+            responseBody = copier.decode(getCharacterEncoding()) + "...[truncated, " + copier.getWritten() + " bytes in total]";
         } else {
-            return new byte[0];
+            responseBody = copier.decode(getCharacterEncoding());
         }
+        return responseBody;
     }
 }
\ No newline at end of file
@@ -1,14 +1,24 @@
 package com.alibaba.jvm.sandbox.repater.plugin.http.wrapper;
 
+import com.alibaba.jvm.sandbox.repeater.plugin.core.util.LogUtil;
+import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
 
-import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
+ * {@link WrapperTransModel} 录制请求的快照
  * <p>
+ * 每个请求只创建一次（同步结束和异步回调共用），URL、header、参数在第一次读取时（即需要产出录制记录时）才从请求中复制；
+ * 配置了header白名单时只按名称读取白名单内的header，不枚举全部header
+ * <p>
+ * 表单提交的参数由容器从body中解析，应用读取body之后就无法再取到，因此在创建时（请求交给应用之前）复制；
+ * 快照可能在业务线程和异步回调线程中读取，复制和读取都在锁内进行
+ * </p>
  *
  * @author zhaoyb1990
  */
@@ -18,6 +28,16 @@ public class WrapperTransModel {
 
     public WrapperResponseCopier copier;
 
+    /**
+     * header白名单；为空时复制全部header
+     */
+    private final List<String> headerAllowList;
+
+    /**
+     * 是否已经从请求中复制
+     */
+    private boolean snapshot;
+
     /**
      * 请求的URL
      */
@@ -55,83 +75,135 @@ public class WrapperTransModel {
      */
     private String response;
 
-    private WrapperTransModel(String requestURL, String requestURI, int port, String method, String contentType,
-                              Map<String, String> headers, Map<String, String[]> paramsMap) {
-        this.requestURL = requestURL;
-        this.requestURI = requestURI;
-        this.port = port;
-        this.method = method;
-        this.contentType = contentType;
-        this.headers = headers;
-        this.paramsMap = paramsMap;
+    private WrapperTransModel(WrapperRequest request, WrapperResponseCopier copier, List<String> headerAllowList) {
+        this.request = request;
+        this.copier = copier;
+        this.headerAllowList = headerAllowList;
+    }
+
+    /**
+     * 创建请求快照；此时不读取请求的任何内容
+     *
+     * @param request         包装后的请求
+     * @param copier          包装后的返回
+     * @param headerAllowList header白名单；为空时复制全部header
+     * @return 请求快照
+     */
+    public static WrapperTransModel build(WrapperRequest request, WrapperResponseCopier copier, List<String> headerAllowList) {
+        WrapperTransModel wtm = new WrapperTransModel(request, copier, headerAllowList);
+        if (request != null && isFormContent(request.getContentType())) {
+            wtm.paramsMap = copyOf(request.getParameterMap());
+        }
+        return wtm;
+    }
+
+    /**
+     * 参数来自body的表单提交
+     *
+     * @param contentType 内容类型
+     * @return true/false
+     */
+    private static boolean isFormContent(String contentType) {
+        return contentType != null && contentType.toLowerCase().startsWith("application/x-www-form-urlencoded");
     }
 
-    public static WrapperTransModel build(HttpServletRequest request) {
-        Map<String, String> headers = new HashMap<String, String>(2);
-        Enumeration<String> headerNames = request.getHeaderNames();
-        while (headerNames != null && headerNames.hasMoreElements()) {
-            String header = headerNames.nextElement();
-            headers.put(header, request.getHeader(header));
+    private static Map<String, String[]> copyOf(Map<String, String[]> parameterMap) {
+        return MapUtils.isNotEmpty(parameterMap) ? new HashMap<String, String[]>(parameterMap) : new HashMap<String, String[]>(2);
+    }
+
+    private synchronized void snapshot() {
+        if (snapshot) {
+            return;
+        }
+        snapshot = true;
+        if (request == null) {
+            return;
         }
-        Map<String, String[]> parameterMap = request.getParameterMap();
-        Map<String, String[]> parameterMapHolder = new HashMap<String, String[]>(2);
-        if (MapUtils.isNotEmpty(parameterMap)) {
-            for (Map.Entry<String, String[]> entry : parameterMap.entrySet()) {
-                parameterMapHolder.put(entry.getKey(), entry.getValue());
+        Map<String, String> headers = new HashMap<String, String>(8);
+        if (CollectionUtils.isNotEmpty(headerAllowList)) {
+            for (String header : headerAllowList) {
+                String value = header == null ? null : request.getHeader(header);
+                if (value != null) {
+                    headers.put(header, value);
+                }
+            }
+        } else {
+            Enumeration<String> headerNames = request.getHeaderNames();
+            while (headerNames != null && headerNames.hasMoreElements()) {
+                String header = headerNames.nextElement();
+                headers.put(header, request.getHeader(header));
             }
         }
-        return new WrapperTransModel(
-                request.getRequestURL().toString(),
-                request.getRequestURI(),
-                request.getLocalPort(),
-                request.getMethod(),
-                request.getContentType(),
-                headers,
-                parameterMapHolder
-        );
-    }
-
-    public String getRequestURL() {
+        if (this.paramsMap == null) {
+            this.paramsMap = copyOf(request.getParameterMap());
+        }
+        this.headers = headers;
+        this.requestURL = request.getRequestURL().toString();
+        this.requestURI = request.getRequestURI();
+        this.port = request.getLocalPort();
+        this.method = request.getMethod();
+        this.contentType = request.getContentType();
+    }
+
+    public synchronized String getRequestURL() {
+        snapshot();
         return requestURL;
     }
 
-    public String getRequestURI() {
+    public synchronized String getRequestURI() {
+        snapshot();
         return requestURI;
     }
 
-    public String getMethod() {
+    public synchronized String getMethod() {
+        snapshot();
         return method;
     }
 
-    public String getContentType() {
+    public synchronized String getContentType() {
+        snapshot();
         return contentType;
     }
 
-    public Map<String, String> getHeaders() {
+    public synchronized Map<String, String> getHeaders() {
+        snapshot();
         return headers;
     }
 
-    public Map<String, String[]> getParamsMap() {
+    public synchronized Map<String, String[]> getParamsMap() {
+        snapshot();
         return paramsMap;
     }
 
-    public int getPort() {
+    public synchronized int getPort() {
+        snapshot();
         return port;
     }
 
-    public String getBody() {
+    public synchronized String getBody() {
+        if (body == null && request != null) {
+            body = request.getBody();
+        }
         return body;
     }
 
-    public void setBody(String body) {
+    public synchronized void setBody(String body) {
         this.body = body;
     }
 
-    public String getResponse() {
+    public synchronized String getResponse() {
+        if (response == null && copier != null) {
+            try {
+                response = copier.getResponseBody();
+            } catch (IOException e) {
+                LogUtil.error("error occurred when get response,message = {}", e.getMessage());
+                response = "";
+            }
+        }
         return response;
     }
 
-    public void setResponse(String response) {
+    public synchronized void setResponse(String response) {
         this.response = response;
     }
 }
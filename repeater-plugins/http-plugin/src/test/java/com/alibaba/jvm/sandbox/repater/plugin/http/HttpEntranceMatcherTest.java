@@ -0,0 +1,117 @@
+package com.alibaba.jvm.sandbox.repater.plugin.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link HttpEntranceMatcherTest} {@link HttpEntranceMatcher}与逐个{@code requestURI.matches(pattern)}的语义一致性
+ * <p>
+ *
+ * @author zhaoyb1990
+ */
+public class HttpEntranceMatcherTest {
+
+    private static final List<String> PATTERNS = Arrays.asList(
+            // 字面量
+            "/order/create",
+            "^/user/info$",
+            "/static/app\\.js",
+            // 字面量前缀
+            "/admin/.*",
+            "^/api/v1/.*",
+            // 正则
+            "/item/\\d+",
+            "/(query|search)/.*\\.json",
+            "/echo/(\\w+)/\\1",
+            "/price\\$",
+            null);
+
+    private static final List<String> URIS = Arrays.asList(
+            "/order/create", "/order/create/", "/order/createX", "/order",
+            "/user/info", "/user/info2",
+            "/static/app.js", "/static/appXjs",
+            "/admin/", "/admin/users/1", "/admin",
+            "/api/v1/", "/api/v1/order", "/api/v2/order",
+            "/item/123", "/item/", "/item/12a",
+            "/query/a.json", "/search/b/c.json", "/query/a.xml",
+            "/echo/ab/ab", "/echo/ab/cd",
+            "/price$", "/price",
+            "", "/");
+
+    @Test
+    public void testSameAsPatternMatches() {
+        HttpEntranceMatcher matcher = HttpEntranceMatcher.rebuild(PATTERNS);
+        for (String uri : URIS) {
+            Assert.assertEquals(uri, naive(PATTERNS, uri), matcher.matches(uri));
+            // 命中缓存后结果不变
+            Assert.assertEquals(uri, naive(PATTERNS, uri), matcher.matches(uri));
+        }
+    }
+
+    @Test
+    public void testCatchAll() {
+        HttpEntranceMatcher matcher = HttpEntranceMatcher.rebuild(Collections.singletonList(".*"));
+        Assert.assertTrue(matcher.matches("/any/path"));
+        Assert.assertTrue(matcher.matches(""));
+    }
+
+    @Test
+    public void testInvalidPatternIgnored() {
+        HttpEntranceMatcher matcher = HttpEntranceMatcher.rebuild(Arrays.asList("/broken/[", "/ok/\\d+"));
+        Assert.assertTrue(matcher.matches("/ok/1"));
+        Assert.assertFalse(matcher.matches("/broken/["));
+    }
+
+    /**
+     * 单独合法、合并后无法编译的正则（重复的命名分组、未结束的\Q）逐个匹配
+     */
+    @Test
+    public void testUnmergeablePatterns() {
+        List<String> patterns = Arrays.asList("/order/(?<id>\\d+)", "/item/(?<id>\\w+)\\.json", "/raw/\\Q[x]");
+        HttpEntranceMatcher matcher = HttpEntranceMatcher.rebuild(patterns);
+        Assert.assertSame(matcher, HttpEntranceMatcher.of(patterns));
+        for (String uri : Arrays.asList("/order/12", "/order/ab", "/item/ab.json", "/item/ab", "/raw/[x]", "/raw/x")) {
+            Assert.assertEquals(uri, naive(patterns, uri), matcher.matches(uri));
+        }
+        Assert.assertTrue(matcher.matches("/order/12"));
+        Assert.assertTrue(matcher.matches("/item/ab.json"));
+        Assert.assertTrue(matcher.matches("/raw/[x]"));
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertFalse(HttpEntranceMatcher.rebuild(null).matches("/a"));
+        Assert.assertFalse(HttpEntranceMatcher.rebuild(new ArrayList<String>()).matches("/a"));
+        Assert.assertFalse(HttpEntranceMatcher.rebuild(PATTERNS).matches(null));
+    }
+
+    /**
+     * 同一个配置实例复用已编译的匹配器，配置实例变化后重新编译
+     */
+    @Test
+    public void testRebuildOnConfigChange() {
+        List<String> first = new ArrayList<String>(Collections.singletonList("/a"));
+        HttpEntranceMatcher matcher = HttpEntranceMatcher.of(first);
+        Assert.assertSame(matcher, HttpEntranceMatcher.of(first));
+        Assert.assertTrue(matcher.matches("/a"));
+        List<String> second = new ArrayList<String>(Collections.singletonList("/b"));
+        HttpEntranceMatcher rebuilt = HttpEntranceMatcher.of(second);
+        Assert.assertNotSame(matcher, rebuilt);
+        Assert.assertFalse(rebuilt.matches("/a"));
+        Assert.assertTrue(rebuilt.matches("/b"));
+    }
+
+    private static boolean naive(List<String> patterns, String uri) {
+        for (String pattern : patterns) {
+            if (pattern != null && uri.matches(pattern)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}